@@ -25,10 +25,13 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.core.query.reduce.DefaultReduceService;
 import com.linkedin.pinot.requestHandler.BrokerRequestHandler;
+import com.linkedin.pinot.requestHandler.BrokerResultCache;
 import com.linkedin.pinot.routing.CfgBasedRouting;
 import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
 import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.SegmentPruningService;
 import com.linkedin.pinot.routing.TimeBoundaryService;
+import com.linkedin.pinot.transport.common.AdaptiveReplicaSelection;
 import com.linkedin.pinot.transport.conf.TransportClientConf;
 import com.linkedin.pinot.transport.conf.TransportClientConf.RoutingMode;
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
@@ -63,6 +66,19 @@ public class BrokerServerBuilder {
   private static final String CLIENT_CONFIG_PREFIX = "pinot.broker.client";
   private static final String METRICS_CONFIG_PREFIX = "pinot.broker.metrics";
   private static final String BROKER_TIME_OUT_CONFIG = "pinot.broker.timeoutMs";
+  // Result caching is disabled unless a positive number of entries is configured
+  private static final String RESULT_CACHE_MAX_ENTRIES_CONFIG = "pinot.broker.resultCache.maxEntries";
+  private static final String RESULT_CACHE_MAX_SIZE_IN_BYTES_CONFIG = "pinot.broker.resultCache.maxSizeInBytes";
+  private static final long DEFAULT_RESULT_CACHE_MAX_SIZE_IN_BYTES = 64L * 1024 * 1024;
+  private static final String RESULT_CACHE_TTL_MS_CONFIG = "pinot.broker.resultCache.ttlMs";
+  private static final long DEFAULT_RESULT_CACHE_TTL_MS = 10L * 60 * 1000;
+  // Speculative requests to other replicas are disabled unless a latency percentile is configured
+  private static final String HEDGING_LATENCY_PERCENTILE_CONFIG = "pinot.broker.hedging.latencyPercentile";
+  private static final String HEDGING_MIN_DELAY_MS_CONFIG = "pinot.broker.hedging.minDelayMs";
+  private static final long DEFAULT_HEDGING_MIN_DELAY_MS = 10L;
+  // Either roundRobin over the servers of the routing table, or adaptive to pick among all replicas by latency and load
+  private static final String REPLICA_SELECTION_CONFIG = "pinot.broker.replicaSelection";
+  private static final String ADAPTIVE_REPLICA_SELECTION = "adaptive";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerServerBuilder.class);
   private static final long DEFAULT_BROKER_TIME_OUT_MS = 10 * 1000L;
@@ -77,6 +93,7 @@ public class BrokerServerBuilder {
   private PooledNettyClientResourceManager _resourceManager;
 
   private TimeBoundaryService _timeBoundaryService;
+  private SegmentPruningService _segmentPruningService;
 
   private RoutingTable _routingTable;
 
@@ -108,6 +125,9 @@ public class BrokerServerBuilder {
     _config = configuration;
     _routingTable = helixExternalViewBasedRouting;
     _timeBoundaryService = timeBoundaryService;
+    if (helixExternalViewBasedRouting != null) {
+      _segmentPruningService = helixExternalViewBasedRouting.getSegmentPruningService();
+    }
     this.listener = listener;
   }
 
@@ -120,7 +140,8 @@ public class BrokerServerBuilder {
     _registry = new MetricsRegistry();
     MetricsHelper.initializeMetrics(_config.subset(METRICS_CONFIG_PREFIX));
     MetricsHelper.registerMetricsRegistry(_registry);
-    _brokerMetrics = new BrokerMetrics(_registry);
+    _brokerMetrics = new BrokerMetrics(_registry,
+        _config.subset(METRICS_CONFIG_PREFIX).getBoolean(MetricsHelper.USE_STRIPED_HISTOGRAMS, false));
     _brokerMetrics.initializeGlobalMeters();
     _state.set(State.INIT);
     _eventLoopGroup = new NioEventLoopGroup();
@@ -153,12 +174,24 @@ public class BrokerServerBuilder {
       final CfgBasedRouting rt = new CfgBasedRouting();
       rt.init(conf.getCfgBasedRouting());
       _routingTable = rt;
+      _segmentPruningService = null;
     } else {
       // Helix based routing is already initialized.
     }
 
     // Setup ScatterGather
-    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    double hedgingLatencyPercentile = _config.getDouble(HEDGING_LATENCY_PERCENTILE_CONFIG, 0);
+    int numSpeculativeRequests = 0;
+    if (hedgingLatencyPercentile > 0) {
+      long hedgingMinDelayMs = _config.getLong(HEDGING_MIN_DELAY_MS_CONFIG, DEFAULT_HEDGING_MIN_DELAY_MS);
+      LOGGER.info("Sending speculative requests to servers slower than their p{} latency, after at least {} ms",
+          hedgingLatencyPercentile, hedgingMinDelayMs);
+      _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool, _poolTimeoutExecutor,
+          hedgingLatencyPercentile, hedgingMinDelayMs);
+      numSpeculativeRequests = 1;
+    } else {
+      _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    }
 
     // Setup Broker Request Handler
     long brokerTimeOutMs = DEFAULT_BROKER_TIME_OUT_MS;
@@ -171,9 +204,21 @@ public class BrokerServerBuilder {
     }
     LOGGER.info("Broker timeout is - " + brokerTimeOutMs + " ms");
 
+    BrokerResultCache resultCache = null;
+    int resultCacheMaxEntries = _config.getInt(RESULT_CACHE_MAX_ENTRIES_CONFIG, 0);
+    if (resultCacheMaxEntries > 0) {
+      resultCache = new BrokerResultCache(resultCacheMaxEntries,
+          _config.getLong(RESULT_CACHE_MAX_SIZE_IN_BYTES_CONFIG, DEFAULT_RESULT_CACHE_MAX_SIZE_IN_BYTES),
+          _config.getLong(RESULT_CACHE_TTL_MS_CONFIG, DEFAULT_RESULT_CACHE_TTL_MS), _brokerMetrics);
+    }
+
     _requestHandler =
-        new BrokerRequestHandler(_routingTable, _timeBoundaryService, _scatterGather, new DefaultReduceService(),
-            _brokerMetrics, brokerTimeOutMs);
+        new BrokerRequestHandler(_routingTable, _timeBoundaryService, _segmentPruningService, _scatterGather,
+            new DefaultReduceService(), _brokerMetrics, brokerTimeOutMs, resultCache, numSpeculativeRequests);
+    if (ADAPTIVE_REPLICA_SELECTION.equalsIgnoreCase(_config.getString(REPLICA_SELECTION_CONFIG, null))) {
+      LOGGER.info("Selecting the replicas of segments by latency and load");
+      _requestHandler.setReplicaSelection(new AdaptiveReplicaSelection());
+    }
 
     //TODO: Start Broker Server : Code goes here. Broker Server part should use request handler to submit requests
 
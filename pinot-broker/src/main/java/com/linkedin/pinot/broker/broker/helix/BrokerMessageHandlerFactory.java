@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.broker.helix;
+
+import org.apache.helix.NotificationContext;
+import org.apache.helix.messaging.handling.HelixTaskResult;
+import org.apache.helix.messaging.handling.MessageHandler;
+import org.apache.helix.messaging.handling.MessageHandlerFactory;
+import org.apache.helix.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.messages.SegmentRefreshMessage;
+import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
+
+
+/**
+ * Handles the segment refresh messages the controller sends to the brokers of a table, so that the broker stops
+ * serving cached results computed before the segment was replaced. The controller sends them once the servers have
+ * replaced the segment, so results cached after the message are computed on the new segment.
+ */
+public class BrokerMessageHandlerFactory implements MessageHandlerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerMessageHandlerFactory.class);
+
+  private final HelixExternalViewBasedRouting _helixExternalViewBasedRouting;
+
+  public BrokerMessageHandlerFactory(HelixExternalViewBasedRouting helixExternalViewBasedRouting) {
+    _helixExternalViewBasedRouting = helixExternalViewBasedRouting;
+  }
+
+  @Override
+  public MessageHandler createHandler(Message message, NotificationContext context) {
+    try {
+      return new RefreshSegmentMessageHandler(new SegmentRefreshMessage(message), context);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Unrecognized message subtype {}", message.getMsgSubType());
+      return null;
+    }
+  }
+
+  @Override
+  public String getMessageType() {
+    return Message.MessageType.USER_DEFINE_MSG.toString();
+  }
+
+  @Override
+  public void reset() {
+    LOGGER.info("Reset called");
+  }
+
+  private class RefreshSegmentMessageHandler extends MessageHandler {
+    // The message is addressed to the partition of the table in the broker resource
+    private final String _tableName;
+
+    public RefreshSegmentMessageHandler(SegmentRefreshMessage refreshMessage, NotificationContext context) {
+      super(refreshMessage, context);
+      _tableName = refreshMessage.getPartitionName();
+    }
+
+    @Override
+    public HelixTaskResult handleMessage() {
+      HelixTaskResult result = new HelixTaskResult();
+      LOGGER.info("Handling message {}", _message);
+      _helixExternalViewBasedRouting.markSegmentRefreshed(_tableName);
+      result.setSuccess(true);
+      return result;
+    }
+
+    @Override
+    public void onError(Exception e, ErrorCode code, ErrorType type) {
+      LOGGER.error("onError: {}, {}", type, code, e);
+    }
+  }
+}
@@ -21,7 +21,8 @@ import org.apache.helix.model.Message;
 
 /**
  * This (helix) message is sent from the controller to the server when a request is received to refresh
- * an existing segment.
+ * an existing segment. The brokers of the table get it as well, addressed to the table's partition of the
+ * broker resource, to drop cached results of the table.
  *
  * There is one mandatory field in the message -- the CRC of the new segment.
  *
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.metadata.segment;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import static com.linkedin.pinot.common.utils.EqualityUtils.hashCodeOf;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isEqual;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isNullOrNotSameClass;
+import static com.linkedin.pinot.common.utils.EqualityUtils.isSameReference;
+
+
+/**
+ * Smallest and largest value of a column in a segment, used to prune segments whose values can
+ * not match a filter. INT and LONG values compare as longs, FLOAT and DOUBLE as floats and doubles
+ * and STRING values in natural string order.
+ */
+public class ColumnValueRange {
+  private final DataType _dataType;
+  private final String _minValue;
+  private final String _maxValue;
+  private final Comparable _parsedMinValue;
+  private final Comparable _parsedMaxValue;
+
+  private ColumnValueRange(DataType dataType, String minValue, String maxValue, Comparable parsedMinValue,
+      Comparable parsedMaxValue) {
+    _dataType = dataType;
+    _minValue = minValue;
+    _maxValue = maxValue;
+    _parsedMinValue = parsedMinValue;
+    _parsedMaxValue = parsedMaxValue;
+  }
+
+  /**
+   * @return the value range, or null if the data type is not supported or min/max can not be parsed
+   */
+  public static ColumnValueRange create(DataType dataType, String minValue, String maxValue) {
+    if (dataType == null) {
+      return null;
+    }
+    Comparable parsedMinValue = parseValue(dataType, minValue);
+    Comparable parsedMaxValue = parseValue(dataType, maxValue);
+    if (parsedMinValue == null || parsedMaxValue == null) {
+      return null;
+    }
+    return new ColumnValueRange(dataType, minValue, maxValue, parsedMinValue, parsedMaxValue);
+  }
+
+  public DataType getDataType() {
+    return _dataType;
+  }
+
+  public String getMinValue() {
+    return _minValue;
+  }
+
+  public String getMaxValue() {
+    return _maxValue;
+  }
+
+  /**
+   * Compares a filter value against the smallest value of the range.
+   *
+   * @return negative, zero or positive as the value is less than, equal to or greater than the min
+   *         value, or null if the value can not be compared.
+   */
+  public Integer compareToMin(String value) {
+    return compare(value, _parsedMinValue);
+  }
+
+  /**
+   * Compares a filter value against the largest value of the range, see compareToMin.
+   */
+  public Integer compareToMax(String value) {
+    return compare(value, _parsedMaxValue);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Integer compare(String value, Comparable bound) {
+    Comparable parsedValue = parseValue(_dataType, value);
+    if (parsedValue == null) {
+      return null;
+    }
+    return parsedValue.compareTo(bound);
+  }
+
+  private static Comparable parseValue(DataType dataType, String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      switch (dataType) {
+        case INT:
+        case LONG:
+          return Long.valueOf(value.trim());
+        case FLOAT:
+          return Float.valueOf(value.trim());
+        case DOUBLE:
+          return Double.valueOf(value.trim());
+        case STRING:
+          return value;
+        default:
+          return null;
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (isSameReference(this, o)) {
+      return true;
+    }
+
+    if (isNullOrNotSameClass(this, o)) {
+      return false;
+    }
+
+    ColumnValueRange range = (ColumnValueRange) o;
+    return isEqual(_dataType, range._dataType) &&
+        isEqual(_minValue, range._minValue) &&
+        isEqual(_maxValue, range._maxValue);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCodeOf(_dataType);
+    result = hashCodeOf(result, _minValue);
+    result = hashCodeOf(result, _maxValue);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return _dataType + "[" + _minValue + ", " + _maxValue + "]";
+  }
+}
@@ -21,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.metadata.ZKMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
@@ -44,6 +45,7 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
   private long _totalDocs = -1;
   private long _crc = -1;
   private long _creationTime = -1;
+  private Map<String, ColumnValueRange> _columnValueRanges = null;
 
   public SegmentZKMetadata() {
   }
@@ -62,6 +64,32 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _totalDocs = znRecord.getLongField(CommonConstants.Segment.TOTAL_DOCS, -1);
     _crc = znRecord.getLongField(CommonConstants.Segment.CRC, -1);
     _creationTime = znRecord.getLongField(CommonConstants.Segment.CREATION_TIME, -1);
+    _columnValueRanges = readColumnValueRanges(znRecord);
+  }
+
+  private static Map<String, ColumnValueRange> readColumnValueRanges(ZNRecord znRecord) {
+    Map<String, String> dataTypes = znRecord.getMapField(CommonConstants.Segment.COLUMN_DATA_TYPES);
+    Map<String, String> minValues = znRecord.getMapField(CommonConstants.Segment.COLUMN_MIN_VALUES);
+    Map<String, String> maxValues = znRecord.getMapField(CommonConstants.Segment.COLUMN_MAX_VALUES);
+    if (dataTypes == null || minValues == null || maxValues == null) {
+      return null;
+    }
+    Map<String, ColumnValueRange> columnValueRanges = new HashMap<String, ColumnValueRange>();
+    for (Map.Entry<String, String> entry : dataTypes.entrySet()) {
+      String column = entry.getKey();
+      DataType dataType;
+      try {
+        dataType = DataType.valueOf(entry.getValue());
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+      ColumnValueRange columnValueRange =
+          ColumnValueRange.create(dataType, minValues.get(column), maxValues.get(column));
+      if (columnValueRange != null) {
+        columnValueRanges.put(column, columnValueRange);
+      }
+    }
+    return columnValueRanges;
   }
 
   public String getSegmentName() {
@@ -144,6 +172,17 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _creationTime = creationTime;
   }
 
+  /**
+   * @return min/max value per column, or null for segments uploaded without column value ranges
+   */
+  public Map<String, ColumnValueRange> getColumnValueRanges() {
+    return _columnValueRanges;
+  }
+
+  public void setColumnValueRanges(Map<String, ColumnValueRange> columnValueRanges) {
+    _columnValueRanges = columnValueRanges;
+  }
+
   @Override
   public boolean equals(Object segmentMetadata) {
     if (isSameReference(this, segmentMetadata)) {
@@ -164,7 +203,8 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
         isEqual(_segmentType, metadata._segmentType) &&
         isEqual(_totalDocs, metadata._totalDocs) &&
         isEqual(_crc, metadata._crc) &&
-        isEqual(_creationTime, metadata._creationTime);
+        isEqual(_creationTime, metadata._creationTime) &&
+        isEqual(_columnValueRanges, metadata._columnValueRanges);
   }
 
   @Override
@@ -179,6 +219,7 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     result = hashCodeOf(result, _totalDocs);
     result = hashCodeOf(result, _crc);
     result = hashCodeOf(result, _creationTime);
+    result = hashCodeOf(result, _columnValueRanges);
     return result;
   }
 
@@ -200,6 +241,19 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     znRecord.setLongField(CommonConstants.Segment.TOTAL_DOCS, _totalDocs);
     znRecord.setLongField(CommonConstants.Segment.CRC, _crc);
     znRecord.setLongField(CommonConstants.Segment.CREATION_TIME, _creationTime);
+    if (_columnValueRanges != null) {
+      Map<String, String> dataTypes = new HashMap<String, String>();
+      Map<String, String> minValues = new HashMap<String, String>();
+      Map<String, String> maxValues = new HashMap<String, String>();
+      for (Map.Entry<String, ColumnValueRange> entry : _columnValueRanges.entrySet()) {
+        dataTypes.put(entry.getKey(), entry.getValue().getDataType().toString());
+        minValues.put(entry.getKey(), entry.getValue().getMinValue());
+        maxValues.put(entry.getKey(), entry.getValue().getMaxValue());
+      }
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_DATA_TYPES, dataTypes);
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_MIN_VALUES, minValues);
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_MAX_VALUES, maxValues);
+    }
     return znRecord;
   }
 
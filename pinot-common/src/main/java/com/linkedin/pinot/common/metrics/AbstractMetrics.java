@@ -16,6 +16,8 @@
 package com.linkedin.pinot.common.metrics;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -26,26 +28,54 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.yammer.metrics.core.Gauge;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
 
 
 /**
  * Common code for metrics implementations.
  *
+ * The timers and meters of each table are resolved once and kept in concurrent maps keyed on the phase or meter and
+ * the table name, so that logging a value on the query path neither builds metric names nor looks them up in the
+ * metrics registry.
  */
 public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M extends AbstractMetrics.Meter> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractMetrics.class);
 
+  // Table name used for the metrics of queries without a table
+  private static final String UNKNOWN_TABLE = "unknown";
+
   protected final String _metricPrefix;
 
   protected final MetricsRegistry _metricsRegistry;
 
   private final Class _clazz;
 
+  private final boolean _useStripedHistograms;
+
+  private final ConcurrentMap<QP, ConcurrentMap<String, PhaseTimer>> _phaseTimers =
+      new ConcurrentHashMap<QP, ConcurrentMap<String, PhaseTimer>>();
+  private final ConcurrentMap<M, ConcurrentMap<String, com.yammer.metrics.core.Meter>> _tableMeters =
+      new ConcurrentHashMap<M, ConcurrentMap<String, com.yammer.metrics.core.Meter>>();
+  private final ConcurrentMap<M, com.yammer.metrics.core.Meter> _globalMeters =
+      new ConcurrentHashMap<M, com.yammer.metrics.core.Meter>();
+  private final ConcurrentMap<String, StripedHistogram> _stripedHistograms =
+      new ConcurrentHashMap<String, StripedHistogram>();
+
   public AbstractMetrics(String metricPrefix, MetricsRegistry metricsRegistry, Class clazz) {
+    this(metricPrefix, metricsRegistry, clazz, false);
+  }
+
+  /**
+   * @param useStripedHistograms Whether to log phase timings to striped histograms, exposed as gauges of their count,
+   *                             max and percentiles in microseconds, instead of yammer timers
+   */
+  public AbstractMetrics(String metricPrefix, MetricsRegistry metricsRegistry, Class clazz,
+      boolean useStripedHistograms) {
     _metricPrefix = metricPrefix;
     _metricsRegistry = metricsRegistry;
     _clazz = clazz;
+    _useStripedHistograms = useStripedHistograms;
   }
 
   public interface QueryPhase {
@@ -68,26 +98,128 @@ public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M e
    * @param nanos The number of nanoseconds that the phase execution took to complete
    */
   public void addPhaseTiming(final BrokerRequest request, final QP phase, final long nanos) {
-    final String fullTimerName = buildMetricName(request, phase.getQueryPhaseName());
-    final MetricName metricName = new MetricName(_clazz, fullTimerName);
-
-    MetricsHelper.newTimer(_metricsRegistry, metricName, TimeUnit.MILLISECONDS, TimeUnit.SECONDS).update(nanos,
-        TimeUnit.NANOSECONDS);
+    getPhaseTimer(getTableName(request), phase).update(nanos);
   }
 
   /**
-   * Builds a complete metric name, of the form prefix.resource.metric
+   * Logs the timing of a phase that is not tied to a query, such as a segment build.
    *
-   * @param request The broker request containing all the information
-   * @param metricName The metric name to register
-   * @return The complete metric name
+   * @param tableName The table the phase ran for
+   * @param phase The phase for which to log time
+   * @param nanos The number of nanoseconds that the phase execution took to complete
    */
-  private String buildMetricName(BrokerRequest request, String metricName) {
+  public void addTablePhaseTiming(final String tableName, final QP phase, final long nanos) {
+    getPhaseTimer(tableName == null ? UNKNOWN_TABLE : tableName, phase).update(nanos);
+  }
+
+  /**
+   * Returns the name of the table queried by the given request, or UNKNOWN_TABLE.
+   */
+  private static String getTableName(BrokerRequest request) {
     if (request != null && request.getQuerySource() != null && request.getQuerySource().getTableName() != null) {
-      return _metricPrefix + request.getQuerySource().getTableName() + "." + metricName;
+      return request.getQuerySource().getTableName();
     } else {
-      return _metricPrefix + "unknown." + metricName;
+      return UNKNOWN_TABLE;
+    }
+  }
+
+  /**
+   * Builds a complete metric name, of the form prefix.resource.metric
+   */
+  private String buildMetricName(String tableName, String metricName) {
+    return _metricPrefix + tableName + "." + metricName;
+  }
+
+  /**
+   * Where the timings of one phase of one table are logged.
+   */
+  private interface PhaseTimer {
+    void update(long nanos);
+  }
+
+  private PhaseTimer getPhaseTimer(String tableName, QP phase) {
+    ConcurrentMap<String, PhaseTimer> tableTimers = _phaseTimers.get(phase);
+    if (tableTimers == null) {
+      _phaseTimers.putIfAbsent(phase, new ConcurrentHashMap<String, PhaseTimer>());
+      tableTimers = _phaseTimers.get(phase);
+    }
+    PhaseTimer phaseTimer = tableTimers.get(tableName);
+    if (phaseTimer == null) {
+      // Racing threads may both build the timer, the registry hands them the same underlying metric
+      phaseTimer = newPhaseTimer(buildMetricName(tableName, phase.getQueryPhaseName()));
+      tableTimers.put(tableName, phaseTimer);
+    }
+    return phaseTimer;
+  }
+
+  private PhaseTimer newPhaseTimer(String fullTimerName) {
+    if (!_useStripedHistograms) {
+      final Timer timer = MetricsHelper.newTimer(_metricsRegistry, new MetricName(_clazz, fullTimerName),
+          TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+      return new PhaseTimer() {
+        @Override
+        public void update(long nanos) {
+          timer.update(nanos, TimeUnit.NANOSECONDS);
+        }
+      };
+    }
+
+    final StripedHistogram histogram = getStripedHistogram(fullTimerName);
+    return new PhaseTimer() {
+      @Override
+      public void update(long nanos) {
+        histogram.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+      }
+    };
+  }
+
+  private StripedHistogram getStripedHistogram(String fullTimerName) {
+    StripedHistogram histogram = _stripedHistograms.get(fullTimerName);
+    if (histogram != null) {
+      return histogram;
+    }
+    final StripedHistogram newHistogram = new StripedHistogram();
+    histogram = _stripedHistograms.putIfAbsent(fullTimerName, newHistogram);
+    if (histogram != null) {
+      return histogram;
     }
+
+    newGauge(fullTimerName + ".count", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return newHistogram.getCount();
+      }
+    });
+    newGauge(fullTimerName + ".maxMicros", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return newHistogram.getMax();
+      }
+    });
+    newGauge(fullTimerName + ".meanMicros", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return (long) newHistogram.getMean();
+      }
+    });
+    newPercentileGauge(fullTimerName + ".p50Micros", newHistogram, 0.5);
+    newPercentileGauge(fullTimerName + ".p95Micros", newHistogram, 0.95);
+    newPercentileGauge(fullTimerName + ".p99Micros", newHistogram, 0.99);
+    newPercentileGauge(fullTimerName + ".p999Micros", newHistogram, 0.999);
+    return newHistogram;
+  }
+
+  private void newPercentileGauge(String fullGaugeName, final StripedHistogram histogram, final double quantile) {
+    newGauge(fullGaugeName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return histogram.getPercentile(quantile);
+      }
+    });
+  }
+
+  private void newGauge(String fullGaugeName, Gauge<Long> gauge) {
+    MetricsHelper.newGauge(_metricsRegistry, new MetricName(_clazz, fullGaugeName), gauge);
   }
 
   /**
@@ -118,16 +250,50 @@ public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M e
    * @param unitCount The number of units to add to the meter
    */
   public void addMeteredValue(final BrokerRequest request, final M meter, final long unitCount) {
-    final String fullMeterName;
-    String meterName = meter.getMeterName();
     if (request != null) {
-      fullMeterName = buildMetricName(request, meterName);
+      getTableMeter(getTableName(request), meter).mark(unitCount);
     } else {
-      fullMeterName = _metricPrefix + meterName;
+      getGlobalMeter(meter).mark(unitCount);
+    }
+  }
+
+  /**
+   * Logs a value to a meter of a table, for events that are not tied to a query.
+   *
+   * @param tableName The table the event happened for
+   * @param meter The meter to use
+   * @param unitCount The number of units to add to the meter
+   */
+  public void addTableMeteredValue(final String tableName, final M meter, final long unitCount) {
+    getTableMeter(tableName == null ? UNKNOWN_TABLE : tableName, meter).mark(unitCount);
+  }
+
+  private com.yammer.metrics.core.Meter getTableMeter(String tableName, M meter) {
+    ConcurrentMap<String, com.yammer.metrics.core.Meter> tableMeters = _tableMeters.get(meter);
+    if (tableMeters == null) {
+      _tableMeters.putIfAbsent(meter, new ConcurrentHashMap<String, com.yammer.metrics.core.Meter>());
+      tableMeters = _tableMeters.get(meter);
+    }
+    com.yammer.metrics.core.Meter tableMeter = tableMeters.get(tableName);
+    if (tableMeter == null) {
+      tableMeter = newMeter(buildMetricName(tableName, meter.getMeterName()), meter);
+      tableMeters.put(tableName, tableMeter);
     }
-    final MetricName metricName = new MetricName(_clazz, fullMeterName);
+    return tableMeter;
+  }
 
-    MetricsHelper.newMeter(_metricsRegistry, metricName, meter.getUnit(), TimeUnit.SECONDS).mark(unitCount);
+  private com.yammer.metrics.core.Meter getGlobalMeter(M meter) {
+    com.yammer.metrics.core.Meter globalMeter = _globalMeters.get(meter);
+    if (globalMeter == null) {
+      globalMeter = newMeter(_metricPrefix + meter.getMeterName(), meter);
+      _globalMeters.put(meter, globalMeter);
+    }
+    return globalMeter;
+  }
+
+  private com.yammer.metrics.core.Meter newMeter(String fullMeterName, M meter) {
+    return MetricsHelper.newMeter(_metricsRegistry, new MetricName(_clazz, fullMeterName), meter.getUnit(),
+        TimeUnit.SECONDS);
   }
 
   /**
@@ -164,6 +330,15 @@ public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M e
     });
   }
 
+  /**
+   * Removes a gauge added with {@link #addCallbackGauge(String, Callable)}.
+   *
+   * @param metricName The name of the metric
+   */
+  public void removeGauge(final String metricName) {
+    MetricsHelper.removeMetric(_metricsRegistry, new MetricName(_clazz, _metricPrefix + metricName));
+  }
+
   protected abstract QP[] getQueryPhases();
 
   protected abstract M[] getMeters();
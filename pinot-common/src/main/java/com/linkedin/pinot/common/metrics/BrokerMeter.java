@@ -30,6 +30,10 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   REQUEST_FETCH_EXCEPTIONS("exceptions", false),
   REQUEST_DESERIALIZATION_EXCEPTIONS("exceptions", false),
   DOCUMENTS_SCANNED("documents", false),
+  SEGMENTS_PRUNED_BY_BROKER("segments", false),
+  RESULT_CACHE_HITS("queries", false),
+  HEDGED_REQUESTS_SENT("requests", false),
+  HEDGED_REQUESTS_WON("requests", false),
   HELIX_ZOOKEEPER_RECONNECTS("reconnects", true);
 
   private final String brokerMeterName;
@@ -29,7 +29,11 @@ public class BrokerMetrics extends AbstractMetrics<BrokerQueryPhase, BrokerMeter
    * @param metricsRegistry The metric registry used to register timers and meters.
    */
   public BrokerMetrics(MetricsRegistry metricsRegistry) {
-    super("pinot.broker.", metricsRegistry, BrokerMetrics.class);
+    this(metricsRegistry, false);
+  }
+
+  public BrokerMetrics(MetricsRegistry metricsRegistry, boolean useStripedHistograms) {
+    super("pinot.broker.", metricsRegistry, BrokerMetrics.class, useStripedHistograms);
   }
 
   @Override
@@ -40,6 +40,9 @@ import org.slf4j.LoggerFactory;
 public class MetricsHelper {
   private static final Logger LOGGER = LoggerFactory.getLogger(MetricsHelper.class);
 
+  // Key of the metrics config enabling striped histograms for phase timings, see AbstractMetrics
+  public static final String USE_STRIPED_HISTOGRAMS = "useStripedHistograms";
+
   private static Map<MetricsRegistry, Object> metricsRegistryMap = new WeakHashMap<MetricsRegistry, Object>();
 
   private static Map<MetricsRegistryRegistrationListener, Object> metricsRegistryRegistrationListenersMap =
@@ -241,6 +244,20 @@ public class MetricsHelper {
     }
   }
 
+  /**
+   * Removes the metric with the given name, if it exists
+   *
+   * @param registry MetricsRegistry
+   * @param name metric name
+   */
+  public static void removeMetric(MetricsRegistry registry, MetricName name) {
+    if (registry != null) {
+      registry.removeMetric(name);
+    } else {
+      Metrics.defaultRegistry().removeMetric(name);
+    }
+  }
+
   /**
    *
    * Return an existing aggregated long gauge if registry is not null and a aggregated long gauge already exist
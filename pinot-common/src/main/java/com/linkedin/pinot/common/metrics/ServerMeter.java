@@ -27,7 +27,10 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   UNCAUGHT_EXCEPTIONS("exceptions", true),
   RESPONSE_SERIALIZATION_EXCEPTIONS("exceptions", true),
   QUERY_EXECUTION_EXCEPTIONS("exceptions", false),
-  HELIX_ZOOKEEPER_RECONNECTS("reconnects", true);
+  HELIX_ZOOKEEPER_RECONNECTS("reconnects", true),
+  SCHEDULER_REJECTED_QUERIES("queries", true),
+  REALTIME_SEGMENT_CONVERSION_BYTES("bytes", false),
+  QUERY_EXECUTOR_REJECTED_TASKS("tasks", false);
 
   private final String meterName;
   private final String unit;
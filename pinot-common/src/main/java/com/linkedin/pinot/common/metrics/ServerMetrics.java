@@ -34,6 +34,10 @@ public class ServerMetrics extends AbstractMetrics<ServerQueryPhase, ServerMeter
   }
 
   public ServerMetrics(MetricsRegistry metricsRegistry) {
-    super("pinot.server.", metricsRegistry, ServerMetrics.class);
+    this(metricsRegistry, false);
+  }
+
+  public ServerMetrics(MetricsRegistry metricsRegistry, boolean useStripedHistograms) {
+    super("pinot.server.", metricsRegistry, ServerMetrics.class, useStripedHistograms);
   }
 }
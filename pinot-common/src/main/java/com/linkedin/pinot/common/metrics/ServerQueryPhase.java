@@ -28,7 +28,9 @@ public enum ServerQueryPhase implements AbstractMetrics.QueryPhase {
   BUILD_QUERY_PLAN,
   QUERY_PLAN_EXECUTION,
   RESPONSE_SERIALIZATION,
-  QUERY_PROCESSING;
+  QUERY_PROCESSING,
+  SCHEDULER_WAIT,
+  REALTIME_SEGMENT_CONVERSION;
 
   private final String queryPhaseName;
 
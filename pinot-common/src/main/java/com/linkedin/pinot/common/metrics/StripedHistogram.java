@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Histogram of non negative long values, cheap to update from many threads at once.
+ *
+ * Values are counted in log-linear buckets (8 buckets per power of two, so a reported percentile is within 12.5% of
+ * the true value), and every thread updates the bucket counts of one of several stripes, so concurrent updates
+ * neither lock nor contend on the same counters the way the sample of a yammer histogram does. The histogram covers
+ * all values recorded since it was created.
+ */
+public class StripedHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int NUM_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Values below NUM_SUB_BUCKETS get a bucket each, every larger power of two up to 2^62 gets NUM_SUB_BUCKETS buckets
+  static final int NUM_BUCKETS = NUM_SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS;
+
+  private final AtomicLongArray[] _stripes;
+  private final int _stripeMask;
+  private final LongAdder _count = new LongAdder();
+  private final LongAdder _sum = new LongAdder();
+  private final AtomicLong _max = new AtomicLong(0L);
+
+  public StripedHistogram() {
+    this(2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  public StripedHistogram(int minNumStripes) {
+    int numStripes = Integer.highestOneBit(Math.max(1, minNumStripes - 1)) << 1;
+    _stripes = new AtomicLongArray[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      _stripes[i] = new AtomicLongArray(NUM_BUCKETS);
+    }
+    _stripeMask = numStripes - 1;
+  }
+
+  /**
+   * Records a value, negative values are recorded as 0.
+   */
+  public void update(long value) {
+    if (value < 0L) {
+      value = 0L;
+    }
+    _stripes[(int) Thread.currentThread().getId() & _stripeMask].incrementAndGet(getBucketIndex(value));
+    _count.increment();
+    _sum.add(value);
+    long max = _max.get();
+    while (value > max && !_max.compareAndSet(max, value)) {
+      max = _max.get();
+    }
+  }
+
+  public long getCount() {
+    return _count.sum();
+  }
+
+  public long getMax() {
+    return _max.get();
+  }
+
+  public double getMean() {
+    long count = _count.sum();
+    return count == 0L ? 0.0 : (double) _sum.sum() / count;
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the value at the given quantile, capped at the max value, or 0 if
+   * no value was recorded.
+   *
+   * @param quantile Quantile between 0 and 1, for example 0.99 for the 99th percentile
+   */
+  public long getPercentile(double quantile) {
+    if (quantile < 0.0 || quantile > 1.0) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1, got: " + quantile);
+    }
+    long[] bucketCounts = new long[NUM_BUCKETS];
+    long count = 0L;
+    for (AtomicLongArray stripe : _stripes) {
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        long bucketCount = stripe.get(i);
+        bucketCounts[i] += bucketCount;
+        count += bucketCount;
+      }
+    }
+    if (count == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+    long seen = 0L;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += bucketCounts[i];
+      if (seen >= rank) {
+        return Math.min(getBucketUpperBound(i), _max.get());
+      }
+    }
+    return _max.get();
+  }
+
+  static int getBucketIndex(long value) {
+    if (value < NUM_SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (NUM_SUB_BUCKETS - 1);
+    return NUM_SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS + subBucket;
+  }
+
+  static long getBucketUpperBound(int bucketIndex) {
+    if (bucketIndex < NUM_SUB_BUCKETS) {
+      return bucketIndex;
+    }
+    int shift = (bucketIndex - NUM_SUB_BUCKETS) / NUM_SUB_BUCKETS;
+    long subBucket = bucketIndex % NUM_SUB_BUCKETS;
+    return ((NUM_SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1L;
+  }
+}
@@ -36,4 +36,10 @@ public interface QueryExecutor {
   boolean isStarted();
 
   void updateResourceTimeOutInMs(String resource, long timeOutMs);
+
+  /**
+   * Releases the per table resources of a table this server no longer serves. Queries of the table still running, or
+   * arriving because a segment of the table is added again, must not fail because of it.
+   */
+  void removeTable(String tableName);
 }
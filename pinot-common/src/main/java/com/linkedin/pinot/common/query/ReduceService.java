@@ -50,4 +50,13 @@ public interface ReduceService {
   public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
       Map<ServerInstance, DataTable> instanceResponseMap);
 
+  /**
+   * Create a reducer that merges the DataTables of the brokerRequest one by one as they are gathered, giving the
+   * same brokerResponse as reduceOnDataTable on all of them.
+   *
+   * @param brokerRequest
+   * @return StreamingReducer
+   */
+  public StreamingReducer newStreamingReducer(BrokerRequest brokerRequest);
+
 }
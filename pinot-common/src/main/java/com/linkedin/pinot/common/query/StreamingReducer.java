@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.query;
+
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Reduces the DataTables gathered for one broker request incrementally, one server response at a time, so that each
+ * response can be merged into the running result and released as soon as it arrives instead of holding on to all of
+ * them until the slowest server has answered.
+ * A reducer belongs to a single request and is not thread safe.
+ */
+public interface StreamingReducer {
+  /**
+   * Merge the response of one server instance into the running result.
+   *
+   * @param serverInstance
+   * @param instanceResponse
+   */
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse);
+
+  /**
+   * Build the brokerResponse out of all the responses merged so far. No more responses can be merged afterwards.
+   *
+   * @return BrokerResponse
+   */
+  public BrokerResponse getBrokerResponse();
+}
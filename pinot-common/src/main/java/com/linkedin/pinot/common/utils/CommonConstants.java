@@ -89,6 +89,10 @@ public class CommonConstants {
         public static final String REALTIME_SEGMENT_FLUSH_TIME = "realtime.segment.flush.threshold.time";
         // Num records threshold in the realtime segment
         public static final String REALTIME_SEGMENT_FLUSH_SIZE = "realtime.segment.flush.threshold.size";
+        // Num threads decoding stream messages ahead of the indexing thread, 0 to decode them on the indexing thread
+        public static final String REALTIME_DECODE_THREADS = "realtime.decode.threads";
+        // Max num decoded rows waiting for the indexing thread when decoding on separate threads
+        public static final String REALTIME_DECODE_QUEUE_SIZE = "realtime.decode.queue.size";
 
         public static enum StreamType {
           kafka
@@ -172,6 +176,16 @@ public class CommonConstants {
     public static final String CONFIG_OF_SEGMENT_LOAD_MAX_RETRY_COUNT = "pinot.server.segment.loadMaxRetryCount";
     public static final String CONFIG_OF_SEGMENT_LOAD_MIN_RETRY_DELAY_MILLIS =
         "pinot.server.segment.minRetryDelayMillis";
+    // Number of threads loading the assigned offline segments at startup, 0 to load them one state transition at a
+    // time. Defaults to the number of cores.
+    public static final String CONFIG_OF_SEGMENT_PRELOAD_PARALLELISM = "pinot.server.segment.preloadParallelism";
+    // Fraction of the segments of each offline table to load before the server takes the table's state transitions
+    public static final String CONFIG_OF_SEGMENT_PRELOAD_QUERYABLE_FRACTION =
+        "pinot.server.segment.preloadQueryableFraction";
+    // Max number of state transitions waiting for the queryable fraction at once, each of them holding a thread of the
+    // Helix message pool that the transitions of other tables, like real-time ones, need too
+    public static final String CONFIG_OF_SEGMENT_PRELOAD_MAX_WAITING_TRANSITIONS =
+        "pinot.server.segment.preloadMaxWaitingTransitions";
 
     public static final String CONFIG_OF_HELIX_FLAPPING_TIMEWINDOW_MS = "pinot.server.flapping.timeWindowMs";
 
@@ -189,6 +203,8 @@ public class CommonConstants {
         "com.linkedin.pinot.server.request.SimpleRequestHandlerFactory";
     public static final String DEFAULT_SEGMENT_LOAD_MAX_RETRY_COUNT = "5";
     public static final String DEFAULT_SEGMENT_LOAD_MIN_RETRY_DELAY_MILLIS = "60000";
+    public static final String DEFAULT_SEGMENT_PRELOAD_QUERYABLE_FRACTION = "0";
+    public static final String DEFAULT_SEGMENT_PRELOAD_MAX_WAITING_TRANSITIONS = "8";
     public static final String DEFAULT_HELIX_FLAPPING_TIMEWINDOW_MS = "0";
   }
 
@@ -226,6 +242,9 @@ public class CommonConstants {
     public static final String TOTAL_DOCS = "segment.total.docs";
     public static final String CRC = "segment.crc";
     public static final String CREATION_TIME = "segment.creation.time";
+    public static final String COLUMN_DATA_TYPES = "segment.column.data.types";
+    public static final String COLUMN_MIN_VALUES = "segment.column.min.values";
+    public static final String COLUMN_MAX_VALUES = "segment.column.max.values";
 
     public static enum SegmentType {
       OFFLINE,
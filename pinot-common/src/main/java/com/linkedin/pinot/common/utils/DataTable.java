@@ -17,13 +17,9 @@ package com.linkedin.pinot.common.utils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -35,7 +31,6 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
@@ -44,6 +39,11 @@ import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 /**
  *
  * Read only Datatable. Use DataTableBuilder to build the data table
+ *
+ * VERSION_1 and VERSION_2 share the same layout, they differ in how the values of OBJECT columns are encoded:
+ * VERSION_1 uses Java serialization, VERSION_2 uses the typed encodings of {@link DataTableObjectSerDe}. A data
+ * table read from a ByteBuffer keeps its fixed and variable size data as views of that buffer instead of copying
+ * them out.
  */
 public class DataTable {
   private static final Charset UTF8 = Charset.forName("UTF-8");
@@ -56,8 +56,13 @@ public class DataTable {
 
   DataSchema schema;
 
-  static int VERSION_1 = 1;
-  static int VERSION = VERSION_1;
+  public static final int VERSION_1 = 1;
+  public static final int VERSION_2 = 2;
+  /** Latest version, used to build new data tables. */
+  public static final int VERSION = VERSION_2;
+
+  /** Encoding of the OBJECT column values in variableSizeData. */
+  private int version = VERSION;
 
   private Map<String, Map<Integer, String>> dictionary;
 
@@ -71,10 +76,6 @@ public class DataTable {
 
   private int rowSizeInBytes;
 
-  private byte[] fixedSizeDataBytes;
-
-  private byte[] variableSizeDataBytes;
-
   /**
    *
    * @param numRows
@@ -91,8 +92,6 @@ public class DataTable {
     this.dictionary = dictionary;
     this.metadata = metadata;
     this.schema = schema;
-    this.fixedSizeDataBytes = fixedSizeDataBytes;
-    this.variableSizeDataBytes = variableSizeDataBytes;
     numCols = schema.columnNames.length;
     fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
     variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
@@ -174,18 +173,27 @@ public class DataTable {
    * @param buffer
    */
   public DataTable(byte[] buffer) {
+    this(ByteBuffer.wrap(buffer));
+  }
 
-    final ByteBuffer input = ByteBuffer.wrap(buffer);
+  /**
+   * Reads the data table from the remaining bytes of the buffer. The fixed and variable size data are not copied,
+   * so the buffer content must not change for as long as the data table is in use.
+   *
+   * @param buffer
+   */
+  public DataTable(ByteBuffer buffer) {
+    final ByteBuffer input = buffer.slice();
 
-    final int version = input.getInt();
-    if (version == VERSION_1) {
-      decodeV1(input);
+    version = input.getInt();
+    if (version == VERSION_1 || version == VERSION_2) {
+      decode(input);
       return;
     }
     throw new RuntimeException("Unknown version of DataTable encoding:" + version);
   }
 
-  private void decodeV1(ByteBuffer input) {
+  private void decode(ByteBuffer input) {
     numRows = input.getInt();
     numCols = input.getInt();
     // READ dictionary
@@ -201,24 +209,15 @@ public class DataTable {
     final int variableDataLength = input.getInt();
 
     // READ DICTIONARY
-
-    byte[] dictionaryBytes = null;
     if (dictionaryLength != 0) {
-      dictionaryBytes = new byte[dictionaryLength];
-      input.position(dictionaryStart);
-      input.get(dictionaryBytes);
-      dictionary = (Map<String, Map<Integer, String>>) deserializeDictionary(dictionaryBytes);
+      dictionary = deserializeDictionary(section(input, dictionaryStart, dictionaryLength));
     } else {
       dictionary = new HashMap<String, Map<Integer, String>>(1);
     }
 
     // READ METADATA
-    byte[] metadataBytes;
     if (metadataLength != 0) {
-      metadataBytes = new byte[metadataLength];
-      input.position(metadataStart);
-      input.get(metadataBytes);
-      metadata = (Map<String, String>) deserializeMetadata(metadataBytes);
+      metadata = deserializeMetadata(section(input, metadataStart, metadataLength));
     } else {
       metadata = new HashMap<String, String>();
     }
@@ -234,23 +233,27 @@ public class DataTable {
       columnOffsets = computeColumnOffsets(schema);
     }
 
-    // READ FIXED SIZE DATA BYTES
+    // FIXED SIZE DATA BYTES
     if (fixedDataLength != 0) {
-      fixedSizeDataBytes = new byte[fixedDataLength];
-      input.position(fixedDataStart);
-      input.get(fixedSizeDataBytes);
-      fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
+      fixedSizeData = section(input, fixedDataStart, fixedDataLength);
     }
 
-    // READ VARIABLE SIZE DATA BYTES
+    // VARIABLE SIZE DATA BYTES
     if (variableDataLength != 0) {
-      variableSizeDataBytes = new byte[variableDataLength];
-      input.position(variableDataStart);
-      input.get(variableSizeDataBytes);
-      variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
+      variableSizeData = section(input, variableDataStart, variableDataLength);
     }
   }
 
+  /**
+   * @return view of [start, start + length) of the input, sharing its content
+   */
+  private static ByteBuffer section(ByteBuffer input, int start, int length) {
+    ByteBuffer section = input.duplicate();
+    section.limit(start + length);
+    section.position(start);
+    return section.slice();
+  }
+
   public DataTable() {
     // Used for empty results.
     metadata = new HashMap<String, String>();
@@ -265,10 +268,31 @@ public class DataTable {
    * @throws Exception
    */
   public  byte[] toBytes() throws Exception {
-    return toBytes(VERSION_1);
+    return toBytes(VERSION);
   }
 
-  private byte[] toBytes(int version) throws Exception {
+  /**
+   * Serializes the data table in the given version, so that a reader that only understands an older version can
+   * still read it.
+   *
+   * @param version
+   * @return
+   * @throws Exception
+   */
+  public byte[] toBytes(int version) throws Exception {
+    if (version != VERSION_1 && version != VERSION_2) {
+      throw new IllegalArgumentException("Unsupported DataTable version:" + version);
+    }
+    ByteBuffer fixedSizeData = this.fixedSizeData;
+    ByteBuffer variableSizeData = this.variableSizeData;
+    if (version != this.version && hasObjectColumn()) {
+      ByteBuffer[] converted = convertObjectColumns(version);
+      fixedSizeData = converted[0];
+      variableSizeData = converted[1];
+    }
+    final int fixedDataLength = (fixedSizeData == null) ? 0 : fixedSizeData.limit();
+    final int variableDataLength = (variableSizeData == null) ? 0 : variableSizeData.limit();
+
     final byte[] dictionaryBytes = serializeDictionary();
     final byte[] metadataBytes = serializeMetadata();
     byte[] schemaBytes = new byte[0];
@@ -303,34 +327,84 @@ public class DataTable {
 
     // datatable
     out.writeInt(baseOffset);
-    if (fixedSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(fixedSizeDataBytes.length);
-      baseOffset += fixedSizeDataBytes.length;
-    }
+    out.writeInt(fixedDataLength);
+    baseOffset += fixedDataLength;
 
     // variable data
     out.writeInt(baseOffset);
-    if (variableSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(variableSizeDataBytes.length);
-    }
+    out.writeInt(variableDataLength);
 
     // write them
     out.write(dictionaryBytes);
     out.write(metadataBytes);
     out.write(schemaBytes);
-    if (fixedSizeDataBytes != null) {
-      out.write(fixedSizeDataBytes);
+    writeBuffer(fixedSizeData, out);
+    writeBuffer(variableSizeData, out);
+    return baos.toByteArray();
+  }
+
+  private static void writeBuffer(ByteBuffer buffer, DataOutputStream out) throws IOException {
+    if (buffer == null) {
+      return;
+    }
+    if (buffer.hasArray()) {
+      out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    } else {
+      byte[] bytes = new byte[buffer.limit()];
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(0);
+      duplicate.get(bytes);
+      out.write(bytes);
+    }
+  }
+
+  private boolean hasObjectColumn() {
+    if (schema == null || numRows == 0) {
+      return false;
+    }
+    for (DataType columnType : schema.columnTypes) {
+      if (columnType == DataType.OBJECT) {
+        return true;
+      }
     }
-    if (variableSizeDataBytes != null) {
-      out.write(variableSizeDataBytes);
+    return false;
+  }
+
+  /**
+   * Re-encodes the OBJECT column values for another version. The re-encoded values are appended to a copy of the
+   * variable size data and the fixed size data copy points to them; other variable size values are kept as is.
+   *
+   * @return converted fixed size data and variable size data
+   */
+  private ByteBuffer[] convertObjectColumns(int targetVersion) throws IOException {
+    final ByteBuffer convertedFixedSizeData = ByteBuffer.allocate(fixedSizeData.limit());
+    final ByteBuffer fixedSizeDataCopy = fixedSizeData.duplicate();
+    fixedSizeDataCopy.position(0);
+    convertedFixedSizeData.put(fixedSizeDataCopy);
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(baos);
+    writeBuffer(variableSizeData, out);
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      for (int colId = 0; colId < numCols; colId++) {
+        if (schema.columnTypes[colId] != DataType.OBJECT) {
+          continue;
+        }
+        Object value = getObject(rowId, colId);
+        byte[] bytes;
+        if (targetVersion == VERSION_1) {
+          bytes = DataTableObjectSerDe.javaSerialize(value);
+        } else {
+          bytes = DataTableObjectSerDe.serialize(value);
+        }
+        convertedFixedSizeData.position(rowId * rowSizeInBytes + columnOffsets[colId]);
+        convertedFixedSizeData.putInt(out.size());
+        convertedFixedSizeData.putInt(bytes.length);
+        out.write(bytes);
+      }
     }
-    byte[] byteArray = baos.toByteArray();
-    long end = System.currentTimeMillis();
-    return byteArray;
+    convertedFixedSizeData.clear();
+    return new ByteBuffer[] { convertedFixedSizeData, ByteBuffer.wrap(baos.toByteArray()) };
   }
 
   private byte[] serializeMetadata() throws Exception {
@@ -351,23 +425,16 @@ public class DataTable {
     return new byte[0];
   }
 
-  private Map<String, String> deserializeMetadata(byte[] buffer) {
+  private Map<String, String> deserializeMetadata(ByteBuffer buffer) {
     Map<String, String> map = new HashMap<String, String>();
     try {
-      final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-      final DataInputStream in = new DataInputStream(bais);
-      int size = in.readInt();
+      int size = buffer.getInt();
       for (int i = 0; i < size; i++) {
-        Integer keyLength = in.readInt();
-        byte[] keyBytes = new byte[keyLength];
-        in.read(keyBytes);
-        int valueLength = in.readInt();
-        byte[] valueBytes = new byte[valueLength];
-        in.read(valueBytes);
-        map.put(new String(keyBytes, UTF8), new String(valueBytes, UTF8));
+        String key = DataTableObjectSerDe.readString(buffer);
+        map.put(key, DataTableObjectSerDe.readString(buffer));
       }
     } catch (Exception e) {
-      LOGGER.error("Exception while deserializing dictionary", e);
+      LOGGER.error("Exception while deserializing metadata", e);
     }
     return map;
   }
@@ -395,26 +462,17 @@ public class DataTable {
     return new byte[0];
   }
 
-  private Map<String, Map<Integer, String>> deserializeDictionary(byte[] buffer) {
+  private Map<String, Map<Integer, String>> deserializeDictionary(ByteBuffer buffer) {
     Map<String, Map<Integer, String>> map = new HashMap<String, Map<Integer, String>>();
     try {
-      final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-      final DataInputStream in = new DataInputStream(bais);
-      int size = in.readInt();
-      byte[] temp;
+      int size = buffer.getInt();
       for (int i = 0; i < size; i++) {
-        int readLength = in.readInt();
-        temp = new byte[readLength];
-        in.read(temp);
         Map<Integer, String> childMap = new HashMap<Integer, String>();
-        map.put(new String(temp, UTF8), childMap);
-        int childMapSize = in.readInt();
+        map.put(DataTableObjectSerDe.readString(buffer), childMap);
+        int childMapSize = buffer.getInt();
         for (int j = 0; j < childMapSize; j++) {
-          Integer key = in.readInt();
-          int valueLength = in.readInt();
-          temp = new byte[valueLength];
-          in.read(temp);
-          childMap.put(key, new String(temp, UTF8));
+          Integer key = buffer.getInt();
+          childMap.put(key, DataTableObjectSerDe.readString(buffer));
         }
       }
     } catch (Exception e) {
@@ -423,36 +481,6 @@ public class DataTable {
     return map;
   }
 
-  /**
-   *
-   * @param value
-   * @return
-   */
-  private byte[] serializeObject(Object value) {
-    long start = System.nanoTime();
-
-    byte[] bytes;
-    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutput out = null;
-
-    try {
-      try {
-        out = new ObjectOutputStream(bos);
-        out.writeObject(value);
-      } catch (final IOException e) {
-        LOGGER.error("Caught exception", e);
-        Utils.rethrowException(e);
-      }
-      bytes = bos.toByteArray();
-
-    } finally {
-      IOUtils.closeQuietly((Closeable) out);
-      IOUtils.closeQuietly(bos);
-    }
-    long end = System.nanoTime();
-    return bytes;
-  }
-
   @SuppressWarnings("unchecked")
   private <T extends Serializable> T deserialize(byte[] value) {
     long start = System.nanoTime();
@@ -733,6 +761,9 @@ public class DataTable {
   @SuppressWarnings("unchecked")
   public <T extends Serializable> T getObject(int rowId, int colId) {
     final int length = positionCursorInVariableBuffer(rowId, colId);
+    if (version >= VERSION_2) {
+      return (T) DataTableObjectSerDe.deserialize(variableSizeData);
+    }
     final byte[] serData = new byte[length];
     variableSizeData.get(serData);
     return (T) deserialize(serData);
@@ -746,6 +777,13 @@ public class DataTable {
     return metadata;
   }
 
+  /**
+   * @return version of the OBJECT column encoding, i.e. the version the data table was built with or read from
+   */
+  public int getVersion() {
+    return version;
+  }
+
   /**
    * To string representation of datatable, contains the content of fixed data
    * size buffer
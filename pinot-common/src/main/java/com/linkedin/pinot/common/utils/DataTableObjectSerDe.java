@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Encodes the values of OBJECT columns for DataTable.VERSION_2 and later.
+ *
+ * Every value is written as a one byte type id followed by the encoded value. Doubles, longs, integers, strings and
+ * the String to Serializable hash maps holding group by results have built-in encodings, intermediate result types
+ * of the aggregation functions are added through register(). Values of any other type fall back to Java
+ * serialization, which is also what VERSION_1 uses for every value.
+ */
+public class DataTableObjectSerDe {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Encoding for one type of value. deserialize() reads the value starting at the current position of the buffer,
+   * and must leave the position right after the value.
+   */
+  public interface ObjectCodec<T> {
+    void serialize(T value, DataOutputStream out) throws IOException;
+
+    T deserialize(ByteBuffer buffer);
+  }
+
+  public static final int JAVA_SERIALIZED = 0;
+  public static final int DOUBLE = 1;
+  public static final int LONG = 2;
+  public static final int INTEGER = 3;
+  public static final int STRING = 4;
+  public static final int HASH_MAP = 5;
+
+  /** Type ids below this one are reserved for the built-in encodings. */
+  public static final int FIRST_CUSTOM_TYPE = 16;
+  private static final int MAX_TYPE = 127;
+
+  private static final ObjectCodec[] CODECS = new ObjectCodec[MAX_TYPE + 1];
+  private static final Map<Class<?>, Integer> TYPES = new ConcurrentHashMap<Class<?>, Integer>();
+
+  static {
+    CODECS[DOUBLE] = new ObjectCodec<Double>() {
+      @Override
+      public void serialize(Double value, DataOutputStream out) throws IOException {
+        out.writeDouble(value);
+      }
+
+      @Override
+      public Double deserialize(ByteBuffer buffer) {
+        return buffer.getDouble();
+      }
+    };
+    TYPES.put(Double.class, DOUBLE);
+
+    CODECS[LONG] = new ObjectCodec<Long>() {
+      @Override
+      public void serialize(Long value, DataOutputStream out) throws IOException {
+        out.writeLong(value);
+      }
+
+      @Override
+      public Long deserialize(ByteBuffer buffer) {
+        return buffer.getLong();
+      }
+    };
+    TYPES.put(Long.class, LONG);
+
+    CODECS[INTEGER] = new ObjectCodec<Integer>() {
+      @Override
+      public void serialize(Integer value, DataOutputStream out) throws IOException {
+        out.writeInt(value);
+      }
+
+      @Override
+      public Integer deserialize(ByteBuffer buffer) {
+        return buffer.getInt();
+      }
+    };
+    TYPES.put(Integer.class, INTEGER);
+
+    CODECS[STRING] = new ObjectCodec<String>() {
+      @Override
+      public void serialize(String value, DataOutputStream out) throws IOException {
+        writeString(value, out);
+      }
+
+      @Override
+      public String deserialize(ByteBuffer buffer) {
+        return readString(buffer);
+      }
+    };
+    TYPES.put(String.class, STRING);
+
+    CODECS[HASH_MAP] = new ObjectCodec<HashMap<String, Serializable>>() {
+      @Override
+      public void serialize(HashMap<String, Serializable> value, DataOutputStream out) throws IOException {
+        out.writeInt(value.size());
+        for (Entry<String, Serializable> entry : value.entrySet()) {
+          writeString(entry.getKey(), out);
+          DataTableObjectSerDe.serialize(entry.getValue(), out);
+        }
+      }
+
+      @Override
+      public HashMap<String, Serializable> deserialize(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        HashMap<String, Serializable> map = new HashMap<String, Serializable>(Math.max(16, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+          String key = readString(buffer);
+          map.put(key, (Serializable) DataTableObjectSerDe.deserialize(buffer));
+        }
+        return map;
+      }
+    };
+    TYPES.put(HashMap.class, HASH_MAP);
+  }
+
+  /**
+   * Adds the encoding of a value type. Registering the same type again under the same id is a no-op.
+   *
+   * @param typeId id written in front of the encoded values, from FIRST_CUSTOM_TYPE to 127
+   * @param type exact class of the values, sub classes are not matched
+   * @param codec
+   */
+  public static synchronized <T> void register(int typeId, Class<T> type, ObjectCodec<T> codec) {
+    if (typeId < FIRST_CUSTOM_TYPE || typeId > MAX_TYPE) {
+      throw new IllegalArgumentException("Invalid type id " + typeId + " for " + type.getName());
+    }
+    Integer registeredTypeId = TYPES.get(type);
+    if (registeredTypeId != null && registeredTypeId == typeId) {
+      return;
+    }
+    if (registeredTypeId != null || CODECS[typeId] != null) {
+      throw new IllegalArgumentException("Type id " + typeId + " or type " + type.getName() + " already registered");
+    }
+    CODECS[typeId] = codec;
+    TYPES.put(type, typeId);
+  }
+
+  public static byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    serialize(value, out);
+    out.flush();
+    return baos.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void serialize(Object value, DataOutputStream out) throws IOException {
+    Integer typeId = (value == null) ? null : TYPES.get(value.getClass());
+    if (typeId == null) {
+      out.writeByte(JAVA_SERIALIZED);
+      byte[] bytes = javaSerialize(value);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else {
+      out.writeByte(typeId);
+      CODECS[typeId].serialize(value, out);
+    }
+  }
+
+  /**
+   * Reads one value starting at the current position of the buffer, and moves the position past it.
+   */
+  public static Object deserialize(ByteBuffer buffer) {
+    int typeId = buffer.get();
+    if (typeId == JAVA_SERIALIZED) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return javaDeserialize(bytes);
+    }
+    ObjectCodec codec = (typeId > 0 && typeId <= MAX_TYPE) ? CODECS[typeId] : null;
+    if (codec == null) {
+      throw new IllegalStateException("No encoding registered for DataTable object type id " + typeId);
+    }
+    return codec.deserialize(buffer);
+  }
+
+  public static byte[] javaSerialize(Object value) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    try {
+      out.writeObject(value);
+    } finally {
+      out.close();
+    }
+    return baos.toByteArray();
+  }
+
+  public static Object javaDeserialize(byte[] bytes) {
+    try {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+      try {
+        return in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Caught exception while deserializing DataTable object", e);
+    }
+  }
+
+  public static void writeString(String value, DataOutputStream out) throws IOException {
+    byte[] bytes = value.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a length prefixed UTF-8 string. Heap buffers are decoded in place without copying the bytes first.
+   */
+  public static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    String value;
+    if (buffer.hasArray()) {
+      value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      value = new String(bytes, UTF8);
+    }
+    return value;
+  }
+}
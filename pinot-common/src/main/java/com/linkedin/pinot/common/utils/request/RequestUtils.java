@@ -16,11 +16,13 @@
 package com.linkedin.pinot.common.utils.request;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.FilterQuery;
 import com.linkedin.pinot.common.request.FilterQueryMap;
 
@@ -95,4 +97,36 @@ public class RequestUtils {
     FilterQueryTree q2 = new FilterQueryTree(id, q.getColumn(), q.getValue(), q.getOperator(), c);
     return q2;
   }
+
+  /**
+   * Returns a string form of the filter of a request that is the same for all compilations of an equivalent query:
+   * the filter ids, which differ between compilations, are left out, and the children of AND and OR filters are
+   * sorted.
+   *
+   * @param request Broker Request
+   * @return The normalized filter, or null if the request has no filter
+   */
+  public static String getNormalizedFilterString(BrokerRequest request) {
+    if (request.getFilterQuery() == null) {
+      return null;
+    }
+    return getNormalizedFilterString(request.getFilterQuery(), request.getFilterSubQueryMap());
+  }
+
+  private static String getNormalizedFilterString(FilterQuery filterQuery, FilterQueryMap filterSubQueryMap) {
+    StringBuilder filterString = new StringBuilder().append(filterQuery.getOperator()).append('(');
+    if (filterQuery.getNestedFilterQueryIdsSize() == 0) {
+      filterString.append(filterQuery.getColumn()).append(',').append(filterQuery.getValue());
+    } else {
+      List<String> children = new ArrayList<String>();
+      for (Integer childId : filterQuery.getNestedFilterQueryIds()) {
+        children.add(getNormalizedFilterString(filterSubQueryMap.getFilterQueryMap().get(childId), filterSubQueryMap));
+      }
+      if (filterQuery.getOperator() == FilterOperator.AND || filterQuery.getOperator() == FilterOperator.OR) {
+        Collections.sort(children);
+      }
+      filterString.append(children);
+    }
+    return filterString.append(')').toString();
+  }
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils.request;
+
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.segment.ColumnValueRange;
+
+
+/**
+ * Checks a filter against per column value ranges of a segment, shared by the server and broker
+ * side segment pruning.
+ */
+public class ValueRangePruningUtils {
+  private static final String IN_DELIMITER = "\t\t";
+  private static final String RANGE_DELIMITER = "\t\t";
+  private static final String UNBOUNDED = "*";
+
+  private ValueRangePruningUtils() {
+  }
+
+  /**
+   * Returns true if no value within the given column ranges can match the filter.
+   *
+   * EQUALITY, IN and RANGE predicates are evaluated, AND matches nothing if any child matches
+   * nothing and OR only if all children match nothing. Other predicates and columns without a
+   * range never prune.
+   *
+   * @param filterQueryTree filter of the query, may be null
+   * @param columnValueRanges value range per column
+   */
+  public static boolean isFilterOutOfRange(FilterQueryTree filterQueryTree,
+      Map<String, ColumnValueRange> columnValueRanges) {
+    if (filterQueryTree == null || columnValueRanges == null || columnValueRanges.isEmpty()) {
+      return false;
+    }
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (isFilterOutOfRange(child, columnValueRanges)) {
+              return true;
+            }
+          }
+          return false;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (!isFilterOutOfRange(child, columnValueRanges)) {
+              return false;
+            }
+          }
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    ColumnValueRange columnValueRange = columnValueRanges.get(filterQueryTree.getColumn());
+    if (columnValueRange == null || filterQueryTree.getValue() == null) {
+      return false;
+    }
+    switch (filterQueryTree.getOperator()) {
+      case EQUALITY:
+      case IN:
+        for (String value : filterQueryTree.getValue()) {
+          for (String inValue : value.split(IN_DELIMITER)) {
+            if (!isValueOutOfRange(inValue, columnValueRange)) {
+              return false;
+            }
+          }
+        }
+        return true;
+      case RANGE:
+        if (columnValueRange.getDataType() == DataType.STRING) {
+          // String dictionaries compare padded values, which can order differently from the raw min/max
+          return false;
+        }
+        return isRangeOutOfRange(filterQueryTree.getValue().get(0), columnValueRange);
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isValueOutOfRange(String value, ColumnValueRange columnValueRange) {
+    Integer compareToMin = columnValueRange.compareToMin(value);
+    Integer compareToMax = columnValueRange.compareToMax(value);
+    return compareToMin != null && compareToMax != null && (compareToMin < 0 || compareToMax > 0);
+  }
+
+  /**
+   * Range values are formatted as "(lower\t\tupper]", with "*" for an unbounded side.
+   */
+  private static boolean isRangeOutOfRange(String rangeString, ColumnValueRange columnValueRange) {
+    rangeString = rangeString.trim();
+    String[] boundaries = rangeString.split(RANGE_DELIMITER);
+    if (boundaries.length != 2 || boundaries[0].isEmpty() || boundaries[1].isEmpty()) {
+      return false;
+    }
+    String lower = boundaries[0].substring(1);
+    String upper = boundaries[1].substring(0, boundaries[1].length() - 1);
+    boolean includeLower = rangeString.startsWith("[");
+    boolean includeUpper = rangeString.endsWith("]");
+
+    if (!lower.equals(UNBOUNDED)) {
+      Integer result = columnValueRange.compareToMax(lower);
+      if (result != null && (result > 0 || (result == 0 && !includeLower))) {
+        return true;
+      }
+    }
+    if (!upper.equals(UNBOUNDED)) {
+      Integer result = columnValueRange.compareToMin(upper);
+      if (result != null && (result < 0 || (result == 0 && !includeUpper))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -15,12 +15,16 @@
  */
 package com.linkedin.pinot.common.metadata;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.segment.ColumnValueRange;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
@@ -63,6 +67,26 @@ public class SegmentZKMetadataTest {
     Assert.assertTrue(offlineSegmentMetadata.equals(new OfflineSegmentZKMetadata(offlineSegmentMetadata.toZNRecord())));
   }
 
+  @Test
+  public void offlineSegmentZKMetadataWithColumnValueRangesTest() {
+    OfflineSegmentZKMetadata offlineSegmentMetadata = getTestOfflineSegmentMetadata();
+    Map<String, ColumnValueRange> columnValueRanges = new HashMap<String, ColumnValueRange>();
+    columnValueRanges.put("memberId", ColumnValueRange.create(DataType.LONG, "10", "2000"));
+    columnValueRanges.put("country", ColumnValueRange.create(DataType.STRING, "ca", "us"));
+    offlineSegmentMetadata.setColumnValueRanges(columnValueRanges);
+
+    ZNRecord znRecord = offlineSegmentMetadata.toZNRecord();
+    Assert.assertEquals(znRecord.getMapField(CommonConstants.Segment.COLUMN_MIN_VALUES).get("memberId"), "10");
+    Assert.assertEquals(znRecord.getMapField(CommonConstants.Segment.COLUMN_MAX_VALUES).get("country"), "us");
+    OfflineSegmentZKMetadata readSegmentMetadata = new OfflineSegmentZKMetadata(znRecord);
+    Assert.assertEquals(readSegmentMetadata, offlineSegmentMetadata);
+    Assert.assertEquals(readSegmentMetadata.getColumnValueRanges().get("memberId").compareToMax("2001"),
+        Integer.valueOf(1));
+
+    // Metadata written before column value ranges were recorded
+    Assert.assertNull(new OfflineSegmentZKMetadata(getTestOfflineSegmentZNRecord()).getColumnValueRanges());
+  }
+
   private ZNRecord getTestDoneRealtimeSegmentZNRecord() {
     String segmentName = "testTable_R_1000_2000_groupId0_part0";
     ZNRecord record = new ZNRecord(segmentName);
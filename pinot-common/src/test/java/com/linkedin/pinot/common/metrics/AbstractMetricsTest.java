@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+
+public class AbstractMetricsTest {
+
+  @Test
+  public void testPhaseTimingsAndMeters() {
+    MetricsRegistry registry = new MetricsRegistry();
+    ServerMetrics serverMetrics = new ServerMetrics(registry);
+    BrokerRequest request = new BrokerRequest();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("myTable");
+    request.setQuerySource(querySource);
+
+    for (int i = 0; i < 3; i++) {
+      serverMetrics.addPhaseTiming(request, ServerQueryPhase.QUERY_PROCESSING, TimeUnit.MILLISECONDS.toNanos(5));
+      serverMetrics.addMeteredValue(request, ServerMeter.QUERIES, 1);
+      serverMetrics.addMeteredValue(null, ServerMeter.QUERIES, 2);
+    }
+    serverMetrics.addPhaseTiming(new BrokerRequest(), ServerQueryPhase.QUERY_PROCESSING, 1L);
+
+    Timer timer =
+        (Timer) getMetric(registry, "pinot.server.myTable." + ServerQueryPhase.QUERY_PROCESSING.getQueryPhaseName());
+    Assert.assertEquals(timer.count(), 3L);
+    Assert.assertEquals(timer.max(), 5.0, 0.001);
+    Assert.assertEquals(((Timer) getMetric(registry,
+        "pinot.server.unknown." + ServerQueryPhase.QUERY_PROCESSING.getQueryPhaseName())).count(), 1L);
+    Assert.assertEquals(((com.yammer.metrics.core.Meter) getMetric(registry,
+        "pinot.server.myTable." + ServerMeter.QUERIES.getMeterName())).count(), 3L);
+    Assert.assertEquals(((com.yammer.metrics.core.Meter) getMetric(registry,
+        "pinot.server." + ServerMeter.QUERIES.getMeterName())).count(), 6L);
+  }
+
+  @Test
+  public void testStripedHistograms() {
+    MetricsRegistry registry = new MetricsRegistry();
+    ServerMetrics serverMetrics = new ServerMetrics(registry, true);
+    String timerName = "pinot.server.myTable." + ServerQueryPhase.QUERY_PROCESSING.getQueryPhaseName();
+
+    for (int i = 1; i <= 100; i++) {
+      serverMetrics.addTablePhaseTiming("myTable", ServerQueryPhase.QUERY_PROCESSING,
+          TimeUnit.MICROSECONDS.toNanos(i));
+    }
+
+    Assert.assertNull(registry.allMetrics().get(new MetricName(ServerMetrics.class, timerName)));
+    Assert.assertEquals(((Gauge) getMetric(registry, timerName + ".count")).value(), 100L);
+    Assert.assertEquals(((Gauge) getMetric(registry, timerName + ".maxMicros")).value(), 100L);
+    long p99 = (Long) ((Gauge) getMetric(registry, timerName + ".p99Micros")).value();
+    Assert.assertTrue(p99 >= 99L && p99 <= 100L, "p99: " + p99);
+  }
+
+  private static Metric getMetric(MetricsRegistry registry, String name) {
+    Metric metric = registry.allMetrics().get(new MetricName(ServerMetrics.class, name));
+    Assert.assertNotNull(metric, "Missing metric " + name);
+    return metric;
+  }
+}
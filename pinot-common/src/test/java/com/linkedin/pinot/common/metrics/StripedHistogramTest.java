@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.metrics;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class StripedHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    long previousUpperBound = -1L;
+    for (int i = 0; i < StripedHistogram.NUM_BUCKETS; i++) {
+      long upperBound = StripedHistogram.getBucketUpperBound(i);
+      Assert.assertTrue(upperBound > previousUpperBound);
+      Assert.assertEquals(StripedHistogram.getBucketIndex(previousUpperBound + 1), i);
+      Assert.assertEquals(StripedHistogram.getBucketIndex(upperBound), i);
+      previousUpperBound = upperBound;
+    }
+    Assert.assertEquals(previousUpperBound, Long.MAX_VALUE);
+
+    Random random = new Random(123L);
+    for (int i = 0; i < 10000; i++) {
+      long value = random.nextLong() >>> (1 + random.nextInt(63));
+      long upperBound = StripedHistogram.getBucketUpperBound(StripedHistogram.getBucketIndex(value));
+      Assert.assertTrue(upperBound >= value);
+      Assert.assertTrue(upperBound - value <= value / 8, "Value: " + value + ", upper bound: " + upperBound);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    StripedHistogram histogram = new StripedHistogram(4);
+    Assert.assertEquals(histogram.getPercentile(0.99), 0L);
+    for (int i = 1; i <= 1000; i++) {
+      histogram.update(i);
+    }
+    Assert.assertEquals(histogram.getCount(), 1000L);
+    Assert.assertEquals(histogram.getMax(), 1000L);
+    Assert.assertEquals(histogram.getMean(), 500.5, 0.001);
+    assertWithinBucket(histogram.getPercentile(0.5), 500L);
+    assertWithinBucket(histogram.getPercentile(0.99), 990L);
+    Assert.assertEquals(histogram.getPercentile(1.0), 1000L);
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    final StripedHistogram histogram = new StripedHistogram(2);
+    final int numThreads = 4;
+    final int numUpdatesPerThread = 100000;
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numUpdatesPerThread; j++) {
+            histogram.update(j % 100);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(histogram.getCount(), (long) numThreads * numUpdatesPerThread);
+    Assert.assertEquals(histogram.getMax(), 99L);
+    assertWithinBucket(histogram.getPercentile(0.5), 49L);
+  }
+
+  private static void assertWithinBucket(long percentile, long expected) {
+    Assert.assertTrue(percentile >= expected && percentile <= expected + expected / 8,
+        "Expected about " + expected + ", got " + percentile);
+  }
+}
@@ -15,9 +15,18 @@
  */
 package com.linkedin.pinot.common.utils;
 
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 // A test to make sure we have serialization and deserialization of DataTable working correctly across versions.
@@ -42,4 +51,79 @@ public class DataTableTest {
     DataTable receivedTable = new DataTable(dataTableBytes);
     LOGGER.trace(receivedTable.toString());
   }
+
+  @Test
+  public void testObjectColumnsAcrossVersions() throws Exception {
+    DataTable dataTable = buildObjectTable();
+    Assert.assertEquals(dataTable.getVersion(), DataTable.VERSION_2);
+
+    DataTable v2Table = new DataTable(dataTable.toBytes(DataTable.VERSION_2));
+    Assert.assertEquals(v2Table.getVersion(), DataTable.VERSION_2);
+    validateObjectTable(v2Table);
+
+    // Brokers that do not understand VERSION_2 get Java serialized objects.
+    DataTable v1Table = new DataTable(dataTable.toBytes(DataTable.VERSION_1));
+    Assert.assertEquals(v1Table.getVersion(), DataTable.VERSION_1);
+    validateObjectTable(v1Table);
+
+    DataTable convertedBackTable = new DataTable(v1Table.toBytes(DataTable.VERSION_2));
+    Assert.assertEquals(convertedBackTable.getVersion(), DataTable.VERSION_2);
+    validateObjectTable(convertedBackTable);
+  }
+
+  @Test
+  public void testReadFromByteBuffer() throws Exception {
+    byte[] bytes = buildObjectTable().toBytes();
+    // Offsets in the data table are relative to the buffer position, not to the start of the buffer.
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length + 3);
+    directBuffer.position(3);
+    directBuffer.put(bytes);
+    directBuffer.position(3);
+
+    DataTable dataTable = new DataTable(directBuffer);
+    validateObjectTable(dataTable);
+    Assert.assertEquals(dataTable.getMetadata().get("numDocsScanned"), "10");
+    Assert.assertEquals(directBuffer.position(), 3);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testUnsupportedVersion() throws Exception {
+    buildObjectTable().toBytes(DataTable.VERSION + 1);
+  }
+
+  private DataTable buildObjectTable() throws Exception {
+    DataSchema schema = new DataSchema(new String[] { "functionName", "result", "values" },
+        new DataType[] { DataType.STRING, DataType.OBJECT, DataType.INT_ARRAY });
+    DataTableBuilder builder = new DataTableBuilder(schema);
+    builder.open();
+    for (int i = 0; i < 3; i++) {
+      builder.startRow();
+      builder.setColumn(0, "function" + i);
+      builder.setColumn(1, buildGroupByResult(i));
+      builder.setColumn(2, new int[] { i, i + 1 });
+      builder.finishRow();
+    }
+    builder.seal();
+    builder.addMetaData("numDocsScanned", "10");
+    return builder.build();
+  }
+
+  private HashMap<String, Serializable> buildGroupByResult(int i) {
+    HashMap<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    groupByResult.put("double", (double) i);
+    groupByResult.put("long", (long) i);
+    groupByResult.put("string", "value" + i);
+    // No typed encoding for lists, falls back to Java serialization.
+    groupByResult.put("list", new ArrayList<Integer>(Arrays.asList(i, i)));
+    return groupByResult;
+  }
+
+  private void validateObjectTable(DataTable dataTable) {
+    Assert.assertEquals(dataTable.getNumberOfRows(), 3);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(dataTable.getString(i, 0), "function" + i);
+      Assert.assertEquals(dataTable.getObject(i, 1), buildGroupByResult(i));
+      Assert.assertEquals(dataTable.getIntArray(i, 2), new int[] { i, i + 1 });
+    }
+  }
 }
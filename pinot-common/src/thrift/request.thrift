@@ -135,4 +135,5 @@ struct InstanceRequest {
   2: required BrokerRequest query;
   3: optional list<string> searchSegments;
   4: optional bool enableTrace;
+  5: optional i32 dataTableVersion;
 }
@@ -105,6 +105,7 @@ public class PinotHelixResourceManager {
   private ZkHelixPropertyStore<ZNRecord> _propertyStore;
   private String _localDiskDir;
   private SegmentDeletionManager _segmentDeletionManager = null;
+  private SegmentRefreshBrokerNotifier _segmentRefreshBrokerNotifier;
   private long _externalViewOnlineToOfflineTimeoutMillis = DEFAULT_EXTERNAL_VIEW_UPDATE_TIMEOUT_MILLIS;
   private long _externalViewUpdateRetryInterval = 500L;
   private boolean _isSingleTenantCluster = true;
@@ -154,11 +155,13 @@ public class PinotHelixResourceManager {
     _helixDataAccessor = _helixZkManager.getHelixDataAccessor();
     _keyBuilder = _helixDataAccessor.keyBuilder();
     _segmentDeletionManager = new SegmentDeletionManager(_localDiskDir, _helixAdmin, _helixClusterName, _propertyStore);
+    _segmentRefreshBrokerNotifier = new SegmentRefreshBrokerNotifier(_helixZkManager);
     ZKMetadataProvider.setClusterTenantIsolationEnabled(_propertyStore, _isSingleTenantCluster);
   }
 
   public synchronized void stop() {
     _segmentDeletionManager.stop();
+    _segmentRefreshBrokerNotifier.stop();
     _helixZkManager.disconnect();
   }
 
@@ -1205,7 +1208,8 @@ public class PinotHelixResourceManager {
   /**
    * Attempt to send a message to refresh the new segment. We do not wait for any acknowledgements.
    * The message is sent as session-specific, so if a new zk session is created (e.g. server restarts)
-   * it will not get the message.
+   * it will not get the message. The brokers of the table get the message once the servers replied, see
+   * {@link SegmentRefreshBrokerNotifier}.
    *
    * @param segmentZKMetadata is the metadata of the newly arrived segment.
    * @return true if message has been sent to at least one instance of the server hosting the segment.
@@ -1227,8 +1231,11 @@ public class PinotHelixResourceManager {
 
     ClusterMessagingService messagingService = _helixZkManager.getMessagingService();
     LOGGER.info("Sending message for segment {}:{} to recipients {}", segmentName, refreshMessage, recipientCriteria);
+    SegmentRefreshBrokerNotifier.BrokerNotification brokerNotification =
+        _segmentRefreshBrokerNotifier.newBrokerNotification(tableName, segmentName, segmentZKMetadata.getCrc());
     // Helix sets the timeoutMs argument specified in 'send' call as the processing timeout of the message.
-    int nMsgsSent = messagingService.send(recipientCriteria, refreshMessage, null, timeoutMs);
+    int nMsgsSent = messagingService.send(recipientCriteria, refreshMessage,
+        brokerNotification.getServerReplyCallback(), timeoutMs);
     if (nMsgsSent > 0) {
       // TODO Would be nice if we can get the name of the instances to which messages were sent.
       LOGGER.info("Sent {} msgs to refresh segment {}", nMsgsSent, segmentName);
@@ -1237,6 +1244,10 @@ public class PinotHelixResourceManager {
       // new version of the segment.
       LOGGER.warn("Unable to send segment refresh message for {}, nMsgs={}", segmentName, nMsgsSent);
     }
+
+    // Also tell the brokers of the table, the external view does not change and they could keep serving cached
+    // results of the old segment.
+    _segmentRefreshBrokerNotifier.onServerMessagesSent(brokerNotification, nMsgsSent);
   }
 
   /**
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.controller.helix.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.helix.Criteria;
+import org.apache.helix.HelixManager;
+import org.apache.helix.InstanceType;
+import org.apache.helix.messaging.AsyncCallback;
+import org.apache.helix.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.messages.SegmentRefreshMessage;
+import com.linkedin.pinot.common.utils.CommonConstants;
+
+
+/**
+ * Sends the segment refresh message to the brokers of a table once the servers hosting the segment have reloaded it.
+ *
+ * The brokers drop their cached results of the table when they get the message. If they got it while the servers were
+ * still reloading, they would cache results of the old segment again, and keep serving them until they expire. So the
+ * brokers are told once every server replied to its refresh message. Replies only reach the lead controller, and a
+ * server may never reply, so the brokers are told anyway after {@link #MAX_SERVER_REPLY_WAIT_MS}.
+ */
+public class SegmentRefreshBrokerNotifier {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentRefreshBrokerNotifier.class);
+  static final long MAX_SERVER_REPLY_WAIT_MS = TimeUnit.MINUTES.toMillis(5);
+
+  private final HelixManager _helixManager;
+  private final ScheduledExecutorService _executorService;
+
+  public SegmentRefreshBrokerNotifier(HelixManager helixManager) {
+    _helixManager = helixManager;
+    _executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setName("SegmentRefreshBrokerNotifier");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  public void stop() {
+    _executorService.shutdownNow();
+  }
+
+  /**
+   * Creates the notification of the brokers for a refreshed segment. The server refresh messages are sent with its
+   * {@link BrokerNotification#getServerReplyCallback()}, then {@link #onServerMessagesSent(BrokerNotification, int)}
+   * must be called.
+   */
+  public BrokerNotification newBrokerNotification(String tableName, String segmentName, long crc) {
+    return new BrokerNotification(tableName, segmentName, crc, _helixManager.isLeader());
+  }
+
+  /**
+   * Tells the brokers right away if no server got the message, since there is nothing to wait for, or schedules telling
+   * them in case the servers do not all reply.
+   */
+  public void onServerMessagesSent(final BrokerNotification notification, int numMessagesSent) {
+    if (numMessagesSent <= 0) {
+      notification.notifyBrokers();
+      return;
+    }
+    _executorService.schedule(new Runnable() {
+      @Override
+      public void run() {
+        notification.notifyBrokers();
+      }
+    }, MAX_SERVER_REPLY_WAIT_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends the refresh message to the brokers once, either when the last server replied or when it is given up on.
+   */
+  public class BrokerNotification extends AsyncCallback {
+    private final String _tableName;
+    private final String _segmentName;
+    private final long _crc;
+    private final boolean _getsServerReplies;
+    private final AtomicBoolean _isSent = new AtomicBoolean(false);
+
+    private BrokerNotification(String tableName, String segmentName, long crc, boolean getsServerReplies) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _crc = crc;
+      _getsServerReplies = getsServerReplies;
+    }
+
+    /**
+     * The callback to send the server messages with, null when the replies would not reach this controller, to avoid
+     * registering a callback that never completes.
+     */
+    public AsyncCallback getServerReplyCallback() {
+      return _getsServerReplies ? this : null;
+    }
+
+    @Override
+    public void onTimeOut() {
+      LOGGER.warn("Timed out waiting for the servers to refresh segment {}", _segmentName);
+      notifyBrokers();
+    }
+
+    @Override
+    public void onReplyMessage(Message message) {
+      if (isDone()) {
+        LOGGER.info("All servers replied to the refresh of segment {}", _segmentName);
+        notifyBrokers();
+      }
+    }
+
+    private void notifyBrokers() {
+      if (!_isSent.compareAndSet(false, true)) {
+        return;
+      }
+      Criteria brokerCriteria = new Criteria();
+      brokerCriteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+      brokerCriteria.setInstanceName("%");
+      brokerCriteria.setResource(CommonConstants.Helix.BROKER_RESOURCE_INSTANCE);
+      brokerCriteria.setPartition(_tableName);
+      brokerCriteria.setSessionSpecific(true);
+      try {
+        int numMessagesSent = _helixManager.getMessagingService().send(brokerCriteria,
+            new SegmentRefreshMessage(_tableName, _segmentName, _crc), null, -1);
+        LOGGER.info("Sent {} msgs to brokers for refreshed segment {}", numMessagesSent, _segmentName);
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while sending the refresh message of segment {} to brokers", _segmentName, e);
+      }
+    }
+  }
+}
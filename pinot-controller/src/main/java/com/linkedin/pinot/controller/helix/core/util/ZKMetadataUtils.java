@@ -22,6 +22,7 @@ import org.joda.time.Duration;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
 public class ZKMetadataUtils {
@@ -45,6 +46,12 @@ public class ZKMetadataUtils {
     offlineSegmentZKMetadata.setTotalDocs(segmentMetadata.getTotalDocs());
     offlineSegmentZKMetadata.setCreationTime(segmentMetadata.getIndexCreationTime());
     offlineSegmentZKMetadata.setCrc(Long.parseLong(segmentMetadata.getCrc()));
+    if (segmentMetadata instanceof SegmentMetadataImpl) {
+      // Lets brokers prune segments on column values without loading them
+      offlineSegmentZKMetadata.setColumnValueRanges(((SegmentMetadataImpl) segmentMetadata).getColumnValueRanges());
+    } else {
+      offlineSegmentZKMetadata.setColumnValueRanges(null);
+    }
     return offlineSegmentZKMetadata;
   }
 
@@ -26,6 +26,22 @@ public interface BlockValSet {
   BlockValIterator iterator();
 
   DataType getValueType();
+
+  /**
+   * Read the dictionary ids of the first length docIds into dictIdsOut, for single value columns.
+   * @param docIds doc ids, sorted in ascending order
+   * @param length
+   * @param dictIdsOut
+   */
+  void readIntValues(int[] docIds, int length, int[] dictIdsOut);
+
+  /**
+   * Read the dictionary ids of a single document into dictIdsOut, for multi value columns.
+   * @param docId
+   * @param dictIdsOut
+   * @return the number of dictionary ids read
+   */
+  int getIntValues(int docId, int[] dictIdsOut);
 /*
   int getDictionaryId(int docId);
 
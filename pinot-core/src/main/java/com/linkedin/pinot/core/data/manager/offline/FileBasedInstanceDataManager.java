@@ -65,7 +65,7 @@ public class FileBasedInstanceDataManager implements InstanceDataManager {
     for (String tableName : _instanceDataManagerConfig.getTableNames()) {
       TableDataManagerConfig tableDataManagerConfig =
           _instanceDataManagerConfig.getTableDataManagerConfig(tableName);
-      TableDataManager tableDataManager = TableDataManagerProvider.getTableDataManager(tableDataManagerConfig);
+      TableDataManager tableDataManager = TableDataManagerProvider.getTableDataManager(tableDataManagerConfig, null);
       _tableDataManagerMap.put(tableName, tableDataManager);
     }
     _segmentMetadataLoader = getSegmentMetadataLoader(_instanceDataManagerConfig.getSegmentMetadataLoaderClass());
@@ -83,7 +83,7 @@ public class FileBasedInstanceDataManager implements InstanceDataManager {
     for (String tableName : _instanceDataManagerConfig.getTableNames()) {
       TableDataManagerConfig tableDataManagerConfig =
           _instanceDataManagerConfig.getTableDataManagerConfig(tableName);
-      TableDataManager tableDataManager = TableDataManagerProvider.getTableDataManager(tableDataManagerConfig);
+      TableDataManager tableDataManager = TableDataManagerProvider.getTableDataManager(tableDataManagerConfig, null);
       _tableDataManagerMap.put(tableName, tableDataManager);
     }
     try {
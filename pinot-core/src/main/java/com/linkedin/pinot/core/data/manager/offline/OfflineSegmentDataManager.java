@@ -24,7 +24,7 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
  *
  *
  */
-public class OfflineSegmentDataManager implements SegmentDataManager {
+public class OfflineSegmentDataManager implements RefCountedSegmentDataManager {
 
   private final IndexSegment _indexSegment;
   private final AtomicInteger _refcnt;  // Accessed via reflection in tests
@@ -34,10 +34,12 @@ public class OfflineSegmentDataManager implements SegmentDataManager {
     _refcnt = new AtomicInteger(1);
   }
 
-  public int incrementRefCnt() {
-    return _refcnt.incrementAndGet();
+  @Override
+  public boolean tryIncrementRefCnt() {
+    return RefCountUtils.tryIncrement(_refcnt);
   }
 
+  @Override
   public int decrementRefCnt() {
     return _refcnt.decrementAndGet();
   }
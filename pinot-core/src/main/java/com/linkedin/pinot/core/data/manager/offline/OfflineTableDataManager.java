@@ -17,13 +17,10 @@ package com.linkedin.pinot.core.data.manager.offline;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.slf4j.Logger;
@@ -32,6 +29,7 @@ import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
@@ -39,6 +37,7 @@ import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
 
@@ -64,9 +63,10 @@ public class OfflineTableDataManager implements TableDataManager {
   private int _numberOfTableQueryExecutorThreads;
   private IndexLoadingConfigMetadata _indexLoadingConfigMetadata;
 
-  // This read-write lock protects the _segmentsMap and OfflineSegmentDataManager.refCnt
-  private final ReadWriteLock _rwLock = new ReentrantReadWriteLock();
-  private final Map<String, OfflineSegmentDataManager> _segmentsMap = new HashMap<String, OfflineSegmentDataManager>(); // Accessed in test via reflection
+  // Segments are acquired and released by queries without locking, see SegmentDataManagerMap
+  private final SegmentDataManagerMap<OfflineSegmentDataManager> _segments =
+      new SegmentDataManagerMap<OfflineSegmentDataManager>();
+  private final Map<String, OfflineSegmentDataManager> _segmentsMap = _segments.asMap(); // Accessed in test via reflection
   private final List<String> _activeSegments = new ArrayList<String>();
   private final List<String> _loadingSegments = new ArrayList<String>();
 
@@ -81,7 +81,7 @@ public class OfflineTableDataManager implements TableDataManager {
   }
 
   @Override
-  public void init(TableDataManagerConfig tableDataManagerConfig) {
+  public void init(TableDataManagerConfig tableDataManagerConfig, ServerMetrics serverMetrics) {
     _tableDataManagerConfig = tableDataManagerConfig;
     _tableName = _tableDataManagerConfig.getTableName();
 
@@ -158,24 +158,15 @@ public class OfflineTableDataManager implements TableDataManager {
     LOGGER.info("Trying to add a new segment " + segmentName + " to table : " + _tableName);
     OfflineSegmentDataManager newSegmentManager = new OfflineSegmentDataManager(indexSegmentToAdd);
     final int newNumDocs = indexSegmentToAdd.getTotalDocs();
-    OfflineSegmentDataManager oldSegmentManager;
-    int refCnt = -1;
-    try {
-      _rwLock.writeLock().lock();
-      oldSegmentManager = _segmentsMap.put(segmentName, newSegmentManager);
-      if (oldSegmentManager != null) {
-        refCnt = oldSegmentManager.decrementRefCnt();
-      }
-    } finally {
-      _rwLock.writeLock().unlock();
-    }
+    OfflineSegmentDataManager oldSegmentManager = _segments.put(newSegmentManager);
     if (oldSegmentManager == null) {
       LOGGER.info("Added new segment {} for table {}", segmentName, _tableName);
     } else {
-      LOGGER.info("Replaced segment {}(refCnt {}) with new segment for table {}", segmentName, refCnt, _tableName);
-    }
-    if (refCnt == 0) {  // oldSegmentManager must be non-null.
-      closeSegment(oldSegmentManager);
+      LOGGER.info("Replaced segment {} with new segment for table {}", segmentName, _tableName);
+      invalidateCachedResults(segmentName);
+      if (_segments.release(oldSegmentManager)) {
+        closeSegment(oldSegmentManager);
+      }
     }
     _currentNumberOfDocuments.inc(newNumDocs);
     _currentNumberOfSegments.inc();
@@ -199,19 +190,24 @@ public class OfflineTableDataManager implements TableDataManager {
       return;
     }
 
-    OfflineSegmentDataManager segmentDataManager;
-    int refCnt = -1;
-    try {
-      _rwLock.writeLock().lock();
-      segmentDataManager = _segmentsMap.remove(segmentName);
-      if (segmentDataManager != null) {
-        refCnt = segmentDataManager.decrementRefCnt();
+    OfflineSegmentDataManager segmentDataManager = _segments.remove(segmentName);
+    if (segmentDataManager != null) {
+      invalidateCachedResults(segmentName);
+      if (_segments.release(segmentDataManager)) {
+        closeSegment(segmentDataManager);
       }
-    } finally {
-      _rwLock.writeLock().unlock();
     }
-    if (refCnt == 0) {  // segmentDataManager must be non-null.
-      closeSegment(segmentDataManager);
+  }
+
+  @Override
+  public int getNumSegments() {
+    return _segments.size();
+  }
+
+  private void invalidateCachedResults(String segmentName) {
+    SegmentResultCache segmentResultCache = TableDataManagerProvider.getSegmentResultCache();
+    if (segmentResultCache != null) {
+      segmentResultCache.invalidateSegment(_tableName, segmentName);
     }
   }
 
@@ -237,35 +233,12 @@ public class OfflineTableDataManager implements TableDataManager {
 
   @Override
   public List<SegmentDataManager> acquireSegments(List<String> segmentList) {
-    List<SegmentDataManager> ret = new ArrayList<SegmentDataManager>();
-    try {
-      _rwLock.readLock().lock();
-      for (String segName : segmentList) {
-        OfflineSegmentDataManager segmentDataManager;
-        segmentDataManager = _segmentsMap.get(segName);
-        if (segmentDataManager != null) {
-          segmentDataManager.incrementRefCnt();
-          ret.add(segmentDataManager);
-        }
-      }
-    } finally {
-      _rwLock.readLock().unlock();
-    }
-    return ret;
+    return new ArrayList<SegmentDataManager>(_segments.acquire(segmentList));
   }
 
   @Override
   public OfflineSegmentDataManager acquireSegment(String segmentName) {
-    try {
-      _rwLock.readLock().lock();
-      OfflineSegmentDataManager segmentDataManager = _segmentsMap.get(segmentName);
-      if (segmentDataManager != null) {
-        segmentDataManager.incrementRefCnt();
-      }
-      return segmentDataManager;
-    } finally {
-      _rwLock.readLock().unlock();
-    }
+    return _segments.acquire(segmentName);
   }
 
   @Override
@@ -273,10 +246,8 @@ public class OfflineTableDataManager implements TableDataManager {
     if (segmentDataManager == null) {
       return;
     }
-    int refCnt = ((OfflineSegmentDataManager)segmentDataManager).decrementRefCnt();
-    // Exactly one thread should find this to be zero, so we can safely drop it.
-    // We never remove it from the map here, so no need to synchronize.
-    if (refCnt == 0) {
+    // Exactly one thread gets the last reference, and the segment already left the map by then.
+    if (_segments.release((OfflineSegmentDataManager) segmentDataManager)) {
       closeSegment(segmentDataManager);
     }
   }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.offline;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Reference counting shared by the {@link RefCountedSegmentDataManager} implementations.
+ */
+public class RefCountUtils {
+  private RefCountUtils() {
+  }
+
+  /**
+   * Increments the given count, unless it already dropped to 0.
+   *
+   * @return true if the count was incremented
+   */
+  public static boolean tryIncrement(AtomicInteger refCnt) {
+    while (true) {
+      int count = refCnt.get();
+      if (count <= 0) {
+        return false;
+      }
+      if (refCnt.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.offline;
+
+/**
+ * A SegmentDataManager whose segment is shared by the table and the queries using it, and is destroyed once the last
+ * of them releases it. The table holds one reference while the segment is in the table.
+ */
+public interface RefCountedSegmentDataManager extends SegmentDataManager {
+
+  /**
+   * Takes a reference to the segment, unless the count already dropped to 0, in which case the segment is being
+   * destroyed and must not be used.
+   *
+   * @return true if a reference was taken
+   */
+  boolean tryIncrementRefCnt();
+
+  /**
+   * Releases a reference to the segment.
+   *
+   * @return the number of references left, the segment must be destroyed by the caller that gets 0
+   */
+  int decrementRefCnt();
+}
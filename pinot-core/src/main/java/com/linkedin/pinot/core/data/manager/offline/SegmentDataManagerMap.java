@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.offline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Segments of a table, shared by the offline and realtime table data managers.
+ *
+ * Queries acquire and release segments without taking any lock: the segments are looked up in a concurrent map and a
+ * reference is taken with a compare-and-set on the ref count of the segment, which fails once the count dropped to 0.
+ * A segment only drops to 0 after it left the map, so a lookup that loses the race against a replace or a remove
+ * simply looks the segment up again and either finds the new version or nothing.
+ */
+public class SegmentDataManagerMap<T extends RefCountedSegmentDataManager> {
+  private final Map<String, T> _segmentDataManagers = new ConcurrentHashMap<String, T>();
+
+  /**
+   * Returns a read only view of the segments, for monitoring and tests.
+   */
+  public Map<String, T> asMap() {
+    return Collections.unmodifiableMap(_segmentDataManagers);
+  }
+
+  public T get(String segmentName) {
+    return _segmentDataManagers.get(segmentName);
+  }
+
+  public int size() {
+    return _segmentDataManagers.size();
+  }
+
+  /**
+   * Adds a segment, which comes with the reference held by the table, or replaces the segment of the same name.
+   *
+   * @return the replaced segment, null if there was none. The caller must release the reference the table held on it.
+   */
+  public T put(T segmentDataManager) {
+    return _segmentDataManagers.put(segmentDataManager.getSegmentName(), segmentDataManager);
+  }
+
+  /**
+   * Removes a segment.
+   *
+   * @return the removed segment, null if there was none. The caller must release the reference the table held on it.
+   */
+  public T remove(String segmentName) {
+    return _segmentDataManagers.remove(segmentName);
+  }
+
+  /**
+   * Takes a reference to a segment.
+   *
+   * @return the segment, or null if the table does not have it
+   */
+  public T acquire(String segmentName) {
+    T segmentDataManager = _segmentDataManagers.get(segmentName);
+    while (segmentDataManager != null && !segmentDataManager.tryIncrementRefCnt()) {
+      // The segment was replaced or removed and released by everyone in the meantime, look up its successor
+      segmentDataManager = _segmentDataManagers.get(segmentName);
+    }
+    return segmentDataManager;
+  }
+
+  /**
+   * Takes a reference to each of the given segments the table has.
+   */
+  public List<T> acquire(List<String> segmentNames) {
+    List<T> segmentDataManagers = new ArrayList<T>(segmentNames.size());
+    for (String segmentName : segmentNames) {
+      T segmentDataManager = acquire(segmentName);
+      if (segmentDataManager != null) {
+        segmentDataManagers.add(segmentDataManager);
+      }
+    }
+    return segmentDataManagers;
+  }
+
+  /**
+   * Releases a reference to a segment.
+   *
+   * @return true if this was the last reference, in which case the caller must destroy the segment
+   */
+  public boolean release(T segmentDataManager) {
+    return segmentDataManager.decrementRefCnt() == 0;
+  }
+}
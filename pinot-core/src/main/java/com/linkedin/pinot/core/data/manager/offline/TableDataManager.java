@@ -24,6 +24,7 @@ import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
@@ -41,8 +42,9 @@ public interface TableDataManager {
    * Initialize TableDataManager based on given config.
    *
    * @param tableDataManagerConfig
+   * @param serverMetrics metrics to report to, null when the server does not collect metrics
    */
-  public void init(TableDataManagerConfig tableDataManagerConfig);
+  public void init(TableDataManagerConfig tableDataManagerConfig, ServerMetrics serverMetrics);
 
   public void start();
 
@@ -84,6 +86,11 @@ public interface TableDataManager {
    */
   public void removeSegment(String segmentToRemove);
 
+  /**
+   * @return number of segments currently served by this TableDataManager.
+   */
+  public int getNumSegments();
+
   /**
    *
    * @note This method gets a lock on the segments. It is the caller's responsibility to return the segments
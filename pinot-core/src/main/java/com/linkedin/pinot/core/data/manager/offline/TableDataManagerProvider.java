@@ -18,8 +18,10 @@ package com.linkedin.pinot.core.data.manager.offline;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.realtime.RealtimeTableDataManager;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 
 
 /**
@@ -31,18 +33,33 @@ public class TableDataManagerProvider {
   private static Map<String, Class<? extends TableDataManager>> keyToFunction =
       new ConcurrentHashMap<String, Class<? extends TableDataManager>>();
 
+  private static volatile SegmentResultCache segmentResultCache = null;
+
   static {
     keyToFunction.put("offline", OfflineTableDataManager.class);
     keyToFunction.put("realtime", RealtimeTableDataManager.class);
   }
 
-  public static TableDataManager getTableDataManager(TableDataManagerConfig tableDataManagerConfig) {
+  /**
+   * Sets the cache of per segment query results the table data managers invalidate when segments are replaced or
+   * removed, null when the server does not cache them.
+   */
+  public static void setSegmentResultCache(SegmentResultCache cache) {
+    segmentResultCache = cache;
+  }
+
+  public static SegmentResultCache getSegmentResultCache() {
+    return segmentResultCache;
+  }
+
+  public static TableDataManager getTableDataManager(TableDataManagerConfig tableDataManagerConfig,
+      ServerMetrics serverMetrics) {
     try {
       Class<? extends TableDataManager> cls =
           keyToFunction.get(tableDataManagerConfig.getTableDataManagerType().toLowerCase());
       if (cls != null) {
         TableDataManager tableDataManager = (TableDataManager) cls.newInstance();
-        tableDataManager.init(tableDataManagerConfig);
+        tableDataManager.init(tableDataManagerConfig, serverMetrics);
         return tableDataManager;
       } else {
         throw new UnsupportedOperationException("No tableDataManager type found.");
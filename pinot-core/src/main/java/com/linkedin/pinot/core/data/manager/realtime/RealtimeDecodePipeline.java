@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.RawMessageStreamProvider;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+
+
+/**
+ * Decodes the messages of a RawMessageStreamProvider on a pool of threads ahead of the indexing thread.
+ *
+ * A fetch thread reads the raw messages off the stream and hands each one to the decode pool, queueing the pending
+ * rows in the order of the stream so that next() gives the rows back in that same order. At most queueSize rows are
+ * waiting for the indexing thread at any time, and at most maxMessages messages are read off the stream overall, so
+ * that everything consumed fits in the segment being indexed.
+ */
+public class RealtimeDecodePipeline {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeDecodePipeline.class);
+  private static final long POLL_TIMEOUT_MILLIS = 100L;
+
+  private final String name;
+  private final RawMessageStreamProvider streamProvider;
+  private final int maxMessages;
+  private final ExecutorService decodeExecutor;
+  private final BlockingQueue<Future<GenericRow>> pendingRows;
+  private final Thread fetchThread;
+  private final ThreadLocal<KafkaMessageDecoder> decoders = new ThreadLocal<KafkaMessageDecoder>();
+
+  private volatile boolean keepFetching = true;
+  private volatile boolean fetchDone = false;
+
+  public RealtimeDecodePipeline(String name, RawMessageStreamProvider streamProvider, int numDecodeThreads,
+      int queueSize, int maxMessages) {
+    if (numDecodeThreads <= 0) {
+      throw new IllegalArgumentException("Number of decode threads must be positive, got: " + numDecodeThreads);
+    }
+    if (queueSize <= 0) {
+      throw new IllegalArgumentException("Decode queue size must be positive, got: " + queueSize);
+    }
+    this.name = name;
+    this.streamProvider = streamProvider;
+    this.maxMessages = maxMessages;
+    this.decodeExecutor = Executors.newFixedThreadPool(numDecodeThreads, new NamedThreadFactory(name + "-decode"));
+    this.pendingRows = new ArrayBlockingQueue<Future<GenericRow>>(queueSize);
+    this.fetchThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        fetch();
+      }
+    }, name + "-fetch");
+  }
+
+  public void start() {
+    fetchThread.start();
+  }
+
+  private void fetch() {
+    int numMessages = 0;
+    long exceptionSleepMillis = 50L;
+    try {
+      while (keepFetching && numMessages < maxMessages) {
+        try {
+          final byte[] message = streamProvider.nextMessage();
+          if (message == null) {
+            continue;
+          }
+          // once a message is read off the stream it has to reach the indexing thread, so it is queued even if
+          // fetching has been stopped in the meantime
+          numMessages++;
+          pendingRows.put(decodeExecutor.submit(new Callable<GenericRow>() {
+            @Override
+            public GenericRow call() throws Exception {
+              return decode(message);
+            }
+          }));
+          exceptionSleepMillis = 50L;
+        } catch (InterruptedException e) {
+          LOGGER.info("Interrupted while fetching messages for {}", name);
+          Thread.currentThread().interrupt();
+          return;
+        } catch (Exception e) {
+          LOGGER.warn("Caught exception while fetching messages for {}, sleeping for {} ms", name,
+              exceptionSleepMillis, e);
+          Uninterruptibles.sleepUninterruptibly(exceptionSleepMillis, TimeUnit.MILLISECONDS);
+          exceptionSleepMillis = Math.min(60000L, exceptionSleepMillis * 2);
+        }
+      }
+      LOGGER.info("Stopped fetching messages for {} after {} messages", name, numMessages);
+    } finally {
+      fetchDone = true;
+    }
+  }
+
+  private GenericRow decode(byte[] message) throws Exception {
+    KafkaMessageDecoder decoder = decoders.get();
+    if (decoder == null) {
+      decoder = streamProvider.createDecoder();
+      decoders.set(decoder);
+    }
+    return decoder.decode(message);
+  }
+
+  /**
+   * Returns the next decoded row in the order of the stream, or null if none is ready yet or the message could not
+   * be decoded.
+   *
+   * @throws InterruptedException if interrupted while waiting for the next row
+   */
+  public GenericRow next() throws InterruptedException {
+    Future<GenericRow> pendingRow = pendingRows.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    if (pendingRow == null) {
+      return null;
+    }
+    try {
+      return pendingRow.get();
+    } catch (ExecutionException e) {
+      streamProvider.onDecodeFailure(e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * @return true once no more messages are read off the stream and all the rows read have been returned by next()
+   */
+  public boolean isExhausted() {
+    return fetchDone && pendingRows.isEmpty();
+  }
+
+  /**
+   * Stops reading messages off the stream. The rows of the messages already read keep coming out of next() until
+   * the pipeline is exhausted.
+   */
+  public void stopFetching() {
+    keepFetching = false;
+  }
+
+  public void shutdown() {
+    keepFetching = false;
+    fetchThread.interrupt();
+    decodeExecutor.shutdownNow();
+  }
+}
@@ -16,8 +16,10 @@
 package com.linkedin.pinot.core.data.manager.realtime;
 
 import java.io.File;
+import java.util.List;
 import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,12 +28,17 @@ import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
 import com.linkedin.pinot.core.data.GenericRow;
-import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.RefCountUtils;
+import com.linkedin.pinot.core.data.manager.offline.RefCountedSegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.realtime.RawMessageStreamProvider;
 import com.linkedin.pinot.core.realtime.StreamProvider;
 import com.linkedin.pinot.core.realtime.StreamProviderConfig;
 import com.linkedin.pinot.core.realtime.StreamProviderFactory;
@@ -41,7 +48,7 @@ import com.linkedin.pinot.core.realtime.impl.kafka.KafkaHighLevelStreamProviderC
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 
 
-public class RealtimeSegmentDataManager implements SegmentDataManager {
+public class RealtimeSegmentDataManager implements RefCountedSegmentDataManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentDataManager.class);
   private final static long ONE_MINUTE_IN_MILLSEC = 1000 * 60;
 
@@ -65,13 +72,16 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
   private TimerTask segmentStatusTask;
   private final RealtimeTableDataManager notifier;
   private Thread indexingThread;
+  private final RealtimeDecodePipeline decodePipeline;
   
   private final String sortedColumn;
 
+  private final AtomicInteger refCnt = new AtomicInteger(1);
+
   public RealtimeSegmentDataManager(final RealtimeSegmentZKMetadata segmentMetadata,
       final AbstractTableConfig tableConfig, InstanceZKMetadata instanceMetadata,
       RealtimeTableDataManager realtimeResourceManager, final String resourceDataDir, final ReadMode mode,
-      final Schema schema) throws Exception {
+      final Schema schema, final ServerMetrics serverMetrics) throws Exception {
     this.schema = schema;
     if (tableConfig.getIndexingConfig().getSortedColumn().isEmpty()) {
       LOGGER.info("RealtimeDataResourceZKMetadata contains no information about sorted column");
@@ -107,13 +117,33 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
     this.kafkaStreamProvider = StreamProviderFactory.buildStreamProvider();
     this.kafkaStreamProvider.init(kafkaStreamProviderConfig);
     this.kafkaStreamProvider.start();
-    // lets create a new realtime segment
-    realtimeSegment = new RealtimeSegmentImpl(schema, kafkaStreamProviderConfig.getSizeThresholdToFlushSegment());
+    // lets create a new realtime segment, with inverted indexes on the configured columns or by default on the
+    // dimensions and time column
+    List<String> invertedIndexColumns = tableConfig.getIndexingConfig().getInvertedIndexColumns();
+    if (invertedIndexColumns == null || invertedIndexColumns.isEmpty()) {
+      invertedIndexColumns = RealtimeSegmentImpl.getDefaultInvertedIndexColumns(schema);
+    }
+    LOGGER.info("Building inverted indexes for columns: {} in segment: {}", invertedIndexColumns, segmentName);
+    realtimeSegment = new RealtimeSegmentImpl(schema, kafkaStreamProviderConfig.getSizeThresholdToFlushSegment(),
+        invertedIndexColumns);
     realtimeSegment.setSegmentName(segmentMetadata.getSegmentName());
     realtimeSegment.setSegmentMetadata(segmentMetadata, this.schema);
     indexSegment = realtimeSegment;
     notifier = realtimeResourceManager;
 
+    // decode the messages on a pool of threads ahead of the indexing thread if configured to, and if the stream
+    // provider can hand over undecoded messages
+    int numDecodeThreads = ((KafkaHighLevelStreamProviderConfig) kafkaStreamProviderConfig).getNumDecodeThreads();
+    if (numDecodeThreads > 0 && kafkaStreamProvider instanceof RawMessageStreamProvider) {
+      LOGGER.info("Decoding messages with {} threads for segment: {}", numDecodeThreads, segmentName);
+      decodePipeline = new RealtimeDecodePipeline(segmentName, (RawMessageStreamProvider) kafkaStreamProvider,
+          numDecodeThreads, ((KafkaHighLevelStreamProviderConfig) kafkaStreamProviderConfig).getDecodeQueueSize(),
+          kafkaStreamProviderConfig.getSizeThresholdToFlushSegment());
+      decodePipeline.start();
+    } else {
+      decodePipeline = null;
+    }
+
     segmentStatusTask = new TimerTask() {
       @Override
       public void run() {
@@ -129,25 +159,49 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
         boolean notFull = true;
         long exceptionSleepMillis = 50L;
 
-        do {
-          try {
-            GenericRow row = kafkaStreamProvider.next();
+        // the decode threads are stopped however the indexing loop ends, an Error thrown while indexing included
+        try {
+          do {
+            try {
+              GenericRow row = decodePipeline != null ? decodePipeline.next() : kafkaStreamProvider.next();
+
+              if (row != null) {
+                notFull = realtimeSegment.index(row);
+                exceptionSleepMillis = 50L;
+              }
+            } catch (Exception e) {
+              LOGGER.warn("Caught exception while indexing row, sleeping for {} ms", exceptionSleepMillis, e);
+
+              // Sleep for a short time as to avoid filling the logs with exceptions too quickly
+              Uninterruptibles.sleepUninterruptibly(exceptionSleepMillis, TimeUnit.MILLISECONDS);
+              exceptionSleepMillis = Math.min(60000L, exceptionSleepMillis * 2);
+            } catch (Error e) {
+              LOGGER.error("Caught error in indexing thread", e);
+              throw e;
+            }
+          } while (notFull && keepIndexing && (decodePipeline == null || !decodePipeline.isExhausted()));
 
-            if (row != null) {
-              notFull = realtimeSegment.index(row);
-              exceptionSleepMillis = 50L;
+          if (decodePipeline != null) {
+            // the messages already read off the stream are committed along with the segment, so index all of them
+            // before converting it; the pipeline never reads more messages than the segment can hold
+            decodePipeline.stopFetching();
+            try {
+              while (!decodePipeline.isExhausted()) {
+                GenericRow row = decodePipeline.next();
+                if (row != null) {
+                  realtimeSegment.index(row);
+                }
+              }
+            } catch (InterruptedException e) {
+              LOGGER.warn("Interrupted while indexing the remaining decoded rows", e);
+              Thread.currentThread().interrupt();
             }
-          } catch (Exception e) {
-            LOGGER.warn("Caught exception while indexing row, sleeping for {} ms", exceptionSleepMillis, e);
-
-            // Sleep for a short time as to avoid filling the logs with exceptions too quickly
-            Uninterruptibles.sleepUninterruptibly(exceptionSleepMillis, TimeUnit.MILLISECONDS);
-            exceptionSleepMillis = Math.min(60000L, exceptionSleepMillis * 2);
-          } catch (Error e) {
-            LOGGER.error("Caught error in indexing thread", e);
-            throw e;
           }
-        } while (notFull && keepIndexing);
+        } finally {
+          if (decodePipeline != null) {
+            decodePipeline.shutdown();
+          }
+        }
 
         try {
           LOGGER.info("Indexing threshold reached, proceeding with index conversion");
@@ -164,10 +218,18 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
                   schema, segmentMetadata.getTableName(), segmentMetadata.getSegmentName(), sortedColumn);
 
           LOGGER.info("Trying to build segment!");
+          final long conversionStartNanos = System.nanoTime();
           converter.build();
+          final long conversionNanos = System.nanoTime() - conversionStartNanos;
           File destDir = new File(resourceDataDir, segmentMetadata.getSegmentName());
           FileUtils.deleteQuietly(destDir);
           FileUtils.moveDirectory(tempSegmentFolder.listFiles()[0], destDir);
+          if (serverMetrics != null) {
+            serverMetrics.addTablePhaseTiming(segmentMetadata.getTableName(),
+                ServerQueryPhase.REALTIME_SEGMENT_CONVERSION, conversionNanos);
+            serverMetrics.addTableMeteredValue(segmentMetadata.getTableName(),
+                ServerMeter.REALTIME_SEGMENT_CONVERSION_BYTES, FileUtils.sizeOfDirectory(destDir));
+          }
 
           FileUtils.deleteQuietly(tempSegmentFolder);
           long startTime = realtimeSegment.getMinTime();
@@ -221,6 +283,16 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
     return segmentName;
   }
 
+  @Override
+  public boolean tryIncrementRefCnt() {
+    return RefCountUtils.tryIncrement(refCnt);
+  }
+
+  @Override
+  public int decrementRefCnt() {
+    return refCnt.decrementAndGet();
+  }
+
   private void computeKeepIndexing() {
     if (keepIndexing) {
       LOGGER.debug("Current indexed " + realtimeSegment.getRawDocumentCount()
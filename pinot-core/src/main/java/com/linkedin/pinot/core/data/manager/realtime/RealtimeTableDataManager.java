@@ -17,12 +17,9 @@ package com.linkedin.pinot.core.data.manager.realtime;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.helix.ZNRecord;
@@ -37,6 +34,7 @@ import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
@@ -45,7 +43,9 @@ import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.helix.PinotHelixPropertyStoreZnRecordProvider;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.RefCountedSegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManagerMap;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
@@ -53,7 +53,6 @@ import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
 
 
-// TODO Use the refcnt object inside SegmentDataManager
 public class RealtimeTableDataManager implements TableDataManager {
   private Logger LOGGER = LoggerFactory.getLogger(RealtimeTableDataManager.class);
 
@@ -62,19 +61,21 @@ public class RealtimeTableDataManager implements TableDataManager {
   private File _indexDir;
   private ReadMode _readMode;
   private TableDataManagerConfig _tableDataManagerConfig;
+  private ServerMetrics _serverMetrics;
   private String _tableDataDir;
   private int _numberOfTableQueryExecutorThreads;
   private IndexLoadingConfigMetadata _indexLoadingConfigMetadata;
   private ExecutorService _queryExecutorService;
 
-  private final Map<String, SegmentDataManager> _segmentsMap = new HashMap<String, SegmentDataManager>();
+  // Segments are acquired and released by queries without locking, see SegmentDataManagerMap
+  private final SegmentDataManagerMap<RefCountedSegmentDataManager> _segments =
+      new SegmentDataManagerMap<RefCountedSegmentDataManager>();
 
   private final ExecutorService _segmentAsyncExecutorService = Executors
       .newSingleThreadExecutor(new NamedThreadFactory("SegmentAsyncExecutorService"));
   private final List<String> _activeSegments = new ArrayList<String>();
   private final List<String> _loadingSegments = new ArrayList<String>();
 
-  private Map<String, AtomicInteger> _referenceCounts = new HashMap<String, AtomicInteger>();
   private ZkHelixPropertyStore<ZNRecord> _helixPropertyStore;
 
   private String _tableName;
@@ -87,8 +88,9 @@ public class RealtimeTableDataManager implements TableDataManager {
       CommonConstants.Metric.Server.NUMBER_OF_DELETED_SEGMENTS);
 
   @Override
-  public void init(TableDataManagerConfig tableDataManagerConfig) {
+  public void init(TableDataManagerConfig tableDataManagerConfig, ServerMetrics serverMetrics) {
     _tableDataManagerConfig = tableDataManagerConfig;
+    _serverMetrics = serverMetrics;
     _tableName = _tableDataManagerConfig.getTableName();
     LOGGER = LoggerFactory.getLogger(_tableName + "-RealtimeTableDataManager");
     _currentNumberOfSegments =
@@ -169,33 +171,32 @@ public class RealtimeTableDataManager implements TableDataManager {
       if (new File(_indexDir, segmentId).exists()
           && ((RealtimeSegmentZKMetadata) segmentZKMetadata).getStatus() == Status.DONE) {
         // segment already exists on file, simply load it and add it to the map
-        if (!_segmentsMap.containsKey(segmentId)) {
+        if (_segments.get(segmentId) == null) {
           synchronized (getGlobalLock()) {
-            if (!_segmentsMap.containsKey(segmentId)) {
+            if (_segments.get(segmentId) == null) {
               IndexSegment segment =
                   ColumnarSegmentLoader.load(new File(_indexDir, segmentId), _readMode, _indexLoadingConfigMetadata);
-              _segmentsMap.put(segmentId, new OfflineSegmentDataManager(segment));
+              _segments.put(new OfflineSegmentDataManager(segment));
               markSegmentAsLoaded(segmentId);
-              _referenceCounts.put(segmentId, new AtomicInteger(1));
             }
           }
         }
       } else {
-        if (!_segmentsMap.containsKey(segmentId)) {
+        if (_segments.get(segmentId) == null) {
           synchronized (getGlobalLock()) {
-            if (!_segmentsMap.containsKey(segmentId)) {
+            if (_segments.get(segmentId) == null) {
               // this is a new segment, lets create an instance of RealtimeSegmentDataManager
               PinotHelixPropertyStoreZnRecordProvider propertyStoreHelper =
                   PinotHelixPropertyStoreZnRecordProvider.forSchema(propertyStore);
               ZNRecord record = propertyStoreHelper.get(tableConfig.getValidationConfig().getSchemaName());
               LOGGER.info("found schema {} ", tableConfig.getValidationConfig().getSchemaName());
-              SegmentDataManager manager =
+              RefCountedSegmentDataManager manager =
                   new RealtimeSegmentDataManager((RealtimeSegmentZKMetadata) segmentZKMetadata, tableConfig,
-                      instanceZKMetadata, this, _indexDir.getAbsolutePath(), _readMode, Schema.fromZNRecord(record));
+                      instanceZKMetadata, this, _indexDir.getAbsolutePath(), _readMode, Schema.fromZNRecord(record),
+                      _serverMetrics);
               LOGGER.info("Initialize RealtimeSegmentDataManager - " + segmentId);
-              _segmentsMap.put(segmentId, manager);
+              _segments.put(manager);
               _loadingSegments.add(segmentId);
-              _referenceCounts.put(segmentId, new AtomicInteger(1));
             }
           }
         }
@@ -218,19 +219,35 @@ public class RealtimeTableDataManager implements TableDataManager {
     throw new UnsupportedOperationException("Not supported addSegment(SegmentMetadata) in RealtimeTableDataManager");
   }
 
+  // Called when we get a helix transition to go to offline or dropped state. Queries may still be using the segment,
+  // the last one to release it destroys it.
   @Override
   public void removeSegment(String segmentToRemove) {
-    decrementCount(segmentToRemove);
+    RefCountedSegmentDataManager segmentDataManager;
+    synchronized (getGlobalLock()) {
+      segmentDataManager = _segments.remove(segmentToRemove);
+      _activeSegments.remove(segmentToRemove);
+      _loadingSegments.remove(segmentToRemove);
+    }
+    if (segmentDataManager == null) {
+      LOGGER.warn("Received command to delete unexisting segment - " + segmentToRemove);
+      return;
+    }
+    if (_segments.release(segmentDataManager)) {
+      closeSegment(segmentDataManager);
+    }
   }
 
-  public void incrementCount(final String segmentId) {
-    _referenceCounts.get(segmentId).incrementAndGet();
+  @Override
+  public int getNumSegments() {
+    return _segments.size();
   }
 
   private void markSegmentAsLoaded(String segmentId) {
     _currentNumberOfSegments.inc();
-    if (_segmentsMap.containsKey(segmentId)) {
-      _currentNumberOfDocuments.inc(_segmentsMap.get(segmentId).getSegment().getTotalDocs());
+    SegmentDataManager segmentDataManager = _segments.get(segmentId);
+    if (segmentDataManager != null) {
+      _currentNumberOfDocuments.inc(segmentDataManager.getSegment().getTotalDocs());
     }
     _loadingSegments.remove(segmentId);
     if (!_activeSegments.contains(segmentId)) {
@@ -238,65 +255,30 @@ public class RealtimeTableDataManager implements TableDataManager {
     }
   }
 
-  public void decrementCount(final String segmentId) {
-    if (!_referenceCounts.containsKey(segmentId)) {
-      LOGGER.warn("Received command to delete unexisting segment - " + segmentId);
-      return;
-    }
-
-    AtomicInteger count = _referenceCounts.get(segmentId);
-
-    if (count.get() == 1) {
-      SegmentDataManager segment = null;
-      synchronized (getGlobalLock()) {
-        if (count.get() == 1) {
-          segment = _segmentsMap.remove(segmentId);
-          _activeSegments.remove(segmentId);
-          _referenceCounts.remove(segmentId);
-        }
+  private void closeSegment(SegmentDataManager segmentDataManager) {
+    final String segmentId = segmentDataManager.getSegmentName();
+    _currentNumberOfSegments.dec();
+    _currentNumberOfDocuments.dec(segmentDataManager.getSegment().getTotalDocs());
+    _numDeletedSegments.inc();
+    segmentDataManager.getSegment().destroy();
+    LOGGER.info("Segment " + segmentId + " has been deleted");
+    _segmentAsyncExecutorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        FileUtils.deleteQuietly(new File(_tableDataDir, segmentId));
+        LOGGER.info("The index directory for the segment " + segmentId + " has been deleted");
       }
-      if (segment != null) {
-        _currentNumberOfSegments.dec();
-        _currentNumberOfDocuments.dec(segment.getSegment().getTotalDocs());
-        _numDeletedSegments.inc();
-        segment.getSegment().destroy();
-      }
-      LOGGER.info("Segment " + segmentId + " has been deleted");
-      _segmentAsyncExecutorService.execute(new Runnable() {
-        @Override
-        public void run() {
-          FileUtils.deleteQuietly(new File(_tableDataDir, segmentId));
-          LOGGER.info("The index directory for the segment " + segmentId + " has been deleted");
-        }
-      });
-
-    } else {
-      count.decrementAndGet();
-    }
+    });
   }
 
   @Override
   public List<SegmentDataManager> acquireSegments(List<String> segmentList) {
-    List<SegmentDataManager> ret = new ArrayList<SegmentDataManager>();
-    synchronized (getGlobalLock()) {
-      for (String segmentName : segmentList) {
-        if (_segmentsMap.containsKey(segmentName)) {
-          incrementCount(segmentName);
-          ret.add(_segmentsMap.get(segmentName));
-        }
-      }
-    }
-    return ret;
+    return new ArrayList<SegmentDataManager>(_segments.acquire(segmentList));
   }
 
   @Override
   public SegmentDataManager acquireSegment(String segmentName) {
-    if (_segmentsMap.containsKey(segmentName)) {
-      incrementCount(segmentName);
-      return _segmentsMap.get(segmentName);
-    } else {
-      return null;
-    }
+    return _segments.acquire(segmentName);
   }
 
   @Override
@@ -310,10 +292,11 @@ public class RealtimeTableDataManager implements TableDataManager {
 
   @Override
   public void releaseSegment(SegmentDataManager segmentDataManager) {
-    // TODO Implement this
-  }
-
-  private void returnSegmentReader(String segmentId) {
-    decrementCount(segmentId);
+    if (segmentDataManager == null) {
+      return;
+    }
+    if (_segments.release((RefCountedSegmentDataManager) segmentDataManager)) {
+      closeSegment(segmentDataManager);
+    }
   }
 }
@@ -17,7 +17,7 @@ package com.linkedin.pinot.core.indexsegment;
 
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.core.common.DataSource;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 
 
 /**
@@ -72,5 +72,5 @@ public interface IndexSegment {
   public int getTotalDocs();
 
   /** Returns the StarTree index structure, or null if it does not exist */
-  StarTreeIndexNode getStarTreeRoot();
+  OffHeapStarTree getStarTree();
 }
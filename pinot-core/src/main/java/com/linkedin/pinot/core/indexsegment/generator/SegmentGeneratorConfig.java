@@ -57,6 +57,8 @@ public class SegmentGeneratorConfig {
   private String segmentEndTime = null;
   private FileFormat inputFileFormat = FileFormat.AVRO;
   private File inputDataFilePath = null;
+  private boolean singlePassCreation = false;
+  private int numCreationThreads = Runtime.getRuntime().availableProcessors();
 
   /*
    *
@@ -276,6 +278,34 @@ public class SegmentGeneratorConfig {
     }
   }
 
+  /**
+   * Single pass creation reads the input once, spilling column values to temporary files, then
+   * builds the dictionaries and indexes of all columns in parallel from those files. The segment
+   * is the same as with the default two pass creation. Not used for star tree segments.
+   */
+  public void setSinglePassCreation(boolean singlePassCreation) {
+    this.singlePassCreation = singlePassCreation;
+  }
+
+  public boolean isSinglePassCreation() {
+    return singlePassCreation;
+  }
+
+  /**
+   * Number of threads used to build columns in single pass creation, defaults to the number of
+   * available processors.
+   */
+  public void setNumCreationThreads(int numCreationThreads) {
+    if (numCreationThreads <= 0) {
+      throw new IllegalArgumentException("Invalid number of segment creation threads: " + numCreationThreads);
+    }
+    this.numCreationThreads = numCreationThreads;
+  }
+
+  public int getNumCreationThreads() {
+    return numCreationThreads;
+  }
+
   public List<String> getProjectedColumns() {
     List<String> ret = new ArrayList<String>();
     for (FieldSpec spec : schema.getAllFieldSpecs()) {
@@ -43,6 +43,12 @@ public abstract class BaseSingleColumnSingleValueReader<T extends ReaderContext>
     throw new UnsupportedOperationException();
   }
 
+  public void getIntBatch(int[] rows, int[] values, int length) {
+    for (int i = 0; i < length; i++) {
+      values[i] = getInt(rows[i]);
+    }
+  }
+
   public long getLong(int row) {
     throw new UnsupportedOperationException();
   }
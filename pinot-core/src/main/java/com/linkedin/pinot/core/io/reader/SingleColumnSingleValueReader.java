@@ -37,6 +37,14 @@ public interface SingleColumnSingleValueReader extends DataFileReader {
    */
   int getInt(int row);
 
+  /**
+   * Read the int values of the first length rows into values.
+   * @param rows row ids, sorted in ascending order
+   * @param values
+   * @param length
+   */
+  void getIntBatch(int[] rows, int[] values, int length);
+
   /**
    * @param row
    * @return
@@ -85,6 +85,15 @@ public class SortedForwardIndexReader
     return Constants.EOF;
   }
 
+  @Override
+  public void getIntBatch(int[] rows, int[] values, int length) {
+    // rows are sorted, so consecutive rows mostly fall in the docId range cached in the context
+    SortedValueReaderContext context = createContext();
+    for (int i = 0; i < length; i++) {
+      values[i] = getInt(rows[i], context);
+    }
+  }
+
   public int getLength() {
     return numDocs;
   }
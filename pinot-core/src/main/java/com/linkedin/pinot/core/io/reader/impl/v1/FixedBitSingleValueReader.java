@@ -58,4 +58,11 @@ public class FixedBitSingleValueReader extends BaseSingleColumnSingleValueReader
     return dataFileReader.getInt(row, 0);
   }
 
+  @Override
+  public void getIntBatch(int[] rows, int[] values, int length) {
+    for (int i = 0; i < length; i++) {
+      values[i] = dataFileReader.getInt(rows[i], 0);
+    }
+  }
+
 }
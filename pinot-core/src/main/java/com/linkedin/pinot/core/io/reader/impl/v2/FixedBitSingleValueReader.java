@@ -202,6 +202,7 @@ public class FixedBitSingleValueReader extends BaseSingleColumnSingleValueReader
           tempResult.compressed[i] = byteBuffer.getInt(startIndex + i * 4);
         }
         BitPacking.fastunpack(tempResult.compressed, 0, tempResult.uncompressed, 0, numBits);
+        tempResult.position = batchPosition;
       }
       int endRowId = (batchPosition + 1) * uncompressedSize;
       while (counter < length && (startRow + counter) < endRowId) {
@@ -216,6 +217,7 @@ public class FixedBitSingleValueReader extends BaseSingleColumnSingleValueReader
    * @param values
    * @param length
    */
+  @Override
   public void getIntBatch(int rowIds[], int[] values, int length) {
     int counter = 0;
     BitUnpackResult tempResult = bitUnpackWrapper.get();
@@ -227,6 +229,7 @@ public class FixedBitSingleValueReader extends BaseSingleColumnSingleValueReader
           tempResult.compressed[i] = byteBuffer.getInt(startIndex + i * 4);
         }
         BitPacking.fastunpack(tempResult.compressed, 0, tempResult.uncompressed, 0, numBits);
+        tempResult.position = batchPosition;
       }
       int endRowId = (batchPosition + 1) * uncompressedSize;
       while (counter < length && rowIds[counter] < endRowId) {
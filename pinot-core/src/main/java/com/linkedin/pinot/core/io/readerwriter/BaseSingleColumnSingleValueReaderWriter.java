@@ -37,6 +37,13 @@ public class BaseSingleColumnSingleValueReaderWriter<T extends ReaderContext>
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void getIntBatch(int[] rows, int[] values, int length) {
+    for (int i = 0; i < length; i++) {
+      values[i] = getInt(rows[i]);
+    }
+  }
+
   @Override
   public long getLong(int row) {
     throw new UnsupportedOperationException();
@@ -196,8 +196,15 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public void setIntArray(int row, int[] intArray) {
-    int newStartIndex = updateHeader(row, intArray.length);
-    for (int i = 0; i < intArray.length; i++) {
+    setIntArray(row, intArray, intArray.length);
+  }
+
+  /**
+   * Sets the first length values of intArray, so that callers can reuse a buffer across rows.
+   */
+  public void setIntArray(int row, int[] intArray, int length) {
+    int newStartIndex = updateHeader(row, length);
+    for (int i = 0; i < length; i++) {
       currentDataWriter.setInt(newStartIndex + i, 0, intArray[i]);
     }
   }
@@ -17,14 +17,14 @@ package com.linkedin.pinot.core.operator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,11 +38,13 @@ import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationOperator;
+import com.linkedin.pinot.core.operator.query.MCachedResultsOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOrderByOperator;
 import com.linkedin.pinot.core.query.aggregation.CombineService;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
-import com.linkedin.pinot.core.util.trace.TraceCallable;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache.SegmentKey;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
 
 
@@ -50,13 +52,14 @@ import com.linkedin.pinot.core.util.trace.TraceRunnable;
  * MCombineOperator will take the arguments below:
  *  1. BrokerRequest;
  *  2. Parallelism Parameters:
- *      ExecutorService;
+ *      ExecutorService, time out and the max number of segment tasks of the query;
  *  3. All the Inner-Segment Operators:
  *      For now only four types:
  *          {@link MSelectionOnlyOperator}
  *          {@link MSelectionOrderByOperator}
  *          {@link MAggregationOperator}
  *          {@link MAggregationGroupByOperator}
+ *      and {@link MCachedResultsOperator} for segments whose results are cached.
  *      Number of Operators is based on the pruned segments:
  *          one segment to one Operator.
  *
@@ -66,39 +69,50 @@ public class MCombineOperator extends BaseOperator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MCombineOperator.class);
 
+  /**
+   * Default upper bound on the number of concurrent segment tasks of one query: half of the cores, at most 10.
+   */
+  public static final int DEFAULT_MAX_PARALLELISM =
+      Math.max(1, Math.min(10, Runtime.getRuntime().availableProcessors() / 2));
+
   private final List<Operator> _operators;
   private final boolean _isParallel;
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
+  private final int _maxParallelism;
   private long _timeOutMs;
-  //Make this configurable
-  //These two control the parallelism on a per query basis, depending on the number of segments to process
-  private static int MIN_THREADS_PER_QUERY = 10;
-  private static int MAX_THREADS_PER_QUERY = 10;
-  private static int MIN_SEGMENTS_PER_THREAD = 10;
+  private SegmentResultCache _segmentResultCache;
+  private List<SegmentKey> _segmentKeys;
 
   private IntermediateResultsBlock _mergedBlock;
-  
-  static {
-    int numCores = Runtime.getRuntime().availableProcessors();
-    MIN_THREADS_PER_QUERY = Math.max(1, (int)(numCores * .5));
-    //Dont have more than 10 threads per query
-    MAX_THREADS_PER_QUERY = Math.min(MAX_THREADS_PER_QUERY, (int)(numCores * .5));
-  }
 
   public MCombineOperator(List<Operator> retOperators, BrokerRequest brokerRequest) {
     _operators = retOperators;
     _isParallel = false;
     _brokerRequest = brokerRequest;
     _executorService = null;
+    _maxParallelism = 1;
   }
 
   public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(retOperators, executorService, timeOutMs, brokerRequest, DEFAULT_MAX_PARALLELISM);
+  }
+
+  /**
+   * @param retOperators inner segment operators, one per segment
+   * @param executorService executor running the segment tasks, or null to run serially
+   * @param timeOutMs query time out
+   * @param brokerRequest
+   * @param maxParallelism upper bound on the number of segment tasks running concurrently for this query
+   */
+  public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, int maxParallelism) {
     _operators = retOperators;
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _maxParallelism = Math.max(1, maxParallelism);
     if (_executorService != null) {
       _isParallel = true;
     } else {
@@ -106,6 +120,21 @@ public class MCombineOperator extends BaseOperator {
     }
   }
 
+  /**
+   * Caches the results of the segments in the given cache once their operators ran. Looking the segments up is left to
+   * the caller, which gives cached segments an {@link MCachedResultsOperator} and no key.
+   *
+   * @param segmentKeys cache keys of the segments, in the order of the operators, null for segments not to cache
+   */
+  public void setSegmentResultCache(SegmentResultCache segmentResultCache, List<SegmentKey> segmentKeys) {
+    if (segmentKeys.size() != _operators.size()) {
+      throw new IllegalArgumentException("Got " + segmentKeys.size() + " segment keys for " + _operators.size()
+          + " operators");
+    }
+    _segmentResultCache = segmentResultCache;
+    _segmentKeys = segmentKeys;
+  }
+
   @Override
   public boolean open() {
     for (Operator op : _operators) {
@@ -119,129 +148,14 @@ public class MCombineOperator extends BaseOperator {
   public Block getNextBlock() {
     final long startTime = System.currentTimeMillis();
     if (_isParallel) {
-      final long queryEndTime = System.currentTimeMillis() + _timeOutMs;
-      int numGroups = Math.max(MIN_THREADS_PER_QUERY,Math.min(MAX_THREADS_PER_QUERY, (_operators.size() + MIN_SEGMENTS_PER_THREAD - 1) / MIN_SEGMENTS_PER_THREAD));
-      //ensure that the number of groups is not more than the number of segments
-      numGroups = Math.min(_operators.size(), numGroups);
-      final List<List<Operator>> operatorGroups = new ArrayList<List<Operator>>(numGroups);
-      for (int i = 0; i < numGroups; i++) {
-        operatorGroups.add(new ArrayList<Operator>());
-      }
-      for (int i = 0; i < _operators.size(); i++) {
-        operatorGroups.get(i % numGroups).add(_operators.get(i));
-      }
-      final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<Block>(operatorGroups.size());
-      // Submit operators.
-      for (final List<Operator> operatorGroup : operatorGroups) {
-        _executorService.submit(new TraceRunnable() {
-          @Override
-          public void runJob() {
-            IntermediateResultsBlock mergedBlock = null;
-            try {
-              for (Operator operator : operatorGroup) {
-                IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) operator.nextBlock();
-                if (mergedBlock == null) {
-                  mergedBlock = blockToMerge;
-                } else {
-                  CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                }
-              }
-            } catch (Exception e) {
-              LOGGER.error("exception in the MCombine operator ", e);
-              mergedBlock = new IntermediateResultsBlock(e);
-            }
-            if (blockingQueue != null) {
-              blockingQueue.offer(mergedBlock);
-            }
-          }
-        });
-      }
-      LOGGER
-          .debug("Submitting operators to be run in parallel and it took:" + (System.currentTimeMillis() - startTime));
-
-      // Submit merger job:
-      Future<IntermediateResultsBlock> mergedBlockFuture =
-          _executorService.submit(new TraceCallable<IntermediateResultsBlock>() {
-            @Override
-            public IntermediateResultsBlock callJob() throws Exception {
-              int mergedBlocksNumber = 0;
-              IntermediateResultsBlock mergedBlock = null;
-              while ((queryEndTime > System.currentTimeMillis()) && (mergedBlocksNumber < operatorGroups.size())) {
-                if (mergedBlock == null) {
-                  mergedBlock =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (mergedBlock != null) {
-                    mergedBlocksNumber++;
-                  }
-                  LOGGER.debug("Got response from operator 0 after: {}", (System.currentTimeMillis() - startTime));
-                } else {
-                  IntermediateResultsBlock blockToMerge =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (blockToMerge != null) {
-                    try {
-                      LOGGER.debug("Got response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                      LOGGER.debug("Merged response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                    } catch (Exception e) {
-                      mergedBlock.getExceptions().add(
-                          QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-                    }
-                    mergedBlocksNumber++;
-                  }
-                }
-              }
-              return mergedBlock;
-            }
-          });
-
-      // Get merge results.
-      try {
-        _mergedBlock = mergedBlockFuture.get(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-      } catch (InterruptedException e) {
-        LOGGER.error("InterruptedException ", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
-        }
-        exceptions.add(QueryException.getException(QueryException.FUTURE_CALL_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
-      } catch (ExecutionException e) {
-        LOGGER.error("Execution Exception", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
-        }
-        exceptions.add(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
-      } catch (TimeoutException e) {
-        LOGGER.error("TimeoutException ", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
-        }
-        exceptions.add(QueryException.getException(QueryException.EXECUTION_TIMEOUT_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
-      }
-
+      _mergedBlock = combineInParallel(startTime);
     } else {
-      for (Operator operator : _operators) {
+      for (int i = 0; i < _operators.size(); i++) {
+        Operator operator = _operators.get(i);
         if ((operator instanceof MAggregationOperator) || (operator instanceof MSelectionOrderByOperator)
             || (operator instanceof MSelectionOnlyOperator) || (operator instanceof MAggregationGroupByOperator)
-            || (operator instanceof MCombineOperator)) {
-          IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
+            || (operator instanceof MCombineOperator) || (operator instanceof MCachedResultsOperator)) {
+          IntermediateResultsBlock block = getSegmentBlock(i);
           if (_mergedBlock == null) {
             _mergedBlock = block;
           } else {
@@ -261,6 +175,156 @@ public class MCombineOperator extends BaseOperator {
     return _mergedBlock;
   }
 
+  /**
+   * Runs the segment operators with work stealing: each task keeps taking the next unprocessed segment from a
+   * shared cursor, so a slow segment only delays the task running it while the other tasks drain the rest.
+   * Finished task results are merged pairwise through a single slot as soon as they complete, which spreads
+   * the merges over the task threads instead of funneling every block through one merger.
+   */
+  private IntermediateResultsBlock combineInParallel(final long startTime) {
+    final long queryEndTime = startTime + _timeOutMs;
+    final int numTasks = Math.min(_operators.size(), _maxParallelism);
+    final AtomicInteger nextOperatorIndex = new AtomicInteger(0);
+    final AtomicBoolean isCancelled = new AtomicBoolean(false);
+    final AtomicReference<IntermediateResultsBlock> mergeSlot = new AtomicReference<IntermediateResultsBlock>();
+    final CountDownLatch tasksDone = new CountDownLatch(numTasks);
+
+    int numSubmittedTasks = 0;
+    RejectedExecutionException rejectedException = null;
+    for (int i = 0; i < numTasks; i++) {
+      try {
+        submitTask(nextOperatorIndex, isCancelled, mergeSlot, tasksDone);
+        numSubmittedTasks++;
+      } catch (RejectedExecutionException e) {
+        // The submitted tasks steal the segments of the rejected ones, only count the rejected ones as done
+        rejectedException = e;
+        for (int j = i; j < numTasks; j++) {
+          tasksDone.countDown();
+        }
+        break;
+      }
+    }
+    LOGGER.debug("Submitting {} segment tasks to be run in parallel and it took: {}", numSubmittedTasks,
+        (System.currentTimeMillis() - startTime));
+    if (numSubmittedTasks == 0) {
+      LOGGER.error("Could not submit any segment task", rejectedException);
+      return new IntermediateResultsBlock(rejectedException);
+    }
+
+    Exception exception = null;
+    ProcessingException errorTemplate = null;
+    try {
+      if (!tasksDone.await(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+        exception = new TimeoutException("Timed out after " + _timeOutMs + "ms while combining "
+            + _operators.size() + " segments");
+        errorTemplate = QueryException.EXECUTION_TIMEOUT_ERROR;
+      }
+    } catch (InterruptedException e) {
+      exception = e;
+      errorTemplate = QueryException.FUTURE_CALL_ERROR;
+    }
+
+    if (exception == null) {
+      return mergeSlot.get();
+    }
+    // Stop the tasks from picking up more segments, and return whatever has been merged so far.
+    LOGGER.error("Caught exception while combining segments", exception);
+    isCancelled.set(true);
+    IntermediateResultsBlock mergedBlock = mergeSlot.getAndSet(null);
+    if (mergedBlock == null) {
+      mergedBlock = new IntermediateResultsBlock(exception);
+    }
+    List<ProcessingException> exceptions = mergedBlock.getExceptions();
+    if (exceptions == null) {
+      exceptions = new ArrayList<ProcessingException>();
+    }
+    exceptions.add(QueryException.getException(errorTemplate, exception));
+    mergedBlock.setExceptionsList(exceptions);
+    return mergedBlock;
+  }
+
+  private void submitTask(final AtomicInteger nextOperatorIndex, final AtomicBoolean isCancelled,
+      final AtomicReference<IntermediateResultsBlock> mergeSlot, final CountDownLatch tasksDone) {
+    _executorService.submit(new TraceRunnable() {
+      @Override
+      public void runJob() {
+        IntermediateResultsBlock taskBlock = null;
+        try {
+          int operatorIndex;
+          while (!isCancelled.get() && (operatorIndex = nextOperatorIndex.getAndIncrement()) < _operators.size()) {
+            IntermediateResultsBlock blockToMerge = getSegmentBlock(operatorIndex);
+            if (isCancelled.get()) {
+              // The query timed out while this segment was running, nobody reads the merged block anymore.
+              break;
+            }
+            taskBlock = mergeBlocks(taskBlock, blockToMerge);
+          }
+        } catch (Exception e) {
+          LOGGER.error("exception in the MCombine operator ", e);
+          taskBlock = mergeBlocks(taskBlock, new IntermediateResultsBlock(e));
+        }
+        try {
+          if (taskBlock != null) {
+            mergeIntoSlot(mergeSlot, isCancelled, taskBlock);
+          }
+        } finally {
+          tasksDone.countDown();
+        }
+      }
+    });
+  }
+
+  /**
+   * Runs the operator of one segment, caching its results if the segment has a cache key. Blocks are cached before
+   * they get merged, as merging modifies them.
+   */
+  private IntermediateResultsBlock getSegmentBlock(int operatorIndex) {
+    IntermediateResultsBlock block = (IntermediateResultsBlock) _operators.get(operatorIndex).nextBlock();
+    SegmentKey segmentKey = (_segmentKeys == null) ? null : _segmentKeys.get(operatorIndex);
+    if (segmentKey != null) {
+      _segmentResultCache.put(segmentKey, block);
+    }
+    return block;
+  }
+
+  /**
+   * Parks the given block in the merge slot, first merging in any block already parked there. Once all tasks
+   * have called this, the slot holds the fully merged block. Gives up without merging once the query is cancelled,
+   * as the slot is not read anymore after that.
+   */
+  private void mergeIntoSlot(AtomicReference<IntermediateResultsBlock> mergeSlot, AtomicBoolean isCancelled,
+      IntermediateResultsBlock block) {
+    while (!isCancelled.get()) {
+      IntermediateResultsBlock parkedBlock = mergeSlot.getAndSet(null);
+      if (parkedBlock == null) {
+        if (mergeSlot.compareAndSet(null, block)) {
+          return;
+        }
+      } else {
+        block = mergeBlocks(block, parkedBlock);
+      }
+    }
+  }
+
+  private IntermediateResultsBlock mergeBlocks(IntermediateResultsBlock mergedBlock,
+      IntermediateResultsBlock blockToMerge) {
+    if (mergedBlock == null) {
+      return blockToMerge;
+    }
+    try {
+      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while merging blocks", e);
+      List<ProcessingException> exceptions = mergedBlock.getExceptions();
+      if (exceptions == null) {
+        exceptions = new ArrayList<ProcessingException>();
+        mergedBlock.setExceptionsList(exceptions);
+      }
+      exceptions.add(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
+    }
+    return mergedBlock;
+  }
+
   private void trimToSize(BrokerRequest brokerRequest, IntermediateResultsBlock mergedBlock) {
     AggregationGroupByOperatorService aggregationGroupByOperatorService =
         new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
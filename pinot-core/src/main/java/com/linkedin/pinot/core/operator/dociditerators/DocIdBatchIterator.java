@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.dociditerators;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.operator.blocks.MatchEntireSegmentDocIdSetBlock;
+import com.linkedin.pinot.core.operator.docidsets.DocIdSetBlock;
+
+
+/**
+ * Hands out the doc ids of a doc id set block as sorted int arrays, so that column values can be
+ * read through the batch methods of BlockValSet and Dictionary.
+ *
+ * For an array backed DocIdSetBlock the backing array is returned as a single batch without copy,
+ * otherwise doc ids are copied from the block iterator, at most DEFAULT_BATCH_SIZE at a time.
+ */
+public final class DocIdBatchIterator {
+  public static final int DEFAULT_BATCH_SIZE = 10000;
+
+  private final int[] _docIds;
+  private final int _batchSize;
+  private final BlockDocIdIterator _blockDocIdIterator;
+  private int _arrayBatchLength;
+  private boolean _exhausted = false;
+
+  public DocIdBatchIterator(Block docIdSetBlock) {
+    if (docIdSetBlock instanceof DocIdSetBlock && !(docIdSetBlock instanceof MatchEntireSegmentDocIdSetBlock)) {
+      DocIdSetBlock arrayBlock = (DocIdSetBlock) docIdSetBlock;
+      _docIds = arrayBlock.getDocIdSet();
+      _arrayBatchLength = arrayBlock.getSearchableLength();
+      _batchSize = Math.max(_arrayBatchLength, 1);
+      _blockDocIdIterator = null;
+    } else {
+      _docIds = new int[DEFAULT_BATCH_SIZE];
+      _batchSize = DEFAULT_BATCH_SIZE;
+      _blockDocIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    }
+  }
+
+  /**
+   * Moves to the next batch of doc ids.
+   *
+   * @return number of doc ids in the batch, 0 once all doc ids have been returned
+   */
+  public int nextBatch() {
+    if (_exhausted) {
+      return 0;
+    }
+    if (_blockDocIdIterator == null) {
+      _exhausted = true;
+      return _arrayBatchLength;
+    }
+    int length = 0;
+    int docId;
+    while (length < _batchSize && (docId = _blockDocIdIterator.next()) != Constants.EOF) {
+      _docIds[length++] = docId;
+    }
+    if (length < _batchSize) {
+      _exhausted = true;
+    }
+    return length;
+  }
+
+  /**
+   * @return doc ids of the current batch, valid up to the length returned by nextBatch()
+   */
+  public int[] getDocIds() {
+    return _docIds;
+  }
+
+  /**
+   * @return upper bound of the length returned by nextBatch(), to size value buffers
+   */
+  public int getMaxBatchSize() {
+    return _batchSize;
+  }
+}
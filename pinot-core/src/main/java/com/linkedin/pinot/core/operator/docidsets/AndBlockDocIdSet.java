@@ -21,13 +21,10 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
-import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
-import com.linkedin.pinot.core.common.BlockDocIdSet;
 import com.linkedin.pinot.core.operator.dociditerators.AndDocIdIterator;
 import com.linkedin.pinot.core.operator.dociditerators.BitmapDocIdIterator;
 import com.linkedin.pinot.core.operator.filter.AndOperator;
@@ -60,61 +57,63 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
     }
   }
 
+  /**
+   * Intersects the bitmaps of all index based children at once. Children that need a scan (including nested AND/OR
+   * with a scan based child) are evaluated only on the docs left in that intersection, through
+   * ScanBasedDocIdIterator.isMatch() in AndDocIdIterator.
+   */
   @Override
   public BlockDocIdIterator iterator() {
     List<BlockDocIdIterator> rawIterators = new ArrayList<>();
+    List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
     boolean useBitmapBasedIntersection = false;
-    for (BlockDocIdSet docIdSet : blockDocIdSets) {
-      if (docIdSet instanceof BitmapDocIdSet) {
+    for (FilterBlockDocIdSet docIdSet : blockDocIdSets) {
+      if (FilterBitmapUtils.hasInvertedIndexBitmap(docIdSet)) {
         useBitmapBasedIntersection = true;
       }
     }
-    if (useBitmapBasedIntersection) {
-      List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
-      for (BlockDocIdSet docIdSet : blockDocIdSets) {
-        if (docIdSet instanceof SortedDocIdSet) {
-          MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
-          SortedDocIdSet sortedDocIdSet = (SortedDocIdSet) docIdSet;
-          List<IntPair> pairs = sortedDocIdSet.getRaw();
-          for (IntPair pair : pairs) {
-            bitmap.add(pair.getLeft(), pair.getRight() + 1); // add takes [start, end) i.e inclusive
-                                                             // start, exclusive end.
-          }
-          allBitmaps.add(bitmap);
-        } else if (docIdSet instanceof BitmapDocIdSet) {
-          BitmapDocIdSet bitmapDocIdSet = (BitmapDocIdSet) docIdSet;
-          ImmutableRoaringBitmap childBitmap = bitmapDocIdSet.getRaw();
-          allBitmaps.add(childBitmap);
-        } else {
-          BlockDocIdIterator iterator = docIdSet.iterator();
-          rawIterators.add(iterator);
-        }
-      }
-      if (allBitmaps.size() > 1) {
-        MutableRoaringBitmap answer = (MutableRoaringBitmap) allBitmaps.get(0).clone();
-        for (int i = 1; i < allBitmaps.size(); i++) {
-          answer.and(allBitmaps.get(i));
-        }
-        intIterator = answer.getIntIterator();
+    for (FilterBlockDocIdSet docIdSet : blockDocIdSets) {
+      ImmutableRoaringBitmap childBitmap = useBitmapBasedIntersection ? FilterBitmapUtils.getBitmap(docIdSet) : null;
+      if (childBitmap != null) {
+        allBitmaps.add(childBitmap);
       } else {
-        intIterator = allBitmaps.get(0).getIntIterator();
+        rawIterators.add(docIdSet.iterator());
       }
-
+    }
+    if (!allBitmaps.isEmpty()) {
+      intIterator = FilterBitmapUtils.and(allBitmaps).getIntIterator();
       BitmapDocIdIterator singleBitmapBlockIdIterator = new BitmapDocIdIterator(intIterator);
       singleBitmapBlockIdIterator.setStartDocId(minDocId);
       singleBitmapBlockIdIterator.setEndDocId(maxDocId);
-      rawIterators.add(0, singleBitmapBlockIdIterator);
-      docIdIterators = new BlockDocIdIterator[rawIterators.size()];
-      rawIterators.toArray(docIdIterators);
-    } else {
-      docIdIterators = new BlockDocIdIterator[blockDocIdSets.size()];
-      for (int srcId = 0; srcId < blockDocIdSets.size(); srcId++) {
-        docIdIterators[srcId] = blockDocIdSets.get(srcId).iterator();
+      if (rawIterators.isEmpty()) {
+        return singleBitmapBlockIdIterator;
       }
+      rawIterators.add(0, singleBitmapBlockIdIterator);
     }
+    docIdIterators = new BlockDocIdIterator[rawIterators.size()];
+    rawIterators.toArray(docIdIterators);
     return new AndDocIdIterator(docIdIterators);
   }
 
+  /**
+   * @return intersection of the children bitmaps, null if a child has to be evaluated by scanning
+   */
+  ImmutableRoaringBitmap getBitmap() {
+    List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
+    for (FilterBlockDocIdSet docIdSet : blockDocIdSets) {
+      ImmutableRoaringBitmap childBitmap = FilterBitmapUtils.getBitmap(docIdSet);
+      if (childBitmap == null) {
+        return null;
+      }
+      allBitmaps.add(childBitmap);
+    }
+    return FilterBitmapUtils.and(allBitmaps);
+  }
+
+  List<FilterBlockDocIdSet> getChildren() {
+    return blockDocIdSets;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> T getRaw() {
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.docidsets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.roaringbitmap.buffer.BufferFastAggregation;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+
+
+/**
+ * Evaluates filter doc id sets that are backed by an index directly on Roaring bitmaps, so that AND/OR of index
+ * based predicates are computed with whole bitmap intersections and unions instead of doc by doc iteration.
+ */
+public final class FilterBitmapUtils {
+  private static final Comparator<ImmutableRoaringBitmap> CARDINALITY_COMPARATOR =
+      new Comparator<ImmutableRoaringBitmap>() {
+        @Override
+        public int compare(ImmutableRoaringBitmap o1, ImmutableRoaringBitmap o2) {
+          return Integer.compare(o1.getCardinality(), o2.getCardinality());
+        }
+      };
+
+  private FilterBitmapUtils() {
+  }
+
+  /**
+   * Returns the docs matched by the doc id set as a bitmap, or null if the doc id set (or, for AND/OR, one of its
+   * children) has to be evaluated by scanning.
+   */
+  public static ImmutableRoaringBitmap getBitmap(FilterBlockDocIdSet docIdSet) {
+    if (docIdSet instanceof BitmapDocIdSet) {
+      return docIdSet.getRaw();
+    } else if (docIdSet instanceof SortedDocIdSet) {
+      return toBitmap(((SortedDocIdSet) docIdSet).pairs);
+    } else if (docIdSet instanceof AndBlockDocIdSet) {
+      return ((AndBlockDocIdSet) docIdSet).getBitmap();
+    } else if (docIdSet instanceof OrBlockDocIdSet) {
+      return ((OrBlockDocIdSet) docIdSet).getBitmap();
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the doc id set is answered from a bitmap inverted index, directly or through a nested AND/OR.
+   * Doc id sets of sorted columns alone are cheaper to intersect as doc id ranges than to turn into bitmaps.
+   */
+  public static boolean hasInvertedIndexBitmap(FilterBlockDocIdSet docIdSet) {
+    if (docIdSet instanceof BitmapDocIdSet) {
+      return true;
+    } else if (docIdSet instanceof AndBlockDocIdSet || docIdSet instanceof OrBlockDocIdSet) {
+      List<FilterBlockDocIdSet> children = docIdSet instanceof AndBlockDocIdSet
+          ? ((AndBlockDocIdSet) docIdSet).getChildren() : ((OrBlockDocIdSet) docIdSet).getChildren();
+      for (FilterBlockDocIdSet child : children) {
+        if (hasInvertedIndexBitmap(child)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public static MutableRoaringBitmap toBitmap(List<IntPair> pairs) {
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    for (IntPair pair : pairs) {
+      // add takes [start, end) i.e inclusive start, exclusive end.
+      bitmap.add(pair.getLeft(), pair.getRight() + 1);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Intersects the bitmaps from the smallest to the largest, so that every step works on the smallest possible
+   * intermediate result, and stops early once the intersection is empty.
+   */
+  public static ImmutableRoaringBitmap and(List<ImmutableRoaringBitmap> bitmaps) {
+    if (bitmaps.size() == 1) {
+      return bitmaps.get(0);
+    }
+    bitmaps = new ArrayList<ImmutableRoaringBitmap>(bitmaps);
+    Collections.sort(bitmaps, CARDINALITY_COMPARATOR);
+    MutableRoaringBitmap answer = ImmutableRoaringBitmap.and(bitmaps.get(0), bitmaps.get(1));
+    for (int i = 2; i < bitmaps.size() && !answer.isEmpty(); i++) {
+      answer.and(bitmaps.get(i));
+    }
+    return answer;
+  }
+
+  public static ImmutableRoaringBitmap or(List<ImmutableRoaringBitmap> bitmaps) {
+    if (bitmaps.size() == 1) {
+      return bitmaps.get(0);
+    }
+    return BufferFastAggregation.or(bitmaps.toArray(new ImmutableRoaringBitmap[bitmaps.size()]));
+  }
+}
@@ -19,14 +19,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
-import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
-import com.linkedin.pinot.core.common.BlockDocIdSet;
-import com.linkedin.pinot.core.operator.dociditerators.AndDocIdIterator;
 import com.linkedin.pinot.core.operator.dociditerators.BitmapDocIdIterator;
 import com.linkedin.pinot.core.operator.dociditerators.OrDocIdIterator;
 
@@ -68,60 +64,63 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
     return minDocId;
   }
 
+  /**
+   * Unions the bitmaps of all index based children at once. If every child is index based, the union is iterated
+   * directly, without merging the children doc by doc in OrDocIdIterator.
+   */
   @Override
   public BlockDocIdIterator iterator() {
     List<BlockDocIdIterator> rawIterators = new ArrayList<>();
+    List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
     boolean useBitmapOr = false;
-    for (BlockDocIdSet docIdSet : docIdSets) {
-      if (docIdSet instanceof BitmapDocIdSet) {
+    for (FilterBlockDocIdSet docIdSet : docIdSets) {
+      if (FilterBitmapUtils.hasInvertedIndexBitmap(docIdSet)) {
         useBitmapOr = true;
       }
     }
-    if (useBitmapOr) {
-      List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
-      for (BlockDocIdSet docIdSet : docIdSets) {
-        if (docIdSet instanceof SortedDocIdSet) {
-          MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
-          SortedDocIdSet sortedDocIdSet = (SortedDocIdSet) docIdSet;
-          List<Pair<Integer, Integer>> pairs = sortedDocIdSet.getRaw();
-          for (Pair<Integer, Integer> pair : pairs) {
-            bitmap.add(pair.getLeft(), pair.getRight() + 1); //add takes [start, end) i.e inclusive start, exclusive end.
-          }
-          allBitmaps.add(bitmap);
-        } else if (docIdSet instanceof BitmapDocIdSet) {
-          BitmapDocIdSet bitmapDocIdSet = (BitmapDocIdSet) docIdSet;
-          ImmutableRoaringBitmap childBitmap = bitmapDocIdSet.getRaw();
-          allBitmaps.add(childBitmap);
-        } else {
-          BlockDocIdIterator iterator = docIdSet.iterator();
-          rawIterators.add(iterator);
-        }
-      }
-      MutableRoaringBitmap answer = (MutableRoaringBitmap) allBitmaps.get(0).clone();
-      for (int i = 1; i < allBitmaps.size(); i++) {
-        answer.or(allBitmaps.get(i));
+    for (FilterBlockDocIdSet docIdSet : docIdSets) {
+      ImmutableRoaringBitmap childBitmap = useBitmapOr ? FilterBitmapUtils.getBitmap(docIdSet) : null;
+      if (childBitmap != null) {
+        allBitmaps.add(childBitmap);
+      } else {
+        rawIterators.add(docIdSet.iterator());
       }
-      intIterator = answer.getIntIterator();
+    }
+    if (!allBitmaps.isEmpty()) {
+      intIterator = FilterBitmapUtils.or(allBitmaps).getIntIterator();
       BitmapDocIdIterator singleBitmapBlockIdIterator = new BitmapDocIdIterator(intIterator);
       singleBitmapBlockIdIterator.setStartDocId(minDocId);
       singleBitmapBlockIdIterator.setEndDocId(maxDocId);
+      if (rawIterators.isEmpty()) {
+        return singleBitmapBlockIdIterator;
+      }
       rawIterators.add(singleBitmapBlockIdIterator);
-      docIdIterators = new BlockDocIdIterator[rawIterators.size()];
-      rawIterators.toArray(docIdIterators);
-    } else {
-      docIdIterators = new BlockDocIdIterator[docIdSets.size()];
-      for (int srcId = 0; srcId < docIdSets.size(); srcId++) {
-        docIdIterators[srcId] = docIdSets.get(srcId).iterator();
+    }
+    docIdIterators = new BlockDocIdIterator[rawIterators.size()];
+    rawIterators.toArray(docIdIterators);
+    OrDocIdIterator orDocIdIterator = new OrDocIdIterator(docIdIterators);
+    orDocIdIterator.setStartDocId(minDocId);
+    orDocIdIterator.setEndDocId(maxDocId);
+    return orDocIdIterator;
+  }
+
+  /**
+   * @return union of the children bitmaps, null if a child has to be evaluated by scanning
+   */
+  ImmutableRoaringBitmap getBitmap() {
+    List<ImmutableRoaringBitmap> allBitmaps = new ArrayList<ImmutableRoaringBitmap>();
+    for (FilterBlockDocIdSet docIdSet : docIdSets) {
+      ImmutableRoaringBitmap childBitmap = FilterBitmapUtils.getBitmap(docIdSet);
+      if (childBitmap == null) {
+        return null;
       }
+      allBitmaps.add(childBitmap);
     }
-//    if (docIdIterators.length == 1) {
-//      return docIdIterators[0];
-//    } else {
-      OrDocIdIterator orDocIdIterator = new OrDocIdIterator(docIdIterators);
-      orDocIdIterator.setStartDocId(minDocId);
-      orDocIdIterator.setEndDocId(maxDocId);
-      return orDocIdIterator;
-//    }
+    return FilterBitmapUtils.or(allBitmaps);
+  }
+
+  List<FilterBlockDocIdSet> getChildren() {
+    return docIdSets;
   }
 
   @SuppressWarnings("unchecked")
@@ -41,4 +41,14 @@ public final class MultiValueSet implements BlockValSet {
   public DataType getValueType() {
     return columnMetadata.getDataType();
   }
+
+  @Override
+  public void readIntValues(int[] docIds, int length, int[] dictIdsOut) {
+    throw new UnsupportedOperationException("Single value batch read is not supported on multi value column");
+  }
+
+  @Override
+  public int getIntValues(int docId, int[] dictIdsOut) {
+    return mVReader.getIntArray(docId, dictIdsOut);
+  }
 }
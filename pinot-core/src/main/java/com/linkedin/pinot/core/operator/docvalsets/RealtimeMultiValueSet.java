@@ -45,4 +45,14 @@ public final class RealtimeMultiValueSet implements BlockValSet {
   public DataType getValueType() {
     return dataType;
   }
+
+  @Override
+  public void readIntValues(int[] docIds, int length, int[] dictIdsOut) {
+    throw new UnsupportedOperationException("Single value batch read is not supported on multi value column");
+  }
+
+  @Override
+  public int getIntValues(int docId, int[] dictIdsOut) {
+    return reader.getIntArray(docId, dictIdsOut);
+  }
 }
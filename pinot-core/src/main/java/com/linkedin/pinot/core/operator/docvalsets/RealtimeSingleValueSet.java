@@ -44,4 +44,14 @@ public final class RealtimeSingleValueSet implements BlockValSet {
   public DataType getValueType() {
     return dataType;
   }
+
+  @Override
+  public void readIntValues(int[] docIds, int length, int[] dictIdsOut) {
+    reader.getIntBatch(docIds, dictIdsOut, length);
+  }
+
+  @Override
+  public int getIntValues(int docId, int[] dictIdsOut) {
+    throw new UnsupportedOperationException("Multi value read is not supported on single value column");
+  }
 }
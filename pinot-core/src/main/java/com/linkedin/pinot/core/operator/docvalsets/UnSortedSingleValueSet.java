@@ -43,4 +43,14 @@ public final class UnSortedSingleValueSet implements BlockValSet {
     // TODO Auto-generated method stub
     return null;
   }
-}
\ No newline at end of file
+
+  @Override
+  public void readIntValues(int[] docIds, int length, int[] dictIdsOut) {
+    sVReader.getIntBatch(docIds, dictIdsOut, length);
+  }
+
+  @Override
+  public int getIntValues(int docId, int[] dictIdsOut) {
+    throw new UnsupportedOperationException("Multi value read is not supported on single value column");
+  }
+}
@@ -59,6 +59,34 @@ public class AndOperator extends BaseFilterOperator {
     return andBlock;
   }
 
+  /**
+   * An AND matches at most as many docs as its most selective child.
+   */
+  @Override
+  public int getNumMatchingDocsEstimate(int numDocs) {
+    int estimate = numDocs;
+    for (Operator operator : operators) {
+      if (operator instanceof BaseFilterOperator) {
+        estimate = Math.min(estimate, ((BaseFilterOperator) operator).getNumMatchingDocsEstimate(numDocs));
+      }
+    }
+    return estimate;
+  }
+
+  /**
+   * An AND only scans if none of its children can be answered from an index, otherwise the scan based children
+   * are evaluated on the docs matched by the index based ones.
+   */
+  @Override
+  public boolean isScanBased() {
+    for (Operator operator : operators) {
+      if (!(operator instanceof BaseFilterOperator) || !((BaseFilterOperator) operator).isScanBased()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public boolean close() {
     for (Operator operator : operators) {
@@ -61,4 +61,21 @@ public abstract class BaseFilterOperator extends BaseOperator {
   }
 
   public abstract BaseFilterBlock nextFilterBlock(BlockId blockId);
+
+  /**
+   * Estimates the number of docs matched by this operator, used by the filter planner to evaluate the most
+   * selective children of an AND first. Operators that cannot tell without scanning the column return numDocs.
+   *
+   * @param numDocs total number of docs in the segment
+   */
+  public int getNumMatchingDocsEstimate(int numDocs) {
+    return numDocs;
+  }
+
+  /**
+   * @return true if this operator has to scan column values, false if it is answered from an index
+   */
+  public boolean isScanBased() {
+    return false;
+  }
 }
@@ -36,6 +36,8 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
 
   private DataSource dataSource;
   private BitmapBlock bitmapBlock;
+  private ImmutableRoaringBitmap[] bitmaps;
+  private boolean exclusion;
 
   public BitmapBasedFilterOperator(DataSource dataSource) {
     this.dataSource = dataSource;
@@ -48,13 +50,37 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
 
   @Override
   public BaseFilterBlock nextFilterBlock(BlockId BlockId) {
+    Block dataSourceBlock = dataSource.nextBlock();
+    bitmapBlock =
+        new BitmapBlock(dataSource.getOperatorName(), dataSourceBlock.getMetadata(), getBitmaps(), exclusion);
+    return bitmapBlock;
+  }
+
+  /**
+   * Sums the cardinalities of the bitmaps of the matching (or, for NEQ/NOT_IN, excluded) dictionary ids. The
+   * bitmaps are kept for nextFilterBlock(), so the estimate does not cost a second inverted index lookup.
+   */
+  @Override
+  public int getNumMatchingDocsEstimate(int numDocs) {
+    long numDocsInBitmaps = 0;
+    for (ImmutableRoaringBitmap bitmap : getBitmaps()) {
+      if (bitmap != null) {
+        numDocsInBitmaps += bitmap.getCardinality();
+      }
+    }
+    long estimate = exclusion ? numDocs - numDocsInBitmaps : numDocsInBitmaps;
+    return (int) Math.max(0, Math.min(numDocs, estimate));
+  }
+
+  private ImmutableRoaringBitmap[] getBitmaps() {
+    if (bitmaps != null) {
+      return bitmaps;
+    }
     Predicate predicate = getPredicate();
     InvertedIndexReader invertedIndex = dataSource.getInvertedIndex();
-    Block dataSourceBlock = dataSource.nextBlock();
     Dictionary dictionary = dataSource.getDictionary();
     PredicateEvaluator evaluator = PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dictionary);
     int[] dictionaryIds;
-    boolean exclusion = false;
     switch (predicate.getType()) {
       case EQ:
       case IN:
@@ -75,8 +101,8 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
     for (int i = 0; i < dictionaryIds.length; i++) {
       bitmaps[i] = invertedIndex.getImmutable(dictionaryIds[i]);
     }
-    bitmapBlock = new BitmapBlock(dataSource.getOperatorName(), dataSourceBlock.getMetadata(), bitmaps, exclusion);
-    return bitmapBlock;
+    this.bitmaps = bitmaps;
+    return bitmaps;
   }
 
   @Override
@@ -59,6 +59,35 @@ public class OrOperator extends BaseFilterOperator {
     return orBlock;
   }
 
+  /**
+   * An OR matches at most the sum of the docs matched by its children.
+   */
+  @Override
+  public int getNumMatchingDocsEstimate(int numDocs) {
+    long estimate = 0;
+    for (Operator operator : operators) {
+      if (operator instanceof BaseFilterOperator) {
+        estimate += ((BaseFilterOperator) operator).getNumMatchingDocsEstimate(numDocs);
+      } else {
+        estimate += numDocs;
+      }
+    }
+    return (int) Math.min(numDocs, estimate);
+  }
+
+  /**
+   * An OR has to scan as soon as one of its children does.
+   */
+  @Override
+  public boolean isScanBased() {
+    for (Operator operator : operators) {
+      if (!(operator instanceof BaseFilterOperator) || ((BaseFilterOperator) operator).isScanBased()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public boolean close() {
     for (Operator operator : operators) {
@@ -88,6 +88,11 @@ public class ScanBasedFilterOperator extends BaseFilterOperator {
     return new ScanBlock(docIdSet);
   }
 
+  @Override
+  public boolean isScanBased() {
+    return true;
+  }
+
   @Override
   public boolean close() {
     dataSource.close();
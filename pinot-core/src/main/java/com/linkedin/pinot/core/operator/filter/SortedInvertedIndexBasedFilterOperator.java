@@ -48,6 +48,8 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
 
   private SortedBlock sortedBlock;
 
+  private List<IntPair> pairs;
+
   public SortedInvertedIndexBasedFilterOperator(DataSource dataSource) {
     this.dataSource = dataSource;
   }
@@ -59,6 +61,28 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
 
   @Override
   public BaseFilterBlock nextFilterBlock(BlockId BlockId) {
+    List<IntPair> pairs = getPairs();
+    LOGGER.debug("Creating a Sorted Block with pairs: {}", pairs);
+    sortedBlock = new SortedBlock(dataSource.getOperatorName(),pairs);
+    return sortedBlock;
+  }
+
+  /**
+   * Sums the lengths of the matching doc id ranges, which is exact for a sorted column.
+   */
+  @Override
+  public int getNumMatchingDocsEstimate(int numDocs) {
+    long estimate = 0;
+    for (IntPair pair : getPairs()) {
+      estimate += pair.getRight() - pair.getLeft() + 1;
+    }
+    return (int) Math.min(numDocs, estimate);
+  }
+
+  private List<IntPair> getPairs() {
+    if (pairs != null) {
+      return pairs;
+    }
     Predicate predicate = getPredicate();
     final SortedInvertedIndexReader invertedIndex = (SortedInvertedIndexReader) dataSource.getInvertedIndex();
     Dictionary dictionary = dataSource.getDictionary();
@@ -69,9 +93,8 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
       IntPair pair = invertedIndex.getMinMaxRangeFor(dictionaryIds[i]);
       pairs.add(pair);
     }
-    LOGGER.debug("Creating a Sorted Block with pairs: {}", pairs);
-    sortedBlock = new SortedBlock(dataSource.getOperatorName(),pairs);
-    return sortedBlock;
+    this.pairs = pairs;
+    return pairs;
   }
 
   @Override
@@ -40,6 +40,7 @@ public class RangeRealtimeDictionaryPredicateEvaluator implements PredicateEvalu
 
     if (dictionary.isEmpty()) {
       matchingIds = new int[0];
+      dictIdSet = new IntOpenHashSet(0);
       return;
     }
 
@@ -69,6 +70,7 @@ public class RangeRealtimeDictionaryPredicateEvaluator implements PredicateEvalu
     dictIdSet = new IntOpenHashSet(ids.size());
     for (int i = 0; i < matchingIds.length; i++) {
       matchingIds[i] = ids.get(i);
+      dictIdSet.add(matchingIds[i]);
     }
   }
 
@@ -0,0 +1,374 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.utils.primitive.MutableLongValue;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
+import com.linkedin.pinot.core.operator.dociditerators.DocIdBatchIterator;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionUtils;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * GroupBy operator for sum, min, max, count and avg over dictionary encoded, single value columns.
+ *
+ * Doc ids are processed in batches: dictionary ids and values are projected through the batch read methods of
+ * BlockValSet and Dictionary, then aggregated in tight primitive loops.
+ *
+ * Group keys are computed as a mixed radix number over the dictionary ids of the group by columns. When the
+ * key space is small enough, and no larger than the number of docs of the segment, per group results live in
+ * primitive arrays indexed by group key, allocated once the first doc matches. Otherwise they live in primitive
+ * long keyed hash maps, which only grow with the groups actually seen. No object is allocated per scanned document;
+ * result objects are only built once per group in getAggregationGroupByResult().
+ *
+ */
+public class MAggregationFunctionGroupByWithDictionaryPrimitiveOperator extends AggregationFunctionGroupByOperator {
+
+  /**
+   * Largest group key space for which results are kept in arrays instead of hash maps. The arrays of one operator
+   * then take at most 1MB.
+   */
+  public static final int MAX_ARRAY_GROUP_KEY_SPACE = 1 << 16;
+
+  private enum PrimitiveFunctionType {
+    SUM,
+    MIN,
+    MAX,
+    COUNT,
+    AVG
+  }
+
+  private final PrimitiveFunctionType _functionType;
+  private final Dictionary[] _dictionaries;
+  private final long[] _groupKeyStrides;
+  private final String[] _stringArray;
+
+  private final Dictionary _valueDictionary;
+  private final BlockValSet _valueBlockValSet;
+
+  // Per batch buffers, sized lazily to the largest doc id batch seen.
+  private int[] _dictIdBuffer = new int[0];
+  private long[] _groupKeyBuffer = new long[0];
+  private double[] _valueBuffer = new double[0];
+
+  private final boolean _useArrayResults;
+  private final int _groupKeySpace;
+  private double[] _valueArray;
+  private long[] _countArray;
+  private Long2DoubleOpenHashMap _valueMap;
+  private Long2LongOpenHashMap _countMap;
+
+  public MAggregationFunctionGroupByWithDictionaryPrimitiveOperator(AggregationInfo aggregationInfo, GroupBy groupBy,
+      Operator projectionOperator, boolean hasDictionary) {
+    super(aggregationInfo, groupBy, projectionOperator, hasDictionary);
+    if (!hasDictionary || !isSupported(aggregationInfo)) {
+      throw new UnsupportedOperationException("Not support primitive group by for aggregation: "
+          + aggregationInfo.getAggregationType());
+    }
+    if (_isGroupByColumnsContainMultiValueColumn) {
+      throw new UnsupportedOperationException("Not support primitive group by on multi value columns");
+    }
+    _functionType = PrimitiveFunctionType.valueOf(aggregationInfo.getAggregationType().toUpperCase());
+
+    final int numGroupByColumns = _groupBy.getColumnsSize();
+    _dictionaries = new Dictionary[numGroupByColumns];
+    _groupKeyStrides = new long[numGroupByColumns];
+    _stringArray = new String[numGroupByColumns];
+    long groupKeySpace = 1L;
+    for (int i = numGroupByColumns - 1; i >= 0; --i) {
+      _dictionaries[i] = _groupByBlocks[i].getMetadata().getDictionary();
+      _groupKeyStrides[i] = groupKeySpace;
+      groupKeySpace = multiplyGroupKeySpace(groupKeySpace, _dictionaries[i].length());
+    }
+    if (groupKeySpace < 0) {
+      throw new IllegalArgumentException("Too many columns for an efficient group by");
+    }
+
+    if (_functionType == PrimitiveFunctionType.COUNT) {
+      _valueDictionary = null;
+      _valueBlockValSet = null;
+    } else {
+      if (!_aggregationFunctionBlocks[0].getMetadata().isSingleValue()) {
+        throw new UnsupportedOperationException("Not support primitive group by on multi value aggregation column");
+      }
+      _valueDictionary = _aggregationFunctionBlocks[0].getMetadata().getDictionary();
+      _valueBlockValSet = _aggregationFunctionBlocks[0].getBlockValueSet();
+    }
+
+    // A segment has no more groups than docs, past that most of the array slots would stay empty
+    _useArrayResults =
+        groupKeySpace <= Math.min(MAX_ARRAY_GROUP_KEY_SPACE, _groupByBlocks[0].getMetadata().getLength());
+    _groupKeySpace = (int) Math.min(groupKeySpace, MAX_ARRAY_GROUP_KEY_SPACE);
+    if (!_useArrayResults) {
+      _countMap = new Long2LongOpenHashMap();
+      if (_functionType != PrimitiveFunctionType.COUNT) {
+        _valueMap = new Long2DoubleOpenHashMap();
+      }
+    }
+  }
+
+  /**
+   * Returns true if the given aggregation can be computed by this operator.
+   *
+   * @param aggregationInfo
+   * @return
+   */
+  public static boolean isSupported(AggregationInfo aggregationInfo) {
+    String aggregationType = aggregationInfo.getAggregationType().toUpperCase();
+    for (PrimitiveFunctionType functionType : PrimitiveFunctionType.values()) {
+      if (functionType.name().equals(aggregationType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the product of the given dictionary sizes, or -1 if it does not fit in a long.
+   *
+   * @param dictionaries
+   * @return
+   */
+  public static long getGroupKeySpace(Dictionary[] dictionaries) {
+    long groupKeySpace = 1L;
+    for (Dictionary dictionary : dictionaries) {
+      groupKeySpace = multiplyGroupKeySpace(groupKeySpace, dictionary.length());
+      if (groupKeySpace < 0) {
+        return -1L;
+      }
+    }
+    return groupKeySpace;
+  }
+
+  private static long multiplyGroupKeySpace(long groupKeySpace, int cardinality) {
+    if (groupKeySpace < 0 || (cardinality > 0 && groupKeySpace > Long.MAX_VALUE / cardinality)) {
+      return -1L;
+    }
+    return groupKeySpace * Math.max(cardinality, 1);
+  }
+
+  @Override
+  public Block getNextBlock() {
+    final ProjectionBlock block = (ProjectionBlock) _projectionOperator.nextBlock();
+    if (block == null) {
+      return null;
+    }
+
+    DocIdBatchIterator docIdBatchIterator = new DocIdBatchIterator(block.getDocIdSetBlock());
+    ensureBufferCapacity(docIdBatchIterator.getMaxBatchSize());
+    int length;
+    while ((length = docIdBatchIterator.nextBatch()) > 0) {
+      int[] docIds = docIdBatchIterator.getDocIds();
+      computeGroupKeys(block, docIds, length);
+      if (_functionType != PrimitiveFunctionType.COUNT) {
+        _valueBlockValSet.readIntValues(docIds, length, _dictIdBuffer);
+        // Drop the docs whose value is null, along with their group keys.
+        length = AggregationFunctionUtils.removeNullDictionaryIds(_dictIdBuffer, _groupKeyBuffer, length);
+        _valueDictionary.readDoubleValues(_dictIdBuffer, length, _valueBuffer);
+      }
+      if (_useArrayResults) {
+        ensureResultArrays();
+        aggregateIntoArray(length);
+      } else {
+        aggregateIntoMap(length);
+      }
+    }
+    return null;
+  }
+
+  private void ensureBufferCapacity(int capacity) {
+    if (_groupKeyBuffer.length < capacity) {
+      _dictIdBuffer = new int[capacity];
+      _groupKeyBuffer = new long[capacity];
+      _valueBuffer = new double[capacity];
+    }
+  }
+
+  private void ensureResultArrays() {
+    if (_countArray == null) {
+      _countArray = new long[_groupKeySpace];
+      if (_functionType != PrimitiveFunctionType.COUNT) {
+        _valueArray = new double[_groupKeySpace];
+      }
+    }
+  }
+
+  private void computeGroupKeys(ProjectionBlock block, int[] docIds, int length) {
+    for (int i = 0; i < _groupKeyStrides.length; ++i) {
+      block.getBlock(_groupBy.getColumns().get(i)).getBlockValueSet().readIntValues(docIds, length, _dictIdBuffer);
+      final long stride = _groupKeyStrides[i];
+      if (i == 0) {
+        for (int j = 0; j < length; ++j) {
+          _groupKeyBuffer[j] = _dictIdBuffer[j] * stride;
+        }
+      } else {
+        for (int j = 0; j < length; ++j) {
+          _groupKeyBuffer[j] += _dictIdBuffer[j] * stride;
+        }
+      }
+    }
+  }
+
+  private void aggregateIntoArray(int length) {
+    switch (_functionType) {
+      case COUNT:
+        for (int i = 0; i < length; ++i) {
+          _countArray[(int) _groupKeyBuffer[i]]++;
+        }
+        break;
+      case SUM:
+      case AVG:
+        for (int i = 0; i < length; ++i) {
+          int groupKey = (int) _groupKeyBuffer[i];
+          _countArray[groupKey]++;
+          _valueArray[groupKey] += _valueBuffer[i];
+        }
+        break;
+      case MIN:
+        for (int i = 0; i < length; ++i) {
+          int groupKey = (int) _groupKeyBuffer[i];
+          if (_countArray[groupKey]++ == 0 || _valueBuffer[i] < _valueArray[groupKey]) {
+            _valueArray[groupKey] = _valueBuffer[i];
+          }
+        }
+        break;
+      case MAX:
+        for (int i = 0; i < length; ++i) {
+          int groupKey = (int) _groupKeyBuffer[i];
+          if (_countArray[groupKey]++ == 0 || _valueBuffer[i] > _valueArray[groupKey]) {
+            _valueArray[groupKey] = _valueBuffer[i];
+          }
+        }
+        break;
+      default:
+        throw new UnsupportedOperationException("Not support primitive group by for function: " + _functionType);
+    }
+  }
+
+  private void aggregateIntoMap(int length) {
+    switch (_functionType) {
+      case COUNT:
+        for (int i = 0; i < length; ++i) {
+          _countMap.addTo(_groupKeyBuffer[i], 1L);
+        }
+        break;
+      case SUM:
+      case AVG:
+        for (int i = 0; i < length; ++i) {
+          _countMap.addTo(_groupKeyBuffer[i], 1L);
+          _valueMap.addTo(_groupKeyBuffer[i], _valueBuffer[i]);
+        }
+        break;
+      case MIN:
+        for (int i = 0; i < length; ++i) {
+          long groupKey = _groupKeyBuffer[i];
+          if (_countMap.addTo(groupKey, 1L) == 0 || _valueBuffer[i] < _valueMap.get(groupKey)) {
+            _valueMap.put(groupKey, _valueBuffer[i]);
+          }
+        }
+        break;
+      case MAX:
+        for (int i = 0; i < length; ++i) {
+          long groupKey = _groupKeyBuffer[i];
+          if (_countMap.addTo(groupKey, 1L) == 0 || _valueBuffer[i] > _valueMap.get(groupKey)) {
+            _valueMap.put(groupKey, _valueBuffer[i]);
+          }
+        }
+        break;
+      default:
+        throw new UnsupportedOperationException("Not support primitive group by for function: " + _functionType);
+    }
+  }
+
+  @Override
+  public Block getNextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException(
+        "Method: nextBlock(BlockId BlockId) is Not Supported in MAggregationFunctionGroupByWithDictionaryPrimitiveOperator");
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "MAggregationFunctionGroupByWithDictionaryPrimitiveOperator";
+  }
+
+  @Override
+  public Map<String, Serializable> getAggregationGroupByResult() {
+    _aggregateGroupedValue.clear();
+    if (_useArrayResults) {
+      if (_countArray == null) {
+        return _aggregateGroupedValue;
+      }
+      for (int groupKey = 0; groupKey < _countArray.length; ++groupKey) {
+        long count = _countArray[groupKey];
+        if (count > 0) {
+          double value = (_valueArray == null) ? 0 : _valueArray[groupKey];
+          _aggregateGroupedValue.put(decodeGroupKey(groupKey), toResult(value, count));
+        }
+      }
+    } else {
+      ObjectIterator<Long2LongMap.Entry> iterator = _countMap.long2LongEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2LongMap.Entry entry = iterator.next();
+        long groupKey = entry.getLongKey();
+        double value = (_valueMap == null) ? 0 : _valueMap.get(groupKey);
+        _aggregateGroupedValue.put(decodeGroupKey(groupKey), toResult(value, entry.getLongValue()));
+      }
+    }
+    return _aggregateGroupedValue;
+  }
+
+  private Serializable toResult(double value, long count) {
+    switch (_functionType) {
+      case COUNT:
+        return new MutableLongValue(count);
+      case AVG:
+        return ((AvgAggregationFunction) _aggregationFunction).getAvgPair(value, count);
+      default:
+        return value;
+    }
+  }
+
+  private String decodeGroupKey(long groupKey) {
+    for (int i = 0; i < _groupKeyStrides.length; ++i) {
+      int dictId = (int) (groupKey / _groupKeyStrides[i]);
+      groupKey -= dictId * _groupKeyStrides[i];
+      _stringArray[i] = _dictionaries[i].get(dictId).toString();
+    }
+
+    final StringBuilder builder = new StringBuilder();
+    for (int j = 0; j < (_stringArray.length - 1); j++) {
+      builder.append(_stringArray[j]).append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString());
+    }
+    builder.append(_stringArray[_stringArray.length - 1]);
+    return builder.toString();
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+
+
+/**
+ * Stands in for the inner segment operator of a segment whose results were found in the segment result cache.
+ * nextBlock() returns the cached IntermediateResultsBlock.
+ */
+public class MCachedResultsOperator extends BaseOperator {
+
+  private final IntermediateResultsBlock _cachedBlock;
+
+  public MCachedResultsOperator(IntermediateResultsBlock cachedBlock) {
+    _cachedBlock = cachedBlock;
+  }
+
+  @Override
+  public boolean open() {
+    return true;
+  }
+
+  @Override
+  public Block getNextBlock() {
+    return _cachedBlock;
+  }
+
+  @Override
+  public Block getNextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "MCachedResultsOperator";
+  }
+
+  @Override
+  public boolean close() {
+    return true;
+  }
+
+}
@@ -101,8 +101,7 @@ public class MSelectionOrderByOperator extends BaseOperator {
           _blocks[j++] = projectionBlock.getBlock(_dataSchema.getColumnName(i));
         }
 
-        _selectionOperatorService.iterateOnBlock(projectionBlock.getDocIdSetBlock().getBlockDocIdSet().iterator(),
-            _blocks);
+        _selectionOperatorService.iterateOnBlock(projectionBlock.getDocIdSetBlock(), _blocks);
         numDocsScanned += ((DocIdSetBlock) (projectionBlock.getDocIdSetBlock())).getSearchableLength();
       }
 
@@ -26,6 +26,7 @@ import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
 import com.linkedin.pinot.core.operator.query.MDefaultAggregationFunctionGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryAndTrieTreeOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryPrimitiveOperator;
 
 /**
  * AggregationFunctionGroupByPlanNode takes care of how to apply one aggregation
@@ -67,12 +68,26 @@ public class AggregationFunctionGroupByPlanNode implements PlanNode {
           _groupBy,
           new UReplicatedProjectionOperator((MProjectionOperator) _projectionPlanNode.run()),
           _hasDictionary);
+    case DictionaryPrimitive:
+      if (isPrimitiveSupported()) {
+        return new MAggregationFunctionGroupByWithDictionaryPrimitiveOperator(_aggregationInfo, _groupBy,
+            new UReplicatedProjectionOperator((MProjectionOperator) _projectionPlanNode.run()),
+            _hasDictionary);
+      }
+      // Aggregation functions without primitive results (distinct count, quantiles) keep the boxed path.
+      return new MAggregationFunctionGroupByWithDictionaryOperator(_aggregationInfo, _groupBy,
+          new UReplicatedProjectionOperator((MProjectionOperator) _projectionPlanNode.run()),
+          _hasDictionary);
     default:
       throw new UnsupportedOperationException(
           "Not Support AggregationGroupBy implmentation: " + _aggregationGroupByImplementationType);
     }
   }
 
+  private boolean isPrimitiveSupported() {
+    return _hasDictionary && MAggregationFunctionGroupByWithDictionaryPrimitiveOperator.isSupported(_aggregationInfo);
+  }
+
   @Override
   public void showTree(String prefix) {
     switch (_aggregationGroupByImplementationType) {
@@ -86,6 +101,13 @@ public class AggregationFunctionGroupByPlanNode implements PlanNode {
       LOGGER
           .debug(prefix + "Operator: MAggregationFunctionGroupByWithDictionaryAndTrieTreeOperator");
       break;
+    case DictionaryPrimitive:
+      if (isPrimitiveSupported()) {
+        LOGGER.debug(prefix + "Operator: MAggregationFunctionGroupByWithDictionaryPrimitiveOperator");
+      } else {
+        LOGGER.debug(prefix + "Operator: MAggregationFunctionGroupByWithDictionaryOperator");
+      }
+      break;
     default:
       throw new UnsupportedOperationException(
           "Not Support AggregationGroupBy implmentation: " + _aggregationGroupByImplementationType);
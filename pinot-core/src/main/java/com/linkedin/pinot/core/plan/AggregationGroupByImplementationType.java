@@ -18,5 +18,6 @@ package com.linkedin.pinot.core.plan;
 public enum AggregationGroupByImplementationType {
   NoDictionary,
   Dictionary,
-  DictionaryAndTrie
+  DictionaryAndTrie,
+  DictionaryPrimitive
 }
\ No newline at end of file
@@ -17,10 +17,11 @@ package com.linkedin.pinot.core.plan;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,10 @@ import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.operator.query.MCachedResultsOperator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache.SegmentKey;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
 
 
@@ -40,19 +45,42 @@ import com.linkedin.pinot.core.util.trace.TraceRunnable;
 public class CombinePlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombinePlanNode.class);
   private List<PlanNode> _planNodeList = new ArrayList<PlanNode>();
+  private final List<SegmentKey> _segmentKeys = new ArrayList<SegmentKey>();
+  private SegmentResultCache _segmentResultCache;
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private final long _timeOutMs;
+  private final int _maxParallelism;
 
   public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
+    this(brokerRequest, executorService, timeOutMs, MCombineOperator.DEFAULT_MAX_PARALLELISM);
+  }
+
+  public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs,
+      int maxParallelism) {
     _brokerRequest = brokerRequest;
     _executorService = executorService;
     _timeOutMs = timeOutMs;
-
+    _maxParallelism = maxParallelism;
   }
 
   public void addPlanNode(PlanNode planNode) {
+    addPlanNode(planNode, null);
+  }
+
+  /**
+   * @param segmentKey key of the segment results in the segment result cache, null if they are not cached
+   */
+  public void addPlanNode(PlanNode planNode, SegmentKey segmentKey) {
     _planNodeList.add(planNode);
+    _segmentKeys.add(segmentKey);
+  }
+
+  /**
+   * Segments whose results are found in the given cache skip building their operators.
+   */
+  public void setSegmentResultCache(SegmentResultCache segmentResultCache) {
+    _segmentResultCache = segmentResultCache;
   }
 
   public List<PlanNode> getPlanNodeList() {
@@ -63,49 +91,85 @@ public class CombinePlanNode implements PlanNode {
   public Operator run() {
     long start = System.currentTimeMillis();
     final List<Operator> retOperators = new ArrayList<Operator>(_planNodeList.size());
+    final List<SegmentKey> segmentKeys = new ArrayList<SegmentKey>(_planNodeList.size());
+    // Keys of the segments to cache the results of, cleared for the segments served from the cache
+    final SegmentKey[] keysToCache = _segmentKeys.toArray(new SegmentKey[_segmentKeys.size()]);
     if (_planNodeList.size() < 10) {
-      for (PlanNode planNode : _planNodeList) {
-        retOperators.add(planNode.run());
+      for (int i = 0; i < _planNodeList.size(); i++) {
+        retOperators.add(runPlanNode(i, keysToCache));
+        segmentKeys.add(keysToCache[i]);
       }
     } else {
       final CountDownLatch latch = new CountDownLatch(_planNodeList.size());
-      final ConcurrentLinkedQueue<Operator> queue = new ConcurrentLinkedQueue<Operator>();
-      for (final PlanNode planNode : _planNodeList) {
-        _executorService.execute(new TraceRunnable() {
+      // Operators keep the order of the plan nodes, so that they line up with their segment keys
+      final AtomicReferenceArray<Operator> operators = new AtomicReferenceArray<Operator>(_planNodeList.size());
+      for (int i = 0; i < _planNodeList.size(); i++) {
+        final int planNodeIndex = i;
+        TraceRunnable planNodeRunnable = new TraceRunnable() {
           @Override
           public void runJob() {
             try {
-              Operator operator = planNode.run();
-              queue.add(operator);
+              operators.set(planNodeIndex, runPlanNode(planNodeIndex, keysToCache));
             } catch (Exception e) {
               LOGGER.error("Getting exception when trying to run a planNode", e);
             } finally {
               latch.countDown();
             }
           }
-        });
+        };
+        try {
+          _executorService.execute(planNodeRunnable);
+        } catch (RejectedExecutionException e) {
+          // Planning is cheap, run it in the calling thread (which is already traced) rather than failing the query
+          planNodeRunnable.runJob();
+        }
       }
       try {
         latch.await(60, TimeUnit.SECONDS);
-        retOperators.addAll(queue);
+        for (int i = 0; i < operators.length(); i++) {
+          if (operators.get(i) != null) {
+            retOperators.add(operators.get(i));
+            segmentKeys.add(keysToCache[i]);
+          }
+        }
       } catch (InterruptedException e) {
         LOGGER.error("Interupted exception. Planning each segment took more than 60 seconds: ", e);
         throw new RuntimeException(QueryException.COMBINE_SEGMENT_PLAN_TIMEOUT_ERROR);
       }
     }
     MCombineOperator mCombineOperator =
-        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest);
+        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest, _maxParallelism);
+    if (_segmentResultCache != null) {
+      mCombineOperator.setSegmentResultCache(_segmentResultCache, segmentKeys);
+    }
     long end = System.currentTimeMillis();
     LOGGER.info("CombinePlanNode.run took: " + (end - start));
     return mCombineOperator;
   }
 
+  /**
+   * Returns the operator of a segment, serving its results from the segment result cache without running its plan
+   * node when they are cached, in which case its key is cleared so that they do not get cached again.
+   */
+  private Operator runPlanNode(int planNodeIndex, SegmentKey[] keysToCache) {
+    SegmentKey segmentKey = keysToCache[planNodeIndex];
+    if (segmentKey != null && _segmentResultCache != null) {
+      IntermediateResultsBlock cachedBlock = _segmentResultCache.get(segmentKey, _brokerRequest);
+      if (cachedBlock != null) {
+        keysToCache[planNodeIndex] = null;
+        return new MCachedResultsOperator(cachedBlock);
+      }
+    }
+    return _planNodeList.get(planNodeIndex).run();
+  }
+
   @Override
   public void showTree(String prefix) {
     LOGGER.debug(prefix + "Combine Plan Node :");
     LOGGER.debug(prefix + "Operator: MCombineOperator");
     LOGGER.debug(prefix + "Argument 0: BrokerRequest - " + _brokerRequest);
-    LOGGER.debug(prefix + "Argument 1: isParallel - " + ((_executorService == null) ? false : true));
+    LOGGER.debug(prefix + "Argument 1: isParallel - " + ((_executorService == null) ? false : true)
+        + ", maxParallelism - " + _maxParallelism);
     int i = 2;
     for (PlanNode planNode : _planNodeList) {
       LOGGER.debug(prefix + "Argument " + (i++) + ":");
@@ -154,36 +154,41 @@ public class FilterPlanNode implements PlanNode {
   }
 
   /**
-   * Re orders operators, puts Sorted -> Inverted and then Raw scan. TODO: With Inverted, we can
-   * further optimize based on cardinality
+   * Orders the children of an AND/OR by estimated cost: children answered from an index first, from the most to the
+   * least selective according to bitmap cardinalities and sorted doc id ranges, then the children that need a scan.
+   * Index based children of an AND are intersected as bitmaps, and the scan based ones are only evaluated on the
+   * surviving docs.
    * @param operators
    */
   private void reorder(List<Operator> operators) {
-
-    final Map<Operator, Integer> operatorPriorityMap = new HashMap<Operator, Integer>();
+    final int numDocs = _segment.getTotalDocs();
+    final Map<Operator, Integer> numMatchingDocsEstimates = new HashMap<Operator, Integer>();
+    final Map<Operator, Boolean> scanBased = new HashMap<Operator, Boolean>();
     for (Operator operator : operators) {
-      Integer priority = Integer.MAX_VALUE;
-      if (operator instanceof SortedInvertedIndexBasedFilterOperator) {
-        priority = 0;
-      } else if (operator instanceof AndOperator) {
-        priority = 1;
-      } else if (operator instanceof BitmapBasedFilterOperator) {
-        priority = 2;
-      } else if (operator instanceof ScanBasedFilterOperator) {
-        priority = 3;
-      } else if (operator instanceof OrOperator) {
-        priority = 4;
+      int estimate = numDocs;
+      boolean isScanBased = true;
+      if (operator instanceof BaseFilterOperator) {
+        BaseFilterOperator filterOperator = (BaseFilterOperator) operator;
+        estimate = filterOperator.getNumMatchingDocsEstimate(numDocs);
+        isScanBased = filterOperator.isScanBased();
       }
-      operatorPriorityMap.put(operator, priority);
+      numMatchingDocsEstimates.put(operator, estimate);
+      scanBased.put(operator, isScanBased);
     }
 
     Comparator<? super Operator> comparator = new Comparator<Operator>() {
       @Override
       public int compare(Operator o1, Operator o2) {
-        return Integer.compare(operatorPriorityMap.get(o1), operatorPriorityMap.get(o2));
+        int result = Boolean.compare(scanBased.get(o1), scanBased.get(o2));
+        if (result != 0) {
+          return result;
+        }
+        return Integer.compare(numMatchingDocsEstimates.get(o1), numMatchingDocsEstimates.get(o2));
       }
     };
     Collections.sort(operators, comparator);
+    LOGGER.debug("Reordered filter operators: {}, estimated number of matching docs: {}", operators,
+        numMatchingDocsEstimates);
   }
 
   @Override
@@ -20,6 +20,7 @@ import java.util.concurrent.ExecutorService;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.MCombineOperator;
 import com.linkedin.pinot.core.plan.AggregationGroupByImplementationType;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
@@ -66,8 +67,16 @@ public class InstancePlanMakerImplV0 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, timeOutMs,
+        MCombineOperator.DEFAULT_MAX_PARALLELISM);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxParallelism) {
     InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, maxParallelism);
     rootNode.setPlanNode(combinePlanNode);
     for (SegmentDataManager segmentDataManager :segmentDataManagers) {
       combinePlanNode.addPlanNode(makeInnerSegmentPlan(segmentDataManager.getSegment(), brokerRequest));
@@ -17,9 +17,12 @@ package com.linkedin.pinot.core.plan.maker;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryPrimitiveOperator;
 import com.linkedin.pinot.core.plan.AggregationGroupByImplementationType;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
@@ -30,7 +33,11 @@ import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
 import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -40,6 +47,18 @@ import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
  *
  */
 public class InstancePlanMakerImplV2 implements PlanMaker {
+  private final SegmentResultCache _segmentResultCache;
+
+  public InstancePlanMakerImplV2() {
+    this(null);
+  }
+
+  /**
+   * @param segmentResultCache cache of the per segment results of aggregation queries, null to disable caching
+   */
+  public InstancePlanMakerImplV2(SegmentResultCache segmentResultCache) {
+    _segmentResultCache = segmentResultCache;
+  }
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
@@ -54,8 +73,12 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         PlanNode aggregationGroupByPlanNode;
         if (indexSegment instanceof IndexSegmentImpl) {
           if (isGroupKeyFitForLong(indexSegment, brokerRequest)) {
+            AggregationGroupByImplementationType implementationType =
+                isPrimitiveGroupByApplicable(indexSegment, brokerRequest)
+                    ? AggregationGroupByImplementationType.DictionaryPrimitive
+                    : AggregationGroupByImplementationType.Dictionary;
             aggregationGroupByPlanNode =
-                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.Dictionary);
+                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, implementationType);
           } else {
             aggregationGroupByPlanNode =
                 new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.DictionaryAndTrie);
@@ -78,11 +101,30 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, timeOutMs,
+        MCombineOperator.DEFAULT_MAX_PARALLELISM);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxParallelism) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    final CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, maxParallelism);
     rootNode.setPlanNode(combinePlanNode);
-    for (final SegmentDataManager segmentDataManager : segmentDataManagers) {
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(segmentDataManager.getSegment(), brokerRequest));
+    final String queryKey = (_segmentResultCache == null) ? null : SegmentResultCache.getQueryKey(brokerRequest);
+    if (queryKey == null) {
+      for (final SegmentDataManager segmentDataManager : segmentDataManagers) {
+        combinePlanNode.addPlanNode(makeInnerSegmentPlan(segmentDataManager.getSegment(), brokerRequest));
+      }
+    } else {
+      combinePlanNode.setSegmentResultCache(_segmentResultCache);
+      final String tableName = brokerRequest.getQuerySource().getTableName();
+      for (final SegmentDataManager segmentDataManager : segmentDataManagers) {
+        final IndexSegment indexSegment = segmentDataManager.getSegment();
+        combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest),
+            SegmentResultCache.getSegmentKey(tableName, indexSegment, queryKey));
+      }
     }
     return new GlobalPlanImplV0(rootNode);
   }
@@ -98,4 +140,34 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     }
     return true;
   }
+
+  /**
+   * Primitive group by requires single value group by and aggregation columns, and a group key space
+   * (product of the group by dictionary sizes) that fits in a long.
+   */
+  private boolean isPrimitiveGroupByApplicable(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    final IndexSegmentImpl columnarSegment = (IndexSegmentImpl) indexSegment;
+    final SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) columnarSegment.getSegmentMetadata();
+    final List<String> groupByColumns = brokerRequest.getGroupBy().getColumns();
+    final Dictionary[] dictionaries = new Dictionary[groupByColumns.size()];
+    for (int i = 0; i < groupByColumns.size(); ++i) {
+      if (!segmentMetadata.getColumnMetadataFor(groupByColumns.get(i)).isSingleValue()) {
+        return false;
+      }
+      dictionaries[i] = columnarSegment.getDictionaryFor(groupByColumns.get(i));
+    }
+    for (AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
+      if (!MAggregationFunctionGroupByWithDictionaryPrimitiveOperator.isSupported(aggregationInfo)
+          || aggregationInfo.getAggregationType().equalsIgnoreCase("count")) {
+        continue;
+      }
+      for (String column : aggregationInfo.getAggregationParams().get("column").trim().split(",")) {
+        ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(column.trim());
+        if (columnMetadata == null || !columnMetadata.isSingleValue()) {
+          return false;
+        }
+      }
+    }
+    return MAggregationFunctionGroupByWithDictionaryPrimitiveOperator.getGroupKeySpace(dictionaries) > 0;
+  }
 }
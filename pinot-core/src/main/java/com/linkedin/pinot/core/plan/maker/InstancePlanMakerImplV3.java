@@ -48,6 +48,12 @@ public class InstancePlanMakerImplV3 implements PlanMaker {
     throw new UnsupportedOperationException("The query contains no aggregation or selection!");
   }
 
+  @Override
+  public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxParallelism) {
+    throw new UnsupportedOperationException("The query contains no aggregation or selection!");
+  }
+
   private boolean isGroupKeyFitForLong(IndexSegment indexSegment, BrokerRequest brokerRequest) {
     final IndexSegmentImpl columnarSegment = (IndexSegmentImpl) indexSegment;
     int totalBitSet = 0;
@@ -31,4 +31,11 @@ public interface PlanMaker {
 
   public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs);
+
+  /**
+   * Same as makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, timeOutMs), with an upper
+   * bound on the number of segments processed concurrently for this query.
+   */
+  public Plan makeInterSegmentPlan(List<SegmentDataManager> segmentDataManagers, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs, int maxParallelism);
 }
@@ -28,6 +28,10 @@ import org.slf4j.LoggerFactory;
 public class AggregationFunctionFactory {
   private static final Logger LOGGER = LoggerFactory.getLogger(AggregationFunctionFactory.class);
 
+  static {
+    AggregationResultSerDe.register();
+  }
+
   public static AggregationFunction get(AggregationInfo aggregationInfo, boolean hasDictionary) {
     try {
       String aggregationKey = aggregationInfo.getAggregationType();
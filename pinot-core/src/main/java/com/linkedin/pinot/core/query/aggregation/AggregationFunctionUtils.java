@@ -23,6 +23,7 @@ import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -58,4 +59,39 @@ public class AggregationFunctionUtils {
     }
     return hasDictionary;
   }
+
+  /**
+   * Moves the dictionary ids that are not Dictionary.NULL_VALUE_INDEX to the front of the array, keeping their order.
+   * Realtime segments store NULL_VALUE_INDEX for null values, which dictionaries cannot look up.
+   *
+   * @param dictionaryIds
+   * @param length
+   * @return number of non null dictionary ids
+   */
+  public static int removeNullDictionaryIds(int[] dictionaryIds, int length) {
+    return removeNullDictionaryIds(dictionaryIds, null, length);
+  }
+
+  /**
+   * Same as {@link #removeNullDictionaryIds(int[], int)}, also dropping the group keys at the positions of the null
+   * dictionary ids so that both arrays stay aligned.
+   *
+   * @param dictionaryIds
+   * @param groupKeys group key of each dictionary id, or null if there is none to compact
+   * @param length
+   * @return number of non null dictionary ids
+   */
+  public static int removeNullDictionaryIds(int[] dictionaryIds, long[] groupKeys, int length) {
+    int numNonNull = 0;
+    for (int i = 0; i < length; i++) {
+      if (dictionaryIds[i] != Dictionary.NULL_VALUE_INDEX) {
+        dictionaryIds[numNonNull] = dictionaryIds[i];
+        if (groupKeys != null) {
+          groupKeys[numNonNull] = groupKeys[i];
+        }
+        numNonNull++;
+      }
+    }
+    return numNonNull;
+  }
 }
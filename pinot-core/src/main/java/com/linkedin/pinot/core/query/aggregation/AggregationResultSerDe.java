@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.linkedin.pinot.common.utils.DataTableObjectSerDe;
+import com.linkedin.pinot.common.utils.primitive.MutableLongValue;
+import com.linkedin.pinot.common.utils.DataTableObjectSerDe.ObjectCodec;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+
+
+/**
+ * DataTable encodings of the intermediate results of the aggregation functions whose result type is not a plain
+ * number: counts, avg pairs, distinct count sets, HyperLogLogs, percentile value lists and quantile digests.
+ *
+ * Registered when AggregationFunctionFactory is loaded, which happens on both the server and the broker before any
+ * of these results is built or read.
+ */
+public class AggregationResultSerDe {
+  public static final int AVG_PAIR = DataTableObjectSerDe.FIRST_CUSTOM_TYPE;
+  public static final int INT_OPEN_HASH_SET = DataTableObjectSerDe.FIRST_CUSTOM_TYPE + 1;
+  public static final int HYPER_LOG_LOG = DataTableObjectSerDe.FIRST_CUSTOM_TYPE + 2;
+  public static final int DOUBLE_ARRAY_LIST = DataTableObjectSerDe.FIRST_CUSTOM_TYPE + 3;
+  public static final int QUANTILE_DIGEST = DataTableObjectSerDe.FIRST_CUSTOM_TYPE + 4;
+  public static final int MUTABLE_LONG_VALUE = DataTableObjectSerDe.FIRST_CUSTOM_TYPE + 5;
+
+  // AvgPair is an inner class, this instance only serves as the enclosing instance of decoded pairs.
+  private static final AvgAggregationFunction AVG_PAIR_FACTORY = new AvgAggregationFunction();
+
+  private AggregationResultSerDe() {
+  }
+
+  public static void register() {
+    DataTableObjectSerDe.register(AVG_PAIR, AvgPair.class, new ObjectCodec<AvgPair>() {
+      @Override
+      public void serialize(AvgPair value, DataOutputStream out) throws IOException {
+        out.writeDouble(value.getFirst());
+        out.writeLong(value.getSecond());
+      }
+
+      @Override
+      public AvgPair deserialize(ByteBuffer buffer) {
+        double sum = buffer.getDouble();
+        return AVG_PAIR_FACTORY.getAvgPair(sum, buffer.getLong());
+      }
+    });
+
+    DataTableObjectSerDe.register(INT_OPEN_HASH_SET, IntOpenHashSet.class, new ObjectCodec<IntOpenHashSet>() {
+      @Override
+      public void serialize(IntOpenHashSet value, DataOutputStream out) throws IOException {
+        out.writeInt(value.size());
+        IntIterator iterator = value.iterator();
+        while (iterator.hasNext()) {
+          out.writeInt(iterator.nextInt());
+        }
+      }
+
+      @Override
+      public IntOpenHashSet deserialize(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        IntOpenHashSet set = new IntOpenHashSet(size);
+        for (int i = 0; i < size; i++) {
+          set.add(buffer.getInt());
+        }
+        return set;
+      }
+    });
+
+    DataTableObjectSerDe.register(HYPER_LOG_LOG, HyperLogLog.class, new ObjectCodec<HyperLogLog>() {
+      @Override
+      public void serialize(HyperLogLog value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+
+      @Override
+      public HyperLogLog deserialize(ByteBuffer buffer) {
+        try {
+          return HyperLogLog.Builder.build(readBytes(buffer));
+        } catch (IOException e) {
+          throw new IllegalStateException("Caught exception while deserializing HyperLogLog", e);
+        }
+      }
+    });
+
+    DataTableObjectSerDe.register(DOUBLE_ARRAY_LIST, DoubleArrayList.class, new ObjectCodec<DoubleArrayList>() {
+      @Override
+      public void serialize(DoubleArrayList value, DataOutputStream out) throws IOException {
+        int size = value.size();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+          out.writeDouble(value.getDouble(i));
+        }
+      }
+
+      @Override
+      public DoubleArrayList deserialize(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        DoubleArrayList list = new DoubleArrayList(size);
+        for (int i = 0; i < size; i++) {
+          list.add(buffer.getDouble());
+        }
+        return list;
+      }
+    });
+
+    DataTableObjectSerDe.register(QUANTILE_DIGEST, QuantileDigest.class, new ObjectCodec<QuantileDigest>() {
+      @Override
+      public void serialize(QuantileDigest value, DataOutputStream out) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(value.estimatedSerializedSizeInBytes());
+        value.serialize(new DataOutputStream(baos));
+        out.writeInt(baos.size());
+        baos.writeTo(out);
+      }
+
+      @Override
+      public QuantileDigest deserialize(ByteBuffer buffer) {
+        return QuantileDigest.deserialize(new DataInputStream(new ByteArrayInputStream(readBytes(buffer))));
+      }
+    });
+
+    DataTableObjectSerDe.register(MUTABLE_LONG_VALUE, MutableLongValue.class, new ObjectCodec<MutableLongValue>() {
+      @Override
+      public void serialize(MutableLongValue value, DataOutputStream out) throws IOException {
+        out.writeLong(value.getValue());
+      }
+
+      @Override
+      public MutableLongValue deserialize(ByteBuffer buffer) {
+        return new MutableLongValue(buffer.getLong());
+      }
+    });
+  }
+
+  private static byte[] readBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
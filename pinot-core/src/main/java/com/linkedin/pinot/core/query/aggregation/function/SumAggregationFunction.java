@@ -26,10 +26,11 @@ import org.json.JSONObject;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.core.common.Block;
-import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
-import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.operator.dociditerators.DocIdBatchIterator;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionUtils;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import org.slf4j.Logger;
@@ -58,17 +59,19 @@ public class SumAggregationFunction implements AggregationFunction<Double, Doubl
   @Override
   public Double aggregate(Block docIdSetBlock, Block[] block) {
     double ret = 0;
-    int docId = 0;
     Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
-    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
-    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
-
-    while ((docId = docIdIterator.next()) != Constants.EOF) {
-      if (blockValIterator.skipTo(docId)) {
-        int dictionaryIndex = blockValIterator.nextIntVal();
-        if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
-          ret += dictionaryReader.getDoubleValue(dictionaryIndex);
-        }
+    BlockValSet blockValSet = block[0].getBlockValueSet();
+    DocIdBatchIterator docIdBatchIterator = new DocIdBatchIterator(docIdSetBlock);
+    int[] dictionaryIds = new int[docIdBatchIterator.getMaxBatchSize()];
+    double[] values = new double[docIdBatchIterator.getMaxBatchSize()];
+
+    int length;
+    while ((length = docIdBatchIterator.nextBatch()) > 0) {
+      blockValSet.readIntValues(docIdBatchIterator.getDocIds(), length, dictionaryIds);
+      length = AggregationFunctionUtils.removeNullDictionaryIds(dictionaryIds, length);
+      dictionaryReader.readDoubleValues(dictionaryIds, length, values);
+      for (int i = 0; i < length; i++) {
+        ret += values[i];
       }
     }
     return ret;
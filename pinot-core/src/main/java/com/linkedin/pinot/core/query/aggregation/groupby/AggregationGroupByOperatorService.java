@@ -78,27 +78,41 @@ public class AggregationGroupByOperatorService {
     }
     List<Map<String, Serializable>> reducedResult = null;
     for (DataTable toBeReducedGroupByResults : instanceResponseMap.values()) {
-      if (reducedResult == null) {
-        if (toBeReducedGroupByResults != null) {
-          reducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        }
-      } else {
-        List<Map<String, Serializable>> toBeReducedResult =
-            transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        for (int i = 0; i < reducedResult.size(); ++i) {
-          for (String key : toBeReducedResult.get(i).keySet()) {
-            if (reducedResult.get(i).containsKey(key)) {
-              reducedResult.get(i).put(
-                  key,
-                  _aggregationFunctionList.get(i).combineTwoValues(reducedResult.get(i).get(key),
-                      toBeReducedResult.get(i).get(key)));
-            } else {
-              reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
-            }
-          }
+      reducedResult = combineGroupByOperators(reducedResult, toBeReducedGroupByResults);
+    }
+    return finalizeGroupByOperators(reducedResult);
+  }
+
+  /**
+   * Combine the group by results of one more DataTable into the results combined so far, so that server responses
+   * can be reduced one by one as they are gathered. finalizeGroupByOperators must be called on the returned results
+   * once every DataTable has been combined.
+   */
+  public List<Map<String, Serializable>> combineGroupByOperators(List<Map<String, Serializable>> reducedResult,
+      DataTable toBeReducedGroupByResults) {
+    if (toBeReducedGroupByResults == null) {
+      return reducedResult;
+    }
+    if (reducedResult == null) {
+      return transformDataTableToGroupByResult(toBeReducedGroupByResults);
+    }
+    List<Map<String, Serializable>> toBeReducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
+    for (int i = 0; i < reducedResult.size(); ++i) {
+      for (String key : toBeReducedResult.get(i).keySet()) {
+        if (reducedResult.get(i).containsKey(key)) {
+          reducedResult.get(i).put(
+              key,
+              _aggregationFunctionList.get(i).combineTwoValues(reducedResult.get(i).get(key),
+                  toBeReducedResult.get(i).get(key)));
+        } else {
+          reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
         }
       }
     }
+    return reducedResult;
+  }
+
+  public List<Map<String, Serializable>> finalizeGroupByOperators(List<Map<String, Serializable>> reducedResult) {
     if (reducedResult != null) {
       for (int i = 0; i < reducedResult.size(); ++i) {
         Map<String, Serializable> functionLevelReducedResult = reducedResult.get(i);
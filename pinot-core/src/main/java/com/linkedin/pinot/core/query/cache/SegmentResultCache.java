@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.realtime.MutableIndexSegment;
+
+
+/**
+ * Memory bounded LRU cache of the per segment intermediate results of aggregation and aggregation group by queries.
+ *
+ * Entries are keyed on the table, the segment name, the segment CRC and a normalized form of the parts of the query
+ * that shape the per segment results, so identical queries on segments that did not change skip the segment scan.
+ * Only immutable segments are cached. The results are kept serialized: the combine step merges into the blocks it is
+ * handed, so each lookup returns freshly deserialized results, and the size of the cache is the size of its bytes.
+ */
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  private final long _maxSizeInBytes;
+
+  // Access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, CacheEntry> _entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+  private long _sizeInBytes = 0;
+  private long _hits = 0;
+  private long _misses = 0;
+
+  public SegmentResultCache(long maxSizeInBytes) {
+    if (maxSizeInBytes <= 0) {
+      throw new IllegalArgumentException("Max size in bytes must be positive, got: " + maxSizeInBytes);
+    }
+    _maxSizeInBytes = maxSizeInBytes;
+    LOGGER.info("Caching up to {} bytes of per segment results", maxSizeInBytes);
+  }
+
+  /**
+   * Returns the normalized form of the parts of a query that shape its per segment results, or null if the per
+   * segment results of the query are not cached, which is the case for selection queries.
+   */
+  public static String getQueryKey(BrokerRequest request) {
+    if (!request.isSetAggregationsInfo() || request.isSetSelections()) {
+      return null;
+    }
+    StringBuilder queryKey = new StringBuilder().append(request.getAggregationsInfo());
+    if (request.isSetGroupBy()) {
+      queryKey.append(" groupBy:").append(request.getGroupBy());
+    }
+    String filter = RequestUtils.getNormalizedFilterString(request);
+    if (filter != null) {
+      queryKey.append(" filter:").append(filter);
+    }
+    return queryKey.toString();
+  }
+
+  /**
+   * Returns the key of the results of a query on a segment, or null if they are not cached.
+   *
+   * @param queryKey The key returned by getQueryKey for the query
+   */
+  public static SegmentKey getSegmentKey(String tableName, IndexSegment indexSegment, String queryKey) {
+    if (queryKey == null || indexSegment instanceof MutableIndexSegment || indexSegment.getSegmentMetadata() == null
+        || indexSegment.getSegmentMetadata().getCrc() == null) {
+      return null;
+    }
+    return new SegmentKey(tableName, indexSegment.getSegmentName(), indexSegment.getSegmentMetadata().getCrc(),
+        queryKey);
+  }
+
+  /**
+   * Returns a new block holding the cached results under the given key, or null if there are none.
+   */
+  public IntermediateResultsBlock get(SegmentKey segmentKey, BrokerRequest request) {
+    CacheEntry entry;
+    synchronized (this) {
+      entry = _entries.get(segmentKey._key);
+      if (entry == null) {
+        _misses++;
+        return null;
+      }
+      _hits++;
+    }
+    try {
+      return entry.toBlock(request);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while reading cached results of segment {}", segmentKey._segmentName, e);
+      synchronized (this) {
+        remove(segmentKey._key);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Caches the results of a segment, unless they hold exceptions. Must be called before the block is merged.
+   */
+  public void put(SegmentKey segmentKey, IntermediateResultsBlock block) {
+    if (block.getExceptions() != null && !block.getExceptions().isEmpty()) {
+      return;
+    }
+    final CacheEntry entry;
+    try {
+      entry = new CacheEntry(segmentKey, block);
+    } catch (Exception e) {
+      LOGGER.debug("Not caching results of segment {} that can not be serialized", segmentKey._segmentName, e);
+      return;
+    }
+    if (entry.getSizeInBytes() > _maxSizeInBytes) {
+      return;
+    }
+    synchronized (this) {
+      remove(segmentKey._key);
+      _entries.put(segmentKey._key, entry);
+      _sizeInBytes += entry.getSizeInBytes();
+
+      Iterator<CacheEntry> iterator = _entries.values().iterator();
+      while (_sizeInBytes > _maxSizeInBytes) {
+        _sizeInBytes -= iterator.next().getSizeInBytes();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Drops the cached results of a segment, to be called when the segment is replaced or removed.
+   */
+  public synchronized void invalidateSegment(String tableName, String segmentName) {
+    Iterator<CacheEntry> iterator = _entries.values().iterator();
+    while (iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      if (entry._segmentKey._segmentName.equals(segmentName) && entry._segmentKey._tableName.equals(tableName)) {
+        _sizeInBytes -= entry.getSizeInBytes();
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return _entries.size();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  public synchronized long getHitRatePercent() {
+    final long lookups = _hits + _misses;
+    return lookups == 0 ? 0L : _hits * 100L / lookups;
+  }
+
+  private void remove(String segmentKey) {
+    CacheEntry removed = _entries.remove(segmentKey);
+    if (removed != null) {
+      _sizeInBytes -= removed.getSizeInBytes();
+    }
+  }
+
+  /**
+   * Identifies the results of a query on one version of a segment.
+   */
+  public static final class SegmentKey {
+    private final String _tableName;
+    private final String _segmentName;
+    private final String _key;
+
+    private SegmentKey(String tableName, String segmentName, String crc, String queryKey) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _key = tableName + '/' + segmentName + '/' + crc + '/' + queryKey;
+    }
+
+    @Override
+    public String toString() {
+      return _key;
+    }
+  }
+
+  private static class CacheEntry {
+    private final SegmentKey _segmentKey;
+    private final long _numDocsScanned;
+    private final long _totalDocs;
+    private final byte[] _serializedResults;
+
+    private CacheEntry(SegmentKey segmentKey, IntermediateResultsBlock block) throws Exception {
+      _segmentKey = segmentKey;
+      _numDocsScanned = block.getNumDocsScanned();
+      _totalDocs = block.getTotalDocs();
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(block.getAggregationResult());
+      out.writeObject(block.getAggregationGroupByOperatorResult());
+      out.close();
+      _serializedResults = bytes.toByteArray();
+    }
+
+    private long getSizeInBytes() {
+      return _serializedResults.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IntermediateResultsBlock toBlock(BrokerRequest request) throws Exception {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(_serializedResults));
+      List<Serializable> aggregationResults = (List<Serializable>) in.readObject();
+      List<Map<String, Serializable>> aggregationGroupByResults = (List<Map<String, Serializable>>) in.readObject();
+      in.close();
+
+      IntermediateResultsBlock block;
+      if (aggregationGroupByResults != null) {
+        block = new IntermediateResultsBlock(
+            AggregationFunctionFactory.getAggregationFunction(request.getAggregationsInfo()),
+            aggregationGroupByResults, true);
+      } else {
+        block = new IntermediateResultsBlock(
+            AggregationFunctionFactory.getAggregationFunction(request.getAggregationsInfo()), aggregationResults);
+      }
+      block.setNumDocsScanned(_numDocsScanned);
+      block.setTotalDocs(_totalDocs);
+      return block;
+    }
+  }
+}
@@ -32,6 +32,17 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Max number of segments combined concurrently for one query, optionally overridden per table with
+  // combine.maxParallelism.<tableName>
+  public static final String COMBINE_MAX_PARALLELISM = "combine.maxParallelism";
+  // Max size of the cache of per segment aggregation results, 0 (the default) disables the cache
+  public static final String SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES = "segmentResultCache.maxSizeInBytes";
+  // Number of threads of the query thread pool shared by all tables, 0 (the default) to give each table its own pool
+  public static final String SHARED_EXECUTOR_NUM_THREADS = "sharedExecutor.numThreads";
+  // Max number of tasks queued in the shared pool before new ones are rejected, 0 (the default) for no limit
+  public static final String SHARED_EXECUTOR_MAX_QUEUED_TASKS = "sharedExecutor.maxQueuedTasks";
+  // Prefix key of the per table weights of the shared pool, sharedExecutor.tableWeight.<tableName> (default 1)
+  public static final String SHARED_EXECUTOR_TABLE_WEIGHT = "sharedExecutor.tableWeight";
 
   private static final String[] REQUIRED_KEYS = {};
 
@@ -71,4 +82,32 @@ public class QueryExecutorConfig {
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  public long getSegmentResultCacheMaxSizeInBytes() {
+    return _queryExecutorConfig.getLong(SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES, 0L);
+  }
+
+  public int getSharedExecutorNumThreads() {
+    return _queryExecutorConfig.getInt(SHARED_EXECUTOR_NUM_THREADS, 0);
+  }
+
+  public int getSharedExecutorMaxQueuedTasks() {
+    return _queryExecutorConfig.getInt(SHARED_EXECUTOR_MAX_QUEUED_TASKS, 0);
+  }
+
+  public int getSharedExecutorTableWeight(String tableName) {
+    return _queryExecutorConfig.getInt(SHARED_EXECUTOR_TABLE_WEIGHT + "." + tableName, 1);
+  }
+
+  /**
+   * Returns the max number of segments combined concurrently for one query on the given table, or
+   * defaultValue if neither a table nor a server wide value is configured.
+   */
+  public int getCombineMaxParallelism(String tableName, int defaultValue) {
+    int serverMaxParallelism = _queryExecutorConfig.getInt(COMBINE_MAX_PARALLELISM, defaultValue);
+    if (tableName == null) {
+      return serverMaxParallelism;
+    }
+    return _queryExecutorConfig.getInt(COMBINE_MAX_PARALLELISM + "." + tableName, serverMaxParallelism);
+  }
 }
@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -37,10 +39,13 @@ import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
+import com.linkedin.pinot.core.data.manager.offline.TableDataManagerProvider;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.MCombineOperator;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
@@ -64,6 +69,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   private boolean _printQueryPlan = false;
   private final Map<String, Long> _resourceTimeOutMsMap = new ConcurrentHashMap<String, Long>();
   private ServerMetrics _serverMetrics;
+  private SharedQueryExecutor _sharedQueryExecutor = null;
 
   public ServerQueryExecutorV1Impl() {
   }
@@ -87,7 +93,10 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _segmentPrunerService = new SegmentPrunerServiceImpl(_queryExecutorConfig.getPrunerConfig());
     }
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2();
+    _planMaker = new InstancePlanMakerImplV2(buildSegmentResultCache());
+    if (_sharedQueryExecutor == null) {
+      _sharedQueryExecutor = buildSharedQueryExecutor();
+    }
     LOGGER.info("Trying to build QueryExecutorTimer");
     if (_queryExecutorTimer == null) {
       _queryExecutorTimer =
@@ -96,6 +105,52 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     }
   }
 
+  private SharedQueryExecutor buildSharedQueryExecutor() {
+    int numThreads = _queryExecutorConfig.getSharedExecutorNumThreads();
+    if (numThreads <= 0) {
+      LOGGER.info("Shared query executor is disabled, using per table executors");
+      return null;
+    }
+    return new SharedQueryExecutor(numThreads, _queryExecutorConfig.getSharedExecutorMaxQueuedTasks(),
+        new SharedQueryExecutor.TableWeightProvider() {
+          @Override
+          public int getWeight(String tableName) {
+            return _queryExecutorConfig.getSharedExecutorTableWeight(tableName);
+          }
+        }, _serverMetrics);
+  }
+
+  private SegmentResultCache buildSegmentResultCache() {
+    final long maxSizeInBytes = _queryExecutorConfig.getSegmentResultCacheMaxSizeInBytes();
+    if (maxSizeInBytes <= 0) {
+      TableDataManagerProvider.setSegmentResultCache(null);
+      return null;
+    }
+    final SegmentResultCache segmentResultCache = new SegmentResultCache(maxSizeInBytes);
+    if (_serverMetrics != null) {
+      _serverMetrics.addCallbackGauge("segmentResultCache.hitRatePercent", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return segmentResultCache.getHitRatePercent();
+        }
+      });
+      _serverMetrics.addCallbackGauge("segmentResultCache.entries", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) segmentResultCache.size();
+        }
+      });
+      _serverMetrics.addCallbackGauge("segmentResultCache.sizeInBytes", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return segmentResultCache.getSizeInBytes();
+        }
+      });
+    }
+    TableDataManagerProvider.setSegmentResultCache(segmentResultCache);
+    return segmentResultCache;
+  }
+
   @Override
   public DataTable processQuery(final InstanceRequest instanceRequest) {
     DataTable instanceResponse;
@@ -114,12 +169,13 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
         return null;
       }
       long startPlanTime = System.nanoTime();
+      final String tableName = brokerRequest.getQuerySource().getTableName();
       final Plan globalQueryPlan = _planMaker.makeInterSegmentPlan(
           queryableSegmentDataManagerList,
           brokerRequest,
-          _instanceDataManager.getTableDataManager(brokerRequest.getQuerySource().getTableName())
-              .getExecutorService(),
-          getResourceTimeOut(instanceRequest.getQuery()));
+          getExecutorService(tableName),
+          getResourceTimeOut(instanceRequest.getQuery()),
+          getMaxParallelism(tableName, queryableSegmentDataManagerList.size()));
       long planTime = System.nanoTime() - startPlanTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.BUILD_QUERY_PLAN, planTime);
 
@@ -191,10 +247,21 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     return listOfQueryableSegments;
   }
 
+  private ExecutorService getExecutorService(String tableName) {
+    if (_sharedQueryExecutor != null) {
+      return _sharedQueryExecutor.getTableExecutorService(tableName);
+    }
+    return _instanceDataManager.getTableDataManager(tableName).getExecutorService();
+  }
+
   @Override
   public synchronized void shutDown() {
     if (isStarted()) {
       _isStarted = false;
+      if (_sharedQueryExecutor != null) {
+        _sharedQueryExecutor.shutDown();
+        _sharedQueryExecutor = null;
+      }
       LOGGER.info("QueryExecutor is shutDown!");
     } else {
       LOGGER.warn("QueryExecutor is already shutDown, won't do anything!");
@@ -217,6 +284,23 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     _resourceTimeOutMsMap.put(resource, timeOutMs);
   }
 
+  @Override
+  public void removeTable(String tableName) {
+    SharedQueryExecutor sharedQueryExecutor = _sharedQueryExecutor;
+    if (sharedQueryExecutor != null) {
+      sharedQueryExecutor.removeTable(tableName);
+    }
+  }
+
+  /**
+   * Per query parallelism: the configured max parallelism of the table, but no more than one task per segment.
+   */
+  private int getMaxParallelism(String tableName, int numSegments) {
+    int maxParallelism =
+        _queryExecutorConfig.getCombineMaxParallelism(tableName, MCombineOperator.DEFAULT_MAX_PARALLELISM);
+    return Math.max(1, Math.min(maxParallelism, numSegments));
+  }
+
   private long getResourceTimeOut(BrokerRequest brokerRequest) {
     try {
       String resourceName = brokerRequest.getQuerySource().getTableName();
@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+
+
+/**
+ * Server wide pool of query worker threads, shared by all tables.
+ *
+ * Each table gets an ExecutorService view of the pool, whose tasks wait in a per table FIFO queue. Free workers take
+ * the next task from these queues in round robin order, skipping the tables that already run as many tasks as their
+ * quota allows. The quota of a table is its share of the workers by weight among the tables that currently have
+ * tasks, so a table alone on the server can use all workers, and busy tables split them by weight. Optionally, the
+ * total number of queued tasks is bounded, and tasks submitted beyond the bound are rejected.
+ */
+public class SharedQueryExecutor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedQueryExecutor.class);
+
+  /**
+   * Gives the weight of a table, the default weight being 1.
+   */
+  public interface TableWeightProvider {
+    int getWeight(String tableName);
+  }
+
+  private final int _numThreads;
+  private final int _maxQueuedTasks;
+  private final TableWeightProvider _tableWeightProvider;
+  private final ServerMetrics _serverMetrics;
+  private final ExecutorService _workers;
+
+  // All the fields below are guarded by this
+  private final Map<String, TableExecutorService> _tableExecutorServices = new HashMap<String, TableExecutorService>();
+  // Tables with queued tasks, in the order they get their next turn
+  private final ArrayDeque<TableExecutorService> _tablesWithQueuedTasks = new ArrayDeque<TableExecutorService>();
+  private int _numActiveTasks = 0;
+  private int _numQueuedTasks = 0;
+  // Sum of the weights of the tables with active or queued tasks
+  private int _activeWeight = 0;
+  private boolean _isShutDown = false;
+
+  /**
+   * @param numThreads Number of worker threads
+   * @param maxQueuedTasks Max number of tasks waiting for a worker, 0 or less for no limit
+   * @param serverMetrics Metrics to expose the per table task counts to, null for none
+   */
+  public SharedQueryExecutor(int numThreads, int maxQueuedTasks, TableWeightProvider tableWeightProvider,
+      ServerMetrics serverMetrics) {
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be positive, got: " + numThreads);
+    }
+    _numThreads = numThreads;
+    _maxQueuedTasks = maxQueuedTasks;
+    _tableWeightProvider = tableWeightProvider;
+    _serverMetrics = serverMetrics;
+    _workers = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("shared-query-executor"));
+    LOGGER.info("Started shared query executor with {} threads and {} max queued tasks", numThreads,
+        (maxQueuedTasks > 0) ? maxQueuedTasks : "no");
+  }
+
+  /**
+   * Returns the view of the pool that runs the tasks of the given table. Shutting the view down only stops it from
+   * taking new tasks.
+   */
+  public synchronized ExecutorService getTableExecutorService(String tableName) {
+    TableExecutorService tableExecutorService = _tableExecutorServices.get(tableName);
+    if (tableExecutorService == null) {
+      tableExecutorService = new TableExecutorService(tableName, Math.max(1, _tableWeightProvider.getWeight(tableName)));
+      _tableExecutorServices.put(tableName, tableExecutorService);
+      registerTableGauges(tableExecutorService);
+    } else {
+      // The table came back before its last tasks were done
+      tableExecutorService._isRemoved = false;
+    }
+    return tableExecutorService;
+  }
+
+  /**
+   * Forgets the given table once it is no longer served, removing its view and its gauges.
+   *
+   * Queries of the table may still be running when its last segment is dropped, and they keep submitting tasks to the
+   * view they already hold. So the view is not shut down, and while it has active or queued tasks it is only marked as
+   * removed, and forgotten once its last task is done. A segment of the table may also be added concurrently, after
+   * the caller found none left: {@link #getTableExecutorService(String)} then keeps the marked view, or creates a new
+   * one if it was already forgotten, so queries of the table are never rejected because of this call.
+   */
+  public synchronized void removeTable(String tableName) {
+    TableExecutorService tableExecutorService = _tableExecutorServices.get(tableName);
+    if (tableExecutorService == null) {
+      return;
+    }
+    if (tableExecutorService.isIdle()) {
+      forgetTable(tableExecutorService);
+    } else {
+      tableExecutorService._isRemoved = true;
+    }
+  }
+
+  private void forgetTable(TableExecutorService tableExecutorService) {
+    String tableName = tableExecutorService._tableName;
+    _tableExecutorServices.remove(tableName);
+    if (_serverMetrics != null) {
+      _serverMetrics.removeGauge(getActiveTasksGaugeName(tableName));
+      _serverMetrics.removeGauge(getQueuedTasksGaugeName(tableName));
+    }
+    LOGGER.info("Removed table {} from the shared query executor", tableName);
+  }
+
+  public synchronized int getNumActiveTasks(String tableName) {
+    TableExecutorService tableExecutorService = _tableExecutorServices.get(tableName);
+    return tableExecutorService == null ? 0 : tableExecutorService._numActiveTasks;
+  }
+
+  public synchronized int getNumQueuedTasks(String tableName) {
+    TableExecutorService tableExecutorService = _tableExecutorServices.get(tableName);
+    return tableExecutorService == null ? 0 : tableExecutorService._queuedTasks.size();
+  }
+
+  /**
+   * Stops the workers, tasks still queued are dropped.
+   */
+  public void shutDown() {
+    synchronized (this) {
+      _isShutDown = true;
+      for (TableExecutorService tableExecutorService : _tableExecutorServices.values()) {
+        tableExecutorService._queuedTasks.clear();
+      }
+      _tablesWithQueuedTasks.clear();
+      _numQueuedTasks = 0;
+      notifyAll();
+    }
+    _workers.shutdownNow();
+  }
+
+  private synchronized void enqueue(TableExecutorService tableExecutorService, Runnable task) {
+    if (_isShutDown || tableExecutorService._isShutDown) {
+      throw new RejectedExecutionException("Query executor of table " + tableExecutorService._tableName
+          + " is shut down");
+    }
+    if (_maxQueuedTasks > 0 && _numQueuedTasks >= _maxQueuedTasks) {
+      if (_serverMetrics != null) {
+        _serverMetrics.addTableMeteredValue(tableExecutorService._tableName,
+            ServerMeter.QUERY_EXECUTOR_REJECTED_TASKS, 1L);
+      }
+      throw new RejectedExecutionException("Too many queued query tasks on server, rejecting task of table "
+          + tableExecutorService._tableName);
+    }
+    if (tableExecutorService.isIdle()) {
+      _activeWeight += tableExecutorService._weight;
+    }
+    if (tableExecutorService._queuedTasks.isEmpty()) {
+      _tablesWithQueuedTasks.addLast(tableExecutorService);
+    }
+    tableExecutorService._queuedTasks.addLast(task);
+    _numQueuedTasks++;
+    dispatch();
+  }
+
+  /**
+   * Hands queued tasks to free workers, for as long as there are free workers and tables under their quota.
+   */
+  private void dispatch() {
+    int numTablesSkipped = 0;
+    while (_numActiveTasks < _numThreads && numTablesSkipped < _tablesWithQueuedTasks.size()) {
+      final TableExecutorService tableExecutorService = _tablesWithQueuedTasks.pollFirst();
+      if (tableExecutorService._numActiveTasks >= getQuota(tableExecutorService)) {
+        _tablesWithQueuedTasks.addLast(tableExecutorService);
+        numTablesSkipped++;
+        continue;
+      }
+      numTablesSkipped = 0;
+      final Runnable task = tableExecutorService._queuedTasks.pollFirst();
+      if (!tableExecutorService._queuedTasks.isEmpty()) {
+        _tablesWithQueuedTasks.addLast(tableExecutorService);
+      }
+      _numQueuedTasks--;
+      _numActiveTasks++;
+      tableExecutorService._numActiveTasks++;
+      _workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            task.run();
+          } finally {
+            onTaskDone(tableExecutorService);
+          }
+        }
+      });
+    }
+  }
+
+  private synchronized void onTaskDone(TableExecutorService tableExecutorService) {
+    _numActiveTasks--;
+    tableExecutorService._numActiveTasks--;
+    if (tableExecutorService.isIdle()) {
+      _activeWeight -= tableExecutorService._weight;
+      if (tableExecutorService._isRemoved && _tableExecutorServices.get(tableExecutorService._tableName)
+          == tableExecutorService) {
+        forgetTable(tableExecutorService);
+      }
+      notifyAll();
+    }
+    if (!_isShutDown) {
+      dispatch();
+    }
+  }
+
+  /**
+   * Max number of tasks the given table may run at once: its share of the workers by weight among the tables with
+   * active or queued tasks, rounded up.
+   */
+  private int getQuota(TableExecutorService tableExecutorService) {
+    return Math.max(1, (_numThreads * tableExecutorService._weight + _activeWeight - 1) / _activeWeight);
+  }
+
+  private void registerTableGauges(final TableExecutorService tableExecutorService) {
+    if (_serverMetrics == null) {
+      return;
+    }
+    final String tableName = tableExecutorService._tableName;
+    _serverMetrics.addCallbackGauge(getActiveTasksGaugeName(tableName), new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return (long) getNumActiveTasks(tableName);
+      }
+    });
+    _serverMetrics.addCallbackGauge(getQueuedTasksGaugeName(tableName), new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return (long) getNumQueuedTasks(tableName);
+      }
+    });
+  }
+
+  private static String getActiveTasksGaugeName(String tableName) {
+    return "queryExecutor." + tableName + ".activeTasks";
+  }
+
+  private static String getQueuedTasksGaugeName(String tableName) {
+    return "queryExecutor." + tableName + ".queuedTasks";
+  }
+
+  /**
+   * The ExecutorService view of the pool for one table.
+   */
+  private class TableExecutorService extends AbstractExecutorService {
+    private final String _tableName;
+    private final int _weight;
+    // Guarded by the enclosing SharedQueryExecutor
+    private final ArrayDeque<Runnable> _queuedTasks = new ArrayDeque<Runnable>();
+    private int _numActiveTasks = 0;
+    // Set by removeTable() while tasks of the table are still running
+    private boolean _isRemoved = false;
+    private volatile boolean _isShutDown = false;
+
+    private TableExecutorService(String tableName, int weight) {
+      _tableName = tableName;
+      _weight = weight;
+    }
+
+    private boolean isIdle() {
+      return _numActiveTasks == 0 && _queuedTasks.isEmpty();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      enqueue(this, command);
+    }
+
+    @Override
+    public void shutdown() {
+      _isShutDown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      _isShutDown = true;
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return _isShutDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      synchronized (SharedQueryExecutor.this) {
+        return _isShutDown && isIdle();
+      }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (SharedQueryExecutor.this) {
+        while (!isTerminated()) {
+          long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remainingMs <= 0) {
+            return false;
+          }
+          SharedQueryExecutor.this.wait(remainingMs);
+        }
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.common.utils.request.ValueRangePruningUtils;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Pruner will prune segment if the filter can not match any value between the min and max value
+ * recorded for the filtered columns in the segment metadata.
+ *
+ * EQUALITY, IN and RANGE predicates are evaluated, see ValueRangePruningUtils. Columns without
+ * min/max (e.g. segments created before these were recorded) and realtime segments are never pruned.
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    SegmentMetadata segmentMetadata = segment.getSegmentMetadata();
+    if (!(segmentMetadata instanceof SegmentMetadataImpl) || brokerRequest.getFilterQuery() == null) {
+      return false;
+    }
+    return ValueRangePruningUtils.isFilterOutOfRange(RequestUtils.generateFilterQueryTree(brokerRequest),
+        ((SegmentMetadataImpl) segmentMetadata).getColumnValueRanges());
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
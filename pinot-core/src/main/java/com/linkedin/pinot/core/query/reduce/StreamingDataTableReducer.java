@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.query.StreamingReducer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+
+
+/**
+ * StreamingDataTableReducer keeps the running result of one broker request and merges each DataTable into it as soon
+ * as it is handed over: the top rows for selection queries, one combined value per function for aggregation queries
+ * and the combined groups for aggregation group by queries. Nothing of a DataTable is referenced once it is reduced,
+ * so the broker can release the response buffers while other servers are still answering.
+ *
+ *
+ */
+public class StreamingDataTableReducer implements StreamingReducer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingDataTableReducer.class);
+
+  private static String NUM_DOCS_SCANNED = "numDocsScanned";
+  private static String TIME_USED_MS = "timeUsedMs";
+  private static String TOTAL_DOCS = "totalDocs";
+
+  private final BrokerRequest _brokerRequest;
+  private final BrokerResponse _brokerResponse = new BrokerResponse();
+  private int _numResponses = 0;
+
+  // Running state of selection queries, created on the first DataTable carrying data.
+  private DataSchema _selectionDataSchema;
+  private SelectionOperatorService _selectionService;
+  private Collection<Serializable[]> _selectionRows;
+
+  // Running state of aggregation queries.
+  private List<AggregationFunction> _aggregationFunctions;
+  private Serializable[] _aggregationResults;
+
+  // Running state of aggregation group by queries.
+  private AggregationGroupByOperatorService _aggregationGroupByOperatorService;
+  private List<Map<String, Serializable>> _groupByResults;
+
+  private Exception _reduceException;
+
+  public StreamingDataTableReducer(BrokerRequest brokerRequest) {
+    _brokerRequest = brokerRequest;
+  }
+
+  @Override
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+    _numResponses++;
+    if (instanceResponse == null) {
+      return;
+    }
+
+    // reduceOnTraceInfo (put it here so that trace info can show up even exception happens)
+    if (_brokerRequest.isEnableTrace() && instanceResponse.getMetadata() != null) {
+      _brokerResponse.getTraceInfo().put(serverInstance.getHostname(),
+          instanceResponse.getMetadata().get("traceInfo"));
+    }
+
+    if (instanceResponse.getDataSchema() == null && instanceResponse.getMetadata() != null) {
+      for (String key : instanceResponse.getMetadata().keySet()) {
+        if (key.startsWith("Exception")) {
+          ProcessingException processingException = new ProcessingException();
+          processingException.setErrorCode(Integer.parseInt(key.substring(9)));
+          processingException.setMessage(instanceResponse.getMetadata().get(key));
+          _brokerResponse.addToExceptions(processingException);
+        }
+      }
+      return;
+    }
+
+    // reduceOnNumDocsScanned
+    _brokerResponse.setNumDocsScanned(_brokerResponse.getNumDocsScanned()
+        + Long.parseLong(instanceResponse.getMetadata().get(NUM_DOCS_SCANNED)));
+    // reduceOnTotalDocs
+    _brokerResponse.setTotalDocs(_brokerResponse.getTotalDocs()
+        + Long.parseLong(instanceResponse.getMetadata().get(TOTAL_DOCS)));
+    if (Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)) > _brokerResponse.getTimeUsedMs()) {
+      _brokerResponse.setTimeUsedMs(Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)));
+    }
+
+    if (_reduceException != null) {
+      return;
+    }
+    try {
+      if (isSelectionQuery()) {
+        reduceOnSelectionResults(instanceResponse);
+      } else if (_brokerRequest.isSetAggregationsInfo()) {
+        if (!_brokerRequest.isSetGroupBy()) {
+          reduceOnAggregationResults(instanceResponse);
+        } else {
+          reduceOnAggregationGroupByOperatorResults(instanceResponse);
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while reducing results", e);
+      _reduceException = e;
+    }
+  }
+
+  @Override
+  public BrokerResponse getBrokerResponse() {
+    if (_numResponses == 0) {
+      return BrokerResponse.EMPTY_RESULT;
+    }
+    if (_reduceException != null) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR,
+          _reduceException));
+      return _brokerResponse;
+    }
+    try {
+      if (isSelectionQuery()) {
+        _brokerResponse.setSelectionResults(renderSelectionResults());
+        return _brokerResponse;
+      }
+      if (_brokerRequest.isSetAggregationsInfo()) {
+        if (!_brokerRequest.isSetGroupBy()) {
+          _brokerResponse.setAggregationResults(renderAggregationResults());
+        } else {
+          _brokerResponse.setAggregationResults(renderAggregationGroupByOperatorResults());
+        }
+        return _brokerResponse;
+      }
+    } catch (Exception e) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR, e));
+      return _brokerResponse;
+    }
+    throw new UnsupportedOperationException(
+        "Should not reach here, the query has no attributes of selection or aggregation!");
+  }
+
+  private boolean isSelectionQuery() {
+    return _brokerRequest.isSetSelections() && (_brokerRequest.getSelections().getSelectionColumns() != null);
+  }
+
+  private void reduceOnSelectionResults(DataTable instanceResponse) {
+    if (_selectionDataSchema == null) {
+      _selectionDataSchema = instanceResponse.getDataSchema();
+      if (_brokerRequest.getSelections().isSetSelectionSortSequence()) {
+        _selectionService = new SelectionOperatorService(_brokerRequest.getSelections(), _selectionDataSchema);
+      } else {
+        _selectionRows = new ArrayList<Serializable[]>(_brokerRequest.getSelections().getSize());
+      }
+    }
+    if (_selectionService != null) {
+      _selectionService.reduce(instanceResponse);
+    } else if (_selectionRows.size() != _brokerRequest.getSelections().getSize()) {
+      SelectionOperatorUtils.reduce(_selectionRows, instanceResponse, _brokerRequest.getSelections().getSize());
+    }
+  }
+
+  private JSONObject renderSelectionResults() throws Exception {
+    if (_selectionDataSchema == null) {
+      return null;
+    }
+    if (_selectionService != null) {
+      return _selectionService.render(_selectionService.getRowEventsSet());
+    }
+    return SelectionOperatorUtils.render(_selectionRows, _brokerRequest.getSelections().getSelectionColumns(),
+        _selectionDataSchema);
+  }
+
+  private void reduceOnAggregationResults(DataTable instanceResponse) {
+    if (_aggregationFunctions == null) {
+      _aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      _aggregationResults = new Serializable[_aggregationFunctions.size()];
+    }
+    DataSchema aggregationResultSchema = instanceResponse.getDataSchema();
+    for (int rowId = 0; rowId < instanceResponse.getNumberOfRows(); ++rowId) {
+      for (int colId = 0; colId < _brokerRequest.getAggregationsInfoSize(); ++colId) {
+        Serializable value;
+        switch (aggregationResultSchema.getColumnType(colId)) {
+          case INT:
+            value = instanceResponse.getInt(rowId, colId);
+            break;
+          case SHORT:
+            value = instanceResponse.getShort(rowId, colId);
+            break;
+          case FLOAT:
+            value = instanceResponse.getFloat(rowId, colId);
+            break;
+          case LONG:
+            value = instanceResponse.getLong(rowId, colId);
+            break;
+          case DOUBLE:
+            value = instanceResponse.getDouble(rowId, colId);
+            break;
+          case STRING:
+            value = instanceResponse.getString(rowId, colId);
+            break;
+          default:
+            value = instanceResponse.getObject(rowId, colId);
+            break;
+        }
+        _aggregationResults[colId] =
+            _aggregationFunctions.get(colId).combineTwoValues(_aggregationResults[colId], value);
+      }
+    }
+  }
+
+  private List<JSONObject> renderAggregationResults() throws Exception {
+    if (_aggregationFunctions == null) {
+      _aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      _aggregationResults = new Serializable[_aggregationFunctions.size()];
+    }
+    List<JSONObject> retAggregationResults = new ArrayList<JSONObject>();
+    for (int i = 0; i < _aggregationFunctions.size(); ++i) {
+      List<Serializable> combinedResults;
+      if (_aggregationResults[i] == null) {
+        combinedResults = Collections.emptyList();
+      } else {
+        combinedResults = Arrays.asList(_aggregationResults[i]);
+      }
+      Serializable retResult = _aggregationFunctions.get(i).reduce(combinedResults);
+      retAggregationResults.add(_aggregationFunctions.get(i).render(retResult)
+          .put("function", _aggregationFunctions.get(i).getFunctionName()));
+    }
+    return retAggregationResults;
+  }
+
+  private void reduceOnAggregationGroupByOperatorResults(DataTable instanceResponse) {
+    if (_aggregationGroupByOperatorService == null) {
+      _aggregationGroupByOperatorService =
+          new AggregationGroupByOperatorService(_brokerRequest.getAggregationsInfo(), _brokerRequest.getGroupBy());
+    }
+    _groupByResults = _aggregationGroupByOperatorService.combineGroupByOperators(_groupByResults, instanceResponse);
+  }
+
+  private List<JSONObject> renderAggregationGroupByOperatorResults() {
+    if (_aggregationGroupByOperatorService == null) {
+      _aggregationGroupByOperatorService =
+          new AggregationGroupByOperatorService(_brokerRequest.getAggregationsInfo(), _brokerRequest.getGroupBy());
+    }
+    return _aggregationGroupByOperatorService.renderGroupByOperators(_aggregationGroupByOperatorService
+        .finalizeGroupByOperators(_groupByResults));
+  }
+}
@@ -47,6 +47,7 @@ import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockMultiValIterator;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
@@ -56,6 +57,7 @@ import com.linkedin.pinot.core.operator.blocks.RealtimeMultiValueBlock;
 import com.linkedin.pinot.core.operator.blocks.RealtimeSingleValueBlock;
 import com.linkedin.pinot.core.operator.blocks.SortedSingleValueBlock;
 import com.linkedin.pinot.core.operator.blocks.UnSortedSingleValueBlock;
+import com.linkedin.pinot.core.operator.dociditerators.DocIdBatchIterator;
 import com.linkedin.pinot.core.query.selection.comparator.CompositeDocIdValComparator;
 import com.linkedin.pinot.core.realtime.impl.dictionary.DoubleMutableDictionary;
 import com.linkedin.pinot.core.realtime.impl.dictionary.FloatMutableDictionary;
@@ -208,30 +210,37 @@ public class SelectionOperatorService {
 
   public Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults) {
     _rowEventsSet.clear();
+    for (final DataTable dt : selectionResults.values()) {
+      reduce(dt);
+    }
+    return _rowEventsSet;
+  }
+
+  /**
+   * Merge the rows of one more DataTable into the rows reduced so far, so that server responses can be reduced one by
+   * one as they are gathered.
+   */
+  public Collection<Serializable[]> reduce(DataTable dt) {
     if (_doOrdering) {
       PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) _rowEventsSet;
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (queue.size() < _maxRowSize) {
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (queue.size() < _maxRowSize) {
+          queue.add(row);
+        } else {
+          if (_rowComparator.compare(queue.peek(), row) < 0) {
             queue.add(row);
-          } else {
-            if (_rowComparator.compare(queue.peek(), row) < 0) {
-              queue.add(row);
-              queue.poll();
-            }
+            queue.poll();
           }
         }
       }
     } else {
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (_rowEventsSet.size() < _maxRowSize) {
-            _rowEventsSet.add(row);
-          } else {
-            break;
-          }
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (_rowEventsSet.size() < _maxRowSize) {
+          _rowEventsSet.add(row);
+        } else {
+          break;
         }
       }
     }
@@ -403,6 +412,83 @@ public class SelectionOperatorService {
     mergeToRowEventsSet(blocks);
   }
 
+  /**
+   * Same as iterateOnBlock(BlockDocIdIterator, Block[]), but reads doc ids in batches. When ordering on a single value,
+   * dictionary encoded first sort column, its dictionary ids are batch read so that most docs can be accepted or
+   * rejected against the queue head without going through the full doc id comparator.
+   *
+   * @param docIdSetBlock
+   * @param blocks
+   * @throws Exception
+   */
+  public void iterateOnBlock(Block docIdSetBlock, Block[] blocks) throws Exception {
+    _rowDocIdComparator = getDocValBasedComparator(_sortSequence, _dataSchema, blocks);
+    final DocIdBatchIterator docIdBatchIterator = new DocIdBatchIterator(docIdSetBlock);
+    if (!_doOrdering) {
+      final List<Integer> list = new ArrayList<Integer>(_maxRowSize);
+      _rowDocIdSet = list;
+      int length;
+      while (list.size() < _maxRowSize && (length = docIdBatchIterator.nextBatch()) > 0) {
+        final int[] docIds = docIdBatchIterator.getDocIds();
+        final int numDocsToAdd = Math.min(length, _maxRowSize - list.size());
+        for (int i = 0; i < numDocsToAdd; ++i) {
+          list.add(docIds[i]);
+        }
+        _numDocsScanned += numDocsToAdd;
+      }
+      mergeToRowEventsSet(blocks);
+      return;
+    }
+
+    final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(_maxRowSize, _rowDocIdComparator);
+    _rowDocIdSet = queue;
+    final Block firstSortBlock = blocks[0];
+    final boolean useFirstSortDictIds =
+        firstSortBlock.getMetadata().isSingleValue() && firstSortBlock.getMetadata().hasDictionary();
+    final BlockValSet firstSortValSet = useFirstSortDictIds ? firstSortBlock.getBlockValueSet() : null;
+    final int orderToggleMultiplier = _sortSequence.get(0).isIsAsc() ? -1 : 1;
+    final int[] dictIds = useFirstSortDictIds ? new int[docIdBatchIterator.getMaxBatchSize()] : null;
+    final int[] headDocId = new int[1];
+    final int[] headDictId = new int[1];
+    int headDocIdCached = -1;
+
+    int length;
+    while ((length = docIdBatchIterator.nextBatch()) > 0) {
+      final int[] docIds = docIdBatchIterator.getDocIds();
+      if (useFirstSortDictIds) {
+        firstSortValSet.readIntValues(docIds, length, dictIds);
+      }
+      for (int i = 0; i < length; ++i) {
+        final int docId = docIds[i];
+        _numDocsScanned++;
+        if (queue.size() < _maxRowSize) {
+          queue.add(docId);
+          continue;
+        }
+        int ret;
+        if (useFirstSortDictIds) {
+          final int head = queue.peek();
+          if (head != headDocIdCached) {
+            headDocId[0] = head;
+            firstSortValSet.readIntValues(headDocId, 1, headDictId);
+            headDocIdCached = head;
+          }
+          ret = Integer.compare(dictIds[i], headDictId[0]) * orderToggleMultiplier;
+          if (ret == 0) {
+            ret = _rowDocIdComparator.compare(docId, head);
+          }
+        } else {
+          ret = _rowDocIdComparator.compare(docId, queue.peek());
+        }
+        if (ret > 0) {
+          queue.add(docId);
+          queue.poll();
+        }
+      }
+    }
+    mergeToRowEventsSet(blocks);
+  }
+
   public Collection<Serializable[]> mergeToRowEventsSet(Block[] blocks) throws Exception {
     SelectionFetcher selectionFetcher = new SelectionFetcher(blocks, _dataSchema);
     if (_doOrdering) {
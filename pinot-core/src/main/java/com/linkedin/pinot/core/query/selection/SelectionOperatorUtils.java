@@ -138,12 +138,25 @@ public class SelectionOperatorUtils {
   public static Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults, int maxRowSize) {
     Collection<Serializable[]> rowEventsSet = new ArrayList<Serializable[]>(maxRowSize);
     for (final DataTable dt : selectionResults.values()) {
-      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-        final Serializable[] row = extractRowFromDataTable(dt, rowId);
-        rowEventsSet.add(row);
-        if (rowEventsSet.size() == maxRowSize) {
-          return rowEventsSet;
-        }
+      reduce(rowEventsSet, dt, maxRowSize);
+      if (rowEventsSet.size() == maxRowSize) {
+        return rowEventsSet;
+      }
+    }
+    return rowEventsSet;
+  }
+
+  /**
+   * Add the rows of one more DataTable to rowEventsSet until it holds maxRowSize rows, so that server responses can
+   * be reduced one by one as they are gathered.
+   */
+  public static Collection<Serializable[]> reduce(Collection<Serializable[]> rowEventsSet, DataTable dt,
+      int maxRowSize) {
+    for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+      final Serializable[] row = extractRowFromDataTable(dt, rowId);
+      rowEventsSet.add(row);
+      if (rowEventsSet.size() == maxRowSize) {
+        return rowEventsSet;
       }
     }
     return rowEventsSet;
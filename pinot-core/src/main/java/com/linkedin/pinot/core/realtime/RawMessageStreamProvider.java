@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+
+
+/**
+ * A StreamProvider that can also hand over the messages of its stream undecoded, so that they can be decoded on other
+ * threads than the one consuming the stream while next() keeps decoding them on the calling thread.
+ */
+public interface RawMessageStreamProvider extends StreamProvider {
+
+  /**
+   * return the next message of the stream, or null if none came in before the consumer timed out
+   */
+  public byte[] nextMessage();
+
+  /**
+   * Creates a decoder for the messages returned by nextMessage(). Decoders are not thread safe, so each thread
+   * decoding messages needs its own.
+   *
+   * @throws Exception if the decoder could not be created
+   */
+  public KafkaMessageDecoder createDecoder() throws Exception;
+
+  /**
+   * Called when a message returned by nextMessage() could not be decoded, so that the failure is accounted for the
+   * same way as when next() fails to decode it.
+   *
+   * @param cause the exception thrown by the decoder
+   */
+  public void onDecodeFailure(Throwable cause);
+
+}
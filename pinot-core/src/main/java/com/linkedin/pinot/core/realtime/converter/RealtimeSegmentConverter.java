@@ -16,17 +16,50 @@
 package com.linkedin.pinot.core.realtime.converter;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
-import com.linkedin.pinot.common.data.TimeGranularitySpec;
-import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.io.reader.DataFileReader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.io.readerwriter.impl.FixedByteSingleColumnMultiValueReaderWriter;
+import com.linkedin.pinot.core.io.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
+import com.linkedin.pinot.core.segment.creator.AbstractColumnStatisticsCollector;
+import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ForwardIndexType;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexType;
+import com.linkedin.pinot.core.segment.creator.impl.ColumnDictIdReader;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentColumnarIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentDictionaryCreator;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.creator.impl.inv.HeapBitmapInvertedIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.stats.SegmentPreIndexStatsCollectorImpl;
+import com.linkedin.pinot.core.util.CrcUtils;
+
 
+/**
+ * Converts a realtime segment that is done consuming into an offline segment.
+ *
+ * The offline segment is written straight from the realtime segment's dictionaries, forward indexes and inverted
+ * indexes instead of replaying its rows: every dictionary is sorted once, the dictionary ids held by the forward
+ * indexes are remapped to the sorted ones, and when docs keep their order the inverted index bitmaps are written as
+ * is. The files are the same as those written by SegmentIndexCreationDriverImpl from the segment's rows.
+ */
 public class RealtimeSegmentConverter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentConverter.class);
 
   private RealtimeSegmentImpl realtimeSegmentImpl;
   private String outputPath;
@@ -59,15 +92,10 @@ public class RealtimeSegmentConverter {
     this.sortedColumn = sortedColumn;
   }
 
-  public void build() throws Exception {
-    // lets create a record reader
-    RecordReader reader;
-
-    if (sortedColumn == null) {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema);
-    } else {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn);
-    }
+  /**
+   * Returns the config the offline segment is created with, which does not include the inverted index columns.
+   */
+  SegmentGeneratorConfig getSegmentGeneratorConfig() {
     SegmentGeneratorConfig genConfig = new SegmentGeneratorConfig(dataSchema);
     genConfig.setInputFilePath(null);
 
@@ -78,8 +106,234 @@ public class RealtimeSegmentConverter {
     genConfig.setTableName(tableName);
     genConfig.setIndexOutputDir(outputPath);
     genConfig.setSegmentName(segmentName);
-    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
-    driver.init(genConfig, reader);
-    driver.build();
+    return genConfig;
+  }
+
+  public void build() throws Exception {
+    final long start = System.currentTimeMillis();
+    final int numDocs = realtimeSegmentImpl.getAggregateDocumentCount();
+    final SegmentGeneratorConfig genConfig = getSegmentGeneratorConfig();
+
+    // Sort the dictionaries, the stats collectors see each distinct value once, and map the realtime dictionary ids
+    // to the sorted ones
+    final SegmentPreIndexStatsCollectorImpl statsCollector = new SegmentPreIndexStatsCollectorImpl(dataSchema);
+    statsCollector.init();
+    final Map<String, int[]> dictIdMaps = new HashMap<String, int[]>();
+    for (FieldSpec spec : dataSchema.getAllFieldSpecs()) {
+      final String column = spec.getName();
+      final MutableDictionaryReader dictionary = realtimeSegmentImpl.getDictionaryFor(column);
+      final AbstractColumnStatisticsCollector columnStats = statsCollector.getColumnProfileFor(column);
+      final int cardinality = dictionary.length();
+      for (int dictId = 0; dictId < cardinality; dictId++) {
+        columnStats.collect(dictionary.get(dictId));
+      }
+      columnStats.seal();
+      final Object sortedValues = columnStats.getUniqueValuesSet();
+      final int[] dictIdMap = new int[cardinality];
+      for (int dictId = 0; dictId < cardinality; dictId++) {
+        dictIdMap[dictId] = indexOfSortedValue(sortedValues, dictionary.get(dictId));
+      }
+      dictIdMaps.put(column, dictIdMap);
+    }
+
+    // Order the docs on the sorted column
+    int[] docIds = null;
+    if (sortedColumn != null) {
+      DataFileReader sortedForwardIndex = realtimeSegmentImpl.getForwardIndexFor(sortedColumn);
+      if (sortedForwardIndex instanceof FixedByteSingleColumnSingleValueReaderWriter) {
+        docIds = sortDocIds((FixedByteSingleColumnSingleValueReaderWriter) sortedForwardIndex,
+            dictIdMaps.get(sortedColumn), numDocs);
+      } else {
+        LOGGER.warn("Not sorting segment: {} on multi value column: {}", segmentName, sortedColumn);
+      }
+    }
+
+    // Gather the per doc stats, inverted indexes built while consuming are reused if the docs keep their order
+    final Map<String, ColumnIndexCreationInfo> indexCreationInfoMap = new HashMap<String, ColumnIndexCreationInfo>();
+    final Map<String, ColumnDictIdReader> columnReaders = new HashMap<String, ColumnDictIdReader>();
+    final List<String> bitmapColumns = new ArrayList<String>();
+    for (FieldSpec spec : dataSchema.getAllFieldSpecs()) {
+      final String column = spec.getName();
+      final AbstractColumnStatisticsCollector columnStats = statsCollector.getColumnProfileFor(column);
+      final RealtimeColumnDictIdReader columnReader =
+          new RealtimeColumnDictIdReader(realtimeSegmentImpl.getForwardIndexFor(column), dictIdMaps.get(column),
+              docIds);
+      columnReader.computeStats(numDocs);
+      indexCreationInfoMap.put(column, new ColumnIndexCreationInfo(true, columnStats.getMinValue(),
+          columnStats.getMaxValue(), columnStats.getUniqueValuesSet(), ForwardIndexType.FIXED_BIT_COMPRESSED,
+          InvertedIndexType.P4_DELTA, columnReader.isSorted(), columnStats.hasNull(),
+          columnReader.getTotalNumberOfEntries(), columnReader.getMaxNumberOfMultiValues()));
+      columnReaders.put(column, columnReader);
+
+      if (realtimeSegmentImpl.getInvertedIndexFor(column) != null) {
+        if (docIds == null) {
+          bitmapColumns.add(column);
+        } else {
+          // Once the docs are sorted, the doc ids of every bitmap would have to be mapped to their new order and
+          // sorted again, which costs more than rebuilding the bitmaps from the forward index in doc order
+          genConfig.createInvertedIndexForColumn(column);
+        }
+      }
+    }
+
+    // Write the dictionaries and the forward indexes, and the inverted indexes that are rebuilt
+    final File outputDir = new File(outputPath);
+    final File tempIndexDir = new File(outputDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    final SegmentColumnarIndexCreator indexCreator = new SegmentColumnarIndexCreator();
+    indexCreator.init(genConfig, indexCreationInfoMap, dataSchema, numDocs, tempIndexDir);
+    for (Map.Entry<String, ColumnDictIdReader> entry : columnReaders.entrySet()) {
+      indexCreator.indexColumn(entry.getKey(), entry.getValue());
+    }
+
+    // Write the inverted indexes that are reused
+    for (String column : bitmapColumns) {
+      final RealtimeInvertedIndex invertedIndex = realtimeSegmentImpl.getInvertedIndexFor(column);
+      final int[] dictIdMap = dictIdMaps.get(column);
+      final HeapBitmapInvertedIndexCreator invertedIndexCreator =
+          new HeapBitmapInvertedIndexCreator(tempIndexDir, dictIdMap.length, numDocs,
+              indexCreationInfoMap.get(column).getTotalNumberOfEntries(), dataSchema.getFieldSpecFor(column));
+      for (int dictId = 0; dictId < dictIdMap.length; dictId++) {
+        invertedIndexCreator.set(dictIdMap[dictId], invertedIndex.getDocIdSetFor(dictId));
+      }
+      invertedIndexCreator.seal();
+    }
+
+    indexCreator.setSegmentName(segmentName);
+    indexCreator.seal();
+
+    // Move the segment into its final location and persist the creation metadata
+    final File segmentOutputDir = new File(outputDir, segmentName);
+    if (segmentOutputDir.exists()) {
+      FileUtils.deleteDirectory(segmentOutputDir);
+    }
+    FileUtils.moveDirectory(tempIndexDir, segmentOutputDir);
+    final long crc = CrcUtils.forAllFilesInFolder(segmentOutputDir).computeCrc();
+    SegmentIndexCreationDriverImpl.persistCreationMeta(segmentOutputDir, crc, genConfig);
+
+    LOGGER.info("Converted realtime segment: {} with {} docs in {} ms, reused inverted indexes of columns: {}",
+        segmentName, numDocs, System.currentTimeMillis() - start, bitmapColumns);
+  }
+
+  /**
+   * Returns the index of the value in the sorted unique values of a stats collector.
+   */
+  private static int indexOfSortedValue(Object sortedValues, Object value) {
+    if (sortedValues instanceof int[]) {
+      return Arrays.binarySearch((int[]) sortedValues, ((Number) value).intValue());
+    } else if (sortedValues instanceof long[]) {
+      return Arrays.binarySearch((long[]) sortedValues, ((Number) value).longValue());
+    } else if (sortedValues instanceof float[]) {
+      return Arrays.binarySearch((float[]) sortedValues, ((Number) value).floatValue());
+    } else if (sortedValues instanceof double[]) {
+      return Arrays.binarySearch((double[]) sortedValues, ((Number) value).doubleValue());
+    } else {
+      return Arrays.binarySearch((Object[]) sortedValues, value.toString());
+    }
+  }
+
+  /**
+   * Counting sort of the doc ids on the sorted dictionary ids of a column, docs with the same value keep their order.
+   */
+  private static int[] sortDocIds(FixedByteSingleColumnSingleValueReaderWriter forwardIndex, int[] dictIdMap,
+      int numDocs) {
+    final int[] startOffsets = new int[dictIdMap.length + 1];
+    for (int docId = 0; docId < numDocs; docId++) {
+      startOffsets[dictIdMap[forwardIndex.getInt(docId)] + 1]++;
+    }
+    for (int i = 1; i < startOffsets.length; i++) {
+      startOffsets[i] += startOffsets[i - 1];
+    }
+    final int[] sortedDocIds = new int[numDocs];
+    for (int docId = 0; docId < numDocs; docId++) {
+      sortedDocIds[startOffsets[dictIdMap[forwardIndex.getInt(docId)]]++] = docId;
+    }
+    return sortedDocIds;
+  }
+
+  /**
+   * Reads the remapped dictionary ids of a realtime forward index, in the order of the offline docs.
+   */
+  private static class RealtimeColumnDictIdReader implements ColumnDictIdReader {
+    private final FixedByteSingleColumnSingleValueReaderWriter _singleValueForwardIndex;
+    private final FixedByteSingleColumnMultiValueReaderWriter _multiValueForwardIndex;
+    private final int[] _dictIdMap;
+    private final int[] _docIds;
+    private final int[] _buffer;
+    private int _position;
+
+    private boolean _isSorted = true;
+    private int _totalNumberOfEntries = 0;
+    private int _maxNumberOfMultiValues = 0;
+
+    RealtimeColumnDictIdReader(DataFileReader forwardIndex, int[] dictIdMap, int[] docIds) {
+      if (forwardIndex instanceof FixedByteSingleColumnSingleValueReaderWriter) {
+        _singleValueForwardIndex = (FixedByteSingleColumnSingleValueReaderWriter) forwardIndex;
+        _multiValueForwardIndex = null;
+        _buffer = null;
+      } else {
+        _singleValueForwardIndex = null;
+        _multiValueForwardIndex = (FixedByteSingleColumnMultiValueReaderWriter) forwardIndex;
+        _buffer = new int[FixedByteSingleColumnMultiValueReaderWriter.DEFAULT_MAX_NUMBER_OF_MULTIVALUES];
+      }
+      _dictIdMap = dictIdMap;
+      _docIds = docIds;
+    }
+
+    /**
+     * Computes the stats the stats collectors would gather from the rows.
+     */
+    void computeStats(int numDocs) {
+      if (_singleValueForwardIndex != null) {
+        int previousDictId = -1;
+        for (int i = 0; i < numDocs && _isSorted; i++) {
+          int dictId = _dictIdMap[_singleValueForwardIndex.getInt(getDocId(i))];
+          _isSorted = dictId >= previousDictId;
+          previousDictId = dictId;
+        }
+      } else {
+        _isSorted = false;
+        for (int docId = 0; docId < numDocs; docId++) {
+          int numValues = _multiValueForwardIndex.getIntArray(docId, _buffer);
+          _totalNumberOfEntries += numValues;
+          _maxNumberOfMultiValues = Math.max(_maxNumberOfMultiValues, numValues);
+        }
+      }
+    }
+
+    boolean isSorted() {
+      return _isSorted;
+    }
+
+    int getTotalNumberOfEntries() {
+      return _totalNumberOfEntries;
+    }
+
+    int getMaxNumberOfMultiValues() {
+      return _maxNumberOfMultiValues;
+    }
+
+    private int getDocId(int position) {
+      return _docIds == null ? position : _docIds[position];
+    }
+
+    @Override
+    public void startReading() {
+      _position = 0;
+    }
+
+    @Override
+    public int readSVDictId(SegmentDictionaryCreator dictionary) {
+      return _dictIdMap[_singleValueForwardIndex.getInt(getDocId(_position++))];
+    }
+
+    @Override
+    public int[] readMVDictIds(SegmentDictionaryCreator dictionary) {
+      final int numValues = _multiValueForwardIndex.getIntArray(getDocId(_position++), _buffer);
+      final int[] dictIds = new int[numValues];
+      for (int i = 0; i < numValues; i++) {
+        dictIds[i] = _dictIdMap[_buffer[i]];
+      }
+      return dictIds;
+    }
   }
 }
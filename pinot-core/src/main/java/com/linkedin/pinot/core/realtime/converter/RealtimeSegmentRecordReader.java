@@ -31,7 +31,8 @@ public class RealtimeSegmentRecordReader extends BaseRecordReader {
   private Schema dataSchema;
   private List<String> columns;
   int counter = 0;
-  private final Iterator<Integer> docIdIterator;
+  private final String sortedColumn;
+  private Iterator<Integer> docIdIterator;
 
   public RealtimeSegmentRecordReader(RealtimeSegmentImpl rtSegment, Schema schema) {
     super();
@@ -39,6 +40,7 @@ public class RealtimeSegmentRecordReader extends BaseRecordReader {
     this.realtimeSegment = rtSegment;
     this.dataSchema = schema;
     columns = new ArrayList<String>();
+    this.sortedColumn = null;
     this.docIdIterator = null;
   }
 
@@ -48,6 +50,7 @@ public class RealtimeSegmentRecordReader extends BaseRecordReader {
     this.realtimeSegment = rtSegment;
     this.dataSchema = schema;
     columns = new ArrayList<String>();
+    this.sortedColumn = sortedColumn;
     this.docIdIterator = realtimeSegment.getSortedDocIdIteratorOnColumn(sortedColumn);
   }
 
@@ -61,6 +64,9 @@ public class RealtimeSegmentRecordReader extends BaseRecordReader {
   @Override
   public void rewind() throws Exception {
     counter = 0;
+    if (sortedColumn != null) {
+      docIdIterator = realtimeSegment.getSortedDocIdIteratorOnColumn(sortedColumn);
+    }
   }
 
   @Override
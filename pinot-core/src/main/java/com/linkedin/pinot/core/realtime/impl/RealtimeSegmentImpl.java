@@ -20,6 +20,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -52,13 +53,11 @@ import com.linkedin.pinot.core.realtime.RealtimeSegment;
 import com.linkedin.pinot.core.realtime.impl.datasource.RealtimeColumnDataSource;
 import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
 import com.linkedin.pinot.core.realtime.impl.dictionary.RealtimeDictionaryProvider;
-import com.linkedin.pinot.core.realtime.impl.invertedIndex.DimensionInvertertedIndex;
-import com.linkedin.pinot.core.realtime.impl.invertedIndex.MetricInvertedIndex;
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
-import com.linkedin.pinot.core.realtime.impl.invertedIndex.TimeInvertedIndex;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndexImpl;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 
 public class RealtimeSegmentImpl implements RealtimeSegment {
   private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentImpl.class);
@@ -90,7 +89,36 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   private final Map<String, DataFileReader> columnIndexReaderWriterMap;
 
+  // Per column slots resolved at construction, so that index() does no map lookup or per row allocation
+  private final String[] dimensionNames;
+  private final MutableDictionaryReader[] dimensionDictionaries;
+  private final FixedByteSingleColumnSingleValueReaderWriter[] singleValueDimensionWriters;
+  private final FixedByteSingleColumnMultiValueReaderWriter[] multiValueDimensionWriters;
+  private final RealtimeInvertedIndex[] dimensionInvertedIndexes;
+  private final String[] metricNames;
+  private final MutableDictionaryReader[] metricDictionaries;
+  private final FixedByteSingleColumnSingleValueReaderWriter[] metricWriters;
+  private final RealtimeInvertedIndex[] metricInvertedIndexes;
+  private final MutableDictionaryReader timeDictionary;
+  private final FixedByteSingleColumnSingleValueReaderWriter timeWriter;
+  private final RealtimeInvertedIndex timeInvertedIndex;
+
+  // Dictionary ids of the row being indexed, reused across rows
+  private final int[] dimensionDicIds;
+  private final int[][] multiValueDimensionDicIds;
+  private final int[] maxNumberOfMultiValues;
+  private final int[] metricDicIds;
+
   public RealtimeSegmentImpl(Schema schema, int capacity) throws IOException {
+    this(schema, capacity, getDefaultInvertedIndexColumns(schema));
+  }
+
+  /**
+   * @param invertedIndexColumns columns to build an inverted index for while consuming, filters on the other
+   *          columns scan the forward index
+   */
+  public RealtimeSegmentImpl(Schema schema, int capacity, Collection<String> invertedIndexColumns)
+      throws IOException {
     // initial variable setup
     dataSchema = schema;
     dictionaryMap = new HashMap<String, MutableDictionaryReader>();
@@ -122,8 +150,15 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     columnIndexReaderWriterMap = new HashMap<String, DataFileReader>();
     invertedIndexMap = new HashMap<String, RealtimeInvertedIndex>();
 
+    for (String column : invertedIndexColumns) {
+      if (schema.isExisted(column)) {
+        invertedIndexMap.put(column, new RealtimeInvertedIndexImpl(column));
+      } else {
+        LOGGER.warn("Skipping inverted index for column: {} which is not in the schema", column);
+      }
+    }
+
     for (String dimension : schema.getDimensionNames()) {
-      invertedIndexMap.put(dimension, new DimensionInvertertedIndex(dimension));
       if (schema.getFieldSpecFor(dimension).isSingleValueField()) {
         columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
             V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
@@ -134,15 +169,61 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     }
 
     for (String metric : schema.getMetricNames()) {
-      invertedIndexMap.put(metric, new MetricInvertedIndex(metric));
       columnIndexReaderWriterMap.put(metric, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
           V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
     }
 
-    invertedIndexMap.put(outgoingTimeColumnName, new TimeInvertedIndex(outgoingTimeColumnName));
     columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
         V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
 
+    List<String> dimensions = schema.getDimensionNames();
+    int numDimensions = dimensions.size();
+    dimensionNames = dimensions.toArray(new String[numDimensions]);
+    dimensionDictionaries = new MutableDictionaryReader[numDimensions];
+    singleValueDimensionWriters = new FixedByteSingleColumnSingleValueReaderWriter[numDimensions];
+    multiValueDimensionWriters = new FixedByteSingleColumnMultiValueReaderWriter[numDimensions];
+    dimensionInvertedIndexes = new RealtimeInvertedIndex[numDimensions];
+    dimensionDicIds = new int[numDimensions];
+    multiValueDimensionDicIds = new int[numDimensions][];
+    maxNumberOfMultiValues = new int[numDimensions];
+    for (int i = 0; i < numDimensions; i++) {
+      String dimension = dimensionNames[i];
+      dimensionDictionaries[i] = dictionaryMap.get(dimension);
+      dimensionInvertedIndexes[i] = invertedIndexMap.get(dimension);
+      DataFileReader readerWriter = columnIndexReaderWriterMap.get(dimension);
+      if (readerWriter instanceof FixedByteSingleColumnSingleValueReaderWriter) {
+        singleValueDimensionWriters[i] = (FixedByteSingleColumnSingleValueReaderWriter) readerWriter;
+      } else {
+        multiValueDimensionWriters[i] = (FixedByteSingleColumnMultiValueReaderWriter) readerWriter;
+        multiValueDimensionDicIds[i] = new int[16];
+      }
+    }
+
+    List<String> metrics = schema.getMetricNames();
+    int numMetrics = metrics.size();
+    metricNames = metrics.toArray(new String[numMetrics]);
+    metricDictionaries = new MutableDictionaryReader[numMetrics];
+    metricWriters = new FixedByteSingleColumnSingleValueReaderWriter[numMetrics];
+    metricInvertedIndexes = new RealtimeInvertedIndex[numMetrics];
+    metricDicIds = new int[numMetrics];
+    for (int i = 0; i < numMetrics; i++) {
+      metricDictionaries[i] = dictionaryMap.get(metricNames[i]);
+      metricWriters[i] = (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metricNames[i]);
+      metricInvertedIndexes[i] = invertedIndexMap.get(metricNames[i]);
+    }
+
+    timeDictionary = dictionaryMap.get(outgoingTimeColumnName);
+    timeWriter = (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName);
+    timeInvertedIndex = invertedIndexMap.get(outgoingTimeColumnName);
+  }
+
+  /**
+   * By default dimensions and the time column get an inverted index while consuming, metrics are only scanned.
+   */
+  public static List<String> getDefaultInvertedIndexColumns(Schema schema) {
+    List<String> invertedIndexColumns = new ArrayList<String>(schema.getDimensionNames());
+    invertedIndexColumns.add(schema.getTimeFieldSpec().getOutGoingTimeColumnName());
+    return invertedIndexColumns;
   }
 
   @Override
@@ -165,104 +246,84 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     if (row == null) {
       return true;
     }
-    // updating dictionary for dimensions only
+    // updating dictionaries first, and keeping the dictionary ids of the row
     // its ok to insert this first
     // since filtering won't return back anything unless a new entry is made in the inverted index
     try {
-      for (String dimension : dataSchema.getDimensionNames()) {
-        dictionaryMap.get(dimension).index(row.getValue(dimension));
-        if (!dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-          Object[] entries = (Object[]) row.getValue(dimension);
-          if ((entries != null) && (maxNumberOfMultivaluesMap.get(dimension) < entries.length)) {
-            maxNumberOfMultivaluesMap.put(dimension, entries.length);
+      for (int i = 0; i < dimensionNames.length; i++) {
+        Object value = row.getValue(dimensionNames[i]);
+        if (singleValueDimensionWriters[i] != null) {
+          dimensionDicIds[i] = dimensionDictionaries[i].indexSingleValue(value);
+        } else {
+          Object[] entries = (Object[]) value;
+          int[] dicIds = multiValueDimensionDicIds[i];
+          if (dicIds.length < entries.length) {
+            dicIds = new int[Math.max(entries.length, 2 * dicIds.length)];
+            multiValueDimensionDicIds[i] = dicIds;
+          }
+          for (int j = 0; j < entries.length; j++) {
+            dicIds[j] = dimensionDictionaries[i].indexSingleValue(entries[j]);
+          }
+          dimensionDicIds[i] = entries.length;
+          if (maxNumberOfMultiValues[i] < entries.length) {
+            maxNumberOfMultiValues[i] = entries.length;
+            maxNumberOfMultivaluesMap.put(dimensionNames[i], entries.length);
           }
         }
       }
-      // LOGGER.debug("Done Dimenstions dict indexing");
-      for (String metric : dataSchema.getMetricNames()) {
-        dictionaryMap.get(metric).index(row.getValue(metric));
+
+      for (int i = 0; i < metricNames.length; i++) {
+        metricDicIds[i] = metricDictionaries[i].indexSingleValue(row.getValue(metricNames[i]));
       }
-      // LOGGER.debug("Done Metrics dict indexing");
+
       // convert time granularity and add the time value to dictionary
       Object timeValueObj = timeConverter.convert(row.getValue(incomingTimeColumnName));
-
-      // LOGGER.debug("Done TimeStamp dict Converter: {}", timeValueObj);
-      Long timeValue = new Long(-1);
-      try {
-        if (timeValueObj instanceof Integer) {
-          timeValue = ((Integer) timeValueObj).longValue();
-        } else if (timeValueObj instanceof Long) {
-          timeValue = (Long) timeValueObj;
-        } else {
-          timeValue = Double.valueOf(timeValueObj.toString()).longValue();
-        }
-      } catch (Exception e) {
+      long timeValue;
+      int timeDicId;
+      if (timeValueObj instanceof Integer || timeValueObj instanceof Long) {
+        timeValue = ((Number) timeValueObj).longValue();
+        timeDicId = timeDictionary.indexSingleValue(timeValueObj);
+      } else {
         timeValue = Double.valueOf(timeValueObj.toString()).longValue();
+        timeDicId = timeDictionary.indexSingleValue(timeValue);
       }
 
-      dictionaryMap.get(outgoingTimeColumnName).index(timeValue);
-      // LOGGER.debug("Done TimeStamp indexing");
       // update the min max time values
       minTimeVal = Math.min(minTimeVal, timeValue);
       maxTimeVal = Math.max(maxTimeVal, timeValue);
 
-      // also lets collect all dicIds to update inverted index later
-      Map<String, Object> rawRowToDicIdMap = new HashMap<String, Object>();
-
-      // lets update forward index now
+      // lets update forward and inverted indexes now
       int docId = docIdGenerator.incrementAndGet();
 
-      for (String dimension : dataSchema.getDimensionNames()) {
-        if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-          int dicId = dictionaryMap.get(dimension).indexOf(row.getValue(dimension));
-          ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setInt(docId, dicId);
-          rawRowToDicIdMap.put(dimension, dicId);
+      for (int i = 0; i < dimensionNames.length; i++) {
+        if (singleValueDimensionWriters[i] != null) {
+          singleValueDimensionWriters[i].setInt(docId, dimensionDicIds[i]);
+          if (dimensionInvertedIndexes[i] != null) {
+            dimensionInvertedIndexes[i].add(dimensionDicIds[i], docId);
+          }
         } else {
-          Object[] mValues = (Object[]) row.getValue(dimension);
-          int[] dicIds = new int[mValues.length];
-          for (int i = 0; i < dicIds.length; i++) {
-            dicIds[i] = dictionaryMap.get(dimension).indexOf(mValues[i]);
+          int[] dicIds = multiValueDimensionDicIds[i];
+          int numValues = dimensionDicIds[i];
+          multiValueDimensionWriters[i].setIntArray(docId, dicIds, numValues);
+          if (dimensionInvertedIndexes[i] != null) {
+            for (int j = 0; j < numValues; j++) {
+              dimensionInvertedIndexes[i].add(dicIds[j], docId);
+            }
           }
-          ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setIntArray(docId,
-              dicIds);
-          rawRowToDicIdMap.put(dimension, dicIds);
         }
       }
 
-      for (String metric : dataSchema.getMetricNames()) {
-        FixedByteSingleColumnSingleValueReaderWriter readerWriter =
-            (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric);
-        int dicId = dictionaryMap.get(metric).indexOf(row.getValue(metric));
-        readerWriter.setInt(docId, dicId);
-        rawRowToDicIdMap.put(metric, dicId);
-      }
-
-      int timeDicId = dictionaryMap.get(outgoingTimeColumnName).indexOf(timeValue);
-
-      ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName)).setInt(
-          docId, timeDicId);
-      rawRowToDicIdMap.put(outgoingTimeColumnName, timeDicId);
-
-      // lets update the inverted index now
-      // metrics
-      for (String metric : dataSchema.getMetricNames()) {
-        invertedIndexMap.get(metric).add(rawRowToDicIdMap.get(metric), docId);
-      }
-
-      // dimension
-      for (String dimension : dataSchema.getDimensionNames()) {
-        if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-          invertedIndexMap.get(dimension).add(rawRowToDicIdMap.get(dimension), docId);
-        } else {
-          int[] dicIds = (int[]) rawRowToDicIdMap.get(dimension);
-          for (int dicId : dicIds) {
-            invertedIndexMap.get(dimension).add(dicId, docId);
-          }
+      for (int i = 0; i < metricNames.length; i++) {
+        metricWriters[i].setInt(docId, metricDicIds[i]);
+        if (metricInvertedIndexes[i] != null) {
+          metricInvertedIndexes[i].add(metricDicIds[i], docId);
         }
       }
 
-      // time
-      invertedIndexMap.get(outgoingTimeColumnName).add(rawRowToDicIdMap.get(outgoingTimeColumnName), docId);
+      timeWriter.setInt(docId, timeDicId);
+      if (timeInvertedIndex != null) {
+        timeInvertedIndex.add(timeDicId, docId);
+      }
 
       docIdSearchableOffset = docId;
       numDocsIndexed += 1;
@@ -378,11 +439,40 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
     invertedIndexMap.clear();
-    _segmentMetadata.close();
+
+    for (MutableDictionaryReader dictionary : dictionaryMap.values()) {
+      dictionary.close();
+    }
+    dictionaryMap.clear();
+    if (_segmentMetadata != null) {
+      _segmentMetadata.close();
+    }
+  }
+
+  /**
+   * Returns the inverted index of the column, building one from the forward index if the column is not indexed
+   * while consuming (only once the segment is done consuming, to convert it).
+   */
+  private RealtimeInvertedIndex getInvertedIndexToSortOn(String columnToSortOn) {
+    RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    if (index != null) {
+      return index;
+    }
+    DataFileReader readerWriter = columnIndexReaderWriterMap.get(columnToSortOn);
+    if (!(readerWriter instanceof FixedByteSingleColumnSingleValueReaderWriter)) {
+      throw new UnsupportedOperationException("Cannot sort on multi value column: " + columnToSortOn);
+    }
+    FixedByteSingleColumnSingleValueReaderWriter forwardIndex =
+        (FixedByteSingleColumnSingleValueReaderWriter) readerWriter;
+    index = new RealtimeInvertedIndexImpl(columnToSortOn);
+    for (int docId = 0; docId <= docIdSearchableOffset; docId++) {
+      index.add(forwardIndex.getInt(docId), docId);
+    }
+    return index;
   }
 
   private IntIterator[] getSortedBitmapIntIteratorsForStringColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    final RealtimeInvertedIndex index = getInvertedIndexToSortOn(columnToSortOn);
     final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
     final IntIterator[] intIterators = new IntIterator[dictionary.length()];
 
@@ -403,7 +493,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   }
 
   private IntIterator[] getSortedBitmapIntIteratorsForIntegerColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    final RealtimeInvertedIndex index = getInvertedIndexToSortOn(columnToSortOn);
     final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
     final IntIterator[] intIterators = new IntIterator[dictionary.length()];
 
@@ -426,7 +516,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   }
 
   private IntIterator[] getSortedBitmapIntIteratorsForLongColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    final RealtimeInvertedIndex index = getInvertedIndexToSortOn(columnToSortOn);
     final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
     final IntIterator[] intIterators = new IntIterator[dictionary.length()];
 
@@ -447,7 +537,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   }
 
   private IntIterator[] getSortedBitmapIntIteratorsForFloatColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    final RealtimeInvertedIndex index = getInvertedIndexToSortOn(columnToSortOn);
     final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
     final IntIterator[] intIterators = new IntIterator[dictionary.length()];
 
@@ -468,7 +558,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   }
 
   private IntIterator[] getSortedBitmapIntIteratorsForDoubleColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
+    final RealtimeInvertedIndex index = getInvertedIndexToSortOn(columnToSortOn);
     final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
     final IntIterator[] intIterators = new IntIterator[dictionary.length()];
 
@@ -563,27 +653,10 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
 
+    // Metric forward indexes hold dictionary ids as well
     for (String metric : dataSchema.getMetricNames()) {
-      switch (dataSchema.getFieldSpecFor(metric).getDataType()) {
-        case INT:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getInt(docId));
-          break;
-        case FLOAT:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getFloat(docId));
-          break;
-        case LONG:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getLong(docId));
-          break;
-        case DOUBLE:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getDouble(docId));
-          break;
-        default:
-          throw new UnsupportedOperationException("unsopported metric data type");
-      }
+      int dicId = ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getInt(docId);
+      rowValues.put(metric, dictionaryMap.get(metric).get(dicId));
     }
 
     rowValues.put(
@@ -610,12 +683,34 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return docIdSearchableOffset + 1;
   }
 
+  /**
+   * Returns the dictionary of the column, null if the column is not in the schema.
+   */
+  public MutableDictionaryReader getDictionaryFor(String column) {
+    return dictionaryMap.get(column);
+  }
+
+  /**
+   * Returns the forward index of the column, a FixedByteSingleColumnSingleValueReaderWriter for single value columns
+   * or a FixedByteSingleColumnMultiValueReaderWriter for multi value columns, holding dictionary ids.
+   */
+  public DataFileReader getForwardIndexFor(String column) {
+    return columnIndexReaderWriterMap.get(column);
+  }
+
+  /**
+   * Returns the inverted index of the column, null if the column is not indexed while consuming.
+   */
+  public RealtimeInvertedIndex getInvertedIndexFor(String column) {
+    return invertedIndexMap.get(column);
+  }
+
   public boolean hasDictionary(String columnName) {
     return dictionaryMap.containsKey(columnName);
   }
 
   @Override
-  public StarTreeIndexNode getStarTreeRoot() {
+  public OffHeapStarTree getStarTree() {
     return null;
   }
 }
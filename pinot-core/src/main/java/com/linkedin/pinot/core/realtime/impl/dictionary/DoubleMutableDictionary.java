@@ -15,13 +15,16 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
+import java.util.Arrays;
+
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
 public class DoubleMutableDictionary extends MutableDictionaryReader {
 
-  private Double min = Double.MAX_VALUE;
-  private Double max = Double.MIN_VALUE;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private volatile double[] values = new double[INITIAL_CAPACITY];
 
   public DoubleMutableDictionary(FieldSpec spec) {
     super(spec);
@@ -34,37 +37,77 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
       return;
     }
 
-    if (rawValue instanceof String) {
-      Double entry = new Double(Double.parseDouble(rawValue.toString()));
-      addToDictionaryBiMap(entry);
-      updateMinMax(entry);
+    if (rawValue instanceof Object[]) {
+      for (Object o : (Object[]) rawValue) {
+        if (o != null) {
+          indexValue(toDouble(o));
+        }
+      }
       return;
     }
 
-    if (rawValue instanceof Double) {
-      addToDictionaryBiMap(rawValue);
-      updateMinMax((Double) rawValue);
-      return;
+    indexValue(toDouble(rawValue));
+  }
+
+  @Override
+  public int indexSingleValue(Object rawValue) {
+    if (rawValue == null) {
+      hasNull = true;
+      return NULL_VALUE_INDEX;
     }
+    return indexValue(toDouble(rawValue));
+  }
 
-    if (rawValue instanceof Object[]) {
-      for (Object o : (Object[]) rawValue) {
-        if (o instanceof String) {
-          addToDictionaryBiMap(new Double(Double.parseDouble(o.toString())));
-          updateMinMax(new Double(Double.parseDouble(o.toString())));
-          continue;
-        }
+  private static double toDouble(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).doubleValue();
+    }
+    return Double.parseDouble(rawValue.toString());
+  }
 
-        if (o instanceof Double) {
-          addToDictionaryBiMap(o);
-          updateMinMax((Double) o);
-          continue;
-        }
+  private int indexValue(double value) {
+    int existingDictionaryId = getIndexOf(value);
+    if (existingDictionaryId != NULL_VALUE_INDEX) {
+      return existingDictionaryId;
+    }
+    int dictionaryId = length();
+    double[] values = this.values;
+    if (dictionaryId == values.length) {
+      values = Arrays.copyOf(values, getGrownCapacity(values.length));
+      this.values = values;
+    }
+    values[dictionaryId] = value;
+    addDictionaryId(hashCode(value));
+    updateMinMax(value);
+    return dictionaryId;
+  }
+
+  private int getIndexOf(double value) {
+    int length = length();
+    double[] values = this.values;
+    int[] hashTable = getHashTable();
+    int slot = getStartSlot(hashTable, hashCode(value));
+    int dictionaryId;
+    while ((dictionaryId = getDictionaryId(hashTable, slot)) != NULL_VALUE_INDEX && dictionaryId < length) {
+      if (Double.doubleToLongBits(values[dictionaryId]) == Double.doubleToLongBits(value)) {
+        return dictionaryId;
       }
+      slot = getNextSlot(hashTable, slot);
     }
+    return NULL_VALUE_INDEX;
+  }
+
+  private static int hashCode(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return (int) (bits ^ (bits >>> 32));
+  }
+
+  @Override
+  protected int getHashCode(int dictionaryId) {
+    return hashCode(values[dictionaryId]);
   }
 
-  private void updateMinMax(Double entry) {
+  private void updateMinMax(double entry) {
     if (entry < min) {
       min = entry;
     }
@@ -73,43 +116,45 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
     }
   }
 
-  @Override
-  public boolean contains(Object rawValue) {
-    if (rawValue == null) {
-      return hasNull;
-    }
-    if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Double(Double.parseDouble(rawValue.toString())));
-    }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
-  }
-
   @Override
   public int indexOf(Object rawValue) {
-    if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Double(Double.parseDouble(rawValue.toString())));
+    if (rawValue == null) {
+      return NULL_VALUE_INDEX;
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getIndexOf(toDouble(rawValue));
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return Double.valueOf(values[dictionaryId]);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).longValue();
+    return (long) values[dictionaryId];
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return values[dictionaryId];
+  }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    double[] values = this.values;
+    for (int i = 0; i < length; i++) {
+      outValues[i] = values[dictionaryIds[i]];
+    }
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
+    return Double.toString(values[dictionaryId]);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Double.toString(values[dictionaryId]);
   }
 
   @Override
@@ -146,13 +191,8 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
     return ret;
   }
 
-  @Override
-  public String getStringValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
-  }
-
-  private double getDouble(int dictionaryId) {
-    return ((Double) dictionaryIdBiMap.get(new Integer(dictionaryId))).doubleValue();
+  public double getDouble(int dictionaryId) {
+    return values[dictionaryId];
   }
 
   @Override
@@ -15,13 +15,16 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
+import java.util.Arrays;
+
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
 public class FloatMutableDictionary extends MutableDictionaryReader {
 
-  private Float min = Float.MAX_VALUE;
-  private Float max = Float.MIN_VALUE;
+  private float min = Float.POSITIVE_INFINITY;
+  private float max = Float.NEGATIVE_INFINITY;
+  private volatile float[] values = new float[INITIAL_CAPACITY];
 
   public FloatMutableDictionary(FieldSpec spec) {
     super(spec);
@@ -33,38 +36,77 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
       hasNull = true;
       return;
     }
-    if (rawValue instanceof String) {
-      Float e = new Float(Float.parseFloat(rawValue.toString()));
-      addToDictionaryBiMap(e);
-      updateMinMax(e);
+
+    if (rawValue instanceof Object[]) {
+      for (Object o : (Object[]) rawValue) {
+        if (o != null) {
+          indexValue(toFloat(o));
+        }
+      }
       return;
     }
 
-    if (rawValue instanceof Float) {
-      addToDictionaryBiMap(rawValue);
-      updateMinMax((Float) rawValue);
-      return;
+    indexValue(toFloat(rawValue));
+  }
+
+  @Override
+  public int indexSingleValue(Object rawValue) {
+    if (rawValue == null) {
+      hasNull = true;
+      return NULL_VALUE_INDEX;
     }
+    return indexValue(toFloat(rawValue));
+  }
 
-    if (rawValue instanceof Object[]) {
+  private static float toFloat(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).floatValue();
+    }
+    return Float.parseFloat(rawValue.toString());
+  }
 
-      for (Object o : (Object[]) rawValue) {
-        if (o instanceof String) {
-          addToDictionaryBiMap(new Float(Float.parseFloat(o.toString())));
-          updateMinMax(new Float(Float.parseFloat(o.toString())));
-          continue;
-        }
+  private int indexValue(float value) {
+    int existingDictionaryId = getIndexOf(value);
+    if (existingDictionaryId != NULL_VALUE_INDEX) {
+      return existingDictionaryId;
+    }
+    int dictionaryId = length();
+    float[] values = this.values;
+    if (dictionaryId == values.length) {
+      values = Arrays.copyOf(values, getGrownCapacity(values.length));
+      this.values = values;
+    }
+    values[dictionaryId] = value;
+    addDictionaryId(hashCode(value));
+    updateMinMax(value);
+    return dictionaryId;
+  }
 
-        if (o instanceof Float) {
-          addToDictionaryBiMap(o);
-          updateMinMax((Float) o);
-          continue;
-        }
+  private int getIndexOf(float value) {
+    int length = length();
+    float[] values = this.values;
+    int[] hashTable = getHashTable();
+    int slot = getStartSlot(hashTable, hashCode(value));
+    int dictionaryId;
+    while ((dictionaryId = getDictionaryId(hashTable, slot)) != NULL_VALUE_INDEX && dictionaryId < length) {
+      if (Float.floatToIntBits(values[dictionaryId]) == Float.floatToIntBits(value)) {
+        return dictionaryId;
       }
+      slot = getNextSlot(hashTable, slot);
     }
+    return NULL_VALUE_INDEX;
+  }
+
+  private static int hashCode(float value) {
+    return Float.floatToIntBits(value);
+  }
+
+  @Override
+  protected int getHashCode(int dictionaryId) {
+    return hashCode(values[dictionaryId]);
   }
 
-  private void updateMinMax(Float entry) {
+  private void updateMinMax(float entry) {
     if (entry < min) {
       min = entry;
     }
@@ -73,43 +115,45 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
     }
   }
 
-  @Override
-  public boolean contains(Object rawValue) {
-    if (rawValue == null) {
-      return hasNull;
-    }
-    if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Float(Float.parseFloat(rawValue.toString())));
-    }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
-  }
-
   @Override
   public int indexOf(Object rawValue) {
-    if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Float(Float.parseFloat(rawValue.toString())));
+    if (rawValue == null) {
+      return NULL_VALUE_INDEX;
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getIndexOf(toFloat(rawValue));
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return Float.valueOf(values[dictionaryId]);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).longValue();
+    return (long) values[dictionaryId];
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return values[dictionaryId];
+  }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    float[] values = this.values;
+    for (int i = 0; i < length; i++) {
+      outValues[i] = values[dictionaryIds[i]];
+    }
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).toString();
+    return Float.toString(values[dictionaryId]);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Float.toString(values[dictionaryId]);
   }
 
   @Override
@@ -146,13 +190,8 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
     return ret;
   }
 
-  @Override
-  public String getStringValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
-  }
-
-  private float getFloat(int dictionaryId) {
-    return ((Float) dictionaryIdBiMap.get(new Integer(dictionaryId))).floatValue();
+  public float getFloat(int dictionaryId) {
+    return values[dictionaryId];
   }
 
   @Override
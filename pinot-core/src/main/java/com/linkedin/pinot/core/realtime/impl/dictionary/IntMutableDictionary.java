@@ -15,13 +15,16 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
+import java.util.Arrays;
+
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
 public class IntMutableDictionary extends MutableDictionaryReader {
 
-  private Integer min = Integer.MAX_VALUE;
-  private Integer max = Integer.MIN_VALUE;
+  private int min = Integer.MAX_VALUE;
+  private int max = Integer.MIN_VALUE;
+  private volatile int[] values = new int[INITIAL_CAPACITY];
 
   public IntMutableDictionary(FieldSpec spec) {
     super(spec);
@@ -34,40 +37,76 @@ public class IntMutableDictionary extends MutableDictionaryReader {
       return;
     }
 
-    if (rawValue instanceof String) {
-      Integer entry = new Integer(Integer.parseInt(rawValue.toString()));
-      addToDictionaryBiMap(entry);
-      updateMinMax(entry);
+    if (rawValue instanceof Object[]) {
+      for (Object o : (Object[]) rawValue) {
+        if (o != null) {
+          indexValue(toInt(o));
+        }
+      }
       return;
     }
 
-    if (rawValue instanceof Integer) {
-      addToDictionaryBiMap(rawValue);
-      updateMinMax((Integer) rawValue);
-      return;
-    }
+    indexValue(toInt(rawValue));
+  }
 
-    if (rawValue instanceof Object[]) {
-      Object[] multivalues = (Object[]) rawValue;
+  @Override
+  public int indexSingleValue(Object rawValue) {
+    if (rawValue == null) {
+      hasNull = true;
+      return NULL_VALUE_INDEX;
+    }
+    return indexValue(toInt(rawValue));
+  }
 
-      for (int i = 0; i < multivalues.length; i++) {
+  private static int toInt(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).intValue();
+    }
+    return Integer.parseInt(rawValue.toString());
+  }
 
-        if (multivalues[i] instanceof String) {
-          addToDictionaryBiMap(new Integer(Integer.parseInt(multivalues[i].toString())));
-          updateMinMax(Integer.parseInt(multivalues[i].toString()));
-          continue;
-        }
+  private int indexValue(int value) {
+    int existingDictionaryId = getIndexOf(value);
+    if (existingDictionaryId != NULL_VALUE_INDEX) {
+      return existingDictionaryId;
+    }
+    int dictionaryId = length();
+    int[] values = this.values;
+    if (dictionaryId == values.length) {
+      values = Arrays.copyOf(values, getGrownCapacity(values.length));
+      this.values = values;
+    }
+    values[dictionaryId] = value;
+    addDictionaryId(hashCode(value));
+    updateMinMax(value);
+    return dictionaryId;
+  }
 
-        if (multivalues[i] instanceof Integer) {
-          addToDictionaryBiMap(multivalues[i]);
-          updateMinMax((Integer) multivalues[i]);
-          continue;
-        }
+  private int getIndexOf(int value) {
+    int length = length();
+    int[] values = this.values;
+    int[] hashTable = getHashTable();
+    int slot = getStartSlot(hashTable, hashCode(value));
+    int dictionaryId;
+    while ((dictionaryId = getDictionaryId(hashTable, slot)) != NULL_VALUE_INDEX && dictionaryId < length) {
+      if (values[dictionaryId] == value) {
+        return dictionaryId;
       }
+      slot = getNextSlot(hashTable, slot);
     }
+    return NULL_VALUE_INDEX;
+  }
+
+  private static int hashCode(int value) {
+    return value;
   }
 
-  private void updateMinMax(Integer entry) {
+  @Override
+  protected int getHashCode(int dictionaryId) {
+    return hashCode(values[dictionaryId]);
+  }
+
+  private void updateMinMax(int entry) {
     if (entry < min) {
       min = entry;
     }
@@ -76,48 +115,45 @@ public class IntMutableDictionary extends MutableDictionaryReader {
     }
   }
 
-  @Override
-  public boolean contains(Object rawValue) {
-    if (rawValue == null) {
-      return hasNull;
-    }
-    if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Integer(Integer.parseInt(rawValue.toString())));
-    }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
-  }
-
   @Override
   public int indexOf(Object rawValue) {
-    if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Integer(Integer.parseInt(rawValue.toString())));
+    if (rawValue == null) {
+      return NULL_VALUE_INDEX;
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getIndexOf(toInt(rawValue));
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return Integer.valueOf(values[dictionaryId]);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).longValue();
+    return values[dictionaryId];
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return values[dictionaryId];
+  }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    int[] values = this.values;
+    for (int i = 0; i < length; i++) {
+      outValues[i] = values[dictionaryIds[i]];
+    }
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).toString();
+    return Integer.toString(values[dictionaryId]);
   }
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).toString();
+    return Integer.toString(values[dictionaryId]);
   }
 
   @Override
@@ -155,7 +191,7 @@ public class IntMutableDictionary extends MutableDictionaryReader {
   }
 
   public int getInt(int dictionaryId) {
-    return ((Integer) dictionaryIdBiMap.get(new Integer(dictionaryId))).intValue();
+    return values[dictionaryId];
   }
 
   @Override
@@ -167,5 +203,4 @@ public class IntMutableDictionary extends MutableDictionaryReader {
   public Object getMaxVal() {
     return max;
   }
-
 }
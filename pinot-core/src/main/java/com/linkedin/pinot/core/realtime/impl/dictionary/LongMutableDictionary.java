@@ -15,13 +15,16 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
+import java.util.Arrays;
+
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
 public class LongMutableDictionary extends MutableDictionaryReader {
 
-  private Long min = Long.MAX_VALUE;
-  private Long max = Long.MIN_VALUE;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+  private volatile long[] values = new long[INITIAL_CAPACITY];
 
   public LongMutableDictionary(FieldSpec spec) {
     super(spec);
@@ -34,37 +37,76 @@ public class LongMutableDictionary extends MutableDictionaryReader {
       return;
     }
 
-    if (rawValue instanceof String) {
-      Long e = new Long(Long.parseLong(rawValue.toString()));
-      addToDictionaryBiMap(e);
-      updateMinMax(e);
+    if (rawValue instanceof Object[]) {
+      for (Object o : (Object[]) rawValue) {
+        if (o != null) {
+          indexValue(toLong(o));
+        }
+      }
       return;
     }
 
-    if (rawValue instanceof Long) {
-      addToDictionaryBiMap(rawValue);
-      updateMinMax((Long) rawValue);
-      return;
+    indexValue(toLong(rawValue));
+  }
+
+  @Override
+  public int indexSingleValue(Object rawValue) {
+    if (rawValue == null) {
+      hasNull = true;
+      return NULL_VALUE_INDEX;
     }
+    return indexValue(toLong(rawValue));
+  }
 
-    if (rawValue instanceof Object[]) {
-      for (Object o : (Object[]) rawValue) {
-        if (o instanceof String) {
-          addToDictionaryBiMap(new Long(Long.parseLong(o.toString())));
-          updateMinMax(new Long(Long.parseLong(o.toString())));
-          continue;
-        }
+  private static long toLong(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).longValue();
+    }
+    return Long.parseLong(rawValue.toString());
+  }
 
-        if (o instanceof Long) {
-          addToDictionaryBiMap(o);
-          updateMinMax((Long) o);
-          continue;
-        }
+  private int indexValue(long value) {
+    int existingDictionaryId = getIndexOf(value);
+    if (existingDictionaryId != NULL_VALUE_INDEX) {
+      return existingDictionaryId;
+    }
+    int dictionaryId = length();
+    long[] values = this.values;
+    if (dictionaryId == values.length) {
+      values = Arrays.copyOf(values, getGrownCapacity(values.length));
+      this.values = values;
+    }
+    values[dictionaryId] = value;
+    addDictionaryId(hashCode(value));
+    updateMinMax(value);
+    return dictionaryId;
+  }
+
+  private int getIndexOf(long value) {
+    int length = length();
+    long[] values = this.values;
+    int[] hashTable = getHashTable();
+    int slot = getStartSlot(hashTable, hashCode(value));
+    int dictionaryId;
+    while ((dictionaryId = getDictionaryId(hashTable, slot)) != NULL_VALUE_INDEX && dictionaryId < length) {
+      if (values[dictionaryId] == value) {
+        return dictionaryId;
       }
+      slot = getNextSlot(hashTable, slot);
     }
+    return NULL_VALUE_INDEX;
+  }
+
+  private static int hashCode(long value) {
+    return (int) (value ^ (value >>> 32));
+  }
+
+  @Override
+  protected int getHashCode(int dictionaryId) {
+    return hashCode(values[dictionaryId]);
   }
 
-  private void updateMinMax(Long entry) {
+  private void updateMinMax(long entry) {
     if (entry < min) {
       min = entry;
     }
@@ -73,43 +115,45 @@ public class LongMutableDictionary extends MutableDictionaryReader {
     }
   }
 
-  @Override
-  public boolean contains(Object rawValue) {
-    if (rawValue == null) {
-      return hasNull;
-    }
-    if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Long(Long.parseLong(rawValue.toString())));
-    }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
-  }
-
   @Override
   public int indexOf(Object rawValue) {
-    if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Long(Long.parseLong(rawValue.toString())));
+    if (rawValue == null) {
+      return NULL_VALUE_INDEX;
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getIndexOf(toLong(rawValue));
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return Long.valueOf(values[dictionaryId]);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).longValue();
+    return values[dictionaryId];
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return values[dictionaryId];
+  }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    long[] values = this.values;
+    for (int i = 0; i < length; i++) {
+      outValues[i] = values[dictionaryIds[i]];
+    }
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).toString();
+    return Long.toString(values[dictionaryId]);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Long.toString(values[dictionaryId]);
   }
 
   @Override
@@ -146,13 +190,8 @@ public class LongMutableDictionary extends MutableDictionaryReader {
     return ret;
   }
 
-  @Override
-  public String getStringValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).toString();
-  }
-
-  private long getLong(int dictionaryId) {
-    return ((Long) dictionaryIdBiMap.get(new Integer(dictionaryId))).longValue();
+  public long getLong(int dictionaryId) {
+    return values[dictionaryId];
   }
 
   @Override
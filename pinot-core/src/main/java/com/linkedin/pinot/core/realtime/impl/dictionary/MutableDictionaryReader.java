@@ -15,50 +15,124 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
+/**
+ * Base class of the realtime dictionaries, which assign dictionary ids to values in the order they
+ * are indexed.
+ *
+ * Values are stored by the subclasses in append-only arrays indexed by dictionary id, and looked up
+ * through an open addressing hash table of dictionary ids kept here. There is a single writer thread
+ * (the one calling index()) and any number of reader threads, without locks:
+ * <ul>
+ *   <li>the writer stores the value, then publishes it with a volatile write of the length, then
+ *   adds its id to the hash table;</li>
+ *   <li>readers read the length before the value arrays, and ignore ids in the hash table that are
+ *   not below the length they read;</li>
+ *   <li>arrays and hash table are replaced (never modified in place) when they grow, and published
+ *   through volatile fields.</li>
+ * </ul>
+ */
 public abstract class MutableDictionaryReader implements Dictionary {
-  protected BiMap<Integer, Object> dictionaryIdBiMap;
+  protected static final int INITIAL_CAPACITY = 256;
+
+  private static final int EMPTY_SLOT = 0;
+
   protected FieldSpec spec;
   protected boolean hasNull = false;
-  private final AtomicInteger dictionaryIdGenerator;
+
+  // Slots hold dictionary id + 1, EMPTY_SLOT if unused. The size is a power of two, at most half full.
+  private volatile int[] hashTable = new int[2 * INITIAL_CAPACITY];
+  private volatile int length = 0;
 
   public MutableDictionaryReader(FieldSpec spec) {
     this.spec = spec;
-    this.dictionaryIdBiMap = HashBiMap.<Integer, Object> create();
-    dictionaryIdGenerator = new AtomicInteger(-1);
-  }
-
-  protected void addToDictionaryBiMap(Object val) {
-    if (!dictionaryIdBiMap.inverse().containsKey(val)) {
-      dictionaryIdBiMap.put(new Integer(dictionaryIdGenerator.incrementAndGet()), val);
-      return;
-    }
   }
 
   @Override
   public int length() {
-    return dictionaryIdGenerator.get() + 1;
+    return length;
+  }
+
+  /**
+   * Returns the hash table to probe, to be read once per lookup.
+   */
+  protected int[] getHashTable() {
+    return hashTable;
+  }
+
+  /**
+   * Returns the start slot of the probe sequence for a hash code.
+   */
+  protected static int getStartSlot(int[] hashTable, int hashCode) {
+    // Murmur3 finalizer, so that sequential values do not cluster
+    int h = hashCode;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h & (hashTable.length - 1);
+  }
+
+  protected static int getNextSlot(int[] hashTable, int slot) {
+    return (slot + 1) & (hashTable.length - 1);
   }
 
-  protected Integer getIndexOfFromBiMap(Object val) {
-    Integer ret = dictionaryIdBiMap.inverse().get(val);
-    if (ret == null) {
-      ret = -1;
+  /**
+   * Returns the dictionary id in a slot, or NULL_VALUE_INDEX if the slot is empty.
+   *
+   * A probe can stop at the first id that is not below the length read before the lookup: ids are
+   * inserted in increasing order, so the probe sequence of a published value only goes through slots
+   * holding smaller ids.
+   */
+  protected static int getDictionaryId(int[] hashTable, int slot) {
+    return hashTable[slot] - 1;
+  }
+
+  /**
+   * Writer only: publishes the value the subclass stored at dictionary id length(), and returns its id.
+   */
+  protected int addDictionaryId(int hashCode) {
+    int dictionaryId = length;
+    length = dictionaryId + 1;
+
+    int[] table = hashTable;
+    if (2 * (dictionaryId + 1) > table.length) {
+      table = new int[2 * table.length];
+      for (int i = 0; i < dictionaryId; i++) {
+        insert(table, i, getHashCode(i));
+      }
+      insert(table, dictionaryId, hashCode);
+      hashTable = table;
+    } else {
+      insert(table, dictionaryId, hashCode);
+    }
+    return dictionaryId;
+  }
+
+  private static void insert(int[] table, int dictionaryId, int hashCode) {
+    int slot = getStartSlot(table, hashCode);
+    while (table[slot] != EMPTY_SLOT) {
+      slot = getNextSlot(table, slot);
     }
-    return ret;
+    table[slot] = dictionaryId + 1;
   }
 
-  protected Object getRawValueFromBiMap(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId));
+  /**
+   * Returns the capacity to grow a value array to, so that it can hold the value of dictionary id length().
+   */
+  protected static int getGrownCapacity(int capacity) {
+    return 2 * capacity;
   }
 
+  /**
+   * Returns the hash code of the value with the given dictionary id, the same one passed to addDictionaryId().
+   */
+  protected abstract int getHashCode(int dictionaryId);
+
   public boolean hasNull() {
     return hasNull;
   }
@@ -69,10 +143,20 @@ public abstract class MutableDictionaryReader implements Dictionary {
 
   public abstract void index(Object rawValue);
 
+  /**
+   * Indexes a single value (not an array of values) and returns its dictionary id, NULL_VALUE_INDEX for null.
+   */
+  public abstract int indexSingleValue(Object rawValue);
+
   @Override
   public abstract int indexOf(Object rawValue);
 
-  public abstract boolean contains(Object o);
+  public boolean contains(Object rawValue) {
+    if (rawValue == null) {
+      return hasNull;
+    }
+    return indexOf(rawValue) != NULL_VALUE_INDEX;
+  }
 
   @Override
   public abstract Object get(int dictionaryId);
@@ -90,18 +174,32 @@ public abstract class MutableDictionaryReader implements Dictionary {
   @Override
   public abstract double getDoubleValue(int dictionaryId);
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = getDoubleValue(dictionaryIds[i]);
+    }
+  }
+
   @Override
   public abstract String toString(int dictionaryId);
 
   public void print() {
     System.out.println("************* printing dictionary for column : " + spec.getName() + " ***************");
-    for (Integer key : dictionaryIdBiMap.keySet()) {
-      System.out.println(key + "," + dictionaryIdBiMap.get(key));
+    int length = length();
+    for (int i = 0; i < length; i++) {
+      System.out.println(i + "," + get(i));
     }
     System.out.println("************************************");
   }
 
   public boolean isEmpty() {
-    return dictionaryIdBiMap.isEmpty();
+    return length() == 0;
+  }
+
+  /**
+   * Releases the off-heap memory of the dictionary, once no reader uses it anymore.
+   */
+  public void close() {
   }
 }
@@ -15,30 +15,136 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.utils.MmapUtils;
 
 
+/**
+ * Stores the UTF-8 bytes of the values back to back in a direct byte buffer, with the offset, length
+ * and hash code of each value in int arrays indexed by dictionary id.
+ */
 public class StringMutableDictionary extends MutableDictionaryReader {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int INITIAL_BUFFER_SIZE = 16 * INITIAL_CAPACITY;
 
   private String min = null;
   private String max = null;
 
+  private volatile int[] offsets = new int[INITIAL_CAPACITY];
+  private volatile int[] lengths = new int[INITIAL_CAPACITY];
+  private volatile int[] hashCodes = new int[INITIAL_CAPACITY];
+  private volatile ByteBuffer valueBuffer;
+  private int valueBufferSize = 0;
+  // Value buffers replaced when growing, released on close() only as readers may still hold them
+  private final List<ByteBuffer> replacedValueBuffers = new ArrayList<ByteBuffer>();
+
   public StringMutableDictionary(FieldSpec spec) {
     super(spec);
+    valueBuffer = allocateValueBuffer(INITIAL_BUFFER_SIZE);
+  }
+
+  private ByteBuffer allocateValueBuffer(int capacity) {
+    return MmapUtils.allocateDirectByteBuffer(capacity, null,
+        StringMutableDictionary.class.getSimpleName() + " values for column " + spec.getName());
   }
 
   @Override
   public void index(Object rawValue) {
     if (rawValue instanceof Object[]) {
       for (Object o : (Object[]) rawValue) {
-        addToDictionaryBiMap(o.toString());
-        updateMinMax(o.toString());
+        indexValue(o.toString());
       }
       return;
     }
 
-    addToDictionaryBiMap(rawValue.toString());
-    updateMinMax(rawValue.toString());
+    indexValue(rawValue.toString());
+  }
+
+  @Override
+  public int indexSingleValue(Object rawValue) {
+    return indexValue(rawValue.toString());
+  }
+
+  private int indexValue(String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    int hashCode = Arrays.hashCode(bytes);
+    int existingDictionaryId = getIndexOf(bytes, hashCode);
+    if (existingDictionaryId != NULL_VALUE_INDEX) {
+      return existingDictionaryId;
+    }
+
+    int dictionaryId = length();
+    if (dictionaryId == offsets.length) {
+      int capacity = getGrownCapacity(offsets.length);
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      hashCodes = Arrays.copyOf(hashCodes, capacity);
+    }
+    ByteBuffer valueBuffer = this.valueBuffer;
+    if (valueBufferSize + bytes.length > valueBuffer.capacity()) {
+      // Readers may still hold the old buffer, so it is only released when the dictionary is closed
+      int capacity = valueBuffer.capacity();
+      while (valueBufferSize + bytes.length > capacity) {
+        capacity *= 2;
+      }
+      ByteBuffer newValueBuffer = allocateValueBuffer(capacity);
+      ByteBuffer usedValueBuffer = valueBuffer.duplicate();
+      usedValueBuffer.position(0).limit(valueBufferSize);
+      newValueBuffer.put(usedValueBuffer);
+      replacedValueBuffers.add(valueBuffer);
+      valueBuffer = newValueBuffer;
+      this.valueBuffer = newValueBuffer;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      valueBuffer.put(valueBufferSize + i, bytes[i]);
+    }
+
+    offsets[dictionaryId] = valueBufferSize;
+    lengths[dictionaryId] = bytes.length;
+    hashCodes[dictionaryId] = hashCode;
+    valueBufferSize += bytes.length;
+    addDictionaryId(hashCode);
+    updateMinMax(value);
+    return dictionaryId;
+  }
+
+  private int getIndexOf(byte[] bytes, int hashCode) {
+    int length = length();
+    int[] offsets = this.offsets;
+    int[] lengths = this.lengths;
+    int[] hashCodes = this.hashCodes;
+    ByteBuffer valueBuffer = this.valueBuffer;
+    int[] hashTable = getHashTable();
+    int slot = getStartSlot(hashTable, hashCode);
+    int dictionaryId;
+    while ((dictionaryId = getDictionaryId(hashTable, slot)) != NULL_VALUE_INDEX && dictionaryId < length) {
+      if (hashCodes[dictionaryId] == hashCode && lengths[dictionaryId] == bytes.length
+          && equals(valueBuffer, offsets[dictionaryId], bytes)) {
+        return dictionaryId;
+      }
+      slot = getNextSlot(hashTable, slot);
+    }
+    return NULL_VALUE_INDEX;
+  }
+
+  private static boolean equals(ByteBuffer valueBuffer, int offset, byte[] bytes) {
+    for (int i = 0; i < bytes.length; i++) {
+      if (valueBuffer.get(offset + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected int getHashCode(int dictionaryId) {
+    return hashCodes[dictionaryId];
   }
 
   private void updateMinMax(String entry) {
@@ -58,21 +164,17 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   }
 
   @Override
-  public boolean contains(Object rawValue) {
+  public int indexOf(Object rawValue) {
     if (rawValue == null) {
-      return hasNull;
+      return NULL_VALUE_INDEX;
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue.toString());
-  }
-
-  @Override
-  public int indexOf(Object rawValue) {
-    return getIndexOfFromBiMap(rawValue.toString());
+    byte[] bytes = rawValue.toString().getBytes(UTF_8);
+    return getIndexOf(bytes, Arrays.hashCode(bytes));
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getString(dictionaryId);
   }
 
   @Override
@@ -87,12 +189,12 @@ public class StringMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String toString(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return getString(dictionaryId);
   }
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return getString(dictionaryId);
   }
 
   @Override
@@ -126,7 +228,13 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   }
 
   private String getString(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId)).toString();
+    int offset = offsets[dictionaryId];
+    byte[] bytes = new byte[lengths[dictionaryId]];
+    ByteBuffer valueBuffer = this.valueBuffer;
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = valueBuffer.get(offset + i);
+    }
+    return new String(bytes, UTF_8);
   }
 
   @Override
@@ -139,4 +247,14 @@ public class StringMutableDictionary extends MutableDictionaryReader {
     return max;
   }
 
+  @Override
+  public void close() {
+    for (ByteBuffer replacedValueBuffer : replacedValueBuffers) {
+      MmapUtils.unloadByteBuffer(replacedValueBuffer);
+    }
+    replacedValueBuffers.clear();
+    MmapUtils.unloadByteBuffer(valueBuffer);
+    valueBuffer = null;
+  }
+
 }
@@ -20,9 +20,19 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 
 
+/**
+ * Inverted index of a consuming segment. It is written by the single indexing thread while query threads read it.
+ */
 public interface RealtimeInvertedIndex extends InvertedIndexReader {
-  public void add(Object dictId, int docId);
+  /**
+   * Adds the doc to the docs of the dictionary id. Must only be called from the indexing thread, with increasing
+   * doc ids.
+   */
+  public void add(int dictId, int docId);
 
-  public MutableRoaringBitmap getDocIdSetFor(Object dicId);
+  /**
+   * @return copy of the docs indexed so far for the dictionary id, empty if there are none
+   */
+  public MutableRoaringBitmap getDocIdSetFor(int dictId);
 
 }
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.invertedIndex;
+
+import java.io.IOException;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+
+
+/**
+ * Realtime inverted index with one bitmap per dictionary id, held in an array indexed by the dictionary id.
+ *
+ * Dictionary ids are dense and only ever appended, so the array only grows, and dictionary ids are not boxed. The
+ * array is replaced (never resized in place) when it grows and published through a volatile field, so readers
+ * always see a fully initialized array. A bitmap itself is mutated in place by the indexing thread, so adds and
+ * reader copies are synchronized on the doc ids holding it, including the first add and the publication of a new
+ * one; queries then work on their own copy while indexing continues. The copy handed to filters is kept, and only
+ * taken again once docs were added to the bitmap, so values that stopped getting docs are not copied on every query.
+ */
+public class RealtimeInvertedIndexImpl implements RealtimeInvertedIndex {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String columnName;
+  private volatile DocIds[] docIdsArray = new DocIds[INITIAL_CAPACITY];
+
+  public RealtimeInvertedIndexImpl(String columnName) {
+    this.columnName = columnName;
+  }
+
+  /**
+   * Docs of one dictionary id. All fields are guarded by the instance lock.
+   */
+  private static final class DocIds {
+    private final MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    private int numDocs = 0;
+    private ImmutableRoaringBitmap snapshot = null;
+    private int snapshotNumDocs = 0;
+  }
+
+  @Override
+  public void add(int dictId, int docId) {
+    DocIds[] docIdsArray = this.docIdsArray;
+    if (dictId >= docIdsArray.length) {
+      DocIds[] newDocIdsArray = new DocIds[Math.max(docIdsArray.length * 2, dictId + 1)];
+      System.arraycopy(docIdsArray, 0, newDocIdsArray, 0, docIdsArray.length);
+      docIdsArray = newDocIdsArray;
+    }
+    DocIds docIds = docIdsArray[dictId];
+    if (docIds == null) {
+      docIds = new DocIds();
+      synchronized (docIds) {
+        docIds.bitmap.add(docId);
+        docIds.numDocs++;
+        // Readers that see the new doc ids before this lock is released block on it until the first add is visible
+        docIdsArray[dictId] = docIds;
+        // Volatile write after the element write publishes a grown array to readers
+        this.docIdsArray = docIdsArray;
+      }
+    } else {
+      synchronized (docIds) {
+        docIds.bitmap.add(docId);
+        docIds.numDocs++;
+      }
+    }
+  }
+
+  private DocIds getDocIds(int dictId) {
+    DocIds[] docIdsArray = this.docIdsArray;
+    if (dictId < 0 || dictId >= docIdsArray.length) {
+      return null;
+    }
+    return docIdsArray[dictId];
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(int dictId) {
+    DocIds docIds = getDocIds(dictId);
+    if (docIds == null) {
+      // The dictionary id can be visible before its first doc is indexed
+      return new MutableRoaringBitmap();
+    }
+    synchronized (docIds) {
+      return docIds.bitmap.clone();
+    }
+  }
+
+  @Override
+  public ImmutableRoaringBitmap getImmutable(int idx) {
+    DocIds docIds = getDocIds(idx);
+    if (docIds == null) {
+      return new MutableRoaringBitmap();
+    }
+    synchronized (docIds) {
+      if (docIds.snapshot == null || docIds.snapshotNumDocs != docIds.numDocs) {
+        docIds.snapshot = docIds.bitmap.clone();
+        docIds.snapshotNumDocs = docIds.numDocs;
+      }
+      return docIds.snapshot;
+    }
+  }
+
+  @Override
+  public IntPair getMinMaxRangeFor(int docId) {
+    throw new UnsupportedOperationException("getMinMaxRangeFor is not supported by the inverted index of " + columnName);
+  }
+
+  @Override
+  public void close() throws IOException {
+    docIdsArray = new DocIds[0];
+  }
+}
@@ -19,13 +19,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericData.Record;
 import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.commons.lang.StringUtils;
@@ -41,8 +41,15 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
 
   public static final String SCHEMA_REGISTRY_REST_URL = "schema.registry.rest.url";
   public static final String SCHEMA_REGISTRY_SCHEMA_NAME = "schema.registry.schema.name";
+  private static final int MD5_LENGTH = 16;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
   private org.apache.avro.Schema defaultAvroSchema;
   private Map<String, org.apache.avro.Schema> md5ToAvroSchemaMap;
+  private Map<String, DatumReader<Record>> md5ToDatumReaderMap;
+
+  // decoders are used by a single thread, so the binary decoder and the avro record are reused across messages
+  private BinaryDecoder binaryDecoder;
+  private Record avroRecord;
 
   private String schemaRegistryBaseUrl;
   private String kafkaTopicName;
@@ -68,6 +75,7 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
     this.avroRecordConvetrer = new AvroRecordToPinotRowGenerator(indexingSchema);
     this.decoderFactory = new DecoderFactory();
     md5ToAvroSchemaMap = new HashMap<String, org.apache.avro.Schema>();
+    md5ToDatumReaderMap = new HashMap<String, DatumReader<Record>>();
   }
 
   @Override
@@ -78,28 +86,28 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
 
     // can use the md5 hash to fetch id specific schema
     // will implement that later
-    byte[] md5 = new byte[16];
-    md5 = Arrays.copyOfRange(payload, 1, 1 + md5.length);
-
-    String md5String = hex(md5);
+    String md5String = hex(payload, 1, MD5_LENGTH);
     org.apache.avro.Schema schema = null;
-    if (md5ToAvroSchemaMap.containsKey(md5String)) {
+    DatumReader<Record> reader = md5ToDatumReaderMap.get(md5String);
+    if (reader != null) {
       schema = md5ToAvroSchemaMap.get(md5String);
     } else {
       try {
         schema = fetchSchema(new URL(schemaRegistryBaseUrl + "/id=" + md5String));
         md5ToAvroSchemaMap.put(md5String, schema);
+        reader = new GenericDatumReader<Record>(schema);
+        md5ToDatumReaderMap.put(md5String, reader);
       } catch (Exception e) {
         schema = defaultAvroSchema;
+        reader = new GenericDatumReader<Record>(schema);
         LOGGER.error("error fetching schema from md5 String", e);
       }
     }
-    int start = 1 + md5.length;
-    int length = payload.length - 1 - md5.length;
-    DatumReader<Record> reader = new GenericDatumReader<Record>(schema);
+    int start = 1 + MD5_LENGTH;
+    int length = payload.length - 1 - MD5_LENGTH;
     try {
-      GenericData.Record avroRecord =
-          reader.read(null, decoderFactory.createBinaryDecoder(payload, start, length, null));
+      binaryDecoder = decoderFactory.binaryDecoder(payload, start, length, binaryDecoder);
+      avroRecord = reader.read(avroRecord, binaryDecoder);
       return avroRecordConvetrer.transform(avroRecord, schema);
     } catch (IOException e) {
       LOGGER.error("Caught exception while reading message", e);
@@ -108,15 +116,17 @@ public class KafkaAvroMessageDecoder implements KafkaMessageDecoder {
   }
 
   public static String hex(byte[] bytes) {
-    StringBuilder builder = new StringBuilder(2 * bytes.length);
-    for (int i = 0; i < bytes.length; i++) {
-      String hexString = Integer.toHexString(0xFF & bytes[i]);
-      if (hexString.length() < 2) {
-        hexString = "0" + hexString;
-      }
-      builder.append(hexString);
+    return hex(bytes, 0, bytes.length);
+  }
+
+  public static String hex(byte[] bytes, int offset, int length) {
+    char[] chars = new char[2 * length];
+    for (int i = 0; i < length; i++) {
+      int b = 0xFF & bytes[offset + i];
+      chars[2 * i] = HEX_DIGITS[b >>> 4];
+      chars[2 * i + 1] = HEX_DIGITS[b & 0x0F];
     }
-    return builder.toString();
+    return new String(chars);
   }
 
   public static org.apache.avro.Schema fetchSchema(URL url) throws Exception {
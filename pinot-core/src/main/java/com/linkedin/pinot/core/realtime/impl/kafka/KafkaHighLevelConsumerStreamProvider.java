@@ -25,7 +25,7 @@ import kafka.consumer.KafkaStream;
 import kafka.javaapi.consumer.ConsumerConnector;
 
 import com.linkedin.pinot.core.data.GenericRow;
-import com.linkedin.pinot.core.realtime.StreamProvider;
+import com.linkedin.pinot.core.realtime.RawMessageStreamProvider;
 import com.linkedin.pinot.core.realtime.StreamProviderConfig;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
@@ -37,7 +37,7 @@ import org.slf4j.LoggerFactory;
 /**
  *
  */
-public class KafkaHighLevelConsumerStreamProvider implements StreamProvider {
+public class KafkaHighLevelConsumerStreamProvider implements RawMessageStreamProvider {
   private static final Logger LOGGER = LoggerFactory.getLogger(KafkaHighLevelConsumerStreamProvider.class);
 
   private static Counter kafkaEventsConsumedCount = Metrics.newCounter(new MetricName(KafkaHighLevelConsumerStreamProvider.class, "kafkaEventsConsumedCount"));
@@ -76,16 +76,24 @@ public class KafkaHighLevelConsumerStreamProvider implements StreamProvider {
 
   @Override
   public GenericRow next() {
+    byte[] message = nextMessage();
+    if (message != null) {
+      try {
+        return decoder.decode(message);
+      } catch (Exception e) {
+        onDecodeFailure(e);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public byte[] nextMessage() {
     try {
       if (kafkaIterator.hasNext()) {
-        try {
-          GenericRow row = decoder.decode(kafkaIterator.next().message());
-          kafkaEventsConsumedCount.inc();
-          return row;
-        } catch (Exception e) {
-          LOGGER.warn("Caught exception while consuming events", e);
-          kafkaEventsFailedCount.inc();
-        }
+        byte[] message = kafkaIterator.next().message();
+        kafkaEventsConsumedCount.inc();
+        return message;
       }
     } catch (ConsumerTimeoutException e) {
       return null;
@@ -95,6 +103,17 @@ public class KafkaHighLevelConsumerStreamProvider implements StreamProvider {
     return null;
   }
 
+  @Override
+  public KafkaMessageDecoder createDecoder() throws Exception {
+    return streamProviderConfig.getDecoder();
+  }
+
+  @Override
+  public void onDecodeFailure(Throwable cause) {
+    LOGGER.warn("Caught exception while consuming events", cause);
+    kafkaEventsFailedCount.inc();
+  }
+
   @Override
   public GenericRow next(long offset) {
     throw new UnsupportedOperationException();
@@ -34,6 +34,7 @@ public class KafkaHighLevelStreamProviderConfig implements StreamProviderConfig
   public static final int FIVE_MILLION = 5000000;
   private final static long ONE_MINUTE_IN_MILLSEC = 1000 * 60;
   public static final long ONE_HOUR = ONE_MINUTE_IN_MILLSEC * 60;
+  public static final int DEFAULT_DECODE_QUEUE_SIZE = 1000;
 
   static {
     defaultProps = new HashMap<String, String>();
@@ -57,6 +58,8 @@ public class KafkaHighLevelStreamProviderConfig implements StreamProviderConfig
   private Map<String, String> consumerProps;
   private long segmentTimeInMillis = ONE_HOUR;
   private int realtimeRecordsThreshold = FIVE_MILLION;
+  private int numDecodeThreads = 0;
+  private int decodeQueueSize = DEFAULT_DECODE_QUEUE_SIZE;
 
   /*
    * kafka.hlc.zk.connect.string : comma separated list of hosts
@@ -186,6 +189,16 @@ public class KafkaHighLevelStreamProviderConfig implements StreamProviderConfig
           Long.parseLong(tableConfig.getIndexingConfig().getStreamConfigs().get(Helix.DataSource.Realtime.REALTIME_SEGMENT_FLUSH_TIME));
     }
 
+    if (tableConfig.getIndexingConfig().getStreamConfigs().containsKey(Helix.DataSource.Realtime.REALTIME_DECODE_THREADS)) {
+      numDecodeThreads =
+          Integer.parseInt(tableConfig.getIndexingConfig().getStreamConfigs().get(Helix.DataSource.Realtime.REALTIME_DECODE_THREADS));
+    }
+
+    if (tableConfig.getIndexingConfig().getStreamConfigs().containsKey(Helix.DataSource.Realtime.REALTIME_DECODE_QUEUE_SIZE)) {
+      decodeQueueSize =
+          Integer.parseInt(tableConfig.getIndexingConfig().getStreamConfigs().get(Helix.DataSource.Realtime.REALTIME_DECODE_QUEUE_SIZE));
+    }
+
   }
 
   @Override
@@ -197,4 +210,18 @@ public class KafkaHighLevelStreamProviderConfig implements StreamProviderConfig
   public long getTimeThresholdToFlushSegment() {
     return segmentTimeInMillis;
   }
+
+  /**
+   * @return num threads decoding messages ahead of the indexing thread, 0 if messages are decoded by the indexing thread
+   */
+  public int getNumDecodeThreads() {
+    return numDecodeThreads;
+  }
+
+  /**
+   * @return max num decoded rows waiting for the indexing thread
+   */
+  public int getDecodeQueueSize() {
+    return decodeQueueSize;
+  }
 }
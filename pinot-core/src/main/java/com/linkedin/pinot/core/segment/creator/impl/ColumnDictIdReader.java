@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import java.io.IOException;
+
+
+/**
+ * Source of the values of one column for {@link SegmentColumnarIndexCreator#indexColumn}, read one doc at a time
+ * in doc id order and returned as dictionary ids of the segment being created.
+ */
+public interface ColumnDictIdReader {
+
+  /**
+   * Positions the reader before the first doc.
+   */
+  void startReading() throws IOException;
+
+  /**
+   * Returns the dictionary id of the value of the next doc, for a single value column.
+   */
+  int readSVDictId(SegmentDictionaryCreator dictionary) throws IOException;
+
+  /**
+   * Returns the dictionary ids of the values of the next doc, for a multi value column.
+   */
+  int[] readMVDictIds(SegmentDictionaryCreator dictionary) throws IOException;
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+
+
+/**
+ * Spills the values of one column to a temporary file as they are read, so that the column can be
+ * indexed on its own once the dictionary is built, without reading the input a second time.
+ *
+ * Values are written in the column data type: ints, longs, floats and doubles as is, strings and
+ * booleans as length prefixed UTF-8 bytes. A multi value entry is prefixed with its number of
+ * values. Values are read back in the same order, one doc at a time, through readSVDictId() and
+ * readMVDictIds().
+ */
+public class ColumnSpillBuffer implements ColumnDictIdReader, Closeable {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+  private final FieldSpec _spec;
+  private final File _file;
+  private DataOutputStream _output;
+  private DataInputStream _input;
+  private byte[] _stringBuffer = new byte[64];
+
+  public ColumnSpillBuffer(FieldSpec spec, File file) throws IOException {
+    _spec = spec;
+    _file = file;
+    _output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+  }
+
+  /**
+   * Appends the value of the next doc, either a single value or an Object[] for a multi value column.
+   */
+  public void add(Object value) throws IOException {
+    if (_spec.isSingleValueField()) {
+      writeValue(value);
+    } else {
+      final Object[] values = (Object[]) value;
+      _output.writeInt(values.length);
+      for (Object element : values) {
+        writeValue(element);
+      }
+    }
+  }
+
+  private void writeValue(Object value) throws IOException {
+    switch (_spec.getDataType()) {
+      case INT:
+        _output.writeInt(((Number) value).intValue());
+        break;
+      case LONG:
+        _output.writeLong(((Number) value).longValue());
+        break;
+      case FLOAT:
+        _output.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        _output.writeDouble(((Number) value).doubleValue());
+        break;
+      case STRING:
+      case BOOLEAN:
+        // Same null handling as the string stats collector
+        final String stringValue = value != null ? value.toString() : _spec.getDefaultNullValue().toString();
+        final byte[] bytes = stringValue.getBytes(UTF_8);
+        _output.writeInt(bytes.length);
+        _output.write(bytes);
+        break;
+      default:
+        throw new UnsupportedOperationException("Unsupported data type : " + _spec.getDataType() + " for column : "
+            + _spec.getName());
+    }
+  }
+
+  /**
+   * Ends the write phase and rewinds to the first doc.
+   */
+  @Override
+  public void startReading() throws IOException {
+    if (_output != null) {
+      _output.close();
+      _output = null;
+    }
+    IOUtils.closeQuietly(_input);
+    _input = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), IO_BUFFER_SIZE));
+  }
+
+  /**
+   * Reads the value of the next doc of a single value column and returns its dictionary id.
+   */
+  @Override
+  public int readSVDictId(SegmentDictionaryCreator dictionary) throws IOException {
+    return readDictId(dictionary);
+  }
+
+  /**
+   * Reads the values of the next doc of a multi value column and returns their dictionary ids.
+   */
+  @Override
+  public int[] readMVDictIds(SegmentDictionaryCreator dictionary) throws IOException {
+    final int[] dictIds = new int[_input.readInt()];
+    for (int i = 0; i < dictIds.length; i++) {
+      dictIds[i] = readDictId(dictionary);
+    }
+    return dictIds;
+  }
+
+  private int readDictId(SegmentDictionaryCreator dictionary) throws IOException {
+    switch (_spec.getDataType()) {
+      case INT:
+        return dictionary.indexOfInt(_input.readInt());
+      case LONG:
+        return dictionary.indexOfLong(_input.readLong());
+      case FLOAT:
+        return dictionary.indexOfFloat(_input.readFloat());
+      case DOUBLE:
+        return dictionary.indexOfDouble(_input.readDouble());
+      case STRING:
+      case BOOLEAN:
+        final int length = _input.readInt();
+        if (_stringBuffer.length < length) {
+          _stringBuffer = new byte[Math.max(length, 2 * _stringBuffer.length)];
+        }
+        _input.readFully(_stringBuffer, 0, length);
+        return dictionary.indexOfString(new String(_stringBuffer, 0, length, UTF_8));
+      default:
+        throw new UnsupportedOperationException("Unsupported data type : " + _spec.getDataType() + " for column : "
+            + _spec.getName());
+    }
+  }
+
+  /**
+   * Closes the streams and deletes the spill file.
+   */
+  @Override
+  public void close() throws IOException {
+    IOUtils.closeQuietly(_output);
+    IOUtils.closeQuietly(_input);
+    _output = null;
+    _input = null;
+    FileUtils.deleteQuietly(_file);
+  }
+}
@@ -25,6 +25,8 @@ import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataK
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.IS_SINGLE_VALUED;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.IS_SORTED;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MAX_MULTI_VALUE_ELEMTS;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MAX_VALUE;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MIN_VALUE;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.TOTAL_DOCS;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.TOTAL_NUMBER_OF_ENTRIES;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.DIMENSIONS;
@@ -40,8 +42,16 @@ import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataK
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
@@ -82,12 +92,25 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   private int totalDocs;
   private int docIdCounter;
   private Map<String, Map<Object, Object>> dictionaryCache = new HashMap<String, Map<Object, Object>>();
+  private final Set<String> sealedColumns = new HashSet<String>();
 
   @Override
   public void init(SegmentGeneratorConfig segmentCreationSpec,
       Map<String, ColumnIndexCreationInfo> indexCreationInfoMap, Schema schema, int totalDocs, File outDir)
       throws Exception {
+    init(segmentCreationSpec, indexCreationInfoMap, schema, totalDocs, outDir, null);
+  }
+
+  /**
+   * Same as {@link #init(SegmentGeneratorConfig, Map, Schema, int, File)}, but builds the column
+   * dictionaries on the given executor, one task per column. A null executor builds them on the
+   * calling thread.
+   */
+  public void init(SegmentGeneratorConfig segmentCreationSpec,
+      Map<String, ColumnIndexCreationInfo> indexCreationInfoMap, Schema schema, int totalDocs, File outDir,
+      ExecutorService executor) throws Exception {
     docIdCounter = 0;
+    sealedColumns.clear();
     config = segmentCreationSpec;
     this.indexCreationInfoMap = indexCreationInfoMap;
     dictionaryCreatorMap = new HashMap<String, SegmentDictionaryCreator>();
@@ -117,10 +140,26 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
         throw new RuntimeException("Creation of indices without dictionaries is not implemented!");
       }
     }
+    if (executor == null) {
+      for (SegmentDictionaryCreator dictionaryCreator : dictionaryCreatorMap.values()) {
+        dictionaryCreator.build();
+      }
+    } else {
+      final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (final SegmentDictionaryCreator dictionaryCreator : dictionaryCreatorMap.values()) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            dictionaryCreator.build();
+            return null;
+          }
+        });
+      }
+      runAll(executor, tasks);
+    }
 
-    // For each column, build its dictionary and initialize a forwards and an inverted index
+    // For each column, initialize a forwards and an inverted index
     for (final String column : dictionaryCreatorMap.keySet()) {
-      dictionaryCreatorMap.get(column).build();
       dictionaryCache.put(column, new HashMap<Object, Object>());
       ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
       int uniqueValueCount = indexCreationInfo.getDistinctValueCount();
@@ -186,18 +225,78 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     this.segmentName = segmentName;
   }
 
+  /**
+   * Indexes all docs of one column from the given reader, then closes the column's forward index,
+   * dictionary and inverted index. This is the column at a time alternative to indexRow(): columns
+   * share no state, so different columns can be indexed concurrently, while each column must be
+   * indexed by a single thread. seal() still has to be called once all columns are done.
+   */
+  public void indexColumn(String column, ColumnDictIdReader values) throws IOException {
+    final SegmentDictionaryCreator dictionaryCreator = dictionaryCreatorMap.get(column);
+    final ForwardIndexCreator forwardIndexCreator = forwardIndexCreatorMap.get(column);
+    final InvertedIndexCreator invertedIndexCreator = invertedIndexCreatorMap.get(column);
+    values.startReading();
+    if (schema.getFieldSpecFor(column).isSingleValueField()) {
+      final SingleValueForwardIndexCreator svForwardIndexCreator = (SingleValueForwardIndexCreator) forwardIndexCreator;
+      for (int docId = 0; docId < totalDocs; docId++) {
+        final int dictionaryIndex = values.readSVDictId(dictionaryCreator);
+        svForwardIndexCreator.index(docId, dictionaryIndex);
+        if (invertedIndexCreator != null) {
+          invertedIndexCreator.add(docId, dictionaryIndex);
+        }
+      }
+    } else {
+      final MultiValueForwardIndexCreator mvForwardIndexCreator = (MultiValueForwardIndexCreator) forwardIndexCreator;
+      for (int docId = 0; docId < totalDocs; docId++) {
+        final int[] dictionaryIndex = values.readMVDictIds(dictionaryCreator);
+        mvForwardIndexCreator.index(docId, dictionaryIndex);
+        if (invertedIndexCreator != null) {
+          invertedIndexCreator.add(docId, dictionaryIndex);
+        }
+      }
+    }
+    sealColumn(column);
+  }
+
+  private void sealColumn(String column) throws IOException {
+    synchronized (sealedColumns) {
+      if (!sealedColumns.add(column)) {
+        return;
+      }
+    }
+    forwardIndexCreatorMap.get(column).close();
+    dictionaryCreatorMap.get(column).close();
+
+    // The map is only initialized for columns that have inverted index creation enabled.
+    if (invertedIndexCreatorMap.containsKey(column)) {
+      invertedIndexCreatorMap.get(column).seal();
+    }
+  }
+
   @Override
   public void seal() throws ConfigurationException, IOException {
     for (final String column : forwardIndexCreatorMap.keySet()) {
-      forwardIndexCreatorMap.get(column).close();
-      dictionaryCreatorMap.get(column).close();
+      sealColumn(column);
     }
+    writeMetadata();
+  }
 
-    // The map is only initialized for columns that have inverted index creation enabled.
-    for (final String invertedColumn : invertedIndexCreatorMap.keySet()) {
-      invertedIndexCreatorMap.get(invertedColumn).seal();
+  /**
+   * Runs the tasks on the executor and waits for all of them, rethrowing the first failure.
+   */
+  static void runAll(ExecutorService executor, List<Callable<Void>> tasks) throws Exception {
+    final List<Future<Void>> futures = executor.invokeAll(tasks);
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        throw new RuntimeException(cause);
+      }
     }
-    writeMetadata();
   }
 
   void writeMetadata() throws ConfigurationException {
@@ -271,9 +370,32 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, TOTAL_NUMBER_OF_ENTRIES),
           String.valueOf(columnIndexCreationInfo.getTotalNumberOfEntries()));
 
+      final String minValue = toMetadataValue(columnIndexCreationInfo.getMin());
+      final String maxValue = toMetadataValue(columnIndexCreationInfo.getMax());
+      if (minValue != null && maxValue != null) {
+        properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MIN_VALUE), minValue);
+        properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MAX_VALUE), maxValue);
+      }
     }
 
     properties.save();
   }
 
+  /**
+   * Returns the string to store for a column min/max value, or null if the value would not read
+   * back unchanged: the properties reader splits values on the list delimiter and trims leading
+   * whitespace. Columns without min/max are simply not pruned on value ranges.
+   */
+  private static String toMetadataValue(Object value) {
+    if (value == null) {
+      return null;
+    }
+    final String stringValue = value.toString();
+    if (stringValue.isEmpty() || stringValue.indexOf(PropertiesConfiguration.getDefaultListDelimiter()) >= 0
+        || !stringValue.trim().equals(stringValue)) {
+      return null;
+    }
+    return stringValue;
+  }
+
 }
@@ -190,6 +190,26 @@ public class SegmentDictionaryCreator implements Closeable {
     }
   }
 
+  public int indexOfInt(int value) {
+    return intValueToIndexMap.get(value);
+  }
+
+  public int indexOfLong(long value) {
+    return longValueToIndexMap.get(value);
+  }
+
+  public int indexOfFloat(float value) {
+    return floatValueToIndexMap.get(value);
+  }
+
+  public int indexOfDouble(double value) {
+    return doubleValueToIndexMap.get(value);
+  }
+
+  public int indexOfString(String value) {
+    return stringValueToIndexMap.getInt(value);
+  }
+
   public int[] indexOfMV(Object e) {
 
     final Object[] multiValues = (Object[]) e;
@@ -19,6 +19,7 @@ import com.linkedin.pinot.common.data.DimensionFieldSpec;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.SegmentNameBuilder;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.readers.RecordReader;
@@ -40,8 +41,13 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.slf4j.Logger;
@@ -109,6 +115,70 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
   @Override
   public void build() throws Exception {
+    if (config.isSinglePassCreation() && !isStarTree) {
+      buildColumnsSinglePass();
+    } else {
+      buildColumnsTwoPass();
+    }
+
+    // Build the segment name, if necessary
+    final String timeColumn = config.getTimeColumnName();
+
+    if (config.getSegmentName() != null) {
+      segmentName = config.getSegmentName();
+    } else {
+      if (timeColumn != null && timeColumn.length() > 0) {
+        final Object minTimeValue = statsCollector.getColumnProfileFor(timeColumn).getMinValue();
+        final Object maxTimeValue = statsCollector.getColumnProfileFor(timeColumn).getMaxValue();
+        segmentName =
+            SegmentNameBuilder.buildBasic(config.getTableName(), minTimeValue, maxTimeValue,
+                config.getSegmentNamePostfix());
+      } else {
+        segmentName =
+            SegmentNameBuilder.buildBasic(config.getTableName(), config.getSegmentNamePostfix());
+      }
+    }
+
+    // Write the index files to disk
+    indexCreator.setSegmentName(segmentName);
+    indexCreator.seal();
+    LOGGER.info("Finished segment seal!");
+
+    // Delete the directory named after the segment name, if it exists
+    final File outputDir = new File(config.getIndexOutputDir());
+    final File segmentOutputDir = new File(outputDir, segmentName);
+    if (segmentOutputDir.exists()) {
+      FileUtils.deleteDirectory(segmentOutputDir);
+    }
+
+    // Move the temporary directory into its final location
+    FileUtils.moveDirectory(tempIndexDir, segmentOutputDir);
+
+    // Delete the temporary directory
+    FileUtils.deleteQuietly(tempIndexDir);
+
+    // Compute CRC
+    final long crc = CrcUtils.forAllFilesInFolder(segmentOutputDir).computeCrc();
+
+    // Persist creation metadata to disk
+    persistCreationMeta(segmentOutputDir, crc);
+    Map<String, MutableLong> nullCountMap = recordReader.getNullCountMap();
+    if (nullCountMap != null) {
+      for (Map.Entry<String, MutableLong> entry : nullCountMap.entrySet()) {
+        AbstractColumnStatisticsCollector columnStatisticsCollector = statsCollector.getColumnProfileFor(entry.getKey());
+        columnStatisticsCollector.setNumInputNullValues(entry.getValue().intValue());
+      }
+    }
+
+    LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
+    LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
+    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
+  }
+
+  /**
+   * Reads the input twice: once to gather the per-column statistics, once to index the rows.
+   */
+  private void buildColumnsTwoPass() throws Exception {
     // Count the number of documents and gather per-column statistics
     LOGGER.info("Start building StatsCollector!");
     totalDocs = 0;
@@ -141,6 +211,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
       statsCollector.collectRow(allRow);
     }
 
+    statsCollector.build();
     buildIndexCreationInfo();
     LOGGER.info("Finished building StatsCollector!");
     LOGGER.info("Collected stats for {} documents", totalDocs);
@@ -163,58 +234,82 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     recordReader.close();
     LOGGER.info("Finished records indexing in IndexCreator!");
 
-    // Build the segment name, if necessary
-    final String timeColumn = config.getTimeColumnName();
+  }
 
-    if (config.getSegmentName() != null) {
-      segmentName = config.getSegmentName();
-    } else {
-      if (timeColumn != null && timeColumn.length() > 0) {
-        final Object minTimeValue = statsCollector.getColumnProfileFor(timeColumn).getMinValue();
-        final Object maxTimeValue = statsCollector.getColumnProfileFor(timeColumn).getMaxValue();
-        segmentName =
-            SegmentNameBuilder.buildBasic(config.getTableName(), minTimeValue, maxTimeValue,
-                config.getSegmentNamePostfix());
-      } else {
-        segmentName =
-            SegmentNameBuilder.buildBasic(config.getTableName(), config.getSegmentNamePostfix());
+  /**
+   * Reads the input once, gathering the per-column statistics and spilling the column values to
+   * temporary files. Dictionaries are then sorted and written in parallel, after which every
+   * column's forward and inverted indexes are built in parallel from its spill file.
+   */
+  private void buildColumnsSinglePass() throws Exception {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(config.getNumCreationThreads(), new NamedThreadFactory("segment-creation"));
+    final File spillDir = new File(config.getIndexOutputDir(), com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    final Map<String, ColumnSpillBuffer> spillBuffers = new HashMap<String, ColumnSpillBuffer>();
+    try {
+      spillDir.mkdirs();
+      for (final FieldSpec spec : dataSchema.getAllFieldSpecs()) {
+        spillBuffers.put(spec.getName(), new ColumnSpillBuffer(spec, new File(spillDir, spec.getName() + ".spill")));
       }
-    }
 
-    // Write the index files to disk
-    indexCreator.setSegmentName(segmentName);
-    indexCreator.seal();
-    LOGGER.info("Finished segment seal!");
-
-    // Delete the directory named after the segment name, if it exists
-    final File outputDir = new File(config.getIndexOutputDir());
-    final File segmentOutputDir = new File(outputDir, segmentName);
-    if (segmentOutputDir.exists()) {
-      FileUtils.deleteDirectory(segmentOutputDir);
-    }
-
-    // Move the temporary directory into its final location
-    FileUtils.moveDirectory(tempIndexDir, segmentOutputDir);
-
-    // Delete the temporary directory
-    FileUtils.deleteQuietly(tempIndexDir);
-
-    // Compute CRC
-    final long crc = CrcUtils.forAllFilesInFolder(segmentOutputDir).computeCrc();
+      LOGGER.info("Start reading records in single pass!");
+      totalDocs = 0;
+      while (recordReader.hasNext()) {
+        totalDocs++;
+        long start = System.currentTimeMillis();
+        GenericRow row = recordReader.next();
+        long stop = System.currentTimeMillis();
+        statsCollector.collectRow(row);
+        for (Map.Entry<String, ColumnSpillBuffer> entry : spillBuffers.entrySet()) {
+          entry.getValue().add(row.getValue(entry.getKey()));
+        }
+        long stop1 = System.currentTimeMillis();
+        totalRecordReadTime += (stop - start);
+        totalStatsCollectorTime += (stop1 - stop);
+      }
+      recordReader.close();
+      LOGGER.info("Collected stats and spilled values for {} documents", totalDocs);
 
-    // Persist creation metadata to disk
-    persistCreationMeta(segmentOutputDir, crc);
-    Map<String, MutableLong> nullCountMap = recordReader.getNullCountMap();
-    if (nullCountMap != null) {
-      for (Map.Entry<String, MutableLong> entry : nullCountMap.entrySet()) {
-        AbstractColumnStatisticsCollector columnStatisticsCollector = statsCollector.getColumnProfileFor(entry.getKey());
-        columnStatisticsCollector.setNumInputNullValues(entry.getValue().intValue());
+      // Sort the unique values of every column
+      long start = System.currentTimeMillis();
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (final String column : spillBuffers.keySet()) {
+        final AbstractColumnStatisticsCollector columnStatsCollector = statsCollector.getColumnProfileFor(column);
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            columnStatsCollector.seal();
+            return null;
+          }
+        });
+      }
+      SegmentColumnarIndexCreator.runAll(executor, tasks);
+      buildIndexCreationInfo();
+
+      // Write the dictionaries, then the forward and inverted indexes, one column per task
+      final SegmentColumnarIndexCreator columnarIndexCreator = (SegmentColumnarIndexCreator) indexCreator;
+      columnarIndexCreator.init(config, indexCreationInfoMap, dataSchema, totalDocs, tempIndexDir, executor);
+      tasks = new ArrayList<Callable<Void>>();
+      for (final Map.Entry<String, ColumnSpillBuffer> entry : spillBuffers.entrySet()) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            columnarIndexCreator.indexColumn(entry.getKey(), entry.getValue());
+            entry.getValue().close();
+            return null;
+          }
+        });
       }
+      SegmentColumnarIndexCreator.runAll(executor, tasks);
+      totalIndexTime += System.currentTimeMillis() - start;
+      LOGGER.info("Finished indexing {} columns with {} threads!", spillBuffers.size(), config.getNumCreationThreads());
+    } finally {
+      executor.shutdownNow();
+      for (ColumnSpillBuffer spillBuffer : spillBuffers.values()) {
+        spillBuffer.close();
+      }
+      FileUtils.deleteQuietly(spillDir);
     }
-
-    LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
-    LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
-    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
   }
 
   public ColumnStatistics getColumnStatisticsCollector(final String columnName)  throws Exception {
@@ -229,6 +324,15 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
    * Writes segment creation metadata to disk.
    */
   void persistCreationMeta(File outputDir, long crc) throws IOException {
+    persistCreationMeta(outputDir, crc, config);
+  }
+
+  /**
+   * Writes the creation metadata of a segment built outside of the driver: the CRC of its files and the creation
+   * time from the config, or the current time.
+   */
+  public static void persistCreationMeta(File outputDir, long crc, SegmentGeneratorConfig config)
+      throws IOException {
     final File crcFile = new File(outputDir, V1Constants.SEGMENT_CREATION_META);
     final DataOutputStream out = new DataOutputStream(new FileOutputStream(crcFile));
     out.writeLong(crc);
@@ -250,10 +354,9 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   }
 
   /**
-   * Complete the stats gathering process and store the stats information in indexCreationInfoMap.
+   * Store the stats information of the sealed stats collector in indexCreationInfoMap.
    */
   void buildIndexCreationInfo() throws Exception {
-    statsCollector.build();
     for (final FieldSpec spec : dataSchema.getAllFieldSpecs()) {
       final String column = spec.getName();
       indexCreationInfoMap.put(
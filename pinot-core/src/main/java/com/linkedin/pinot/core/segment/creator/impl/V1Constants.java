@@ -32,6 +32,7 @@ public class V1Constants {
 
   public static final String STARTREE_DIR = "startree";
   public static final String STARTREE_FILE = "startree.ser";
+  public static final String STARTREE_OFF_HEAP_FILE = "startree.bin";
   public static final String STARTREE_ALL = "__ALL__";
   public static final Number STARTREE_ALL_NUMBER = 0;
 
@@ -137,6 +138,8 @@ public class V1Constants {
       public static final String MAX_MULTI_VALUE_ELEMTS = "maxNumberOfMultiValues";
 
       public static final String TOTAL_NUMBER_OF_ENTRIES = "totalNumberOfEntries";
+      public static final String MIN_VALUE = "minValue";
+      public static final String MAX_VALUE = "maxValue";
       public static final String COLUMN_PROPS_KEY_PREFIX = "column.";
 
       public static String getKeyFor(String column, String key) {
@@ -57,6 +57,13 @@ public class HeapBitmapInvertedIndexCreator implements InvertedIndexCreator {
     invertedIndex[dictionaryId].add(docId);
   }
 
+  /**
+   * Sets all doc ids of a dictionary id at once, from an inverted index that is already built.
+   */
+  public void set(int dictionaryId, MutableRoaringBitmap docIds) {
+    invertedIndex[dictionaryId] = docIds;
+  }
+
   @Override
   public long totalTimeTakeSoFar() {
     return (System.currentTimeMillis() - start);
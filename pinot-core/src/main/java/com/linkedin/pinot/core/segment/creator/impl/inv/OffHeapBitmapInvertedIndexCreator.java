@@ -91,6 +91,7 @@ public class OffHeapBitmapInvertedIndexCreator implements InvertedIndexCreator {
   IntBuffer postingListStartOffsets; // start offset in posting List Buffer
   IntBuffer postingListCurrentOffsets; // start offset in posting List Buffer
   private int numDocs;
+  private int nextMultiValueOffset = 0; // offset in value buffer of the next multi value entry
   /**
    * Num of bytes required to store an INT
    */
@@ -288,11 +289,12 @@ public class OffHeapBitmapInvertedIndexCreator implements InvertedIndexCreator {
     for (int i = 0; i < length; i++) {
       final int entry = entries[i];
       Preconditions.checkArgument(entry >= 0, "dictionary Id %s must >=0", entry);
-      valueBuffer.put(docId + i, entry);
+      valueBuffer.put(nextMultiValueOffset + i, entry);
       int postingListLength = postingListLengths.get(entry);
       postingListLengths.put(entry, postingListLength + 1);
     }
     lengths.put(docId, length);
+    nextMultiValueOffset += length;
   }
 
 }
@@ -51,11 +51,22 @@ public class ColumnMetadata {
   private final TimeUnit timeunit;
   private final boolean hasDictionary;
   private final int totalNumberOfEntries;
+  private final String minValue;
+  private final String maxValue;
 
   public ColumnMetadata(String columnName, int cardinality, int totalDocs, DataType dataType, int bitsPerElement,
       int stringColumnMaxLength, FieldType fieldType, boolean isSorted, boolean hasInvertedIndex,
       boolean insSingleValue, int maxNumberOfMultiValues, boolean hasNulls, boolean hasDictionary, TimeUnit timeunit,
       int totalNumberOfEntries) {
+    this(columnName, cardinality, totalDocs, dataType, bitsPerElement, stringColumnMaxLength, fieldType, isSorted,
+        hasInvertedIndex, insSingleValue, maxNumberOfMultiValues, hasNulls, hasDictionary, timeunit,
+        totalNumberOfEntries, null, null);
+  }
+
+  public ColumnMetadata(String columnName, int cardinality, int totalDocs, DataType dataType, int bitsPerElement,
+      int stringColumnMaxLength, FieldType fieldType, boolean isSorted, boolean hasInvertedIndex,
+      boolean insSingleValue, int maxNumberOfMultiValues, boolean hasNulls, boolean hasDictionary, TimeUnit timeunit,
+      int totalNumberOfEntries, String minValue, String maxValue) {
 
     this.columnName = columnName;
     this.cardinality = cardinality;
@@ -72,6 +83,8 @@ public class ColumnMetadata {
     this.timeunit = timeunit;
     this.hasDictionary = hasDictionary;
     this.totalNumberOfEntries = totalNumberOfEntries;
+    this.minValue = minValue;
+    this.maxValue = maxValue;
   }
 
   public String getColumnName() {
@@ -174,4 +187,20 @@ public class ColumnMetadata {
   public boolean hasDictionary() {
     return hasDictionary;
   }
+
+  /**
+   * @return smallest value of the column as written in the segment metadata, or null if the segment
+   *         was created without column statistics
+   */
+  public String getMinValue() {
+    return minValue;
+  }
+
+  /**
+   * @return largest value of the column as written in the segment metadata, or null if the segment
+   *         was created without column statistics
+   */
+  public String getMaxValue() {
+    return maxValue;
+  }
 }
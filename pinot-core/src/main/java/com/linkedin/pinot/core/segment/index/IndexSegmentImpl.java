@@ -19,7 +19,7 @@ import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import java.io.File;
 import java.util.Map;
 
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,16 +47,16 @@ public class IndexSegmentImpl implements IndexSegment {
   private final File indexDir;
   private final SegmentMetadataImpl segmentMetadata;
   private final Map<String, ColumnIndexContainer> indexContainerMap;
-  private final StarTreeIndexNode starTreeRoot;
+  private final OffHeapStarTree starTree;
 
   public IndexSegmentImpl(File indexDir,
                           SegmentMetadataImpl segmentMetadata,
                           Map<String, ColumnIndexContainer> columnIndexContainerMap,
-                          StarTreeIndexNode starTreeRoot) throws Exception {
+                          OffHeapStarTree starTree) throws Exception {
     this.indexDir = indexDir;
     this.segmentMetadata = segmentMetadata;
     this.indexContainerMap = columnIndexContainerMap;
-    this.starTreeRoot = starTreeRoot;
+    this.starTree = starTree;
     LOGGER.info("successfully loaded the index segment : " + indexDir.getName());
   }
 
@@ -130,6 +130,13 @@ public class IndexSegmentImpl implements IndexSegment {
       }
     }
     indexContainerMap.clear();
+    if (starTree != null) {
+      try {
+        starTree.close();
+      } catch (Exception e) {
+        LOGGER.error("Error when close star tree index", e);
+      }
+    }
   }
 
   @Override
@@ -138,7 +145,7 @@ public class IndexSegmentImpl implements IndexSegment {
   }
 
   @Override
-  public StarTreeIndexNode getStarTreeRoot() {
-    return starTreeRoot;
+  public OffHeapStarTree getStarTree() {
+    return starTree;
   }
 }
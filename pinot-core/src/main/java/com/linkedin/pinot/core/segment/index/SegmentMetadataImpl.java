@@ -35,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.data.FieldSpec.FieldType;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.ColumnValueRange;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
@@ -57,6 +58,7 @@ public class SegmentMetadataImpl implements SegmentMetadata {
   private final PropertiesConfiguration _segmentMetadataPropertiesConfiguration;
   private final File _metadataFile;
   private final Map<String, ColumnMetadata> _columnMetadataMap;
+  private final Map<String, ColumnValueRange> _columnValueRanges;
   private String _segmentName;
   private final Set<String> _allColumns;
   private final Schema _schema;
@@ -78,6 +80,7 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     }
     _segmentMetadataPropertiesConfiguration = new PropertiesConfiguration(_metadataFile);
     _columnMetadataMap = new HashMap<String, ColumnMetadata>();
+    _columnValueRanges = new HashMap<String, ColumnValueRange>();
     _allColumns = new HashSet<String>();
     _schema = new Schema();
     _indexDir = new File(indexDir, V1Constants.MetadataKeys.METADATA_FILE_NAME).getAbsoluteFile()
@@ -115,6 +118,7 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     _refreshTime = offlineSegmentZKMetadata.getRefreshTime();
     setTimeIntervalAndGranularity();
     _columnMetadataMap = null;
+    _columnValueRanges = null;
     _segmentName = offlineSegmentZKMetadata.getSegmentName();
     _schema = new Schema();
     _allColumns = new HashSet<String>();
@@ -148,6 +152,7 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     _creationTime = segmentMetadata.getCreationTime();
     setTimeIntervalAndGranularity();
     _columnMetadataMap = null;
+    _columnValueRanges = null;
     _segmentName = segmentMetadata.getSegmentName();
     _schema = new Schema();
     _allColumns = new HashSet<String>();
@@ -300,7 +305,13 @@ public class SegmentMetadataImpl implements SegmentMetadata {
         .getString(V1Constants.MetadataKeys.Segment.SEGMENT_NAME);
 
     for (final String column : _allColumns) {
-      _columnMetadataMap.put(column, extractColumnMetadataFor(column));
+      final ColumnMetadata columnMetadata = extractColumnMetadataFor(column);
+      _columnMetadataMap.put(column, columnMetadata);
+      final ColumnValueRange columnValueRange = ColumnValueRange.create(columnMetadata.getDataType(),
+          columnMetadata.getMinValue(), columnMetadata.getMaxValue());
+      if (columnValueRange != null) {
+        _columnValueRanges.put(column, columnValueRange);
+      }
     }
 
     for (final String column : _columnMetadataMap.keySet()) {
@@ -397,9 +408,18 @@ public class SegmentMetadataImpl implements SegmentMetadata {
         _segmentMetadataPropertiesConfiguration.getInt(V1Constants.MetadataKeys.Column
             .getKeyFor(column, V1Constants.MetadataKeys.Column.TOTAL_NUMBER_OF_ENTRIES));
 
+    // Segments created before min/max were recorded do not have these keys
+    final String minValue =
+        _segmentMetadataPropertiesConfiguration.getString(V1Constants.MetadataKeys.Column
+            .getKeyFor(column, V1Constants.MetadataKeys.Column.MIN_VALUE), null);
+    final String maxValue =
+        _segmentMetadataPropertiesConfiguration.getString(V1Constants.MetadataKeys.Column
+            .getKeyFor(column, V1Constants.MetadataKeys.Column.MAX_VALUE), null);
+
     return new ColumnMetadata(column, cardinality, totalDocs, dataType, bitsPerElement,
         stringColumnMaxLength, fieldType, isSorted, hasInvertedIndex, insSingleValue,
-        maxNumberOfMultiValues, hasNulls, hasDictionary, segmentTimeUnit, totalNumberOfEntries);
+        maxNumberOfMultiValues, hasNulls, hasDictionary, segmentTimeUnit, totalNumberOfEntries,
+        minValue, maxValue);
 
   }
 
@@ -411,6 +431,14 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     return _columnMetadataMap;
   }
 
+  /**
+   * @return min/max value per column, without the columns that have no recorded min/max, or null
+   *         if the metadata was not loaded from a segment directory
+   */
+  public Map<String, ColumnValueRange> getColumnValueRanges() {
+    return _columnValueRanges;
+  }
+
   @Override
   public String getTableName() {
     return (String) _segmentMetadataPropertiesConfiguration
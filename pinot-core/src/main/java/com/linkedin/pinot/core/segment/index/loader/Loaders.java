@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.segment.index.loader;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,7 @@ import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
 import com.linkedin.pinot.core.segment.index.converter.SegmentFormatConverter;
 import com.linkedin.pinot.core.segment.index.converter.SegmentFormatConverterFactory;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import com.linkedin.pinot.core.startree.StarTreeIndexNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,14 +71,25 @@ public class Loaders {
             metadata.getColumnMetadataFor(column), indexLoadingConfigMetadata, readMode));
       }
 
-      // The star tree index (if available)
-      StarTreeIndexNode starTreeRoot = null;
+      // The star tree index (if available), segments created before the flat format only have the serialized tree
+      OffHeapStarTree starTree = null;
       if (metadata.hasStarTree()) {
-        File starTreeFile = new File(indexDir, V1Constants.STARTREE_FILE);
-        LOGGER.debug("Loading star tree index file {}", starTreeFile);
-        starTreeRoot = StarTreeIndexNode.fromBytes(new FileInputStream(starTreeFile));
+        File offHeapStarTreeFile = new File(indexDir, V1Constants.STARTREE_OFF_HEAP_FILE);
+        if (offHeapStarTreeFile.exists()) {
+          LOGGER.debug("Loading star tree index file {}", offHeapStarTreeFile);
+          starTree = OffHeapStarTree.fromFile(offHeapStarTreeFile, readMode);
+        } else {
+          File starTreeFile = new File(indexDir, V1Constants.STARTREE_FILE);
+          LOGGER.debug("Loading star tree index file {}", starTreeFile);
+          InputStream inputStream = new FileInputStream(starTreeFile);
+          try {
+            starTree = OffHeapStarTree.fromTree(StarTreeIndexNode.fromBytes(inputStream));
+          } finally {
+            inputStream.close();
+          }
+        }
       }
-      return new IndexSegmentImpl(indexDir, metadata, indexContainerMap, starTreeRoot);
+      return new IndexSegmentImpl(indexDir, metadata, indexContainerMap, starTree);
     }
   }
   public static void main(String[] args) throws Exception {
@@ -33,6 +33,14 @@ public interface Dictionary {
 
   double getDoubleValue(int dictionaryId);
 
+  /**
+   * Batch version of getDoubleValue: reads the values of the first length dictionary ids into outValues.
+   * @param dictionaryIds
+   * @param length
+   * @param outValues
+   */
+  void readDoubleValues(int[] dictionaryIds, int length, double[] outValues);
+
   String getStringValue(int dictionaryId);
 
   String toString(int dictionaryId);
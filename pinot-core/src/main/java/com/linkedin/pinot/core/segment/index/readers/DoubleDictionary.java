@@ -59,6 +59,13 @@ public class DoubleDictionary extends ImmutableDictionaryReader  {
     return new Double(getDouble(dictionaryId));
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = dataFileReader.getDouble(dictionaryIds[i], 0);
+    }
+  }
+
   @Override
   public String toString(int dictionaryId) {
     return (new Double(getDouble(dictionaryId))).toString();
@@ -59,6 +59,13 @@ public class FloatDictionary extends ImmutableDictionaryReader {
     return new Double(getFloat(dictionaryId));
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = dataFileReader.getFloat(dictionaryIds[i], 0);
+    }
+  }
+
   @Override
   public String toString(int dictionaryId) {
     return new Float(getFloat(dictionaryId)).toString();
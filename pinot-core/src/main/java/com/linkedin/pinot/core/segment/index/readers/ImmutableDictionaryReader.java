@@ -74,6 +74,13 @@ public abstract class ImmutableDictionaryReader implements Dictionary {
   @Override
   public abstract double getDoubleValue(int dictionaryId);
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = getDoubleValue(dictionaryIds[i]);
+    }
+  }
+
   @Override
   public abstract String toString(int dictionaryId);
 
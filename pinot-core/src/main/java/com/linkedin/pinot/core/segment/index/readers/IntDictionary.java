@@ -58,6 +58,13 @@ public class IntDictionary extends ImmutableDictionaryReader {
   public double getDoubleValue(int dictionaryId) {
     return new Double(getInt(dictionaryId));
   }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = dataFileReader.getInt(dictionaryIds[i], 0);
+    }
+  }
   
   @Override
   public String getStringValue(int dictionaryId) {
@@ -58,6 +58,13 @@ public class LongDictionary extends ImmutableDictionaryReader {
     return getLong(dictionaryId);
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int length, double[] outValues) {
+    for (int i = 0; i < length; i++) {
+      outValues[i] = dataFileReader.getLong(dictionaryIds[i], 0);
+    }
+  }
+
   @Override
   public String getStringValue(int dictionaryId) {
     return new Long(getLong(dictionaryId)).toString();
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.MmapUtils;
+
+
+/**
+ * Read-only star tree stored as a flat array of fixed size nodes in a byte buffer, which can be
+ * memory mapped instead of deserialized onto the heap.
+ *
+ * Nodes are laid out breadth-first, so the children of a node occupy a contiguous range of node
+ * indexes, sorted by dimension value (the ALL child, if any, comes first). Nodes are addressed by
+ * their int index, the root being at index 0.
+ *
+ * File layout (big endian ints):
+ * <pre>
+ *   magic, version, numNodes, nodeSize
+ *   numNodes * [nodeId, dimensionName, dimensionValue, childDimensionName,
+ *               startDocumentId, documentCount, firstChildIndex, numChildren]
+ * </pre>
+ */
+public class OffHeapStarTree implements Closeable {
+  public static final int MAGIC = 0x53545245;
+  public static final int VERSION = 1;
+  public static final int INVALID_NODE = -1;
+
+  private static final int HEADER_SIZE = 4 * Integer.SIZE / 8;
+  private static final int NODE_SIZE = 8 * Integer.SIZE / 8;
+
+  private static final int NODE_ID_OFFSET = 0;
+  private static final int DIMENSION_NAME_OFFSET = 4;
+  private static final int DIMENSION_VALUE_OFFSET = 8;
+  private static final int CHILD_DIMENSION_NAME_OFFSET = 12;
+  private static final int START_DOCUMENT_ID_OFFSET = 16;
+  private static final int DOCUMENT_COUNT_OFFSET = 20;
+  private static final int FIRST_CHILD_INDEX_OFFSET = 24;
+  private static final int NUM_CHILDREN_OFFSET = 28;
+
+  private ByteBuffer _buffer;
+  private final RandomAccessFile _randomAccessFile;
+  private final int _numNodes;
+
+  private OffHeapStarTree(ByteBuffer buffer, RandomAccessFile randomAccessFile) {
+    _buffer = buffer;
+    _randomAccessFile = randomAccessFile;
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Invalid star tree magic number: " + buffer.getInt(0));
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new UnsupportedOperationException("Unsupported star tree version: " + version);
+    }
+    _numNodes = buffer.getInt(8);
+    if (buffer.getInt(12) != NODE_SIZE) {
+      throw new IllegalArgumentException("Invalid star tree node size: " + buffer.getInt(12));
+    }
+  }
+
+  /**
+   * Loads a star tree written by {@link #writeTree}, memory mapped or read into a direct buffer.
+   */
+  public static OffHeapStarTree fromFile(File file, ReadMode readMode) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      ByteBuffer buffer;
+      if (readMode == ReadMode.mmap) {
+        buffer = MmapUtils.mmapFile(randomAccessFile, MapMode.READ_ONLY, 0, randomAccessFile.length(), file,
+            OffHeapStarTree.class.getSimpleName() + " buffer");
+        return new OffHeapStarTree(buffer, randomAccessFile);
+      }
+      buffer = MmapUtils.allocateDirectByteBuffer((int) randomAccessFile.length(), file,
+          OffHeapStarTree.class.getSimpleName() + " buffer");
+      while (buffer.hasRemaining()) {
+        if (randomAccessFile.getChannel().read(buffer, buffer.position()) < 0) {
+          throw new IOException("Unexpected end of star tree file " + file);
+        }
+      }
+      randomAccessFile.close();
+      return new OffHeapStarTree(buffer, null);
+    } catch (IOException | RuntimeException e) {
+      randomAccessFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Flattens a star tree deserialized from the legacy format, so that segments written before the
+   * flat format existed are queried through the same code path.
+   */
+  public static OffHeapStarTree fromTree(StarTreeIndexNode root) {
+    List<StarTreeIndexNode> nodes = flatten(root);
+    ByteBuffer buffer = MmapUtils.allocateDirectByteBuffer(HEADER_SIZE + nodes.size() * NODE_SIZE, null,
+        OffHeapStarTree.class.getSimpleName() + " buffer");
+    writeHeader(buffer, nodes.size());
+    int firstChildIndex = 1;
+    for (StarTreeIndexNode node : nodes) {
+      firstChildIndex = writeNode(buffer, node, firstChildIndex);
+    }
+    buffer.flip();
+    return new OffHeapStarTree(buffer, null);
+  }
+
+  /**
+   * Writes the star tree rooted at root in the flat format.
+   */
+  public static void writeTree(StarTreeIndexNode root, File outputFile) throws IOException {
+    List<StarTreeIndexNode> nodes = flatten(root);
+    ByteBuffer nodeBuffer = ByteBuffer.allocate(NODE_SIZE);
+    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
+    try {
+      ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+      writeHeader(headerBuffer, nodes.size());
+      outputStream.write(headerBuffer.array());
+      int firstChildIndex = 1;
+      for (StarTreeIndexNode node : nodes) {
+        nodeBuffer.clear();
+        firstChildIndex = writeNode(nodeBuffer, node, firstChildIndex);
+        outputStream.write(nodeBuffer.array());
+      }
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Returns the nodes in breadth-first order, with the children of each node sorted by dimension value.
+   */
+  private static List<StarTreeIndexNode> flatten(StarTreeIndexNode root) {
+    List<StarTreeIndexNode> nodes = new ArrayList<StarTreeIndexNode>();
+    Queue<StarTreeIndexNode> queue = new LinkedList<StarTreeIndexNode>();
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      StarTreeIndexNode node = queue.remove();
+      nodes.add(node);
+      if (!node.isLeaf()) {
+        for (Integer dimensionValue : getSortedChildValues(node)) {
+          queue.add(node.getChildren().get(dimensionValue));
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private static Integer[] getSortedChildValues(StarTreeIndexNode node) {
+    Integer[] dimensionValues = node.getChildren().keySet().toArray(new Integer[node.getChildren().size()]);
+    Arrays.sort(dimensionValues);
+    return dimensionValues;
+  }
+
+  private static void writeHeader(ByteBuffer buffer, int numNodes) {
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(numNodes);
+    buffer.putInt(NODE_SIZE);
+  }
+
+  /**
+   * Writes one node and returns the index of the first child of the next node in breadth-first order.
+   */
+  private static int writeNode(ByteBuffer buffer, StarTreeIndexNode node, int firstChildIndex) {
+    int numChildren = node.isLeaf() ? 0 : node.getChildren().size();
+    buffer.putInt(node.getNodeId());
+    buffer.putInt(node.getDimensionName());
+    buffer.putInt(node.getDimensionValue());
+    buffer.putInt(node.getChildDimensionName());
+    buffer.putInt(node.getStartDocumentId());
+    buffer.putInt(node.getDocumentCount());
+    buffer.putInt(numChildren == 0 ? INVALID_NODE : firstChildIndex);
+    buffer.putInt(numChildren);
+    return firstChildIndex + numChildren;
+  }
+
+  public int getRoot() {
+    return 0;
+  }
+
+  public int getNumNodes() {
+    return _numNodes;
+  }
+
+  public int getNodeId(int node) {
+    return getInt(node, NODE_ID_OFFSET);
+  }
+
+  public int getDimensionName(int node) {
+    return getInt(node, DIMENSION_NAME_OFFSET);
+  }
+
+  public int getDimensionValue(int node) {
+    return getInt(node, DIMENSION_VALUE_OFFSET);
+  }
+
+  public int getChildDimensionName(int node) {
+    return getInt(node, CHILD_DIMENSION_NAME_OFFSET);
+  }
+
+  public int getStartDocumentId(int node) {
+    return getInt(node, START_DOCUMENT_ID_OFFSET);
+  }
+
+  public int getDocumentCount(int node) {
+    return getInt(node, DOCUMENT_COUNT_OFFSET);
+  }
+
+  public boolean isLeaf(int node) {
+    return getNumChildren(node) == 0;
+  }
+
+  public int getNumChildren(int node) {
+    return getInt(node, NUM_CHILDREN_OFFSET);
+  }
+
+  /**
+   * Returns the index of the first child, the children occupying indexes [first, first + numChildren).
+   */
+  public int getFirstChild(int node) {
+    return getInt(node, FIRST_CHILD_INDEX_OFFSET);
+  }
+
+  /**
+   * Returns the child of node with the given dimension value, or INVALID_NODE if there is none.
+   */
+  public int getChild(int node, int dimensionValue) {
+    int low = getFirstChild(node);
+    int high = low + getNumChildren(node) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midValue = getDimensionValue(mid);
+      if (midValue < dimensionValue) {
+        low = mid + 1;
+      } else if (midValue > dimensionValue) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return INVALID_NODE;
+  }
+
+  /**
+   * Returns the leaf that matches the dimension values (indexed by dimension id), or INVALID_NODE if none matches.
+   */
+  public int getMatchingNode(int[] dimensionValues) {
+    int node = getRoot();
+    while (node != INVALID_NODE && !isLeaf(node)) {
+      node = getChild(node, dimensionValues[getChildDimensionName(node)]);
+    }
+    return node;
+  }
+
+  private int getInt(int node, int fieldOffset) {
+    return _buffer.getInt(HEADER_SIZE + node * NODE_SIZE + fieldOffset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    MmapUtils.unloadByteBuffer(_buffer);
+    _buffer = null;
+    if (_randomAccessFile != null) {
+      _randomAccessFile.close();
+    }
+  }
+}
@@ -349,8 +349,10 @@ public class StarTreeSegmentCreator implements SegmentCreator {
     OutputStream starTreeOutputStream = new FileOutputStream(starTreeFile);
     starTreeBuilder.getTree().writeTree(starTreeOutputStream);
     starTreeOutputStream.close();
+    // Both formats are written until all servers load the flat one
+    OffHeapStarTree.writeTree(starTreeBuilder.getTree(), new File(outDir, V1Constants.STARTREE_OFF_HEAP_FILE));
     endMillis = System.currentTimeMillis();
-    LOG.info("Wrote StarTree file (took {} ms)", endMillis - startMillis);
+    LOG.info("Wrote StarTree files (took {} ms)", endMillis - startMillis);
 
     // Delete tmp star tree data
     LOG.info("Deleting StarTree table file {}", starTreeTableFile);
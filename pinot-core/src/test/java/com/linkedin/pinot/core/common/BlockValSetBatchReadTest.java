@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.common;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.blocks.MatchEntireSegmentDocIdSetBlock;
+import com.linkedin.pinot.core.operator.dociditerators.DocIdBatchIterator;
+import com.linkedin.pinot.core.operator.docidsets.DocIdSetBlock;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Checks that the batch read methods of BlockValSet and Dictionary return the same values as the
+ * per doc iterators.
+ */
+public class BlockValSetBatchReadTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "TestBlockValSetBatchRead");
+
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+  }
+
+  @Test
+  public void testDocIdBatchIterator() {
+    final int totalDocs = _indexSegment.getTotalDocs();
+    final DocIdBatchIterator matchAllIterator =
+        new DocIdBatchIterator(new MatchEntireSegmentDocIdSetBlock(totalDocs));
+    int expectedDocId = 0;
+    int length;
+    while ((length = matchAllIterator.nextBatch()) > 0) {
+      Assert.assertTrue(length <= matchAllIterator.getMaxBatchSize());
+      for (int i = 0; i < length; ++i) {
+        Assert.assertEquals(matchAllIterator.getDocIds()[i], expectedDocId++);
+      }
+    }
+    Assert.assertEquals(expectedDocId, totalDocs);
+
+    final int[] docIds = new int[] { 1, 5, 7, 100, 0 };
+    final DocIdBatchIterator arrayIterator = new DocIdBatchIterator(new DocIdSetBlock(docIds, 4));
+    Assert.assertEquals(arrayIterator.nextBatch(), 4);
+    Assert.assertSame(arrayIterator.getDocIds(), docIds);
+    Assert.assertEquals(arrayIterator.nextBatch(), 0);
+  }
+
+  @Test
+  public void testSingleValueBatchRead() {
+    final int totalDocs = _indexSegment.getTotalDocs();
+    final int[] docIds = new int[totalDocs / 3];
+    for (int i = 0; i < docIds.length; ++i) {
+      docIds[i] = i * 3;
+    }
+    final int[] dictIds = new int[docIds.length];
+    final double[] values = new double[docIds.length];
+
+    for (String column : _indexSegment.getColumnNames()) {
+      final Block block = _indexSegment.getDataSource(column).nextBlock();
+      if (!block.getMetadata().isSingleValue()) {
+        continue;
+      }
+      block.getBlockValueSet().readIntValues(docIds, docIds.length, dictIds);
+      final BlockSingleValIterator iterator = (BlockSingleValIterator) block.getBlockValueSet().iterator();
+      for (int i = 0; i < docIds.length; ++i) {
+        iterator.skipTo(docIds[i]);
+        Assert.assertEquals(dictIds[i], iterator.nextIntVal(), column + " doc " + docIds[i]);
+      }
+
+      final Dictionary dictionary = block.getMetadata().getDictionary();
+      if (block.getMetadata().getDataType() != DataType.STRING && block.getMetadata().getDataType() != DataType.BOOLEAN) {
+        dictionary.readDoubleValues(dictIds, dictIds.length, values);
+        for (int i = 0; i < dictIds.length; ++i) {
+          Assert.assertEquals(values[i], dictionary.getDoubleValue(dictIds[i]), column + " dict id " + dictIds[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.data.manager.realtime;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.RawMessageStreamProvider;
+import com.linkedin.pinot.core.realtime.StreamProviderConfig;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+
+
+public class RealtimeDecodePipelineTest {
+  private static final String COLUMN = "value";
+  private static final int BAD_MESSAGE_MODULO = 97;
+
+  @Test
+  public void testRowsComeOutInStreamOrder() throws Exception {
+    int numMessages = 10000;
+    InMemoryStreamProvider streamProvider = new InMemoryStreamProvider(numMessages);
+    RealtimeDecodePipeline pipeline = new RealtimeDecodePipeline("testOrder", streamProvider, 4, 16, numMessages);
+    pipeline.start();
+
+    List<Integer> values = new ArrayList<Integer>();
+    while (!pipeline.isExhausted()) {
+      GenericRow row = pipeline.next();
+      if (row != null) {
+        values.add((Integer) row.getValue(COLUMN));
+      }
+    }
+    pipeline.shutdown();
+
+    List<Integer> expectedValues = new ArrayList<Integer>();
+    for (int i = 0; i < numMessages; i++) {
+      if (i % BAD_MESSAGE_MODULO != 0) {
+        expectedValues.add(i);
+      }
+    }
+    Assert.assertEquals(values, expectedValues);
+    Assert.assertEquals(streamProvider.numDecodeFailures.get(), numMessages - expectedValues.size());
+    Assert.assertTrue(streamProvider.numDecodersCreated.get() <= 4);
+  }
+
+  @Test
+  public void testReadsAtMostMaxMessages() throws Exception {
+    InMemoryStreamProvider streamProvider = new InMemoryStreamProvider(1000);
+    RealtimeDecodePipeline pipeline = new RealtimeDecodePipeline("testMaxMessages", streamProvider, 2, 1000, 100);
+    pipeline.start();
+
+    int numRows = 0;
+    int lastValue = -1;
+    while (!pipeline.isExhausted()) {
+      GenericRow row = pipeline.next();
+      if (row != null) {
+        numRows++;
+        lastValue = (Integer) row.getValue(COLUMN);
+      }
+    }
+    pipeline.shutdown();
+
+    // message 0 does not decode
+    Assert.assertEquals(numRows, 98);
+    Assert.assertEquals(streamProvider.numDecodeFailures.get(), 2);
+    Assert.assertEquals(lastValue, 99);
+    Assert.assertEquals(streamProvider.numMessagesRead.get(), 100);
+  }
+
+  @Test
+  public void testStopFetchingKeepsMessagesAlreadyRead() throws Exception {
+    InMemoryStreamProvider streamProvider = new InMemoryStreamProvider(100000);
+    RealtimeDecodePipeline pipeline =
+        new RealtimeDecodePipeline("testStopFetching", streamProvider, 2, 10, Integer.MAX_VALUE);
+    pipeline.start();
+
+    int numRows = 0;
+    while (numRows < 50) {
+      if (pipeline.next() != null) {
+        numRows++;
+      }
+    }
+    pipeline.stopFetching();
+    while (!pipeline.isExhausted()) {
+      if (pipeline.next() != null) {
+        numRows++;
+      }
+    }
+    pipeline.shutdown();
+
+    // every message read off the stream came out of the pipeline, decoded or not
+    int numMessagesRead = streamProvider.numMessagesRead.get();
+    Assert.assertTrue(numMessagesRead < 100000);
+    Assert.assertEquals(numRows, numMessagesRead - (numMessagesRead - 1) / BAD_MESSAGE_MODULO - 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoDecodeThreads() {
+    new RealtimeDecodePipeline("testNoDecodeThreads", new InMemoryStreamProvider(0), 0, 10, 10);
+  }
+
+  /**
+   * Serves the messages 0 to numMessages - 1, each holding its own number; multiples of BAD_MESSAGE_MODULO fail to
+   * decode.
+   */
+  private static class InMemoryStreamProvider implements RawMessageStreamProvider {
+    private final int numMessages;
+    private final AtomicInteger numMessagesRead = new AtomicInteger();
+    private final AtomicInteger numDecodersCreated = new AtomicInteger();
+    private final AtomicInteger numDecodeFailures = new AtomicInteger();
+
+    public InMemoryStreamProvider(int numMessages) {
+      this.numMessages = numMessages;
+    }
+
+    @Override
+    public void init(StreamProviderConfig streamProviderConfig) throws Exception {
+    }
+
+    @Override
+    public void start() throws Exception {
+    }
+
+    @Override
+    public byte[] nextMessage() {
+      if (numMessagesRead.get() == numMessages) {
+        return null;
+      }
+      return ByteBuffer.allocate(4).putInt(numMessagesRead.getAndIncrement()).array();
+    }
+
+    @Override
+    public KafkaMessageDecoder createDecoder() throws Exception {
+      numDecodersCreated.incrementAndGet();
+      return new KafkaMessageDecoder() {
+        @Override
+        public void init(Map<String, String> props, Schema indexingSchema, String kafkaTopicName) throws Exception {
+        }
+
+        @Override
+        public GenericRow decode(byte[] payload) {
+          int value = ByteBuffer.wrap(payload).getInt();
+          if (value % BAD_MESSAGE_MODULO == 0) {
+            throw new IllegalArgumentException("Bad message: " + value);
+          }
+          Map<String, Object> fields = new HashMap<String, Object>();
+          fields.put(COLUMN, value);
+          GenericRow row = new GenericRow();
+          row.init(fields);
+          return row;
+        }
+      };
+    }
+
+    @Override
+    public void onDecodeFailure(Throwable cause) {
+      Assert.assertTrue(cause instanceof IllegalArgumentException);
+      numDecodeFailures.incrementAndGet();
+    }
+
+    @Override
+    public void setOffset(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GenericRow next() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GenericRow next(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long currentOffset() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void commit(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+    }
+  }
+}
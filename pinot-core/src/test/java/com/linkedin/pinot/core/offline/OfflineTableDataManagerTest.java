@@ -107,7 +107,7 @@ public class OfflineTableDataManagerTest {
       when(config.getReadMode()).thenReturn(readMode.toString());
       when(config.getIndexLoadingConfigMetadata()).thenReturn(null);
     }
-    tableDataManager.init(config);
+    tableDataManager.init(config, null);
     tableDataManager.start();
     Field segsMapField = OfflineTableDataManager.class.getDeclaredField("_segmentsMap");
     segsMapField.setAccessible(true);
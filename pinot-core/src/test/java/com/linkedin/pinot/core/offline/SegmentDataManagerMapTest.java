@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.offline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManagerMap;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class SegmentDataManagerMapTest {
+
+  @Test
+  public void testAcquireRelease() {
+    SegmentDataManagerMap<OfflineSegmentDataManager> segments = new SegmentDataManagerMap<OfflineSegmentDataManager>();
+    OfflineSegmentDataManager segment0 = new OfflineSegmentDataManager(makeIndexSegment("s0"));
+    OfflineSegmentDataManager segment1 = new OfflineSegmentDataManager(makeIndexSegment("s1"));
+    Assert.assertNull(segments.put(segment0));
+    Assert.assertNull(segments.put(segment1));
+
+    List<OfflineSegmentDataManager> acquired = segments.acquire(Arrays.asList("s0", "s1", "s2"));
+    Assert.assertEquals(acquired, Arrays.asList(segment0, segment1));
+
+    // Removed while in use, the last release must destroy it
+    Assert.assertSame(segments.remove("s0"), segment0);
+    Assert.assertFalse(segments.release(segment0));
+    Assert.assertNull(segments.acquire("s0"));
+    Assert.assertTrue(segments.release(segment0));
+    // A segment whose count dropped to 0 can not be acquired again
+    Assert.assertFalse(segment0.tryIncrementRefCnt());
+
+    Assert.assertFalse(segments.release(segment1));
+    Assert.assertEquals(segments.size(), 1);
+    Assert.assertEquals(segments.asMap().keySet(), Collections.singleton("s1"));
+  }
+
+  @Test
+  public void testAcquireRacingReplace() {
+    final SegmentDataManagerMap<OfflineSegmentDataManager> segments =
+        new SegmentDataManagerMap<OfflineSegmentDataManager>();
+    final OfflineSegmentDataManager newSegment = new OfflineSegmentDataManager(makeIndexSegment("s0"));
+    // Replaces itself and drops its last reference right after being looked up, before a reference is taken on it
+    final OfflineSegmentDataManager oldSegment = new OfflineSegmentDataManager(makeIndexSegment("s0")) {
+      @Override
+      public boolean tryIncrementRefCnt() {
+        if (segments.get("s0") == this) {
+          segments.put(newSegment);
+          segments.release(this);
+        }
+        return super.tryIncrementRefCnt();
+      }
+    };
+    segments.put(oldSegment);
+
+    Assert.assertSame(segments.acquire("s0"), newSegment);
+    Assert.assertFalse(segments.release(newSegment));
+    Assert.assertFalse(oldSegment.tryIncrementRefCnt());
+  }
+
+  private static IndexSegment makeIndexSegment(String segmentName) {
+    IndexSegment indexSegment = mock(IndexSegment.class);
+    when(indexSegment.getSegmentName()).thenReturn(segmentName);
+    return indexSegment;
+  }
+}
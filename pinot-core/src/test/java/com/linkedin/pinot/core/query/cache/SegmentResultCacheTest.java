@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache.SegmentKey;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class SegmentResultCacheTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String TABLE_NAME = "myTable_OFFLINE";
+
+  @Test
+  public void testQueryKey() {
+    String queryKey = SegmentResultCache.getQueryKey(
+        COMPILER.compileToBrokerRequest("select sum(met) from myTable where a = 1 and b = 2 limit 10"));
+    Assert.assertNotNull(queryKey);
+    // Filter ids, the order of AND children and the limit do not shape the per segment results
+    Assert.assertEquals(SegmentResultCache.getQueryKey(
+        COMPILER.compileToBrokerRequest("select sum(met) from myTable where b = 2 and a = 1 limit 20")), queryKey);
+    Assert.assertFalse(queryKey.equals(SegmentResultCache.getQueryKey(
+        COMPILER.compileToBrokerRequest("select sum(met) from myTable where a = 1 and b = 3"))));
+    Assert.assertFalse(queryKey.equals(SegmentResultCache.getQueryKey(
+        COMPILER.compileToBrokerRequest("select sum(met) from myTable where a = 1 and b = 2 group by c"))));
+    Assert.assertNull(SegmentResultCache.getQueryKey(COMPILER.compileToBrokerRequest("select * from myTable")));
+  }
+
+  @Test
+  public void testSegmentKey() {
+    BrokerRequest request = COMPILER.compileToBrokerRequest("select sum(met) from myTable");
+    String queryKey = SegmentResultCache.getQueryKey(request);
+    Assert.assertNotNull(SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg", "1234"), queryKey));
+    Assert.assertNull(SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg", null), queryKey));
+    Assert.assertNull(SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg", "1234"), null));
+  }
+
+  @Test
+  public void testGetReturnsIndependentCopies() {
+    BrokerRequest request = COMPILER.compileToBrokerRequest("select sum(met) from myTable");
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024);
+    SegmentKey segmentKey =
+        SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg", "1234"), SegmentResultCache.getQueryKey(request));
+
+    Assert.assertNull(cache.get(segmentKey, request));
+    IntermediateResultsBlock block = buildSumBlock(request, 42.0);
+    cache.put(segmentKey, block);
+    // Merging into the cached block must not change the cached results
+    block.getAggregationResult().set(0, 100.0);
+
+    for (int i = 0; i < 2; i++) {
+      IntermediateResultsBlock cachedBlock = cache.get(segmentKey, request);
+      Assert.assertNotNull(cachedBlock);
+      Assert.assertEquals(((Number) cachedBlock.getAggregationResult().get(0)).doubleValue(), 42.0);
+      Assert.assertEquals(cachedBlock.getNumDocsScanned(), 10L);
+      Assert.assertEquals(cachedBlock.getTotalDocs(), 20L);
+      cachedBlock.getAggregationResult().set(0, 100.0);
+    }
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.getHitRatePercent(), 66L);
+
+    // A new version of the segment does not hit the results of the old one
+    SegmentKey newSegmentKey =
+        SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg", "5678"), SegmentResultCache.getQueryKey(request));
+    Assert.assertNull(cache.get(newSegmentKey, request));
+
+    cache.invalidateSegment(TABLE_NAME, "seg");
+    Assert.assertNull(cache.get(segmentKey, request));
+    Assert.assertEquals(cache.size(), 0);
+    Assert.assertEquals(cache.getSizeInBytes(), 0L);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    BrokerRequest request = COMPILER.compileToBrokerRequest("select sum(met) from myTable");
+    String queryKey = SegmentResultCache.getQueryKey(request);
+    SegmentResultCache probe = new SegmentResultCache(Long.MAX_VALUE);
+    probe.put(SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg0", "1"), queryKey),
+        buildSumBlock(request, 0.0));
+    long entrySize = probe.getSizeInBytes();
+
+    SegmentResultCache cache = new SegmentResultCache(2 * entrySize);
+    List<SegmentKey> segmentKeys = new ArrayList<SegmentKey>();
+    for (int i = 0; i < 3; i++) {
+      segmentKeys.add(SegmentResultCache.getSegmentKey(TABLE_NAME, mockSegment("seg" + i, "1"), queryKey));
+    }
+    cache.put(segmentKeys.get(0), buildSumBlock(request, 0.0));
+    cache.put(segmentKeys.get(1), buildSumBlock(request, 1.0));
+    Assert.assertNotNull(cache.get(segmentKeys.get(0), request));
+    cache.put(segmentKeys.get(2), buildSumBlock(request, 2.0));
+
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertTrue(cache.getSizeInBytes() <= 2 * entrySize);
+    Assert.assertNotNull(cache.get(segmentKeys.get(0), request));
+    Assert.assertNull(cache.get(segmentKeys.get(1), request));
+    Assert.assertNotNull(cache.get(segmentKeys.get(2), request));
+  }
+
+  private static IndexSegment mockSegment(String segmentName, String crc) {
+    SegmentMetadata segmentMetadata = mock(SegmentMetadata.class);
+    when(segmentMetadata.getCrc()).thenReturn(crc);
+    IndexSegment indexSegment = mock(IndexSegment.class);
+    when(indexSegment.getSegmentName()).thenReturn(segmentName);
+    when(indexSegment.getSegmentMetadata()).thenReturn(segmentMetadata);
+    return indexSegment;
+  }
+
+  private static IntermediateResultsBlock buildSumBlock(BrokerRequest request, double sum) {
+    List<Serializable> results = new ArrayList<Serializable>();
+    results.add(sum);
+    IntermediateResultsBlock block =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(request), results);
+    block.setNumDocsScanned(10);
+    block.setTotalDocs(20);
+    return block;
+  }
+}
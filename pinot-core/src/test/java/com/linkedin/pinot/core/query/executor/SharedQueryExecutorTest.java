@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class SharedQueryExecutorTest {
+  private static final String TABLE_A = "tableA_OFFLINE";
+  private static final String TABLE_B = "tableB_OFFLINE";
+
+  private static final SharedQueryExecutor.TableWeightProvider WEIGHTS = new SharedQueryExecutor.TableWeightProvider() {
+    @Override
+    public int getWeight(String tableName) {
+      return TABLE_A.equals(tableName) ? 3 : 1;
+    }
+  };
+
+  @Test
+  public void testQuotas() throws Exception {
+    SharedQueryExecutor executor = new SharedQueryExecutor(4, 0, WEIGHTS, null);
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger numRunB = new AtomicInteger();
+
+      // A table alone on the server may use all the threads
+      ExecutorService tableB = executor.getTableExecutorService(TABLE_B);
+      for (int i = 0; i < 6; i++) {
+        tableB.execute(blockingTask(release, numRunB));
+      }
+      waitFor(executor, TABLE_B, 4, 2);
+
+      // A table arriving later waits for a thread to free up, running tasks are not preempted
+      AtomicInteger numRunA = new AtomicInteger();
+      ExecutorService tableA = executor.getTableExecutorService(TABLE_A);
+      for (int i = 0; i < 6; i++) {
+        tableA.execute(blockingTask(release, numRunA));
+      }
+      Assert.assertEquals(executor.getNumActiveTasks(TABLE_A), 0);
+      Assert.assertEquals(executor.getNumQueuedTasks(TABLE_A), 6);
+      release.countDown();
+      tableA.shutdown();
+      tableB.shutdown();
+      Assert.assertTrue(tableA.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertTrue(tableB.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertEquals(numRunA.get(), 6);
+      Assert.assertEquals(numRunB.get(), 6);
+    } finally {
+      executor.shutDown();
+    }
+  }
+
+  @Test
+  public void testQuotaSplit() throws Exception {
+    SharedQueryExecutor executor = new SharedQueryExecutor(4, 0, WEIGHTS, null);
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger numRun = new AtomicInteger();
+      ExecutorService tableA = executor.getTableExecutorService(TABLE_A);
+      ExecutorService tableB = executor.getTableExecutorService(TABLE_B);
+      // Both tables queue up before any of their tasks is dispatched past their share
+      for (int i = 0; i < 8; i++) {
+        tableB.execute(blockingTask(release, numRun));
+        tableA.execute(blockingTask(release, numRun));
+      }
+      // B got the first thread while it was alone, then A's quota is ceil(4 * 3 / 4) = 3 and B's is 1
+      waitFor(executor, TABLE_A, 3, 5);
+      waitFor(executor, TABLE_B, 1, 7);
+      release.countDown();
+      tableA.shutdown();
+      tableB.shutdown();
+      Assert.assertTrue(tableA.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertTrue(tableB.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertEquals(numRun.get(), 16);
+    } finally {
+      executor.shutDown();
+    }
+  }
+
+  @Test
+  public void testRejection() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    SharedQueryExecutor executor = new SharedQueryExecutor(1, 2, WEIGHTS, new ServerMetrics(registry));
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger numRun = new AtomicInteger();
+      ExecutorService tableB = executor.getTableExecutorService(TABLE_B);
+      tableB.execute(blockingTask(release, numRun));
+      waitFor(executor, TABLE_B, 1, 0);
+      tableB.execute(blockingTask(release, numRun));
+      tableB.execute(blockingTask(release, numRun));
+      try {
+        tableB.execute(blockingTask(release, numRun));
+        Assert.fail("Task should have been rejected");
+      } catch (RejectedExecutionException e) {
+        // Expected
+      }
+      Assert.assertEquals(getRejectedCount(registry, TABLE_B), 1L);
+      Assert.assertEquals(getGaugeValue(registry, "queryExecutor." + TABLE_B + ".queuedTasks"), 2L);
+      Assert.assertEquals(getGaugeValue(registry, "queryExecutor." + TABLE_B + ".activeTasks"), 1L);
+
+      release.countDown();
+      tableB.shutdown();
+      Assert.assertTrue(tableB.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertEquals(numRun.get(), 3);
+      try {
+        tableB.execute(blockingTask(release, numRun));
+        Assert.fail("Task should have been rejected after shutdown");
+      } catch (RejectedExecutionException e) {
+        // Expected
+      }
+    } finally {
+      executor.shutDown();
+    }
+  }
+
+  @Test
+  public void testRemoveTable() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    SharedQueryExecutor executor = new SharedQueryExecutor(2, 0, WEIGHTS, new ServerMetrics(registry));
+    try {
+      // An idle table is forgotten right away, and a new view is created if the table comes back
+      ExecutorService tableA = executor.getTableExecutorService(TABLE_A);
+      executor.removeTable(TABLE_A);
+      Assert.assertFalse(hasGauge(registry, "queryExecutor." + TABLE_A + ".activeTasks"));
+      Assert.assertFalse(hasGauge(registry, "queryExecutor." + TABLE_A + ".queuedTasks"));
+      Assert.assertNotSame(executor.getTableExecutorService(TABLE_A), tableA);
+
+      // A table with running tasks is kept until they are done, and the queries holding its view may still use it
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger numRun = new AtomicInteger();
+      ExecutorService tableB = executor.getTableExecutorService(TABLE_B);
+      tableB.execute(blockingTask(release, numRun));
+      waitFor(executor, TABLE_B, 1, 0);
+      executor.removeTable(TABLE_B);
+      Assert.assertFalse(tableB.isShutdown());
+      tableB.execute(blockingTask(release, numRun));
+      waitFor(executor, TABLE_B, 2, 0);
+      Assert.assertTrue(hasGauge(registry, "queryExecutor." + TABLE_B + ".activeTasks"));
+
+      release.countDown();
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (hasGauge(registry, "queryExecutor." + TABLE_B + ".activeTasks")
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      Assert.assertEquals(numRun.get(), 2);
+      Assert.assertFalse(hasGauge(registry, "queryExecutor." + TABLE_B + ".activeTasks"));
+      Assert.assertFalse(hasGauge(registry, "queryExecutor." + TABLE_B + ".queuedTasks"));
+      ExecutorService newTableB = executor.getTableExecutorService(TABLE_B);
+      Assert.assertNotSame(newTableB, tableB);
+      Assert.assertTrue(hasGauge(registry, "queryExecutor." + TABLE_B + ".activeTasks"));
+
+      // A table added back while its tasks are still running keeps its view
+      CountDownLatch releaseAgain = new CountDownLatch(1);
+      newTableB.execute(blockingTask(releaseAgain, numRun));
+      waitFor(executor, TABLE_B, 1, 0);
+      executor.removeTable(TABLE_B);
+      Assert.assertSame(executor.getTableExecutorService(TABLE_B), newTableB);
+      releaseAgain.countDown();
+      waitFor(executor, TABLE_B, 0, 0);
+      Assert.assertTrue(hasGauge(registry, "queryExecutor." + TABLE_B + ".activeTasks"));
+    } finally {
+      executor.shutDown();
+    }
+  }
+
+  private static Runnable blockingTask(final CountDownLatch release, final AtomicInteger numRun) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+          numRun.incrementAndGet();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private static void waitFor(SharedQueryExecutor executor, String tableName, int numActive, int numQueued)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (System.currentTimeMillis() < deadline) {
+      if (executor.getNumActiveTasks(tableName) == numActive && executor.getNumQueuedTasks(tableName) == numQueued) {
+        return;
+      }
+      Thread.sleep(10L);
+    }
+    Assert.assertEquals(executor.getNumActiveTasks(tableName), numActive);
+    Assert.assertEquals(executor.getNumQueuedTasks(tableName), numQueued);
+  }
+
+  private static long getRejectedCount(MetricsRegistry registry, String tableName) {
+    for (Map.Entry<MetricName, Metric> entry : registry.allMetrics().entrySet()) {
+      String name = entry.getKey().getName();
+      if (name.contains(tableName) && name.contains("RejectedTasks")) {
+        return ((Metered) entry.getValue()).count();
+      }
+    }
+    return 0L;
+  }
+
+  private static boolean hasGauge(MetricsRegistry registry, String gaugeName) {
+    for (MetricName metricName : registry.allMetrics().keySet()) {
+      if (metricName.getName().endsWith(gaugeName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long getGaugeValue(MetricsRegistry registry, String gaugeName) {
+    for (Map.Entry<MetricName, Metric> entry : registry.allMetrics().entrySet()) {
+      if (entry.getKey().getName().endsWith(gaugeName)) {
+        return (Long) ((com.yammer.metrics.core.Gauge<?>) entry.getValue()).value();
+      }
+    }
+    throw new AssertionError("No gauge named " + gaugeName);
+  }
+}
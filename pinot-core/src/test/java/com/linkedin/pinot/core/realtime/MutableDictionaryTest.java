@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.MmapUtils;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+import com.linkedin.pinot.core.realtime.impl.dictionary.RealtimeDictionaryProvider;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+public class MutableDictionaryTest {
+  private static final int NUM_VALUES = 100000;
+
+  @Test
+  public void testSingleThread() {
+    for (DataType dataType : new DataType[] { DataType.INT, DataType.LONG, DataType.FLOAT, DataType.DOUBLE,
+        DataType.STRING }) {
+      MutableDictionaryReader dictionary = RealtimeDictionaryProvider.getDictionaryFor(getFieldSpec(dataType));
+      Assert.assertTrue(dictionary.isEmpty());
+      Map<Object, Integer> expectedIds = new HashMap<Object, Integer>();
+      Random random = new Random(dataType.ordinal());
+      for (int i = 0; i < NUM_VALUES; i++) {
+        Object value = getValue(dataType, random.nextInt(NUM_VALUES / 4) - NUM_VALUES / 8);
+        dictionary.index(value);
+        if (!expectedIds.containsKey(value)) {
+          expectedIds.put(value, expectedIds.size());
+        }
+      }
+
+      Assert.assertEquals(dictionary.length(), expectedIds.size(), dataType.toString());
+      for (Map.Entry<Object, Integer> entry : expectedIds.entrySet()) {
+        int dictionaryId = entry.getValue();
+        Assert.assertEquals(dictionary.indexOf(entry.getKey()), dictionaryId);
+        Assert.assertEquals(dictionary.indexOf(entry.getKey().toString()), dictionaryId);
+        Assert.assertEquals(dictionary.get(dictionaryId), entry.getKey());
+        Assert.assertEquals(dictionary.getStringValue(dictionaryId), entry.getKey().toString());
+        Assert.assertTrue(dictionary.contains(entry.getKey()));
+      }
+      Assert.assertEquals(dictionary.indexOf(getValue(dataType, NUM_VALUES)), Dictionary.NULL_VALUE_INDEX);
+      Assert.assertFalse(dictionary.contains(getValue(dataType, NUM_VALUES)));
+      Assert.assertFalse(dictionary.contains(null));
+    }
+  }
+
+  @Test
+  public void testNumericMinMaxAndMultiValue() {
+    MutableDictionaryReader dictionary = RealtimeDictionaryProvider.getDictionaryFor(getFieldSpec(DataType.DOUBLE));
+    dictionary.index(new Object[] { -3.5, "-1.5", -2.0 });
+    dictionary.index(null);
+    Assert.assertEquals(dictionary.length(), 3);
+    Assert.assertTrue(dictionary.hasNull());
+    Assert.assertTrue(dictionary.contains(null));
+    Assert.assertEquals(dictionary.getMinVal(), -3.5);
+    Assert.assertEquals(dictionary.getMaxVal(), -1.5);
+    Assert.assertEquals(dictionary.getDoubleValue(dictionary.indexOf(-1.5)), -1.5);
+    Assert.assertTrue(dictionary.inRange("-2", "-1", dictionary.indexOf(-1.5)));
+    Assert.assertFalse(dictionary.inRange("-2", "-1", dictionary.indexOf(-3.5)));
+
+    dictionary = RealtimeDictionaryProvider.getDictionaryFor(getFieldSpec(DataType.STRING));
+    dictionary.index(new Object[] { "b", "\u00e9t\u00e9", "a" });
+    Assert.assertEquals(dictionary.getMinVal(), "a");
+    Assert.assertEquals(dictionary.getMaxVal(), "\u00e9t\u00e9");
+    Assert.assertEquals(dictionary.get(dictionary.indexOf("\u00e9t\u00e9")), "\u00e9t\u00e9");
+  }
+
+  @Test
+  public void testCloseReleasesValueBuffers() {
+    long directMemoryUsage = MmapUtils.getDirectByteBufferUsage();
+    MutableDictionaryReader dictionary = RealtimeDictionaryProvider.getDictionaryFor(getFieldSpec(DataType.STRING));
+    for (int i = 0; i < NUM_VALUES; i++) {
+      dictionary.index(getValue(DataType.STRING, i));
+    }
+    Assert.assertTrue(MmapUtils.getDirectByteBufferUsage() > directMemoryUsage);
+    dictionary.close();
+    Assert.assertEquals(MmapUtils.getDirectByteBufferUsage(), directMemoryUsage);
+  }
+
+  /**
+   * One thread indexes while readers check that every published dictionary id maps back and forth to its value.
+   */
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    for (DataType dataType : new DataType[] { DataType.LONG, DataType.STRING }) {
+      final DataType valueType = dataType;
+      final MutableDictionaryReader dictionary =
+          RealtimeDictionaryProvider.getDictionaryFor(getFieldSpec(dataType));
+      final AtomicBoolean done = new AtomicBoolean(false);
+      ExecutorService executorService = Executors.newFixedThreadPool(3);
+      List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < 2; i++) {
+        final Random random = new Random(i);
+        readers.add(executorService.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            int numChecks = 0;
+            while (!done.get()) {
+              int length = dictionary.length();
+              if (length == 0) {
+                continue;
+              }
+              int dictionaryId = random.nextInt(length);
+              Object value = dictionary.get(dictionaryId);
+              Assert.assertEquals(value, getValue(valueType, dictionaryId));
+              int indexOf = dictionary.indexOf(value);
+              // The id may not be in the hash table yet
+              Assert.assertTrue(indexOf == dictionaryId || indexOf == Dictionary.NULL_VALUE_INDEX);
+              numChecks++;
+            }
+            return numChecks;
+          }
+        }));
+      }
+
+      for (int i = 0; i < NUM_VALUES; i++) {
+        dictionary.index(getValue(dataType, i));
+        dictionary.index(getValue(dataType, i / 2));
+      }
+      done.set(true);
+      for (Future<Integer> reader : readers) {
+        Assert.assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+      }
+      executorService.shutdown();
+      for (int i = 0; i < NUM_VALUES; i++) {
+        Assert.assertEquals(dictionary.indexOf(getValue(dataType, i)), i);
+      }
+    }
+  }
+
+  private static Object getValue(DataType dataType, int i) {
+    switch (dataType) {
+      case INT:
+        return i;
+      case LONG:
+        return (long) i;
+      case FLOAT:
+        return i / 4f;
+      case DOUBLE:
+        return i / 8d;
+      case STRING:
+        return "value_" + i;
+      default:
+        throw new UnsupportedOperationException("Unsupported data type: " + dataType);
+    }
+  }
+
+  private static FieldSpec getFieldSpec(DataType dataType) {
+    return new DimensionFieldSpec("column", dataType, true);
+  }
+}
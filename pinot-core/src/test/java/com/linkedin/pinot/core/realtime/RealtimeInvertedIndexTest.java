@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndexImpl;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+
+
+public class RealtimeInvertedIndexTest {
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final int numDocs = 200000;
+    final int cardinality = 1000;
+    final RealtimeInvertedIndexImpl invertedIndex = new RealtimeInvertedIndexImpl("column");
+    final AtomicBoolean done = new AtomicBoolean(false);
+    ExecutorService executorService = Executors.newFixedThreadPool(3);
+    try {
+      Future<?>[] readers = new Future<?>[2];
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            Random random = new Random();
+            int[] previousCardinalities = new int[cardinality];
+            while (!done.get()) {
+              int dictId = random.nextInt(cardinality);
+              MutableRoaringBitmap bitmap = invertedIndex.getDocIdSetFor(dictId);
+              Assert.assertTrue(bitmap.getCardinality() >= previousCardinalities[dictId]);
+              previousCardinalities[dictId] = bitmap.getCardinality();
+              IntIterator iterator = bitmap.getIntIterator();
+              while (iterator.hasNext()) {
+                Assert.assertEquals(iterator.next() % cardinality, dictId);
+              }
+            }
+            return null;
+          }
+        });
+      }
+
+      for (int docId = 0; docId < numDocs; docId++) {
+        invertedIndex.add(docId % cardinality, docId);
+      }
+      done.set(true);
+      for (Future<?> reader : readers) {
+        reader.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    for (int dictId = 0; dictId < cardinality; dictId++) {
+      Assert.assertEquals(invertedIndex.getDocIdSetFor(dictId).getCardinality(), numDocs / cardinality);
+    }
+    Assert.assertTrue(invertedIndex.getDocIdSetFor(cardinality).isEmpty());
+  }
+
+  @Test
+  public void testImmutableCopies() {
+    RealtimeInvertedIndexImpl invertedIndex = new RealtimeInvertedIndexImpl("column");
+    invertedIndex.add(0, 0);
+    invertedIndex.add(1, 1);
+    ImmutableRoaringBitmap bitmap0 = invertedIndex.getImmutable(0);
+    ImmutableRoaringBitmap bitmap1 = invertedIndex.getImmutable(1);
+    Assert.assertEquals(bitmap0.getCardinality(), 1);
+
+    // Bitmaps that did not change are not copied again, the others are
+    invertedIndex.add(1, 2);
+    Assert.assertSame(invertedIndex.getImmutable(0), bitmap0);
+    ImmutableRoaringBitmap newBitmap1 = invertedIndex.getImmutable(1);
+    Assert.assertNotSame(newBitmap1, bitmap1);
+    Assert.assertEquals(bitmap1.getCardinality(), 1);
+    Assert.assertEquals(newBitmap1.getCardinality(), 2);
+    Assert.assertTrue(invertedIndex.getImmutable(2).isEmpty());
+  }
+
+  @Test
+  public void testInvertedIndexColumns() throws Exception {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addSingleValueDimension("browserId", DataType.INT)
+        .addMultiValueDimension("skills", DataType.STRING, ",")
+        .addMetric("clicks", DataType.INT)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT)
+        .build();
+    Assert.assertEquals(new HashSet<String>(RealtimeSegmentImpl.getDefaultInvertedIndexColumns(schema)),
+        new HashSet<String>(Arrays.asList("country", "browserId", "skills", "daysSinceEpoch")));
+
+    // Only index one dimension, all other filters scan the forward index
+    RealtimeSegmentImpl segment = new RealtimeSegmentImpl(schema, 2000, Arrays.asList("browserId"));
+    Random random = new Random(123L);
+    int numDocs = 1000;
+    int[] countryCounts = new int[5];
+    int[] browserIdCounts = new int[5];
+    int[] clicksCounts = new int[5];
+    int numSkill0 = 0;
+    int numClicksAbove2 = 0;
+    int numBrowserId1AndClicks3 = 0;
+    for (int i = 0; i < numDocs; i++) {
+      int country = random.nextInt(5);
+      int browserId = random.nextInt(5);
+      int clicks = random.nextInt(5);
+      Object[] skills = new Object[] { "skill_" + random.nextInt(3), "skill_" + (3 + random.nextInt(3)) };
+      Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put("country", "country_" + country);
+      fields.put("browserId", browserId);
+      fields.put("skills", skills);
+      fields.put("clicks", clicks);
+      fields.put("daysSinceEpoch", 16000);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      Assert.assertTrue(segment.index(row));
+
+      countryCounts[country]++;
+      browserIdCounts[browserId]++;
+      clicksCounts[clicks]++;
+      if (skills[0].equals("skill_0")) {
+        numSkill0++;
+      }
+      if (clicks > 2) {
+        numClicksAbove2++;
+      }
+      if (browserId == 1 && clicks == 3) {
+        numBrowserId1AndClicks3++;
+      }
+    }
+
+    Assert.assertTrue(segment.getDataSource("browserId").getDataSourceMetadata().hasInvertedIndex());
+    for (String column : new String[] { "country", "skills", "clicks", "daysSinceEpoch" }) {
+      Assert.assertFalse(segment.getDataSource(column).getDataSourceMetadata().hasInvertedIndex(), column);
+    }
+
+    Assert.assertEquals(countMatchingDocs(segment, "country = 'country_2'"), countryCounts[2]);
+    Assert.assertEquals(countMatchingDocs(segment, "browserId = 4"), browserIdCounts[4]);
+    Assert.assertEquals(countMatchingDocs(segment, "clicks = 0"), clicksCounts[0]);
+    Assert.assertEquals(countMatchingDocs(segment, "clicks > 2"), numClicksAbove2);
+    Assert.assertEquals(countMatchingDocs(segment, "skills = 'skill_0'"), numSkill0);
+    Assert.assertEquals(countMatchingDocs(segment, "browserId = 1 AND clicks = 3"), numBrowserId1AndClicks3);
+    Assert.assertEquals(countMatchingDocs(segment, "daysSinceEpoch = 16000"), numDocs);
+
+    // Sorting on a column without inverted index builds one from the forward index
+    Iterator<Integer> sortedDocIds = segment.getSortedDocIdIteratorOnColumn("country");
+    int numSortedDocs = 0;
+    String previousCountry = "";
+    while (sortedDocIds.hasNext()) {
+      String country = (String) segment.getRawValueRowAt(sortedDocIds.next()).getValue("country");
+      Assert.assertTrue(country.compareTo(previousCountry) >= 0);
+      previousCountry = country;
+      numSortedDocs++;
+    }
+    Assert.assertEquals(numSortedDocs, numDocs);
+    segment.destroy();
+  }
+
+  private static int countMatchingDocs(RealtimeSegmentImpl segment, String filter) throws Exception {
+    BrokerRequest brokerRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from testTable where " + filter));
+    Operator filterOperator = new FilterPlanNode(segment, brokerRequest).run();
+    filterOperator.open();
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int count = 0;
+    while (iterator.next() != Constants.EOF) {
+      count++;
+    }
+    filterOperator.close();
+    return count;
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.converter;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+
+
+public class RealtimeSegmentConverterTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "RealtimeSegmentConverterTest");
+  private static final String SEGMENT_NAME = "testTable_REALTIME_0";
+
+  private Schema schema;
+  private RealtimeSegmentImpl realtimeSegment;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addSingleValueDimension("browserId", DataType.INT)
+        .addSingleValueDimension("memberId", DataType.LONG)
+        .addMultiValueDimension("skills", DataType.STRING, ",")
+        .addMultiValueDimension("groupIds", DataType.LONG, ",")
+        .addMetric("clicks", DataType.INT)
+        .addMetric("cost", DataType.DOUBLE)
+        .addMetric("ratio", DataType.FLOAT)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT)
+        .build();
+    realtimeSegment = new RealtimeSegmentImpl(schema, 5000, Arrays.asList("country", "skills", "daysSinceEpoch"));
+    realtimeSegment.setSegmentName(SEGMENT_NAME);
+
+    Random random = new Random(42L);
+    for (int i = 0; i < 3000; i++) {
+      int numSkills = 1 + random.nextInt(3);
+      Object[] skills = new Object[numSkills];
+      for (int j = 0; j < numSkills; j++) {
+        skills[j] = "skill_" + random.nextInt(20);
+      }
+      Object[] groupIds = new Object[] { (long) random.nextInt(100) << 33, (long) random.nextInt(100) };
+      Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put("country", "country_" + random.nextInt(30));
+      fields.put("browserId", random.nextInt(50) - 25);
+      fields.put("memberId", random.nextLong() % 1000L);
+      fields.put("skills", skills);
+      fields.put("groupIds", groupIds);
+      fields.put("clicks", random.nextInt(10));
+      fields.put("cost", random.nextInt(1000) / 8.0);
+      fields.put("ratio", random.nextInt(100) / 4.0f);
+      fields.put("daysSinceEpoch", 16000 + i / 1000);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      Assert.assertTrue(realtimeSegment.index(row));
+    }
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testSameSegmentAsFromRows() throws Exception {
+    assertSameSegmentAsFromRows(null);
+  }
+
+  @Test
+  public void testSameSegmentAsFromRowsSorted() throws Exception {
+    assertSameSegmentAsFromRows("country");
+    assertSameSegmentAsFromRows("memberId");
+  }
+
+  private void assertSameSegmentAsFromRows(String sortedColumn) throws Exception {
+    File convertedDir = new File(INDEX_DIR, "converted_" + sortedColumn);
+    RealtimeSegmentConverter converter = new RealtimeSegmentConverter(realtimeSegment, convertedDir.getAbsolutePath(),
+        schema, "testTable", SEGMENT_NAME, sortedColumn);
+    converter.build();
+    File convertedSegment = new File(convertedDir, SEGMENT_NAME);
+
+    // Build the same segment by replaying the rows of the realtime segment
+    File fromRowsDir = new File(INDEX_DIR, "fromRows_" + sortedColumn);
+    SegmentGeneratorConfig config =
+        new RealtimeSegmentConverter(realtimeSegment, fromRowsDir.getAbsolutePath(), schema, "testTable",
+            SEGMENT_NAME, sortedColumn).getSegmentGeneratorConfig();
+    for (String column : Arrays.asList("country", "skills", "daysSinceEpoch")) {
+      config.createInvertedIndexForColumn(column);
+    }
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    if (sortedColumn == null) {
+      driver.init(config, new RealtimeSegmentRecordReader(realtimeSegment, schema));
+    } else {
+      driver.init(config, new RealtimeSegmentRecordReader(realtimeSegment, schema, sortedColumn));
+    }
+    driver.build();
+    File fromRowsSegment = new File(fromRowsDir, SEGMENT_NAME);
+
+    String[] fileNames = fromRowsSegment.list();
+    Assert.assertEquals(convertedSegment.list().length, fileNames.length);
+    for (String fileName : fileNames) {
+      if (fileName.equals(V1Constants.SEGMENT_CREATION_META)) {
+        Assert.assertEquals(readCrc(new File(convertedSegment, fileName)), readCrc(new File(fromRowsSegment, fileName)));
+      } else {
+        Assert.assertTrue(FileUtils.contentEquals(new File(fromRowsSegment, fileName),
+            new File(convertedSegment, fileName)), fileName + " differs for sorted column " + sortedColumn);
+      }
+    }
+    Assert.assertEquals(convertedDir.list().length, 1);
+  }
+
+  private static long readCrc(File creationMetaFile) throws Exception {
+    DataInputStream in = new DataInputStream(new FileInputStream(creationMetaFile));
+    try {
+      return in.readLong();
+    } finally {
+      in.close();
+    }
+  }
+}
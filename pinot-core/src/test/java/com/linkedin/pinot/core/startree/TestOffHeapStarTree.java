@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+
+
+public class TestOffHeapStarTree {
+  private static final int NUM_DIMENSIONS = 3;
+  private static final int CARDINALITY = 4;
+
+  private File starTreeFile;
+  private StarTreeIndexNode root;
+  private int nextNodeId;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    starTreeFile = new File(FileUtils.getTempDirectory(), TestOffHeapStarTree.class.getSimpleName());
+    FileUtils.deleteQuietly(starTreeFile);
+    root = createNode(0, StarTreeIndexNode.all(), StarTreeIndexNode.all(), null, new Random(17));
+    OffHeapStarTree.writeTree(root, starTreeFile);
+  }
+
+  @AfterClass
+  public void afterClass() {
+    FileUtils.deleteQuietly(starTreeFile);
+  }
+
+  @Test
+  public void testHeap() throws Exception {
+    OffHeapStarTree starTree = OffHeapStarTree.fromFile(starTreeFile, ReadMode.heap);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  @Test
+  public void testMmap() throws Exception {
+    OffHeapStarTree starTree = OffHeapStarTree.fromFile(starTreeFile, ReadMode.mmap);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  @Test
+  public void testFromTree() throws Exception {
+    OffHeapStarTree starTree = OffHeapStarTree.fromTree(root);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  private void checkTree(OffHeapStarTree starTree) {
+    Assert.assertEquals(starTree.getNumNodes(), nextNodeId);
+    checkNode(starTree, starTree.getRoot(), root);
+
+    Random random = new Random(31);
+    for (int i = 0; i < 100; i++) {
+      int[] dimensionValues = new int[NUM_DIMENSIONS];
+      List<Integer> dimensionValueList = new ArrayList<Integer>();
+      for (int j = 0; j < NUM_DIMENSIONS; j++) {
+        dimensionValues[j] = random.nextInt(CARDINALITY + 1) - 1;
+        dimensionValueList.add(dimensionValues[j]);
+      }
+      StarTreeIndexNode expected = root.getMatchingNode(dimensionValueList);
+      int actual = starTree.getMatchingNode(dimensionValues);
+      if (expected == null) {
+        Assert.assertEquals(actual, OffHeapStarTree.INVALID_NODE, Arrays.toString(dimensionValues));
+      } else {
+        Assert.assertEquals(starTree.getNodeId(actual), expected.getNodeId(), Arrays.toString(dimensionValues));
+      }
+    }
+  }
+
+  private static void checkNode(OffHeapStarTree starTree, int node, StarTreeIndexNode expected) {
+    Assert.assertEquals(starTree.getNodeId(node), expected.getNodeId());
+    Assert.assertEquals(starTree.getDimensionName(node), expected.getDimensionName());
+    Assert.assertEquals(starTree.getDimensionValue(node), expected.getDimensionValue());
+    Assert.assertEquals(starTree.getStartDocumentId(node), expected.getStartDocumentId());
+    Assert.assertEquals(starTree.getDocumentCount(node), expected.getDocumentCount());
+    Assert.assertEquals(starTree.isLeaf(node), expected.isLeaf());
+    if (expected.isLeaf()) {
+      return;
+    }
+    Assert.assertEquals(starTree.getChildDimensionName(node), expected.getChildDimensionName());
+    Assert.assertEquals(starTree.getNumChildren(node), expected.getChildren().size());
+    int previousValue = Integer.MIN_VALUE;
+    for (int child = starTree.getFirstChild(node); child < starTree.getFirstChild(node) + starTree.getNumChildren(node);
+        child++) {
+      // Children are contiguous and sorted by dimension value
+      Assert.assertTrue(starTree.getDimensionValue(child) > previousValue);
+      previousValue = starTree.getDimensionValue(child);
+      Assert.assertEquals(starTree.getChild(node, previousValue), child);
+      checkNode(starTree, child, expected.getChildren().get(previousValue));
+    }
+    Assert.assertEquals(starTree.getChild(node, CARDINALITY + 1), OffHeapStarTree.INVALID_NODE);
+  }
+
+  /** Splits on dimensions in order, skipping some values and sometimes stopping early */
+  private StarTreeIndexNode createNode(int level, int dimensionName, int dimensionValue, StarTreeIndexNode parent,
+      Random random) {
+    StarTreeIndexNode node = new StarTreeIndexNode();
+    node.setNodeId(nextNodeId++);
+    node.setLevel(level);
+    node.setDimensionName(dimensionName);
+    node.setDimensionValue(dimensionValue);
+    node.setParent(parent);
+    node.setStartDocumentId(random.nextInt(1000));
+    node.setDocumentCount(random.nextInt(100));
+    if (level < NUM_DIMENSIONS && (level == 0 || random.nextInt(4) != 0)) {
+      Map<Integer, StarTreeIndexNode> children = new HashMap<Integer, StarTreeIndexNode>();
+      node.setChildDimensionName(level);
+      for (int value = CARDINALITY - 1; value >= StarTreeIndexNode.all(); value--) {
+        if (value == StarTreeIndexNode.all() || random.nextInt(3) != 0) {
+          children.put(value, createNode(level + 1, level, value, node, random));
+        }
+      }
+      node.setChildren(children);
+    }
+    return node;
+  }
+}
@@ -17,9 +17,13 @@ package com.linkedin.pinot.core.startree;
 
 import com.google.common.collect.ImmutableList;
 import com.linkedin.pinot.common.data.StarTreeIndexSpec;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
@@ -32,6 +36,7 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumWriter;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.BasicConfigurator;
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -93,6 +98,19 @@ public class TestStarTreeSegmentCreator {
     final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
     driver.init(config);
     driver.build();
+
+    // Both star tree formats are written, and the flat one is loaded
+    File segmentDir = new File(indexDir, driver.getSegmentName());
+    Assert.assertTrue(new File(segmentDir, V1Constants.STARTREE_FILE).exists());
+    Assert.assertTrue(new File(segmentDir, V1Constants.STARTREE_OFF_HEAP_FILE).exists());
+    IndexSegment indexSegment = Loaders.IndexSegment.load(segmentDir, ReadMode.mmap);
+    OffHeapStarTree starTree = indexSegment.getStarTree();
+    Assert.assertNotNull(starTree);
+    StarTreeIndexNode root =
+        StarTreeIndexNode.fromBytes(new FileInputStream(new File(segmentDir, V1Constants.STARTREE_FILE)));
+    Assert.assertEquals(starTree.getDocumentCount(starTree.getRoot()), root.getDocumentCount());
+    Assert.assertEquals(starTree.getNumChildren(starTree.getRoot()), root.getChildren().size());
+    indexSegment.destroy();
   }
 
   private static void createSampleAvroData(File file, int numRecords, int numTimeBuckets) throws Exception {
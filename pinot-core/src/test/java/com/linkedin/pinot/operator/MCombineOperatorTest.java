@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.operator;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.plan.CombinePlanNode;
+import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache.SegmentKey;
+import com.linkedin.pinot.core.query.executor.SharedQueryExecutor;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class MCombineOperatorTest {
+  private static final int NUM_THREADS = 4;
+
+  private ExecutorService _executorService;
+  private BrokerRequest _brokerRequest;
+
+  @BeforeClass
+  public void setup() {
+    _executorService = Executors.newFixedThreadPool(NUM_THREADS);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("sum");
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "met");
+    aggregationInfo.setAggregationParams(params);
+    _brokerRequest = new BrokerRequest();
+    _brokerRequest.setAggregationsInfo(Collections.singletonList(aggregationInfo));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdownNow();
+  }
+
+  @Test
+  public void testCombineMoreSegmentsThanTasks() {
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 1; i <= 100; i++) {
+      operators.add(new SumOperator(i, 0L, null));
+    }
+    MCombineOperator combineOperator = new MCombineOperator(operators, _executorService, 10000L, _brokerRequest, 3);
+    IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+
+    Assert.assertEquals(mergedBlock.getNumDocsScanned(), 100L);
+    Assert.assertEquals(mergedBlock.getTotalDocs(), 100L);
+    Assert.assertEquals(((Number) mergedBlock.getAggregationResult().get(0)).doubleValue(), 5050.0);
+    Assert.assertTrue(mergedBlock.getExceptions() == null || mergedBlock.getExceptions().isEmpty());
+  }
+
+  @Test
+  public void testSlowSegmentDoesNotHoldBackOthers() {
+    Map<String, AtomicInteger> segmentsPerThread = new ConcurrentHashMap<String, AtomicInteger>();
+    List<Operator> operators = new ArrayList<Operator>();
+    operators.add(new SumOperator(1, 500L, segmentsPerThread));
+    for (int i = 2; i <= 50; i++) {
+      operators.add(new SumOperator(i, 0L, segmentsPerThread));
+    }
+    MCombineOperator combineOperator = new MCombineOperator(operators, _executorService, 10000L, _brokerRequest, 2);
+    IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+
+    Assert.assertEquals(((Number) mergedBlock.getAggregationResult().get(0)).doubleValue(), 1275.0);
+    // The task stuck on the slow segment should leave the remaining segments to the other task.
+    int minSegmentsPerThread = Integer.MAX_VALUE;
+    for (AtomicInteger numSegments : segmentsPerThread.values()) {
+      minSegmentsPerThread = Math.min(minSegmentsPerThread, numSegments.get());
+    }
+    Assert.assertEquals(segmentsPerThread.size(), 2);
+    Assert.assertTrue(minSegmentsPerThread < 10, "Slow task processed " + minSegmentsPerThread + " segments");
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    List<Operator> operators = new ArrayList<Operator>();
+    operators.add(new SumOperator(1, 0L, null));
+    operators.add(new SumOperator(2, 2000L, null));
+    MCombineOperator combineOperator = new MCombineOperator(operators, _executorService, 200L, _brokerRequest, 2);
+    IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+
+    List<ProcessingException> exceptions = mergedBlock.getExceptions();
+    Assert.assertNotNull(exceptions);
+    boolean hasTimeout = false;
+    for (ProcessingException exception : exceptions) {
+      hasTimeout |= exception.getMessage().contains(TimeoutException.class.getName());
+    }
+    Assert.assertTrue(hasTimeout);
+
+    // The slow segment finishing after the timeout does not get merged into the returned block
+    String aggregationResult = String.valueOf(mergedBlock.getAggregationResult());
+    Thread.sleep(2500L);
+    Assert.assertEquals(String.valueOf(mergedBlock.getAggregationResult()), aggregationResult);
+  }
+
+  @Test
+  public void testRejectedTasks() throws Exception {
+    // One thread and one queue slot: 2 of the 4 tasks are accepted, and they combine all the segments
+    SharedQueryExecutor sharedQueryExecutor = new SharedQueryExecutor(1, 1,
+        new SharedQueryExecutor.TableWeightProvider() {
+          @Override
+          public int getWeight(String tableName) {
+            return 1;
+          }
+        }, null);
+    try {
+      ExecutorService tableExecutorService = sharedQueryExecutor.getTableExecutorService("myTable_OFFLINE");
+      List<Operator> operators = new ArrayList<Operator>();
+      for (int i = 1; i <= 20; i++) {
+        operators.add(new SumOperator(i, 10L, null));
+      }
+      MCombineOperator combineOperator =
+          new MCombineOperator(operators, tableExecutorService, 10000L, _brokerRequest, 4);
+      IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+      Assert.assertEquals(((Number) mergedBlock.getAggregationResult().get(0)).doubleValue(), 210.0);
+      Assert.assertTrue(mergedBlock.getExceptions() == null || mergedBlock.getExceptions().isEmpty());
+
+      // No task accepted at all fails the query instead of hanging
+      tableExecutorService.shutdown();
+      combineOperator = new MCombineOperator(operators, tableExecutorService, 10000L, _brokerRequest, 4);
+      mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+      Assert.assertNotNull(mergedBlock.getExceptions());
+      Assert.assertFalse(mergedBlock.getExceptions().isEmpty());
+    } finally {
+      sharedQueryExecutor.shutDown();
+    }
+  }
+
+  @Test
+  public void testSegmentResultCache() {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024);
+    String queryKey = SegmentResultCache.getQueryKey(_brokerRequest);
+    List<SegmentKey> segmentKeys = new ArrayList<SegmentKey>();
+    for (int i = 1; i <= 20; i++) {
+      SegmentMetadata segmentMetadata = mock(SegmentMetadata.class);
+      when(segmentMetadata.getCrc()).thenReturn("crc");
+      IndexSegment indexSegment = mock(IndexSegment.class);
+      when(indexSegment.getSegmentName()).thenReturn("segment" + i);
+      when(indexSegment.getSegmentMetadata()).thenReturn(segmentMetadata);
+      segmentKeys.add(SegmentResultCache.getSegmentKey("myTable_OFFLINE", indexSegment, queryKey));
+    }
+
+    for (int run = 0; run < 2; run++) {
+      Map<String, AtomicInteger> segmentsPerThread = new ConcurrentHashMap<String, AtomicInteger>();
+      AtomicInteger numPlanNodesRun = new AtomicInteger(0);
+      CombinePlanNode combinePlanNode = new CombinePlanNode(_brokerRequest, _executorService, 10000L, 3);
+      combinePlanNode.setSegmentResultCache(cache);
+      for (int i = 1; i <= 20; i++) {
+        combinePlanNode.addPlanNode(new SumPlanNode(i, segmentsPerThread, numPlanNodesRun), segmentKeys.get(i - 1));
+      }
+      IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combinePlanNode.run().nextBlock();
+
+      Assert.assertEquals(((Number) mergedBlock.getAggregationResult().get(0)).doubleValue(), 210.0);
+      Assert.assertEquals(mergedBlock.getNumDocsScanned(), 20L);
+      // The second run is served from the cache without building nor running the segment operators
+      Assert.assertEquals(numPlanNodesRun.get(), (run == 0) ? 20 : 0);
+      Assert.assertEquals(segmentsPerThread.isEmpty(), run == 1);
+    }
+    Assert.assertEquals(cache.size(), 20);
+  }
+
+  /**
+   * Plans a {@link SumOperator}, counting how many times it is run.
+   */
+  private class SumPlanNode implements PlanNode {
+    private final double _value;
+    private final Map<String, AtomicInteger> _segmentsPerThread;
+    private final AtomicInteger _numRuns;
+
+    SumPlanNode(double value, Map<String, AtomicInteger> segmentsPerThread, AtomicInteger numRuns) {
+      _value = value;
+      _segmentsPerThread = segmentsPerThread;
+      _numRuns = numRuns;
+    }
+
+    @Override
+    public Operator run() {
+      _numRuns.incrementAndGet();
+      return new SumOperator(_value, 0L, _segmentsPerThread);
+    }
+
+    @Override
+    public void showTree(String prefix) {
+    }
+  }
+
+  /**
+   * Stands in for a segment level aggregation operator, returning a sum result of one doc.
+   */
+  private class SumOperator extends BaseOperator {
+    private final double _value;
+    private final long _delayMs;
+    private final Map<String, AtomicInteger> _segmentsPerThread;
+
+    SumOperator(double value, long delayMs, Map<String, AtomicInteger> segmentsPerThread) {
+      _value = value;
+      _delayMs = delayMs;
+      _segmentsPerThread = segmentsPerThread;
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+
+    @Override
+    public Block getNextBlock() {
+      if (_segmentsPerThread != null) {
+        String threadName = Thread.currentThread().getName();
+        _segmentsPerThread.putIfAbsent(threadName, new AtomicInteger(0));
+        _segmentsPerThread.get(threadName).incrementAndGet();
+      }
+      if (_delayMs > 0) {
+        try {
+          Thread.sleep(_delayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      List<AggregationFunction> aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      List<Serializable> results = new ArrayList<Serializable>();
+      results.add(_value);
+      IntermediateResultsBlock block = new IntermediateResultsBlock(aggregationFunctions, results);
+      block.setNumDocsScanned(1);
+      block.setTotalDocs(1);
+      return block;
+    }
+
+    @Override
+    public Block getNextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getOperatorName() {
+      return "SumOperator";
+    }
+  }
+}
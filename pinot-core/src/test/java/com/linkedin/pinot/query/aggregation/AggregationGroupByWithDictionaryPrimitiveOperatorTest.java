@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.operator.query.AggregationFunctionGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryPrimitiveOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Checks that the primitive group by operator produces the same per group results as the boxed
+ * dictionary based group by operator.
+ */
+public class AggregationGroupByWithDictionaryPrimitiveOperatorTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "TestAggregationGroupByWithDictionaryPrimitiveOperator");
+  private static final String[] AGGREGATION_TYPES = { "count", "sum", "max", "min", "avg" };
+
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+  }
+
+  @Test
+  public void testSingleGroupByColumn() {
+    assertSameResults(getGroupBy("column11"));
+  }
+
+  @Test
+  public void testMultipleGroupByColumns() {
+    assertSameResults(getGroupBy("column11", "column10"));
+  }
+
+  @Test
+  public void testLargeGroupKeySpace() {
+    // column12 x column13 x column11 x column10 exceeds the array threshold, so results live in hash maps.
+    assertSameResults(getGroupBy("column12", "column13", "column11", "column10"));
+  }
+
+  @Test
+  public void testIsSupported() {
+    for (String aggregationType : AGGREGATION_TYPES) {
+      Assert.assertTrue(MAggregationFunctionGroupByWithDictionaryPrimitiveOperator
+          .isSupported(getAggregationInfo(aggregationType)));
+    }
+    Assert.assertFalse(MAggregationFunctionGroupByWithDictionaryPrimitiveOperator
+        .isSupported(getAggregationInfo("distinctCount")));
+    Assert.assertFalse(MAggregationFunctionGroupByWithDictionaryPrimitiveOperator
+        .isSupported(getAggregationInfo("percentile50")));
+  }
+
+  private void assertSameResults(GroupBy groupBy) {
+    final List<AggregationInfo> aggregationInfos = new ArrayList<AggregationInfo>();
+    for (String aggregationType : AGGREGATION_TYPES) {
+      aggregationInfos.add(getAggregationInfo(aggregationType));
+    }
+
+    final List<Map<String, Serializable>> expected = runGroupBy(aggregationInfos, groupBy, false);
+    final List<Map<String, Serializable>> actual = runGroupBy(aggregationInfos, groupBy, true);
+
+    Assert.assertEquals(actual.size(), expected.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      Map<String, Serializable> expectedResult = expected.get(i);
+      Map<String, Serializable> actualResult = actual.get(i);
+      Assert.assertFalse(expectedResult.isEmpty());
+      Assert.assertTrue(actualResult.keySet().equals(expectedResult.keySet()), AGGREGATION_TYPES[i]);
+      for (String groupKey : expectedResult.keySet()) {
+        Assert.assertEquals(actualResult.get(groupKey).toString(), expectedResult.get(groupKey).toString(),
+            AGGREGATION_TYPES[i] + " of group " + groupKey);
+      }
+    }
+  }
+
+  private List<Map<String, Serializable>> runGroupBy(List<AggregationInfo> aggregationInfos, GroupBy groupBy,
+      boolean primitive) {
+    final BReusableFilteredDocIdSetOperator docIdSetOperator =
+        new BReusableFilteredDocIdSetOperator(null, _indexSegment.getTotalDocs(), 5000);
+    final MProjectionOperator projectionOperator = new MProjectionOperator(getDataSourceMap(groupBy), docIdSetOperator);
+
+    final List<AggregationFunctionGroupByOperator> aggregationFunctionGroupByOperatorList =
+        new ArrayList<AggregationFunctionGroupByOperator>();
+    for (AggregationInfo aggregationInfo : aggregationInfos) {
+      if (primitive) {
+        aggregationFunctionGroupByOperatorList.add(new MAggregationFunctionGroupByWithDictionaryPrimitiveOperator(
+            aggregationInfo, groupBy, new UReplicatedProjectionOperator(projectionOperator), true));
+      } else {
+        aggregationFunctionGroupByOperatorList.add(new MAggregationFunctionGroupByWithDictionaryOperator(
+            aggregationInfo, groupBy, new UReplicatedProjectionOperator(projectionOperator), true));
+      }
+    }
+
+    final MAggregationGroupByOperator aggregationGroupByOperator =
+        new MAggregationGroupByOperator(_indexSegment, aggregationInfos, groupBy, projectionOperator,
+            aggregationFunctionGroupByOperatorList);
+    final IntermediateResultsBlock block = (IntermediateResultsBlock) aggregationGroupByOperator.nextBlock();
+    return block.getAggregationGroupByOperatorResult();
+  }
+
+  private Map<String, DataSource> getDataSourceMap(GroupBy groupBy) {
+    final Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+    for (String column : groupBy.getColumns()) {
+      dataSourceMap.put(column, _indexSegment.getDataSource(column));
+    }
+    dataSourceMap.put("met_impressionCount", _indexSegment.getDataSource("met_impressionCount"));
+    return dataSourceMap;
+  }
+
+  private static GroupBy getGroupBy(String... columns) {
+    final GroupBy groupBy = new GroupBy();
+    final List<String> groupByColumns = new ArrayList<String>();
+    for (String column : columns) {
+      groupByColumns.add(column);
+    }
+    groupBy.setColumns(groupByColumns);
+    groupBy.setTopN(10);
+    return groupBy;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type) {
+    final Map<String, String> params = new HashMap<String, String>();
+    params.put("column", type.equals("count") ? "*" : "met_impressionCount");
+    final AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.common.utils.DataTableObjectSerDe;
+import com.linkedin.pinot.common.utils.primitive.MutableLongValue;
+import com.linkedin.pinot.core.query.aggregation.AggregationResultSerDe;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+
+
+/**
+ * Round trips the intermediate aggregation results through DataTable in both versions.
+ */
+public class AggregationResultSerDeTest {
+
+  @BeforeClass
+  public void setup() {
+    AggregationResultSerDe.register();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    AvgPair avgPair = new AvgAggregationFunction().getAvgPair(10.5, 3L);
+    IntOpenHashSet intSet = new IntOpenHashSet(new int[] { 1, 5, 7 });
+    HyperLogLog hyperLogLog = new HyperLogLog(12);
+    QuantileDigest quantileDigest = new QuantileDigest(0.05);
+    for (int i = 0; i < 1000; i++) {
+      hyperLogLog.offer(i);
+      quantileDigest.add(i);
+    }
+    DoubleArrayList doubleList = new DoubleArrayList(new double[] { 1.0, 2.5 });
+    HashMap<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    groupByResult.put("a", avgPair);
+    groupByResult.put("b", intSet);
+
+    Serializable[] values = new Serializable[] { avgPair, intSet, hyperLogLog, quantileDigest, doubleList, groupByResult };
+    DataSchema schema = new DataSchema(new String[] { "result" }, new DataType[] { DataType.OBJECT });
+    DataTableBuilder builder = new DataTableBuilder(schema);
+    builder.open();
+    for (Serializable value : values) {
+      builder.startRow();
+      builder.setColumn(0, value);
+      builder.finishRow();
+    }
+    builder.seal();
+    DataTable dataTable = builder.build();
+
+    for (int version : new int[] { DataTable.VERSION_1, DataTable.VERSION_2 }) {
+      DataTable received = new DataTable(dataTable.toBytes(version));
+      AvgPair receivedAvgPair = received.getObject(0, 0);
+      Assert.assertEquals(receivedAvgPair.getFirst(), 10.5);
+      Assert.assertEquals(receivedAvgPair.getSecond(), Long.valueOf(3L));
+      Assert.assertEquals(received.getObject(1, 0), intSet);
+      Assert.assertEquals(((HyperLogLog) received.getObject(2, 0)).cardinality(), hyperLogLog.cardinality());
+      QuantileDigest receivedDigest = received.getObject(3, 0);
+      Assert.assertEquals(receivedDigest.getQuantile(0.5), quantileDigest.getQuantile(0.5));
+      Assert.assertEquals(receivedDigest.getCount(), quantileDigest.getCount());
+      Assert.assertEquals(received.getObject(4, 0), doubleList);
+      HashMap<String, Serializable> receivedGroupByResult = received.getObject(5, 0);
+      Assert.assertEquals(((AvgPair) receivedGroupByResult.get("a")).getFirst(), 10.5);
+      Assert.assertEquals(receivedGroupByResult.get("b"), intSet);
+    }
+  }
+
+  @Test
+  public void testCountGroupByRoundTrip() throws Exception {
+    HashMap<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    for (int i = 0; i < 100; i++) {
+      groupByResult.put("group" + i, new MutableLongValue(i * 7L));
+    }
+    DataSchema schema = new DataSchema(new String[] { "count_star" }, new DataType[] { DataType.OBJECT });
+    DataTableBuilder builder = new DataTableBuilder(schema);
+    builder.open();
+    builder.startRow();
+    builder.setColumn(0, groupByResult);
+    builder.finishRow();
+    builder.seal();
+    DataTable dataTable = builder.build();
+
+    // Counts get the compact encoding rather than falling back to Java serialization
+    byte[] bytes = DataTableObjectSerDe.serialize(new MutableLongValue(5L));
+    Assert.assertEquals(bytes[0], AggregationResultSerDe.MUTABLE_LONG_VALUE);
+    Assert.assertEquals(bytes.length, 9);
+
+    for (int version : new int[] { DataTable.VERSION_1, DataTable.VERSION_2 }) {
+      DataTable received = new DataTable(dataTable.toBytes(version));
+      HashMap<String, Serializable> receivedGroupByResult = received.getObject(0, 0);
+      Assert.assertEquals(receivedGroupByResult, groupByResult);
+    }
+  }
+}
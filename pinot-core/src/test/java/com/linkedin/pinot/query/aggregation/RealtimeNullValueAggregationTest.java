@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.operator.blocks.MatchEntireSegmentDocIdSetBlock;
+import com.linkedin.pinot.core.operator.query.AggregationFunctionGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryPrimitiveOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+/**
+ * Checks that the batched aggregations skip the null metric values of realtime segments, which are stored as
+ * Dictionary.NULL_VALUE_INDEX in the forward index.
+ */
+public class RealtimeNullValueAggregationTest {
+  private static final String DIMENSION = "dim";
+  private static final String METRIC = "met";
+  private static final String TIME = "daysSinceEpoch";
+  private static final int NUM_ROWS = 1000;
+  private static final String[] AGGREGATION_TYPES = { "sum", "max", "min", "avg" };
+
+  private RealtimeSegmentImpl _segment;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    Schema schema = new Schema();
+    schema.addSchema(DIMENSION, new DimensionFieldSpec(DIMENSION, DataType.STRING, true));
+    schema.addSchema(METRIC, new MetricFieldSpec(METRIC, DataType.INT));
+    schema.addSchema(TIME, new TimeFieldSpec(TIME, DataType.INT, TimeUnit.DAYS));
+
+    _segment = new RealtimeSegmentImpl(schema, NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put(DIMENSION, "d" + (i % 3));
+      fields.put(METRIC, isNull(i) ? null : i);
+      fields.put(TIME, 16000);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      _segment.index(row);
+    }
+    Assert.assertEquals(_segment.getRawDocumentCount(), NUM_ROWS);
+  }
+
+  private static boolean isNull(int value) {
+    return value % 4 == 0;
+  }
+
+  @Test
+  public void testAggregationSkipsNullValues() {
+    double sum = 0;
+    long count = 0;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < NUM_ROWS; i++) {
+      if (!isNull(i)) {
+        sum += i;
+        count++;
+        min = Math.min(min, i);
+        max = Math.max(max, i);
+      }
+    }
+
+    SumAggregationFunction sumFunction = new SumAggregationFunction();
+    sumFunction.init(getAggregationInfo("sum"));
+    Assert.assertEquals(sumFunction.aggregate(getDocIdSetBlock(), getMetricBlocks()), sum);
+
+    MinAggregationFunction minFunction = new MinAggregationFunction();
+    minFunction.init(getAggregationInfo("min"));
+    Assert.assertEquals(minFunction.aggregate(getDocIdSetBlock(), getMetricBlocks()), min);
+
+    MaxAggregationFunction maxFunction = new MaxAggregationFunction();
+    maxFunction.init(getAggregationInfo("max"));
+    Assert.assertEquals(maxFunction.aggregate(getDocIdSetBlock(), getMetricBlocks()), max);
+
+    AvgAggregationFunction avgFunction = new AvgAggregationFunction();
+    avgFunction.init(getAggregationInfo("avg"));
+    AvgPair avgPair = avgFunction.aggregate(getDocIdSetBlock(), getMetricBlocks());
+    Assert.assertEquals(avgPair.getFirst(), sum);
+    Assert.assertEquals(avgPair.getSecond().longValue(), count);
+  }
+
+  @Test
+  public void testPrimitiveGroupBySkipsNullValues() {
+    GroupBy groupBy = new GroupBy();
+    List<String> groupByColumns = new ArrayList<String>();
+    groupByColumns.add(DIMENSION);
+    groupBy.setColumns(groupByColumns);
+    groupBy.setTopN(10);
+
+    List<AggregationInfo> aggregationInfos = new ArrayList<AggregationInfo>();
+    for (String aggregationType : AGGREGATION_TYPES) {
+      aggregationInfos.add(getAggregationInfo(aggregationType));
+    }
+
+    List<Map<String, Serializable>> expected = runGroupBy(aggregationInfos, groupBy, false);
+    List<Map<String, Serializable>> actual = runGroupBy(aggregationInfos, groupBy, true);
+    for (int i = 0; i < expected.size(); ++i) {
+      Assert.assertEquals(actual.get(i).keySet(), expected.get(i).keySet(), AGGREGATION_TYPES[i]);
+      for (String groupKey : expected.get(i).keySet()) {
+        Assert.assertEquals(actual.get(i).get(groupKey).toString(), expected.get(i).get(groupKey).toString(),
+            AGGREGATION_TYPES[i] + " of group " + groupKey);
+      }
+    }
+  }
+
+  private List<Map<String, Serializable>> runGroupBy(List<AggregationInfo> aggregationInfos, GroupBy groupBy,
+      boolean primitive) {
+    Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+    dataSourceMap.put(DIMENSION, _segment.getDataSource(DIMENSION));
+    dataSourceMap.put(METRIC, _segment.getDataSource(METRIC));
+    BReusableFilteredDocIdSetOperator docIdSetOperator =
+        new BReusableFilteredDocIdSetOperator(null, _segment.getTotalDocs(), 5000);
+    MProjectionOperator projectionOperator = new MProjectionOperator(dataSourceMap, docIdSetOperator);
+
+    List<AggregationFunctionGroupByOperator> aggregationFunctionGroupByOperatorList =
+        new ArrayList<AggregationFunctionGroupByOperator>();
+    for (AggregationInfo aggregationInfo : aggregationInfos) {
+      if (primitive) {
+        aggregationFunctionGroupByOperatorList.add(new MAggregationFunctionGroupByWithDictionaryPrimitiveOperator(
+            aggregationInfo, groupBy, new UReplicatedProjectionOperator(projectionOperator), true));
+      } else {
+        aggregationFunctionGroupByOperatorList.add(new MAggregationFunctionGroupByWithDictionaryOperator(
+            aggregationInfo, groupBy, new UReplicatedProjectionOperator(projectionOperator), true));
+      }
+    }
+
+    MAggregationGroupByOperator aggregationGroupByOperator =
+        new MAggregationGroupByOperator(_segment, aggregationInfos, groupBy, projectionOperator,
+            aggregationFunctionGroupByOperatorList);
+    IntermediateResultsBlock block = (IntermediateResultsBlock) aggregationGroupByOperator.nextBlock();
+    return block.getAggregationGroupByOperatorResult();
+  }
+
+  private MatchEntireSegmentDocIdSetBlock getDocIdSetBlock() {
+    return new MatchEntireSegmentDocIdSetBlock(_segment.getTotalDocs());
+  }
+
+  private Block[] getMetricBlocks() {
+    return new Block[] { _segment.getDataSource(METRIC).nextBlock() };
+  }
+
+  private static AggregationInfo getAggregationInfo(String type) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", METRIC);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+}
@@ -21,7 +21,9 @@ import com.yammer.metrics.core.MetricsRegistry;
 import com.linkedin.pinot.util.TestUtils;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,11 +33,13 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.query.StreamingReducer;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterQuery;
@@ -418,6 +422,46 @@ public class DefaultReduceServiceTest {
       throw new RuntimeException(e.toString(), e);
     }
   }
+  @Test
+  public void testStreamingReduce() throws Exception {
+    BrokerRequest brokerRequest = getMultiAggregationQuery();
+
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("midas");
+
+    brokerRequest.setQuerySource(querySource);
+    InstanceRequest instanceRequest = new InstanceRequest(0, brokerRequest);
+    instanceRequest.setSearchSegments(new ArrayList<String>());
+    for (IndexSegment segment : _indexSegmentList) {
+      instanceRequest.addToSearchSegments(segment.getSegmentName());
+    }
+
+    Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    StreamingReducer reducer = _reduceService.newStreamingReducer(brokerRequest);
+    for (int i = 0; i < 5; ++i) {
+      ServerInstance serverInstance = new ServerInstance("localhost:" + i);
+      instanceResponseMap.put(serverInstance, _queryExecutor.processQuery(instanceRequest));
+
+      // Reduce the response from its serialized bytes like the broker does, then wipe them as the broker releases
+      // the buffer once the response is reduced.
+      byte[] responseBytes = _queryExecutor.processQuery(instanceRequest).toBytes();
+      reducer.reduce(serverInstance, new DataTable(ByteBuffer.wrap(responseBytes)));
+      Arrays.fill(responseBytes, (byte) 0);
+    }
+    BrokerResponse streamingBrokerResponse = reducer.getBrokerResponse();
+    BrokerResponse brokerResponse = _reduceService.reduceOnDataTable(brokerRequest, instanceResponseMap);
+
+    Assert.assertEquals(streamingBrokerResponse.getAggregationResultsSize(), 7);
+    for (int i = 0; i < brokerResponse.getAggregationResultsSize(); ++i) {
+      JsonAssert.assertEqualsIgnoreOrder(streamingBrokerResponse.getAggregationResults().get(i).toString(),
+          brokerResponse.getAggregationResults().get(i).toString());
+    }
+    Assert.assertEquals(streamingBrokerResponse.getNumDocsScanned(), brokerResponse.getNumDocsScanned());
+    Assert.assertEquals(streamingBrokerResponse.getTotalDocs(), brokerResponse.getTotalDocs());
+    JsonAssert.assertEqualsIgnoreOrder(streamingBrokerResponse.getAggregationResults().get(0).toString(),
+        "{\"value\":\"2000010\",\"function\":\"count_star\"}");
+  }
+
 
   private BrokerRequest getCountQuery() {
     BrokerRequest query = new BrokerRequest();
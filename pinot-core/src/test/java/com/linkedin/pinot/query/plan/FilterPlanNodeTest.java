@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.plan;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Runs the same filters on a segment with inverted indexes on all columns, where they are evaluated with bitmap
+ * algebra, and on a segment without inverted indexes, where every predicate is scanned, and checks that both
+ * match the same docs.
+ */
+public class FilterPlanNodeTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "TestFilterPlanNode");
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+
+  private IndexSegment _invertedIndexSegment;
+  private IndexSegment _scanSegment;
+  private final List<String> _predicates = new ArrayList<String>();
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+    _scanSegment = buildSegment(filePath, new File(INDEX_DIR, "scan"), false);
+    _invertedIndexSegment = buildSegment(filePath, new File(INDEX_DIR, "invertedIndex"), true);
+
+    // Equality predicates on the first few dictionary values of single value columns, so that the filters below
+    // mix selective and unselective children, and sorted and unsorted columns.
+    final SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) _invertedIndexSegment.getSegmentMetadata();
+    for (ColumnMetadata columnMetadata : segmentMetadata.getColumnMetadataMap().values()) {
+      if (!columnMetadata.isSingleValue() || columnMetadata.getCardinality() < 3 || _predicates.size() >= 12) {
+        continue;
+      }
+      final String column = columnMetadata.getColumnName();
+      final Dictionary dictionary = _invertedIndexSegment.getDataSource(column).getDictionary();
+      for (int dictId = 0; dictId < 3; dictId++) {
+        String value = dictionary.getStringValue(dictId);
+        if (columnMetadata.getDataType() == DataType.STRING) {
+          value = "'" + value + "'";
+        }
+        _predicates.add(column + (dictId == 2 ? " <> " : " = ") + value);
+      }
+    }
+    Assert.assertTrue(_predicates.size() >= 6);
+  }
+
+  private static IndexSegment buildSegment(String avroFile, File indexDir, boolean createInvertedIndex)
+      throws Exception {
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(avroFile), indexDir, "time_day",
+            TimeUnit.DAYS, "testTable");
+    final List<String> columns = new ArrayList<String>(config.getSchema().getColumnNames());
+    if (createInvertedIndex) {
+      for (String column : columns) {
+        config.createInvertedIndexForColumn(column);
+      }
+    }
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    final IndexLoadingConfigMetadata indexLoadingConfigMetadata =
+        new IndexLoadingConfigMetadata(new PropertiesConfiguration());
+    if (createInvertedIndex) {
+      indexLoadingConfigMetadata.initLoadingInvertedIndexColumnSet(columns.toArray(new String[columns.size()]));
+    }
+    return Loaders.IndexSegment.load(new File(indexDir, driver.getSegmentName()), ReadMode.heap,
+        indexLoadingConfigMetadata);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _invertedIndexSegment.destroy();
+    _scanSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testLeafEstimates() throws Exception {
+    final int numDocs = _invertedIndexSegment.getTotalDocs();
+    for (String predicate : _predicates) {
+      final BaseFilterOperator filterOperator = (BaseFilterOperator) getFilterOperator(_invertedIndexSegment, predicate);
+      Assert.assertFalse(filterOperator.isScanBased(), predicate);
+      final int estimate = filterOperator.getNumMatchingDocsEstimate(numDocs);
+      Assert.assertEquals(estimate, getMatchingDocs(filterOperator).size(), predicate);
+    }
+  }
+
+  @Test
+  public void testAndOr() throws Exception {
+    final int numPredicates = _predicates.size();
+    for (int i = 0; i < numPredicates; i++) {
+      final String p1 = _predicates.get(i);
+      final String p2 = _predicates.get((i + 1) % numPredicates);
+      final String p3 = _predicates.get((i + 4) % numPredicates);
+      checkSameDocs(p1 + " AND " + p3);
+      checkSameDocs(p1 + " OR " + p3);
+      checkSameDocs(p1 + " AND (" + p2 + " OR " + p3 + ")");
+      checkSameDocs("(" + p1 + " AND " + p3 + ") OR " + p2);
+      checkSameDocs(p1 + " AND " + p2 + " AND " + p3);
+    }
+  }
+
+  @Test
+  public void testResidualScan() throws Exception {
+    // Range predicates are scanned on offline segments even with an inverted index, so they are evaluated on the
+    // docs matched by the index based siblings only.
+    final SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) _invertedIndexSegment.getSegmentMetadata();
+    for (ColumnMetadata columnMetadata : segmentMetadata.getColumnMetadataMap().values()) {
+      if (!columnMetadata.isSingleValue() || columnMetadata.getDataType() == DataType.STRING
+          || columnMetadata.getCardinality() < 3) {
+        continue;
+      }
+      final String column = columnMetadata.getColumnName();
+      final Dictionary dictionary = _invertedIndexSegment.getDataSource(column).getDictionary();
+      final String range = column + " BETWEEN " + dictionary.getStringValue(1) + " AND "
+          + dictionary.getStringValue(dictionary.length() - 1);
+      for (int i = 0; i < _predicates.size(); i++) {
+        final String predicate = _predicates.get(i);
+        final String otherPredicate = _predicates.get((i + 1) % _predicates.size());
+        checkSameDocs(predicate + " AND " + range);
+        checkSameDocs(predicate + " OR " + range);
+        // Nested AND/OR with a scan based child have no bitmap, they are evaluated doc by doc.
+        checkSameDocs(predicate + " AND (" + otherPredicate + " OR " + range + ")");
+        checkSameDocs(range + " AND (" + otherPredicate + " OR " + range + ")");
+        checkSameDocs(range + " OR (" + otherPredicate + " AND " + range + ")");
+      }
+    }
+  }
+
+  private void checkSameDocs(String filter) throws Exception {
+    Assert.assertEquals(getMatchingDocs(getFilterOperator(_invertedIndexSegment, filter)),
+        getMatchingDocs(getFilterOperator(_scanSegment, filter)), filter);
+  }
+
+  private static Operator getFilterOperator(IndexSegment indexSegment, String filter) throws Exception {
+    final BrokerRequest brokerRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from testTable where " + filter));
+    return new FilterPlanNode(indexSegment, brokerRequest).run();
+  }
+
+  private static List<Integer> getMatchingDocs(Operator filterOperator) {
+    final List<Integer> docIds = new ArrayList<Integer>();
+    filterOperator.open();
+    final BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      docIds.add(docId);
+    }
+    filterOperator.close();
+    return docIds;
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.pruner;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.query.pruner.ColumnValueSegmentPruner;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+public class ColumnValueSegmentPrunerTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "TestColumnValueSegmentPruner");
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+
+  private final ColumnValueSegmentPruner _pruner = new ColumnValueSegmentPruner();
+  private File _segmentDir;
+  private IndexSegment _indexSegment;
+  private String _column;
+  private long _min;
+  private long _max;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "testTable");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _segmentDir = new File(INDEX_DIR, driver.getSegmentName());
+    _indexSegment = ColumnarSegmentLoader.load(_segmentDir, ReadMode.heap);
+
+    final SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) _indexSegment.getSegmentMetadata();
+    for (ColumnMetadata columnMetadata : segmentMetadata.getColumnMetadataMap().values()) {
+      if ((columnMetadata.getDataType() == DataType.INT || columnMetadata.getDataType() == DataType.LONG)
+          && columnMetadata.isSingleValue() && columnMetadata.getCardinality() > 1) {
+        _column = columnMetadata.getColumnName();
+        _min = Long.parseLong(columnMetadata.getMinValue());
+        _max = Long.parseLong(columnMetadata.getMaxValue());
+        break;
+      }
+    }
+    Assert.assertNotNull(_column);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testMinMaxInMetadata() {
+    final SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) _indexSegment.getSegmentMetadata();
+    for (ColumnMetadata columnMetadata : segmentMetadata.getColumnMetadataMap().values()) {
+      if (columnMetadata.getDataType() == DataType.STRING) {
+        continue;
+      }
+      final Dictionary dictionary =
+          _indexSegment.getDataSource(columnMetadata.getColumnName()).nextBlock().getMetadata().getDictionary();
+      Assert.assertEquals(columnMetadata.getMinValue(), dictionary.getStringValue(0), columnMetadata.getColumnName());
+      Assert.assertEquals(columnMetadata.getMaxValue(), dictionary.getStringValue(dictionary.length() - 1),
+          columnMetadata.getColumnName());
+    }
+  }
+
+  @Test
+  public void testEqualityAndIn() throws Exception {
+    Assert.assertFalse(prune(_indexSegment, _column + " = " + _min));
+    Assert.assertFalse(prune(_indexSegment, _column + " = " + _max));
+    Assert.assertTrue(prune(_indexSegment, _column + " = " + (_max + 1)));
+    Assert.assertTrue(prune(_indexSegment, _column + " = " + (_min - 1)));
+    Assert.assertTrue(prune(_indexSegment, _column + " in (" + (_min - 1) + ", " + (_max + 1) + ")"));
+    Assert.assertFalse(prune(_indexSegment, _column + " in (" + (_min - 1) + ", " + _max + ")"));
+  }
+
+  @Test
+  public void testRange() throws Exception {
+    Assert.assertTrue(prune(_indexSegment, _column + " > " + _max));
+    Assert.assertFalse(prune(_indexSegment, _column + " >= " + _max));
+    Assert.assertTrue(prune(_indexSegment, _column + " < " + _min));
+    Assert.assertFalse(prune(_indexSegment, _column + " <= " + _min));
+    Assert.assertFalse(prune(_indexSegment, _column + " between " + (_min - 10) + " and " + _min));
+    Assert.assertTrue(prune(_indexSegment, _column + " between " + (_max + 1) + " and " + (_max + 10)));
+  }
+
+  @Test
+  public void testAndOr() throws Exception {
+    final String inRange = _column + " = " + _min;
+    final String outOfRange = _column + " = " + (_max + 1);
+    Assert.assertTrue(prune(_indexSegment, inRange + " and " + outOfRange));
+    Assert.assertFalse(prune(_indexSegment, inRange + " or " + outOfRange));
+    Assert.assertTrue(prune(_indexSegment, outOfRange + " or " + _column + " < " + _min));
+  }
+
+  @Test
+  public void testSegmentWithoutMinMax() throws Exception {
+    final File oldSegmentDir = new File(INDEX_DIR, "segmentWithoutMinMax");
+    FileUtils.copyDirectory(_segmentDir, oldSegmentDir);
+    final PropertiesConfiguration properties =
+        new PropertiesConfiguration(new File(oldSegmentDir, V1Constants.MetadataKeys.METADATA_FILE_NAME));
+    for (String column : _indexSegment.getColumnNames()) {
+      properties.clearProperty(V1Constants.MetadataKeys.Column.getKeyFor(column,
+          V1Constants.MetadataKeys.Column.MIN_VALUE));
+      properties.clearProperty(V1Constants.MetadataKeys.Column.getKeyFor(column,
+          V1Constants.MetadataKeys.Column.MAX_VALUE));
+    }
+    properties.save();
+
+    final IndexSegment oldSegment = ColumnarSegmentLoader.load(oldSegmentDir, ReadMode.heap);
+    final ColumnMetadata columnMetadata =
+        ((SegmentMetadataImpl) oldSegment.getSegmentMetadata()).getColumnMetadataFor(_column);
+    Assert.assertNull(columnMetadata.getMinValue());
+    Assert.assertNull(columnMetadata.getMaxValue());
+    Assert.assertFalse(prune(oldSegment, _column + " = " + (_max + 1)));
+    Assert.assertFalse(prune(oldSegment, _column + " > " + _max));
+  }
+
+  private boolean prune(IndexSegment indexSegment, String filter) throws Exception {
+    final BrokerRequest brokerRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from testTable where " + filter));
+    return _pruner.prune(indexSegment, brokerRequest);
+  }
+}
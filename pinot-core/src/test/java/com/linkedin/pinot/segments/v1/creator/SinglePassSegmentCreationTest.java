@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.segments.v1.creator;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Checks that single pass creation writes the same segment files, byte for byte, as the default
+ * two pass creation.
+ */
+public class SinglePassSegmentCreationTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "SinglePassSegmentCreationTest");
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testSameSegmentAsTwoPass() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    final File twoPassSegment = buildSegment(new File(INDEX_DIR, "twoPass"), false, 1);
+    final File singlePassSegment = buildSegment(new File(INDEX_DIR, "singlePass"), true, 4);
+    final File singleThreadSegment = buildSegment(new File(INDEX_DIR, "singleThread"), true, 1);
+
+    final String[] fileNames = twoPassSegment.list();
+    Assert.assertTrue(fileNames.length > 0);
+    for (File segment : new File[] { singlePassSegment, singleThreadSegment }) {
+      Assert.assertEquals(segment.getName(), twoPassSegment.getName());
+      Assert.assertEquals(segment.list().length, fileNames.length);
+      for (String fileName : fileNames) {
+        Assert.assertTrue(FileUtils.contentEquals(new File(twoPassSegment, fileName), new File(segment, fileName)),
+            fileName);
+      }
+      // Spill files are gone, only the segment is left in the output directory
+      Assert.assertEquals(segment.getParentFile().list().length, 1);
+    }
+  }
+
+  @Test
+  public void testMultiValueColumns() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    final Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addMultiValueDimension("skills", DataType.STRING, ",")
+        .addMultiValueDimension("groupIds", DataType.LONG, ",")
+        .addMetric("clicks", DataType.INT)
+        .addMetric("cost", DataType.DOUBLE)
+        .addMetric("ratio", DataType.FLOAT)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT)
+        .build();
+    final File twoPassSegment = buildSegment(new File(INDEX_DIR, "twoPass"), schema, false);
+    final File singlePassSegment = buildSegment(new File(INDEX_DIR, "singlePass"), schema, true);
+    for (String fileName : twoPassSegment.list()) {
+      Assert.assertTrue(FileUtils.contentEquals(new File(twoPassSegment, fileName),
+          new File(singlePassSegment, fileName)), fileName);
+    }
+  }
+
+  private File buildSegment(File outputDir, Schema schema, boolean singlePass) throws Exception {
+    final SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setTableName("testTable");
+    config.setSegmentName("testSegment");
+    config.setIndexOutputDir(outputDir.getAbsolutePath());
+    config.setTimeColumnName("daysSinceEpoch");
+    config.createInvertedIndexForAllColumns();
+    config.setCreationTime("1000");
+    config.setSinglePassCreation(singlePass);
+    config.setNumCreationThreads(3);
+
+    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new RandomRecordReader(schema, 5000));
+    driver.build();
+    return new File(outputDir, driver.getSegmentName());
+  }
+
+  /**
+   * Generates the same rows on every pass, with multi value columns of varying length.
+   */
+  private static class RandomRecordReader implements RecordReader {
+    private final Schema _schema;
+    private final int _numRows;
+    private Random _random;
+    private int _rowId;
+
+    RandomRecordReader(Schema schema, int numRows) {
+      _schema = schema;
+      _numRows = numRows;
+    }
+
+    @Override
+    public void init() {
+      rewind();
+    }
+
+    @Override
+    public void rewind() {
+      _random = new Random(42);
+      _rowId = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _rowId < _numRows;
+    }
+
+    @Override
+    public Schema getSchema() {
+      return _schema;
+    }
+
+    @Override
+    public GenericRow next() {
+      final Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put("country", "country_" + _random.nextInt(50));
+      final Object[] skills = new Object[1 + _random.nextInt(4)];
+      for (int i = 0; i < skills.length; i++) {
+        skills[i] = "skill_\u00e9" + _random.nextInt(200);
+      }
+      fields.put("skills", skills);
+      final Object[] groupIds = new Object[1 + _random.nextInt(3)];
+      for (int i = 0; i < groupIds.length; i++) {
+        groupIds[i] = (long) _random.nextInt(1000) << 33;
+      }
+      fields.put("groupIds", groupIds);
+      fields.put("clicks", _random.nextInt(100));
+      fields.put("cost", _random.nextInt(1000) / 8.0);
+      fields.put("ratio", _random.nextInt(100) / 4.0f);
+      fields.put("daysSinceEpoch", 16000 + _rowId / 1000);
+      _rowId++;
+      final GenericRow row = new GenericRow();
+      row.init(fields);
+      return row;
+    }
+
+    @Override
+    public Map<String, MutableLong> getNullCountMap() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private File buildSegment(File outputDir, boolean singlePass, int numThreads) throws Exception {
+    final String filePath =
+        TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), outputDir, "time_day",
+            TimeUnit.DAYS, "test");
+    config.createInvertedIndexForAllColumns();
+    config.setCreationTime("1000");
+    config.setSinglePassCreation(singlePass);
+    config.setNumCreationThreads(numThreads);
+
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    return new File(outputDir, driver.getSegmentName());
+  }
+}
@@ -38,4 +38,16 @@ public final class ArrayBasedSingleValueSet implements BlockValSet {
   public DataType getValueType() {
     return DataType.INT;
   }
+
+  @Override
+  public void readIntValues(int[] docIds, int length, int[] dictIdsOut) {
+    for (int i = 0; i < length; i++) {
+      dictIdsOut[i] = values[docIds[i]];
+    }
+  }
+
+  @Override
+  public int getIntValues(int docId, int[] dictIdsOut) {
+    throw new UnsupportedOperationException("Multi value read is not supported on single value column");
+  }
 }
\ No newline at end of file
@@ -169,6 +169,7 @@ public class HadoopSegmentCreationMapReduceJob {
       segmentGeneratorConfig.setRecordeReaderConfig(getReaderConfig(fileFormat));
 
       segmentGeneratorConfig.setIndexOutputDir(_localDiskSegmentDirectory);
+      segmentGeneratorConfig.setSinglePassCreation(true);
 
       SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
       driver.init(segmentGeneratorConfig);
@@ -564,6 +564,36 @@ public abstract class BaseClusterIntegrationTest extends ClusterTest {
     }
   }
 
+  /**
+   * Encodes rowCount random records of the schema of the given Avro file the same way pushRandomAvroIntoKafka writes
+   * them into Kafka, for consumers that do not go through Kafka.
+   */
+  public static List<byte[]> generateRandomAvroMessages(File avroFile, int rowCount, Random random) {
+    try {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(65536);
+      DataFileStream<GenericRecord> reader = AvroUtils.getAvroReader(avroFile);
+      BinaryEncoder binaryEncoder = new EncoderFactory().directBinaryEncoder(outputStream, null);
+      Schema avroSchema = reader.getSchema();
+      GenericDatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<GenericRecord>(avroSchema);
+      GenericRecord genericRecord = new GenericData.Record(avroSchema);
+      List<byte[]> messages = new ArrayList<byte[]>(rowCount);
+
+      for (int i = 0; i < rowCount; ++i) {
+        generateRandomRecord(genericRecord, avroSchema, random);
+        outputStream.reset();
+        datumWriter.write(genericRecord, binaryEncoder);
+        binaryEncoder.flush();
+        messages.add(outputStream.toByteArray());
+      }
+
+      outputStream.close();
+      reader.close();
+      return messages;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private static void generateRandomRecord(GenericRecord genericRecord, Schema avroSchema, Random random) {
     for (Schema.Field field : avroSchema.getFields()) {
       Schema.Type fieldType = field.schema().getType();
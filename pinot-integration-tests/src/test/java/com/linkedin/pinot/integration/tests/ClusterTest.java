@@ -26,6 +26,7 @@ import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.commons.configuration.Configuration;
@@ -156,6 +157,8 @@ public abstract class ClusterTest extends ControllerTest {
     private AvroRecordToPinotRowGenerator _rowGenerator;
     private DecoderFactory _decoderFactory = new DecoderFactory();
     private DatumReader<GenericData.Record> _reader;
+    private BinaryDecoder _binaryDecoder;
+    private GenericData.Record _avroRecord;
 
     @Override
     public void init(Map<String, String> props, Schema indexingSchema, String kafkaTopicName) throws Exception {
@@ -170,9 +173,9 @@ public abstract class ClusterTest extends ControllerTest {
     @Override
     public GenericRow decode(byte[] payload) {
       try {
-        GenericData.Record avroRecord =
-            _reader.read(null, _decoderFactory.binaryDecoder(payload, 0, payload.length, null));
-        return _rowGenerator.transform(avroRecord, _avroSchema);
+        _binaryDecoder = _decoderFactory.binaryDecoder(payload, 0, payload.length, _binaryDecoder);
+        _avroRecord = _reader.read(_avroRecord, _binaryDecoder);
+        return _rowGenerator.transform(_avroRecord, _avroSchema);
       } catch (Exception e) {
         LOGGER.error("Caught exception", e);
         throw new RuntimeException(e);
@@ -27,6 +27,7 @@ import com.linkedin.pinot.common.utils.StringUtil;
 import com.linkedin.pinot.core.data.manager.offline.FileBasedInstanceDataManager;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentMetadataLoader;
 import com.linkedin.pinot.core.query.executor.ServerQueryExecutorV1Impl;
+import com.linkedin.pinot.core.query.pruner.ColumnValueSegmentPruner;
 import com.linkedin.pinot.core.query.pruner.DataSchemaSegmentPruner;
 import com.linkedin.pinot.core.query.pruner.TimeSegmentPruner;
 import com.linkedin.pinot.server.conf.ServerConf;
@@ -117,9 +118,11 @@ public class FileBasedServerBrokerStarters {
     serverConfiguration.addProperty("pinot.server.instance.segment.metadata.loader.class",
         ColumnarSegmentMetadataLoader.class.getName());
     serverConfiguration.addProperty("pinot.server.query.executor.pruner.class",
-        StringUtil.join(",", TimeSegmentPruner.class.getSimpleName(), DataSchemaSegmentPruner.class.getSimpleName()));
+        StringUtil.join(",", TimeSegmentPruner.class.getSimpleName(), DataSchemaSegmentPruner.class.getSimpleName(),
+            ColumnValueSegmentPruner.class.getSimpleName()));
     serverConfiguration.addProperty("pinot.server.query.executor.pruner.TimeSegmentPruner.id", "0");
     serverConfiguration.addProperty("pinot.server.query.executor.pruner.DataSchemaSegmentPruner.id", "1");
+    serverConfiguration.addProperty("pinot.server.query.executor.pruner.ColumnValueSegmentPruner.id", "2");
     serverConfiguration.addProperty("pinot.server.query.executor.class", ServerQueryExecutorV1Impl.class.getName());
     serverConfiguration.addProperty("pinot.server.requestHandlerFactory.class",
         SimpleRequestHandlerFactory.class.getName());
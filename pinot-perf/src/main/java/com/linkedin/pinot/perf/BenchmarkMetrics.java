@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.metrics.MetricsHelper;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+
+/**
+ * Compares the cost of logging the per query phase timings and meters of a server, from several threads at once:
+ * building the metric names and looking them up in the registry on every call (the previous implementation, kept
+ * here as the baseline), pre-resolved yammer timers, and pre-resolved striped histograms.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkMetrics {
+  private static final ServerQueryPhase[] PHASES = {
+      ServerQueryPhase.SEGMENT_PRUNING, ServerQueryPhase.BUILD_QUERY_PLAN, ServerQueryPhase.QUERY_PLAN_EXECUTION,
+      ServerQueryPhase.QUERY_PROCESSING
+  };
+
+  @Param({ "REGISTRY_LOOKUP", "CACHED_TIMER", "STRIPED_HISTOGRAM" })
+  public String implementation;
+
+  private MetricsRegistry _registry;
+  private ServerMetrics _serverMetrics;
+  private BrokerRequest[] _requests;
+
+  @Setup
+  public void setUp() {
+    _registry = new MetricsRegistry();
+    _serverMetrics = new ServerMetrics(_registry, implementation.equals("STRIPED_HISTOGRAM"));
+    _requests = new BrokerRequest[16];
+    for (int i = 0; i < _requests.length; i++) {
+      QuerySource querySource = new QuerySource();
+      querySource.setTableName("table" + i + "_OFFLINE");
+      _requests[i] = new BrokerRequest();
+      _requests[i].setQuerySource(querySource);
+    }
+  }
+
+  /**
+   * Logs the metrics of one query as the server query executor does.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Threads(4)
+  public void logQueryMetrics() {
+    BrokerRequest request = _requests[(int) (System.nanoTime() & (_requests.length - 1))];
+    if (implementation.equals("REGISTRY_LOOKUP")) {
+      for (ServerQueryPhase phase : PHASES) {
+        addPhaseTimingWithRegistryLookup(request, phase, 1000000L);
+      }
+      addMeteredValueWithRegistryLookup(request, ServerMeter.QUERIES, 1L);
+    } else {
+      for (ServerQueryPhase phase : PHASES) {
+        _serverMetrics.addPhaseTiming(request, phase, 1000000L);
+      }
+      _serverMetrics.addMeteredValue(request, ServerMeter.QUERIES, 1L);
+    }
+  }
+
+  private void addPhaseTimingWithRegistryLookup(BrokerRequest request, ServerQueryPhase phase, long nanos) {
+    MetricName metricName = new MetricName(ServerMetrics.class,
+        "pinot.server." + request.getQuerySource().getTableName() + "." + phase.getQueryPhaseName());
+    MetricsHelper.newTimer(_registry, metricName, TimeUnit.MILLISECONDS, TimeUnit.SECONDS).update(nanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  private void addMeteredValueWithRegistryLookup(BrokerRequest request, ServerMeter meter, long unitCount) {
+    MetricName metricName = new MetricName(ServerMetrics.class,
+        "pinot.server." + request.getQuerySource().getTableName() + "." + meter.getMeterName());
+    MetricsHelper.newMeter(_registry, metricName, meter.getUnit(), TimeUnit.SECONDS).mark(unitCount);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder()
+        .include(BenchmarkMetrics.class.getSimpleName())
+        .forks(1)
+        .warmupTime(TimeValue.seconds(6))
+        .warmupIterations(3)
+        .measurementTime(TimeValue.seconds(6))
+        .measurementIterations(5)
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
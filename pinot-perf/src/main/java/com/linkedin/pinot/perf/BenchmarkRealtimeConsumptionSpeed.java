@@ -17,14 +17,25 @@ package com.linkedin.pinot.perf;
 
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.linkedin.pinot.common.TestUtils;
+import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.utils.KafkaStarterUtils;
 import com.linkedin.pinot.common.utils.TarGzCompressionUtils;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.manager.realtime.RealtimeDecodePipeline;
+import com.linkedin.pinot.core.realtime.RawMessageStreamProvider;
+import com.linkedin.pinot.core.realtime.StreamProviderConfig;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaHighLevelStreamProviderConfig;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
 import com.linkedin.pinot.integration.tests.BaseClusterIntegrationTest;
+import com.linkedin.pinot.integration.tests.ClusterTest;
 import com.linkedin.pinot.integration.tests.OfflineClusterIntegrationTest;
 import com.linkedin.pinot.integration.tests.RealtimeClusterIntegrationTest;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -36,6 +47,11 @@ import org.json.JSONObject;
 /**
  * Benchmark that writes a configurable amount of rows in Kafka and checks how much time it takes to consume all of
  * them.
+ *
+ * When run with "inProcess" as first argument, the rows are instead served from memory by an in-process stream
+ * provider and indexed into a realtime segment directly, once for each number of decode threads given as the
+ * following arguments (0 meaning the rows are decoded by the indexing thread), to measure the decode and index
+ * throughput without Kafka or a cluster.
  */
 public class BenchmarkRealtimeConsumptionSpeed extends RealtimeClusterIntegrationTest {
   private static final int ROW_COUNT = 100_000;
@@ -45,16 +61,155 @@ public class BenchmarkRealtimeConsumptionSpeed extends RealtimeClusterIntegratio
   private final String KAFKA_TOPIC = "benchmark-realtime-consumption-speed";
   private static final int SEGMENT_COUNT = 1;
   private static final Random RANDOM = new Random(123456L);
+  private static final String IN_PROCESS = "inProcess";
+  private static final int[] DEFAULT_DECODE_THREAD_COUNTS = new int[] { 0, 1, 2, 4 };
 
   public static void main(String[] args) {
     try {
-      new BenchmarkRealtimeConsumptionSpeed().runBenchmark();
+      if (args.length > 0 && IN_PROCESS.equals(args[0])) {
+        int[] decodeThreadCounts = DEFAULT_DECODE_THREAD_COUNTS;
+        if (args.length > 1) {
+          decodeThreadCounts = new int[args.length - 1];
+          for (int i = 1; i < args.length; i++) {
+            decodeThreadCounts[i - 1] = Integer.parseInt(args[i]);
+          }
+        }
+        new BenchmarkRealtimeConsumptionSpeed().runInProcessBenchmark(decodeThreadCounts);
+      } else {
+        new BenchmarkRealtimeConsumptionSpeed().runBenchmark();
+      }
     } catch (Exception e) {
+      e.printStackTrace();
       System.exit(-1);
     }
     System.exit(0);
   }
 
+  private void runInProcessBenchmark(int[] decodeThreadCounts) throws Exception {
+    // Unpack data (needed to get the Avro schema)
+    TarGzCompressionUtils.unTar(
+        new File(TestUtils.getFileFromResourceUrl(RealtimeClusterIntegrationTest.class.getClassLoader()
+            .getResource("On_Time_On_Time_Performance_2014_100k_subset_nonulls.tar.gz"))), _tmpDir);
+    File avroFile = new File(_tmpDir.getPath() + "/On_Time_On_Time_Performance_2014_1.avro");
+    Schema schema = Schema.fromFile(new File(OfflineClusterIntegrationTest.class.getClassLoader()
+        .getResource("On_Time_On_Time_Performance_2014_100k_subset_nonulls.schema").getFile()));
+    ClusterTest.AvroFileSchemaKafkaAvroMessageDecoder.avroFile = avroFile;
+
+    List<byte[]> messages = generateRandomAvroMessages(avroFile, ROW_COUNT, RANDOM);
+
+    for (int decodeThreadCount : decodeThreadCounts) {
+      InMemoryStreamProvider streamProvider = new InMemoryStreamProvider(messages, schema);
+      streamProvider.start();
+      RealtimeSegmentImpl realtimeSegment = new RealtimeSegmentImpl(schema, ROW_COUNT);
+
+      long startTime = System.currentTimeMillis();
+      if (decodeThreadCount == 0) {
+        GenericRow row;
+        while ((row = streamProvider.next()) != null) {
+          realtimeSegment.index(row);
+        }
+      } else {
+        RealtimeDecodePipeline decodePipeline =
+            new RealtimeDecodePipeline(getClass().getSimpleName(), streamProvider, decodeThreadCount,
+                KafkaHighLevelStreamProviderConfig.DEFAULT_DECODE_QUEUE_SIZE, ROW_COUNT);
+        decodePipeline.start();
+        while (!decodePipeline.isExhausted()) {
+          realtimeSegment.index(decodePipeline.next());
+        }
+        decodePipeline.shutdown();
+      }
+      long endTime = System.currentTimeMillis();
+
+      System.out.println("Consumed " + realtimeSegment.getRawDocumentCount() + " rows with " + decodeThreadCount
+          + " decode threads in " + (endTime - startTime) / 1000.0 + " seconds ("
+          + realtimeSegment.getRawDocumentCount() * 1000L / Math.max(1L, endTime - startTime) + " rows/sec)");
+      streamProvider.shutdown();
+    }
+  }
+
+  /**
+   * Stream provider that serves a fixed list of messages, standing in for a Kafka consumer that has them all
+   * available.
+   */
+  private static class InMemoryStreamProvider implements RawMessageStreamProvider {
+    private final List<byte[]> messages;
+    private final Schema schema;
+    private Iterator<byte[]> iterator = Collections.<byte[]>emptyList().iterator();
+    private KafkaMessageDecoder decoder;
+
+    public InMemoryStreamProvider(List<byte[]> messages, Schema schema) {
+      this.messages = messages;
+      this.schema = schema;
+    }
+
+    @Override
+    public void init(StreamProviderConfig streamProviderConfig) throws Exception {
+    }
+
+    @Override
+    public void start() throws Exception {
+      iterator = messages.iterator();
+      decoder = createDecoder();
+    }
+
+    @Override
+    public byte[] nextMessage() {
+      if (iterator.hasNext()) {
+        return iterator.next();
+      }
+      return null;
+    }
+
+    @Override
+    public KafkaMessageDecoder createDecoder() throws Exception {
+      KafkaMessageDecoder messageDecoder = new ClusterTest.AvroFileSchemaKafkaAvroMessageDecoder();
+      messageDecoder.init(Collections.<String, String>emptyMap(), schema, null);
+      return messageDecoder;
+    }
+
+    @Override
+    public void onDecodeFailure(Throwable cause) {
+      System.out.println("Failed to decode message: " + cause);
+    }
+
+    @Override
+    public void setOffset(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public GenericRow next() {
+      byte[] message = nextMessage();
+      if (message == null) {
+        return null;
+      }
+      return decoder.decode(message);
+    }
+
+    @Override
+    public GenericRow next(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long currentOffset() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void commit(long offset) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+    }
+  }
+
   private void runBenchmark() throws Exception {
     // Start ZK and Kafka
     startZk();
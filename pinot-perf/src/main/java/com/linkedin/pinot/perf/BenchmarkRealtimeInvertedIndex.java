@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndexImpl;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Compares the realtime inverted index backed by an array of bitmaps with the HashMap of boxed dictionary ids it
+ * replaced: docs added per second by the indexing thread, and (from main) the heap retained by one segment worth
+ * of docs. Dictionary ids follow a skewed distribution, as dimension values usually do.
+ */
+@State(Scope.Thread)
+public class BenchmarkRealtimeInvertedIndex {
+  private static final int SEGMENT_CAPACITY = 1_000_000;
+  private static final int NUM_PREGENERATED_DICT_IDS = 1 << 20;
+
+  @Param({ "HASH_MAP", "ARRAY" })
+  public String implementation;
+
+  @Param({ "100", "10000", "100000" })
+  public int cardinality;
+
+  // Keeps the measured index reachable while the heap is measured
+  private static volatile InvertedIndex retainedInvertedIndex;
+
+  private int[] _dictIds;
+  private InvertedIndex _invertedIndex;
+  private int _nextDocId = 0;
+
+  /**
+   * Add path of the two implementations, so that both are driven by the same benchmark loop.
+   */
+  private interface InvertedIndex {
+    void add(int dictId, int docId);
+  }
+
+  /**
+   * The previous realtime inverted index, kept here as the baseline.
+   */
+  private static class HashMapInvertedIndex implements InvertedIndex {
+    private final Map<Object, MutableRoaringBitmap> invertedIndex = new HashMap<Object, MutableRoaringBitmap>();
+
+    @Override
+    public void add(int dictId, int docId) {
+      Object id = dictId;
+      if (!invertedIndex.containsKey(id)) {
+        invertedIndex.put(id, new MutableRoaringBitmap());
+      }
+      invertedIndex.get(id).add(docId);
+    }
+  }
+
+  private static class ArrayInvertedIndex implements InvertedIndex {
+    private final RealtimeInvertedIndexImpl invertedIndex = new RealtimeInvertedIndexImpl("benchmark");
+
+    @Override
+    public void add(int dictId, int docId) {
+      invertedIndex.add(dictId, docId);
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    _dictIds = generateDictIds(cardinality);
+    _invertedIndex = newInvertedIndex(implementation);
+  }
+
+  private static int[] generateDictIds(int cardinality) {
+    Random random = new Random(123456L);
+    int[] dictIds = new int[NUM_PREGENERATED_DICT_IDS];
+    for (int i = 0; i < dictIds.length; i++) {
+      // Squaring a uniform value skews the ids towards the low (first seen) values
+      double uniform = random.nextDouble();
+      dictIds[i] = (int) (uniform * uniform * cardinality);
+    }
+    return dictIds;
+  }
+
+  private static InvertedIndex newInvertedIndex(String implementation) {
+    if (implementation.equals("HASH_MAP")) {
+      return new HashMapInvertedIndex();
+    }
+    return new ArrayInvertedIndex();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public int addDoc() {
+    if (_nextDocId == SEGMENT_CAPACITY) {
+      // Segment is full, start a new one as the consumer would after flushing
+      _invertedIndex = newInvertedIndex(implementation);
+      _nextDocId = 0;
+    }
+    _invertedIndex.add(_dictIds[_nextDocId & (NUM_PREGENERATED_DICT_IDS - 1)], _nextDocId);
+    return _nextDocId++;
+  }
+
+  private static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    // Heap retained by a full segment, measured outside of JMH as the difference of used heap around it
+    for (int cardinality : new int[] { 100, 10000, 100000 }) {
+      int[] dictIds = generateDictIds(cardinality);
+      for (String implementation : new String[] { "HASH_MAP", "ARRAY" }) {
+        long usedHeapBefore = getUsedHeap();
+        retainedInvertedIndex = newInvertedIndex(implementation);
+        for (int docId = 0; docId < SEGMENT_CAPACITY; docId++) {
+          retainedInvertedIndex.add(dictIds[docId & (NUM_PREGENERATED_DICT_IDS - 1)], docId);
+        }
+        long retainedBytes = getUsedHeap() - usedHeapBefore;
+        retainedInvertedIndex = null;
+        System.out.println("implementation: " + implementation + ", cardinality: " + cardinality
+            + ", retained heap (KB): " + retainedBytes / 1024);
+      }
+    }
+
+    Options opt = new OptionsBuilder()
+        .include(BenchmarkRealtimeInvertedIndex.class.getSimpleName())
+        .forks(1)
+        .warmupTime(TimeValue.seconds(6))
+        .warmupIterations(3)
+        .measurementTime(TimeValue.seconds(6))
+        .measurementIterations(5)
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
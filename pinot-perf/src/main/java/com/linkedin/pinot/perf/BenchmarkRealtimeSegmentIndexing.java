@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+
+/**
+ * Measures how many rows per second a single thread indexes into a RealtimeSegmentImpl, without Kafka or the
+ * rest of the cluster (see BenchmarkRealtimeConsumptionSpeed for the end to end consumption speed). Each
+ * benchmark thread indexes into its own segment, so the throughput with N threads divided by N is the rate
+ * per core. The GC profiler reports the allocation rate per indexed row.
+ */
+@State(Scope.Thread)
+public class BenchmarkRealtimeSegmentIndexing {
+  private static final int NUM_DISTINCT_ROWS = 100_000;
+  private static final int SEGMENT_CAPACITY = 1_000_000;
+
+  private Schema _schema;
+  private GenericRow[] _rows;
+  private RealtimeSegmentImpl _realtimeSegment;
+  private int _nextRow = 0;
+
+  @Setup
+  public void setUp() throws Exception {
+    _schema = new Schema.SchemaBuilder().setSchemaName("benchmark")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addSingleValueDimension("memberId", DataType.LONG)
+        .addSingleValueDimension("pageKey", DataType.STRING)
+        .addSingleValueDimension("browserId", DataType.INT)
+        .addMultiValueDimension("skills", DataType.STRING, ",")
+        .addMetric("clicks", DataType.INT)
+        .addMetric("revenue", DataType.DOUBLE)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT)
+        .build();
+
+    Random random = new Random(123456L);
+    _rows = new GenericRow[NUM_DISTINCT_ROWS];
+    for (int i = 0; i < NUM_DISTINCT_ROWS; i++) {
+      Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put("country", "country_" + random.nextInt(200));
+      fields.put("memberId", (long) random.nextInt(1_000_000));
+      fields.put("pageKey", "page_" + random.nextInt(10_000));
+      fields.put("browserId", random.nextInt(50));
+      Object[] skills = new Object[1 + random.nextInt(5)];
+      for (int j = 0; j < skills.length; j++) {
+        skills[j] = "skill_" + random.nextInt(1_000);
+      }
+      fields.put("skills", skills);
+      fields.put("clicks", random.nextInt(10));
+      fields.put("revenue", (double) random.nextInt(1_000) / 100);
+      fields.put("daysSinceEpoch", 16_000 + random.nextInt(30));
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      _rows[i] = row;
+    }
+
+    _realtimeSegment = new RealtimeSegmentImpl(_schema, SEGMENT_CAPACITY);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public int indexRow() throws Exception {
+    if (!_realtimeSegment.index(_rows[_nextRow])) {
+      // Segment is full, start a new one as the consumer would after flushing
+      _realtimeSegment = new RealtimeSegmentImpl(_schema, SEGMENT_CAPACITY);
+    }
+    _nextRow = (_nextRow + 1) % NUM_DISTINCT_ROWS;
+    return _nextRow;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+
+    Options opt = new OptionsBuilder()
+        .include(BenchmarkRealtimeSegmentIndexing.class.getSimpleName())
+        .forks(1)
+        .threads(numThreads)
+        .warmupTime(TimeValue.seconds(6))
+        .warmupIterations(5)
+        .measurementTime(TimeValue.seconds(6))
+        .measurementIterations(10)
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
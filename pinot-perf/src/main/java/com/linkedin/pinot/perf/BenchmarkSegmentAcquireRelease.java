@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManagerMap;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.IndexType;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+
+/**
+ * Stress benchmark of the segment acquire/release path of the table data managers: query threads acquire 70% of
+ * the segments of a table and release them, while a helix thread keeps replacing segments. Compares the previous
+ * read-write lock protected map, kept here as the baseline, with the lock-free SegmentDataManagerMap. Tear down
+ * checks that every replaced segment was destroyed exactly once, and never while in use.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkSegmentAcquireRelease {
+  @Param({ "READ_WRITE_LOCK", "LOCK_FREE" })
+  public String implementation;
+
+  @Param({ "100", "2000" })
+  public int numSegments;
+
+  // Delay between two segment replacements by the helix thread
+  @Param({ "1" })
+  public int replaceIntervalMs;
+
+  private Segments _segments;
+  private List<String> _segmentNames;
+  private Thread _helixThread;
+  private volatile boolean _stopped;
+  private final AtomicLong _numCreated = new AtomicLong();
+  private final AtomicLong _numDestroyed = new AtomicLong();
+
+  /**
+   * Acquire/release path of the two implementations, so that both are driven by the same benchmark loop.
+   */
+  private interface Segments {
+    void add(OfflineSegmentDataManager segmentDataManager);
+
+    List<OfflineSegmentDataManager> acquire(List<String> segmentNames);
+
+    void release(OfflineSegmentDataManager segmentDataManager);
+  }
+
+  /**
+   * The previous OfflineTableDataManager bookkeeping: a map and ref counts guarded by a read-write lock.
+   */
+  private static class ReadWriteLockSegments implements Segments {
+    private final ReadWriteLock _rwLock = new ReentrantReadWriteLock();
+    private final Map<String, OfflineSegmentDataManager> _segmentsMap =
+        new HashMap<String, OfflineSegmentDataManager>();
+
+    @Override
+    public void add(OfflineSegmentDataManager segmentDataManager) {
+      OfflineSegmentDataManager oldSegmentManager;
+      int refCnt = -1;
+      try {
+        _rwLock.writeLock().lock();
+        oldSegmentManager = _segmentsMap.put(segmentDataManager.getSegmentName(), segmentDataManager);
+        if (oldSegmentManager != null) {
+          refCnt = oldSegmentManager.decrementRefCnt();
+        }
+      } finally {
+        _rwLock.writeLock().unlock();
+      }
+      if (refCnt == 0) {
+        oldSegmentManager.getSegment().destroy();
+      }
+    }
+
+    @Override
+    public List<OfflineSegmentDataManager> acquire(List<String> segmentNames) {
+      List<OfflineSegmentDataManager> ret = new ArrayList<OfflineSegmentDataManager>();
+      try {
+        _rwLock.readLock().lock();
+        for (String segmentName : segmentNames) {
+          OfflineSegmentDataManager segmentDataManager = _segmentsMap.get(segmentName);
+          if (segmentDataManager != null) {
+            segmentDataManager.tryIncrementRefCnt();
+            ret.add(segmentDataManager);
+          }
+        }
+      } finally {
+        _rwLock.readLock().unlock();
+      }
+      return ret;
+    }
+
+    @Override
+    public void release(OfflineSegmentDataManager segmentDataManager) {
+      if (segmentDataManager.decrementRefCnt() == 0) {
+        segmentDataManager.getSegment().destroy();
+      }
+    }
+  }
+
+  private static class LockFreeSegments implements Segments {
+    private final SegmentDataManagerMap<OfflineSegmentDataManager> _segments =
+        new SegmentDataManagerMap<OfflineSegmentDataManager>();
+
+    @Override
+    public void add(OfflineSegmentDataManager segmentDataManager) {
+      OfflineSegmentDataManager oldSegmentManager = _segments.put(segmentDataManager);
+      if (oldSegmentManager != null && _segments.release(oldSegmentManager)) {
+        oldSegmentManager.getSegment().destroy();
+      }
+    }
+
+    @Override
+    public List<OfflineSegmentDataManager> acquire(List<String> segmentNames) {
+      return _segments.acquire(segmentNames);
+    }
+
+    @Override
+    public void release(OfflineSegmentDataManager segmentDataManager) {
+      if (_segments.release(segmentDataManager)) {
+        segmentDataManager.getSegment().destroy();
+      }
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    _segments = implementation.equals("READ_WRITE_LOCK") ? new ReadWriteLockSegments() : new LockFreeSegments();
+    _segmentNames = new ArrayList<String>(numSegments);
+    for (int i = 0; i < numSegments; i++) {
+      String segmentName = "segment_" + i;
+      _segmentNames.add(segmentName);
+      _segments.add(new OfflineSegmentDataManager(new StubIndexSegment(segmentName)));
+    }
+
+    _stopped = false;
+    _helixThread = new Thread() {
+      @Override
+      public void run() {
+        Random random = new Random();
+        while (!_stopped) {
+          String segmentName = _segmentNames.get(random.nextInt(numSegments));
+          _segments.add(new OfflineSegmentDataManager(new StubIndexSegment(segmentName)));
+          try {
+            Thread.sleep(replaceIntervalMs);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    };
+    _helixThread.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    _stopped = true;
+    _helixThread.join();
+    // Every segment but the ones still in the table must have been destroyed
+    long expectedDestroyed = _numCreated.get() - numSegments;
+    if (_numDestroyed.get() != expectedDestroyed) {
+      throw new IllegalStateException("Destroyed " + _numDestroyed.get() + " segments, expected " + expectedDestroyed);
+    }
+  }
+
+  /**
+   * Picks 70% of the segments starting at a random one, acquires them and releases them, as a query would.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Threads(8)
+  public int acquireRelease() {
+    int start = (int) (System.nanoTime() % numSegments);
+    int numQuerySegments = numSegments * 7 / 10;
+    List<String> segmentNames = new ArrayList<String>(numQuerySegments);
+    for (int i = 0; i < numQuerySegments; i++) {
+      segmentNames.add(_segmentNames.get((start + i) % numSegments));
+    }
+
+    List<OfflineSegmentDataManager> segmentDataManagers = _segments.acquire(segmentNames);
+    int totalDocs = 0;
+    for (OfflineSegmentDataManager segmentDataManager : segmentDataManagers) {
+      totalDocs += segmentDataManager.getSegment().getTotalDocs();
+    }
+    for (OfflineSegmentDataManager segmentDataManager : segmentDataManagers) {
+      _segments.release(segmentDataManager);
+    }
+    return totalDocs;
+  }
+
+  private class StubIndexSegment implements IndexSegment {
+    private final String _segmentName;
+    private volatile boolean _destroyed = false;
+
+    private StubIndexSegment(String segmentName) {
+      _segmentName = segmentName;
+      _numCreated.incrementAndGet();
+    }
+
+    @Override
+    public IndexType getIndexType() {
+      return IndexType.COLUMNAR;
+    }
+
+    @Override
+    public String getSegmentName() {
+      return _segmentName;
+    }
+
+    @Override
+    public String getAssociatedDirectory() {
+      return null;
+    }
+
+    @Override
+    public SegmentMetadata getSegmentMetadata() {
+      return null;
+    }
+
+    @Override
+    public DataSource getDataSource(String columnName) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+      return new String[0];
+    }
+
+    @Override
+    public void destroy() {
+      if (_destroyed) {
+        throw new IllegalStateException("Segment " + _segmentName + " destroyed twice");
+      }
+      _destroyed = true;
+      _numDestroyed.incrementAndGet();
+    }
+
+    @Override
+    public int getTotalDocs() {
+      if (_destroyed) {
+        throw new IllegalStateException("Segment " + _segmentName + " used after it was destroyed");
+      }
+      return 1;
+    }
+
+    @Override
+    public OffHeapStarTree getStarTree() {
+      return null;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder()
+        .include(BenchmarkSegmentAcquireRelease.class.getSimpleName())
+        .forks(1)
+        .warmupTime(TimeValue.seconds(6))
+        .warmupIterations(3)
+        .measurementTime(TimeValue.seconds(6))
+        .measurementIterations(5)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
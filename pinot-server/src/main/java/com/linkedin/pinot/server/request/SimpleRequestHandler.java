@@ -18,19 +18,23 @@ package com.linkedin.pinot.server.request;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.thrift.protocol.TCompactProtocol;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.metrics.ServerQueryPhase;
-import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.DataTableBuilder;
 import com.linkedin.pinot.serde.SerDe;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import io.netty.buffer.ByteBuf;
 
@@ -45,51 +49,82 @@ public class SimpleRequestHandler implements RequestHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleRequestHandler.class);
 
   private ServerMetrics _serverMetrics;
-  QueryExecutor _queryExecutor = null;
+  private final QueryScheduler _queryScheduler;
 
-  public SimpleRequestHandler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+  public SimpleRequestHandler(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
   }
 
+  /**
+   * Deserializes the request on the calling Netty thread and hands it to the query scheduler.
+   * The response is serialized on the scheduler worker thread that ran the query.
+   */
   @Override
-  public byte[] processRequest(ByteBuf request) {
+  public ListenableFuture<byte[]> processRequest(ByteBuf request) {
 
-    long queryStartTime = System.nanoTime();
+    final long queryStartTime = System.nanoTime();
     _serverMetrics.addMeteredValue(null, ServerMeter.QUERIES, 1);
 
     LOGGER.debug("processing request : {}", request);
 
-    DataTable instanceResponse = null;
-
     byte[] byteArray = new byte[request.readableBytes()];
     request.readBytes(byteArray);
     SerDe serDe = new SerDe(new TCompactProtocol.Factory());
-    BrokerRequest brokerRequest = null;
+    final InstanceRequest queryRequest = new InstanceRequest();
     try {
-      final InstanceRequest queryRequest = new InstanceRequest();
       serDe.deserialize(queryRequest, byteArray);
-      long deserRequestTime = System.nanoTime();
-      _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.TOTAL_QUERY_TIME, deserRequestTime - queryStartTime);
-      LOGGER.info("Processing requestId:{},numSegmentsToSearch={}", queryRequest.getRequestId(), queryRequest.getSearchSegmentsSize());
-      LOGGER.debug("instance request : {}", queryRequest);
-      brokerRequest = queryRequest.getQuery();
-
-      long startTime = System.nanoTime();
-      instanceResponse = _queryExecutor.processQuery(queryRequest);
-      long totalNanos = System.nanoTime() - startTime;
-      _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.QUERY_PROCESSING, totalNanos);
     } catch (Exception e) {
-      LOGGER.error("Got exception while processing request. Returning error response", e);
+      LOGGER.error("Got exception while deserializing request. Returning error response", e);
       _serverMetrics.addMeteredValue(null, ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
-      DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
-      List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
-      ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
-      exception.setMessage(e.getMessage());
-      exceptions.add(exception);
-      instanceResponse = dataTableBuilder.buildExceptions();
+      return Futures.immediateFuture(serializeResponse(null, buildErrorResponse(e), DataTable.VERSION_1,
+          queryStartTime));
     }
+    long deserRequestTime = System.nanoTime();
+    final BrokerRequest brokerRequest = queryRequest.getQuery();
+    final int dataTableVersion = getResponseDataTableVersion(queryRequest);
+    _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.TOTAL_QUERY_TIME, deserRequestTime - queryStartTime);
+    LOGGER.info("Processing requestId:{},numSegmentsToSearch={}", queryRequest.getRequestId(), queryRequest.getSearchSegmentsSize());
+    LOGGER.debug("instance request : {}", queryRequest);
+
+    final SettableFuture<byte[]> responseFuture = SettableFuture.create();
+    Futures.addCallback(_queryScheduler.submit(queryRequest), new FutureCallback<DataTable>() {
+      @Override
+      public void onSuccess(DataTable instanceResponse) {
+        responseFuture.set(serializeResponse(brokerRequest, instanceResponse, dataTableVersion, queryStartTime));
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOGGER.error("Got exception while processing request. Returning error response", t);
+        _serverMetrics.addMeteredValue(null, ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
+        responseFuture.set(serializeResponse(brokerRequest, buildErrorResponse(t), dataTableVersion, queryStartTime));
+      }
+    });
+    return responseFuture;
+  }
+
+  private DataTable buildErrorResponse(Throwable t) {
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
+    List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
+    ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
+    exception.setMessage(t.getMessage());
+    exceptions.add(exception);
+    return dataTableBuilder.buildExceptions();
+  }
+
+  /**
+   * Brokers that predate DataTable.VERSION_2 do not send their version and can only read VERSION_1.
+   */
+  private static int getResponseDataTableVersion(InstanceRequest instanceRequest) {
+    if (!instanceRequest.isSetDataTableVersion()) {
+      return DataTable.VERSION_1;
+    }
+    return Math.min(instanceRequest.getDataTableVersion(), DataTable.VERSION);
+  }
 
+  private byte[] serializeResponse(BrokerRequest brokerRequest, DataTable instanceResponse, int dataTableVersion,
+      long queryStartTime) {
     byte[] responseByte;
     long serializationStartTime = System.nanoTime();
     try {
@@ -97,7 +132,7 @@ public class SimpleRequestHandler implements RequestHandler {
         LOGGER.warn("Instance response is null.");
         responseByte = new byte[0];
       } else {
-        responseByte = instanceResponse.toBytes();
+        responseByte = instanceResponse.toBytes(dataTableVersion);
       }
     } catch (Exception e) {
       _serverMetrics.addMeteredValue(null, ServerMeter.RESPONSE_SERIALIZATION_EXCEPTIONS, 1);
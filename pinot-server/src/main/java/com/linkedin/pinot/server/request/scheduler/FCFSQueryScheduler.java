@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * First-come-first-served scheduler: queries run in arrival order regardless of their table.
+ */
+public class FCFSQueryScheduler extends QueryScheduler {
+  private final ConcurrentLinkedQueue<SchedulerQueryContext> _pendingQueries =
+      new ConcurrentLinkedQueue<SchedulerQueryContext>();
+
+  public FCFSQueryScheduler(Configuration schedulerConfig, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    super(schedulerConfig, queryExecutor, serverMetrics);
+  }
+
+  @Override
+  protected void enqueue(SchedulerQueryContext queryContext) {
+    _pendingQueries.add(queryContext);
+  }
+
+  @Override
+  protected SchedulerQueryContext dequeue() {
+    return _pendingQueries.poll();
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Per table fair-share scheduler: every table with pending queries gets its own FIFO queue, and
+ * free workers take the next query from these queues in round robin order. A burst of queries on
+ * one table thus only delays the other tables by one query per worker, instead of by the whole burst.
+ */
+public class FairShareQueryScheduler extends QueryScheduler {
+  private final Map<String, ArrayDeque<SchedulerQueryContext>> _tableQueues =
+      new HashMap<String, ArrayDeque<SchedulerQueryContext>>();
+  // Tables with at least one pending query, in the order they get their next turn.
+  private final ArrayDeque<String> _tablesWithPendingQueries = new ArrayDeque<String>();
+
+  public FairShareQueryScheduler(Configuration schedulerConfig, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    super(schedulerConfig, queryExecutor, serverMetrics);
+  }
+
+  @Override
+  protected synchronized void enqueue(SchedulerQueryContext queryContext) {
+    final String tableName = queryContext.getTableName();
+    ArrayDeque<SchedulerQueryContext> tableQueue = _tableQueues.get(tableName);
+    if (tableQueue == null) {
+      tableQueue = new ArrayDeque<SchedulerQueryContext>();
+      _tableQueues.put(tableName, tableQueue);
+      registerTableGauge(tableName);
+    }
+    if (tableQueue.isEmpty()) {
+      _tablesWithPendingQueries.addLast(tableName);
+    }
+    tableQueue.addLast(queryContext);
+  }
+
+  @Override
+  protected synchronized SchedulerQueryContext dequeue() {
+    final String tableName = _tablesWithPendingQueries.pollFirst();
+    if (tableName == null) {
+      return null;
+    }
+    ArrayDeque<SchedulerQueryContext> tableQueue = _tableQueues.get(tableName);
+    SchedulerQueryContext queryContext = tableQueue.pollFirst();
+    if (!tableQueue.isEmpty()) {
+      _tablesWithPendingQueries.addLast(tableName);
+    }
+    return queryContext;
+  }
+
+  public synchronized int getNumPendingQueries(String tableName) {
+    ArrayDeque<SchedulerQueryContext> tableQueue = _tableQueues.get(tableName);
+    return tableQueue == null ? 0 : tableQueue.size();
+  }
+
+  private void registerTableGauge(final String tableName) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addCallbackGauge("scheduler." + tableName + ".pendingQueries", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) getNumPendingQueries(tableName);
+        }
+      });
+    }
+  }
+}
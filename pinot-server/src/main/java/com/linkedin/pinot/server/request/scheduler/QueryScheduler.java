@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+
+
+/**
+ * Runs queries on a bounded pool of worker threads, so that query processing does not happen on
+ * the Netty I/O threads.
+ *
+ * Every submitted query is enqueued and paired with one "run next" task on the worker pool. The
+ * ordering policy lives in enqueue()/dequeue(): when a worker frees up, the subclass decides which
+ * pending query runs next.
+ */
+public abstract class QueryScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryScheduler.class);
+
+  public static final String NUM_WORKER_THREADS_CONFIG = "threads";
+  public static final String MAX_PENDING_QUERIES_CONFIG = "max.pending.queries";
+  public static final int DEFAULT_MAX_PENDING_QUERIES = 1024;
+
+  protected final QueryExecutor _queryExecutor;
+  protected final ServerMetrics _serverMetrics;
+
+  private final int _numWorkerThreads;
+  private final int _maxPendingQueries;
+  private final ThreadPoolExecutor _workerPool;
+  private final AtomicInteger _numPendingQueries = new AtomicInteger(0);
+  private final AtomicInteger _numRunningQueries = new AtomicInteger(0);
+
+  private final Runnable _runNextQuery = new Runnable() {
+    @Override
+    public void run() {
+      runNextQuery();
+    }
+  };
+
+  public QueryScheduler(Configuration schedulerConfig, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    _queryExecutor = queryExecutor;
+    _serverMetrics = serverMetrics;
+    _numWorkerThreads =
+        schedulerConfig.getInt(NUM_WORKER_THREADS_CONFIG, Runtime.getRuntime().availableProcessors());
+    _maxPendingQueries = schedulerConfig.getInt(MAX_PENDING_QUERIES_CONFIG, DEFAULT_MAX_PENDING_QUERIES);
+    if (_numWorkerThreads <= 0 || _maxPendingQueries <= 0) {
+      throw new IllegalArgumentException("Invalid query scheduler config, threads: " + _numWorkerThreads
+          + ", max pending queries: " + _maxPendingQueries);
+    }
+    _workerPool =
+        new ThreadPoolExecutor(_numWorkerThreads, _numWorkerThreads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("query-worker"));
+
+    if (_serverMetrics != null) {
+      _serverMetrics.addCallbackGauge("scheduler.pendingQueries", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) _numPendingQueries.get();
+        }
+      });
+      _serverMetrics.addCallbackGauge("scheduler.runningQueries", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) _numRunningQueries.get();
+        }
+      });
+    }
+    LOGGER.info("Initialized {} with {} worker threads and at most {} pending queries", getClass().getSimpleName(),
+        _numWorkerThreads, _maxPendingQueries);
+  }
+
+  /**
+   * Queues the query for execution on a worker thread.
+   *
+   * @param instanceRequest
+   * @return Future completed with the query response, or failed with a RejectedExecutionException if too many
+   *         queries are already pending.
+   */
+  public ListenableFuture<DataTable> submit(InstanceRequest instanceRequest) {
+    if (_numPendingQueries.incrementAndGet() > _maxPendingQueries) {
+      _numPendingQueries.decrementAndGet();
+      if (_serverMetrics != null) {
+        _serverMetrics.addMeteredValue(null, ServerMeter.SCHEDULER_REJECTED_QUERIES, 1);
+      }
+      return Futures.immediateFailedFuture(new RejectedExecutionException(
+          "Too many pending queries on server, rejecting requestId: " + instanceRequest.getRequestId()));
+    }
+    SchedulerQueryContext queryContext = new SchedulerQueryContext(instanceRequest);
+    enqueue(queryContext);
+    try {
+      _workerPool.execute(_runNextQuery);
+    } catch (RejectedExecutionException e) {
+      // Scheduler is shut down. Fail one pending query in place of the missing worker task, which keeps
+      // pending queries and worker tasks paired up even if the policy does not hand back this query.
+      SchedulerQueryContext dequeued = dequeue();
+      _numPendingQueries.decrementAndGet();
+      dequeued.getResultFuture().setException(e);
+    }
+    return queryContext.getResultFuture();
+  }
+
+  private void runNextQuery() {
+    SchedulerQueryContext queryContext = dequeue();
+    _numPendingQueries.decrementAndGet();
+    _numRunningQueries.incrementAndGet();
+    try {
+      InstanceRequest instanceRequest = queryContext.getInstanceRequest();
+      if (_serverMetrics != null) {
+        _serverMetrics.addPhaseTiming(instanceRequest.getQuery(), ServerQueryPhase.SCHEDULER_WAIT,
+            System.nanoTime() - queryContext.getEnqueueTimeNs());
+      }
+      long startTime = System.nanoTime();
+      DataTable instanceResponse = _queryExecutor.processQuery(instanceRequest);
+      if (_serverMetrics != null) {
+        _serverMetrics.addPhaseTiming(instanceRequest.getQuery(), ServerQueryPhase.QUERY_PROCESSING,
+            System.nanoTime() - startTime);
+      }
+      queryContext.getResultFuture().set(instanceResponse);
+    } catch (Throwable t) {
+      queryContext.getResultFuture().setException(t);
+    } finally {
+      _numRunningQueries.decrementAndGet();
+    }
+  }
+
+  /**
+   * Adds a query to the pending queries. Called once per submitted query.
+   */
+  protected abstract void enqueue(SchedulerQueryContext queryContext);
+
+  /**
+   * Removes and returns the pending query that should run next. Called once per enqueued query, so at least
+   * one query is always pending when this is called.
+   */
+  protected abstract SchedulerQueryContext dequeue();
+
+  public int getNumWorkerThreads() {
+    return _numWorkerThreads;
+  }
+
+  public int getNumPendingQueries() {
+    return _numPendingQueries.get();
+  }
+
+  public int getNumRunningQueries() {
+    return _numRunningQueries.get();
+  }
+
+  /**
+   * Stops accepting queries. Queries that are already queued are still executed.
+   */
+  public void shutDown() {
+    _workerPool.shutdown();
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Builds the QueryScheduler configured under pinot.server.query.scheduler.
+ */
+public class QuerySchedulerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuerySchedulerFactory.class);
+
+  public static final String SCHEDULER_NAME_CONFIG = "name";
+  public static final String FCFS = "fcfs";
+  public static final String FAIR_SHARE = "fairshare";
+  public static final String DEFAULT_SCHEDULER_NAME = FCFS;
+
+  public static QueryScheduler create(Configuration schedulerConfig, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    String schedulerName = schedulerConfig.getString(SCHEDULER_NAME_CONFIG, DEFAULT_SCHEDULER_NAME);
+    LOGGER.info("Creating query scheduler : {}", schedulerName);
+    if (FCFS.equalsIgnoreCase(schedulerName)) {
+      return new FCFSQueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
+    } else if (FAIR_SHARE.equalsIgnoreCase(schedulerName)) {
+      return new FairShareQueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
+    }
+    throw new IllegalArgumentException("Unknown query scheduler : " + schedulerName);
+  }
+}
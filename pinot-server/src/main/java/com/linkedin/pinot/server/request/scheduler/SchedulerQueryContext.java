@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * A query waiting in a QueryScheduler, along with the future completed by the worker that runs it.
+ */
+public class SchedulerQueryContext {
+  static final String UNKNOWN_TABLE_NAME = "unknown";
+
+  private final InstanceRequest _instanceRequest;
+  private final String _tableName;
+  private final long _enqueueTimeNs;
+  private final SettableFuture<DataTable> _resultFuture = SettableFuture.create();
+
+  public SchedulerQueryContext(InstanceRequest instanceRequest) {
+    _instanceRequest = instanceRequest;
+    _tableName = getTableName(instanceRequest);
+    _enqueueTimeNs = System.nanoTime();
+  }
+
+  private static String getTableName(InstanceRequest instanceRequest) {
+    BrokerRequest brokerRequest = instanceRequest.getQuery();
+    if (brokerRequest != null && brokerRequest.getQuerySource() != null
+        && brokerRequest.getQuerySource().getTableName() != null) {
+      return brokerRequest.getQuerySource().getTableName();
+    }
+    return UNKNOWN_TABLE_NAME;
+  }
+
+  public InstanceRequest getInstanceRequest() {
+    return _instanceRequest;
+  }
+
+  public String getTableName() {
+    return _tableName;
+  }
+
+  public long getEnqueueTimeNs() {
+    return _enqueueTimeNs;
+  }
+
+  public SettableFuture<DataTable> getResultFuture() {
+    return _resultFuture;
+  }
+}
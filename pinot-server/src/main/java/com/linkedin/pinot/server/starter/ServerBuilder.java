@@ -19,6 +19,7 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.yammer.metrics.core.MetricsRegistry;
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -31,6 +32,8 @@ import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.server.conf.NettyServerConfig;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.request.SimpleRequestHandlerFactory;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
+import com.linkedin.pinot.server.request.scheduler.QuerySchedulerFactory;
 import com.linkedin.pinot.transport.netty.NettyServer;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 import com.linkedin.pinot.transport.netty.NettyTCPServer;
@@ -131,7 +134,17 @@ public class ServerBuilder {
       ClassNotFoundException {
     String className = _serverConf.getInstanceDataManagerClassName();
     LOGGER.info("Trying to Load Instance DataManager by Class : " + className);
-    DataManager instanceDataManager = (DataManager) Class.forName(className).newInstance();
+    Class<?> instanceDataManagerClass = Class.forName(className);
+    DataManager instanceDataManager;
+    try {
+      // Instance data managers that report to the server metrics take them in their constructor
+      instanceDataManager =
+          (DataManager) instanceDataManagerClass.getConstructor(ServerMetrics.class).newInstance(_serverMetrics);
+    } catch (NoSuchMethodException e) {
+      instanceDataManager = (DataManager) instanceDataManagerClass.newInstance();
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException("Caught exception while constructing instance data manager " + className, e);
+    }
     instanceDataManager.init(_serverConf.getInstanceDataManagerConfig());
     return instanceDataManager;
   }
@@ -155,21 +168,43 @@ public class ServerBuilder {
   }
 
   /**
-   * Build RequestHandlerFactory
+   * Build QueryScheduler, which runs the queries handed over by the request handlers
    * @param queryExecutor
    * @return
+   */
+  public QueryScheduler buildQueryScheduler(QueryExecutor queryExecutor) {
+    return QuerySchedulerFactory.create(_serverConf.getQuerySchedulerConfig(), queryExecutor, _serverMetrics);
+  }
+
+  /**
+   * Build RequestHandlerFactory
+   * @param queryScheduler
+   * @return
    * @throws InstantiationException
    * @throws IllegalAccessException
    * @throws ClassNotFoundException
    */
-  public RequestHandlerFactory buildRequestHandlerFactory(QueryExecutor queryExecutor) throws InstantiationException,
-      IllegalAccessException, ClassNotFoundException {
+  public RequestHandlerFactory buildRequestHandlerFactory(QueryScheduler queryScheduler)
+      throws InstantiationException, IllegalAccessException, ClassNotFoundException {
     String className = _serverConf.getRequestHandlerFactoryClassName();
     LOGGER.info("Trying to Load Request Handler Factory by Class : " + className);
-    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryScheduler, _serverMetrics);
     return requestHandlerFactory;
   }
 
+  /**
+   * Build RequestHandlerFactory with the configured QueryScheduler on top of the given QueryExecutor
+   * @param queryExecutor
+   * @return
+   * @throws InstantiationException
+   * @throws IllegalAccessException
+   * @throws ClassNotFoundException
+   */
+  public RequestHandlerFactory buildRequestHandlerFactory(QueryExecutor queryExecutor) throws InstantiationException,
+      IllegalAccessException, ClassNotFoundException {
+    return buildRequestHandlerFactory(buildQueryScheduler(queryExecutor));
+  }
+
   public NettyServer buildNettyServer(NettyServerConfig nettyServerConfig, RequestHandlerFactory requestHandlerFactory) {
     LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort());
     NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null);
@@ -179,7 +214,8 @@ public class ServerBuilder {
   private void initMetrics() {
     MetricsHelper.initializeMetrics(_serverConf.getMetricsConfig());
     MetricsHelper.registerMetricsRegistry(metricsRegistry);
-    _serverMetrics = new ServerMetrics(metricsRegistry);
+    _serverMetrics = new ServerMetrics(metricsRegistry,
+        _serverConf.getMetricsConfig().getBoolean(MetricsHelper.USE_STRIPED_HISTOGRAMS, false));
     _serverMetrics.initializeGlobalMeters();
   }
 
@@ -17,8 +17,8 @@ package com.linkedin.pinot.server.starter.helix;
 
 import java.io.File;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.helix.ZNRecord;
@@ -31,6 +31,7 @@ import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadataLoader;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
@@ -49,12 +50,21 @@ public class HelixInstanceDataManager implements InstanceDataManager {
 
   public static final Logger LOGGER = LoggerFactory.getLogger(HelixInstanceDataManager.class);
   private HelixInstanceDataManagerConfig _instanceDataManagerConfig;
-  private Map<String, TableDataManager> _tableDataManagerMap = new HashMap<String, TableDataManager>();
+  private Map<String, TableDataManager> _tableDataManagerMap = new ConcurrentHashMap<String, TableDataManager>();
   private boolean _isStarted = false;
   private SegmentMetadataLoader _segmentMetadataLoader;
   private final Object _globalLock = new Object();
+  private final ServerMetrics _serverMetrics;
 
   public HelixInstanceDataManager() {
+    this(null);
+  }
+
+  /**
+   * @param serverMetrics Metrics the table data managers report to, null for none
+   */
+  public HelixInstanceDataManager(ServerMetrics serverMetrics) {
+    _serverMetrics = serverMetrics;
   }
 
   public synchronized void init(HelixInstanceDataManagerConfig instanceDataManagerConfig)
@@ -143,9 +153,10 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     }
   }
 
-  // Called for offline segments only
+  // Called for offline segments only. Not synchronized, so that segments get loaded in parallel by the state
+  // transition and preload threads; only creating the table data manager is.
   @Override
-  public synchronized void addSegment(SegmentMetadata segmentMetadata, AbstractTableConfig tableConfig) throws Exception {
+  public void addSegment(SegmentMetadata segmentMetadata, AbstractTableConfig tableConfig) throws Exception {
     if (segmentMetadata == null || segmentMetadata.getTableName() == null) {
       throw new RuntimeException("Error: adding invalid SegmentMetadata!");
     }
@@ -204,7 +215,8 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     if (tableConfig != null) {
       tableDataManagerConfig.overrideConfigs(tableConfig);
     }
-    TableDataManager tableDataManager = TableDataManagerProvider.getTableDataManager(tableDataManagerConfig);
+    TableDataManager tableDataManager =
+        TableDataManagerProvider.getTableDataManager(tableDataManagerConfig, _serverMetrics);
     tableDataManager.start();
     addTableDataManager(tableName, tableDataManager);
   }
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.server.starter.helix;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@ import org.apache.helix.InstanceType;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.HelixConfigScope;
 import org.apache.helix.model.HelixConfigScope.ConfigScopeProperty;
+import org.apache.helix.model.IdealState;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.Message;
 import org.apache.helix.model.builder.HelixConfigScopeBuilder;
@@ -40,6 +42,8 @@ import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.StateModel.SegmentOnlineOfflineStateModel;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.common.utils.ControllerTenantNameBuilder;
 import com.linkedin.pinot.common.utils.MmapUtils;
 import com.linkedin.pinot.common.utils.NetUtil;
@@ -101,13 +105,19 @@ public class HelixServerStarter {
     SegmentFetcherAndLoader fetcherAndLoader = new SegmentFetcherAndLoader(_serverInstance.getInstanceDataManager(),
         new ColumnarSegmentMetadataLoader(), zkPropertyStore, pinotHelixProperties, _instanceId);
 
+    _helixAdmin = _helixManager.getClusterManagmentTool();
+    // Start loading the offline segments in the background right before registering the state model factory. The
+    // transitions of an offline table wait inside the transition until the configured fraction of its segments is
+    // loaded, the other tables are not held back.
+    preloadOfflineSegments(fetcherAndLoader, pinotHelixProperties);
+
     // Register state model factory
     final StateModelFactory<?> stateModelFactory =
         new SegmentOnlineOfflineStateModelFactory(helixClusterName, _instanceId,
-            _serverInstance.getInstanceDataManager(),  zkPropertyStore, fetcherAndLoader);
+            _serverInstance.getInstanceDataManager(),  zkPropertyStore, fetcherAndLoader,
+            _serverInstance.getQueryExecutor());
     stateMachineEngine.registerStateModelFactory(SegmentOnlineOfflineStateModelFactory.getStateModelDef(),
         stateModelFactory);
-    _helixAdmin = _helixManager.getClusterManagmentTool();
     addInstanceTagIfNeeded(helixClusterName, _instanceId);
     setShuttingDownStatus(false);
 
@@ -132,6 +142,49 @@ public class HelixServerStarter {
         "memory.mmapBufferCount", MmapUtils::getMmapBufferCount);
   }
 
+  /**
+   * Starts loading the offline segments that the ideal states assign to this instance in parallel, ahead of their
+   * state transitions.
+   */
+  private void preloadOfflineSegments(SegmentFetcherAndLoader fetcherAndLoader, Configuration pinotHelixProperties) {
+    int parallelism = pinotHelixProperties.getInt(CommonConstants.Server.CONFIG_OF_SEGMENT_PRELOAD_PARALLELISM,
+        Runtime.getRuntime().availableProcessors());
+    if (parallelism <= 0) {
+      LOGGER.info("Segment preloading is disabled, segments get loaded by their state transitions");
+      return;
+    }
+    double queryableFraction =
+        pinotHelixProperties.getDouble(CommonConstants.Server.CONFIG_OF_SEGMENT_PRELOAD_QUERYABLE_FRACTION,
+            Double.parseDouble(CommonConstants.Server.DEFAULT_SEGMENT_PRELOAD_QUERYABLE_FRACTION));
+    int maxWaitingTransitions =
+        pinotHelixProperties.getInt(CommonConstants.Server.CONFIG_OF_SEGMENT_PRELOAD_MAX_WAITING_TRANSITIONS,
+            Integer.parseInt(CommonConstants.Server.DEFAULT_SEGMENT_PRELOAD_MAX_WAITING_TRANSITIONS));
+
+    Map<String, List<String>> segmentsPerTable = new HashMap<String, List<String>>();
+    for (String tableName : _helixAdmin.getResourcesInCluster(_helixClusterName)) {
+      if (TableNameBuilder.getTableTypeFromTableName(tableName) != TableType.OFFLINE) {
+        continue;
+      }
+      IdealState idealState = _helixAdmin.getResourceIdealState(_helixClusterName, tableName);
+      if (idealState == null) {
+        continue;
+      }
+      List<String> segmentNames = new ArrayList<String>();
+      for (String segmentName : idealState.getPartitionSet()) {
+        Map<String, String> instanceStateMap = idealState.getInstanceStateMap(segmentName);
+        if (instanceStateMap != null && SegmentOnlineOfflineStateModel.ONLINE.equals(instanceStateMap.get(_instanceId))) {
+          segmentNames.add(segmentName);
+        }
+      }
+      if (!segmentNames.isEmpty()) {
+        segmentsPerTable.put(tableName, segmentNames);
+      }
+    }
+    fetcherAndLoader.preloadOfflineSegments(
+        new SegmentPreloader(parallelism, maxWaitingTransitions, _serverInstance.getServerMetrics()),
+        segmentsPerTable, queryableFraction);
+  }
+
   private void setShuttingDownStatus(boolean shuttingDown) {
     HelixConfigScope scope =
         new HelixConfigScopeBuilder(ConfigScopeProperty.PARTICIPANT, _helixClusterName).forParticipant(_instanceId)
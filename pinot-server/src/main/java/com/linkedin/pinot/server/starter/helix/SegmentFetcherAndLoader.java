@@ -17,6 +17,8 @@
 package com.linkedin.pinot.server.starter.helix;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
@@ -47,6 +49,7 @@ public class SegmentFetcherAndLoader {
 
   private final int _segmentLoadMaxRetryCount;
   private final long _segmentLoadMinRetryDelayMs; // Min delay (in msecs) between retries
+  private volatile SegmentPreloader _segmentPreloader = null;
 
   public SegmentFetcherAndLoader(DataManager dataManager, SegmentMetadataLoader metadataLoader,
       ZkHelixPropertyStore<ZNRecord> propertyStore, Configuration pinotHelixProperties,
@@ -76,7 +79,38 @@ public class SegmentFetcherAndLoader {
     _segmentLoadMinRetryDelayMs = minRetryDelayMillis;
   }
 
+  /**
+   * Starts fetching and loading the given offline segments on the given preloader, ahead of their state transitions.
+   * A bounded number of the transitions of these tables wait until the given fraction of their segments has been
+   * attempted, see {@link SegmentPreloader}.
+   */
+  public void preloadOfflineSegments(SegmentPreloader segmentPreloader, Map<String, List<String>> segmentsPerTable,
+      double queryableFraction) {
+    _segmentPreloader = segmentPreloader;
+    segmentPreloader.preload(segmentsPerTable, new SegmentPreloader.SegmentLoader() {
+      @Override
+      public void loadSegment(String tableName, String segmentName) throws Exception {
+        // Failures are retried by the state transition
+        fetchAndLoadOfflineSegment(tableName, segmentName, false);
+      }
+    }, queryableFraction);
+  }
+
   public void addOrReplaceOfflineSegment(String tableName, String segmentId, boolean retryOnFailure) {
+    SegmentPreloader segmentPreloader = _segmentPreloader;
+    if (segmentPreloader != null) {
+      try {
+        segmentPreloader.awaitQueryable(tableName);
+        segmentPreloader.awaitSegment(tableName, segmentId);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for the preload of segment " + segmentId, e);
+      }
+    }
+    fetchAndLoadOfflineSegment(tableName, segmentId, retryOnFailure);
+  }
+
+  private void fetchAndLoadOfflineSegment(String tableName, String segmentId, boolean retryOnFailure) {
     OfflineSegmentZKMetadata offlineSegmentZKMetadata =
         ZKMetadataProvider.getOfflineSegmentZKMetadata(_propertyStore, tableName, segmentId);
 
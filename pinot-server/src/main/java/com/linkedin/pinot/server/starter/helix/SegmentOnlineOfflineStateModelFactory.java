@@ -34,8 +34,10 @@ import com.linkedin.pinot.common.data.DataManager;
 import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
+import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
 
 /**
  * Data Server layer state model to take over how to operate on:
@@ -50,11 +52,13 @@ public class SegmentOnlineOfflineStateModelFactory extends StateModelFactory<Sta
   private static String HELIX_CLUSTER_NAME;
   private ZkHelixPropertyStore<ZNRecord> propertyStore;
   private final SegmentFetcherAndLoader _fetcherAndLoader;
+  private final QueryExecutor _queryExecutor;
 
   public SegmentOnlineOfflineStateModelFactory(String helixClusterName, String instanceId,
       DataManager instanceDataManager, ZkHelixPropertyStore<ZNRecord> propertyStore,
-      SegmentFetcherAndLoader fetcherAndLoader) {
+      SegmentFetcherAndLoader fetcherAndLoader, QueryExecutor queryExecutor) {
     _fetcherAndLoader = fetcherAndLoader;
+    _queryExecutor = queryExecutor;
     this.propertyStore = propertyStore;
     HELIX_CLUSTER_NAME = helixClusterName;
     INSTANCE_ID = instanceId;
@@ -163,6 +167,16 @@ public class SegmentOnlineOfflineStateModelFactory extends StateModelFactory<Sta
             + e.getMessage(), e);
         Utils.rethrowException(e);
       }
+      removeTableIfEmpty(tableName);
+    }
+
+    // Once its last segment is dropped, the table is no longer served here and the query executor can forget it.
+    // Queries still running on the table and segments of the table added concurrently are handled by removeTable().
+    private void removeTableIfEmpty(String tableName) {
+      TableDataManager tableDataManager = ((InstanceDataManager) INSTANCE_DATA_MANAGER).getTableDataManager(tableName);
+      if (tableDataManager == null || tableDataManager.getNumSegments() == 0) {
+        _queryExecutor.removeTable(tableName);
+      }
     }
 
     @Transition(from = "ONLINE", to = "DROPPED")
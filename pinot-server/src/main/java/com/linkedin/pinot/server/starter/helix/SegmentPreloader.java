@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.starter.helix;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+
+
+/**
+ * Loads the segments assigned to a server on a bounded pool of threads, instead of one state transition at a time.
+ *
+ * The state transitions of a preloaded table can block until a given fraction of its segments has been attempted
+ * through {@link #awaitQueryable(String)}, which holds back the table, and thus its queries, until it is mostly
+ * loaded. Tables that are not preloaded, like real-time ones, are not held back. The waiting transitions hold threads
+ * of the Helix message pool, which also runs the transitions of the other tables, so only a bounded number of them
+ * wait at once; the others go on without waiting for the fraction. The remaining segments keep loading
+ * in the background; a state transition for one of them waits for its pending load through
+ * {@link #awaitSegment(String, String)}. Segments that fail to load are left to the state transitions to retry.
+ */
+public class SegmentPreloader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentPreloader.class);
+  // Number of progress log lines over the whole preload
+  private static final int NUM_PROGRESS_STEPS = 20;
+
+  /**
+   * Loads one segment, throwing if it could not be loaded.
+   */
+  public interface SegmentLoader {
+    void loadSegment(String tableName, String segmentName) throws Exception;
+  }
+
+  private final int _parallelism;
+  // Permits of the state transitions allowed to wait in awaitQueryable() at once
+  private final Semaphore _waitingTransitionPermits;
+  private final ConcurrentMap<String, Future<Void>> _pendingSegments = new ConcurrentHashMap<String, Future<Void>>();
+  private final ConcurrentMap<String, CountDownLatch> _queryableLatches =
+      new ConcurrentHashMap<String, CountDownLatch>();
+  private final AtomicInteger _numSegmentsToLoad = new AtomicInteger();
+  private final AtomicInteger _numSegmentsLoaded = new AtomicInteger();
+  private final AtomicInteger _numSegmentsFailed = new AtomicInteger();
+
+  /**
+   * @param parallelism Number of threads loading segments
+   * @param maxWaitingTransitions Max number of state transitions waiting in {@link #awaitQueryable(String)} at once
+   * @param serverMetrics Metrics to expose the preload progress to, null for none
+   */
+  public SegmentPreloader(int parallelism, int maxWaitingTransitions, ServerMetrics serverMetrics) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive, got: " + parallelism);
+    }
+    if (maxWaitingTransitions < 0) {
+      throw new IllegalArgumentException("Max waiting transitions must not be negative, got: " + maxWaitingTransitions);
+    }
+    _parallelism = parallelism;
+    _waitingTransitionPermits = new Semaphore(maxWaitingTransitions);
+    if (serverMetrics != null) {
+      serverMetrics.addCallbackGauge("segmentPreload.segmentsToLoad", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) _numSegmentsToLoad.get();
+        }
+      });
+      serverMetrics.addCallbackGauge("segmentPreload.segmentsLoaded", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) _numSegmentsLoaded.get();
+        }
+      });
+      serverMetrics.addCallbackGauge("segmentPreload.segmentsFailed", new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return (long) _numSegmentsFailed.get();
+        }
+      });
+    }
+  }
+
+  /**
+   * Starts loading the given segments in the background. Must be called before the state transitions of the given
+   * tables can run, so that they find the pending loads.
+   *
+   * @param segmentsPerTable Segment names to load, by table name
+   * @param queryableFraction Fraction of the segments of each table that {@link #awaitQueryable(String)} waits for,
+   *                          between 0 (do not wait) and 1
+   */
+  public void preload(Map<String, List<String>> segmentsPerTable, final SegmentLoader segmentLoader,
+      double queryableFraction) {
+    if (queryableFraction < 0.0 || queryableFraction > 1.0) {
+      throw new IllegalArgumentException("Queryable fraction must be between 0 and 1, got: " + queryableFraction);
+    }
+    int numSegments = 0;
+    for (List<String> segmentNames : segmentsPerTable.values()) {
+      numSegments += segmentNames.size();
+    }
+    _numSegmentsToLoad.addAndGet(numSegments);
+    final int progressStep = Math.max(1, numSegments / NUM_PROGRESS_STEPS);
+    final int totalNumSegments = numSegments;
+    final long startTime = System.currentTimeMillis();
+    LOGGER.info("Preloading {} segments of {} tables with {} threads, waiting for {}% of each table",
+        numSegments, segmentsPerTable.size(), _parallelism, queryableFraction * 100);
+
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(_parallelism, new NamedThreadFactory("segment-preloader"));
+    final AtomicInteger numSegmentsDone = new AtomicInteger();
+    for (Map.Entry<String, List<String>> entry : segmentsPerTable.entrySet()) {
+      final String tableName = entry.getKey();
+      List<String> segmentNames = entry.getValue();
+      final CountDownLatch queryableLatch =
+          new CountDownLatch((int) Math.ceil(queryableFraction * segmentNames.size()));
+      _queryableLatches.put(tableName, queryableLatch);
+      for (final String segmentName : segmentNames) {
+        final String segmentKey = getSegmentKey(tableName, segmentName);
+        FutureTask<Void> loadTask = new FutureTask<Void>(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            try {
+              segmentLoader.loadSegment(tableName, segmentName);
+              _numSegmentsLoaded.incrementAndGet();
+            } catch (Exception e) {
+              LOGGER.warn("Caught exception while preloading segment {} of table {}, leaving it to the state "
+                  + "transition", segmentName, tableName, e);
+              _numSegmentsFailed.incrementAndGet();
+            } finally {
+              _pendingSegments.remove(segmentKey);
+              queryableLatch.countDown();
+              int numDone = numSegmentsDone.incrementAndGet();
+              if (numDone % progressStep == 0 || numDone == totalNumSegments) {
+                LOGGER.info("Preloaded {}/{} segments in {}ms, {} failed", numDone, totalNumSegments,
+                    System.currentTimeMillis() - startTime, _numSegmentsFailed.get());
+              }
+            }
+            return null;
+          }
+        });
+        _pendingSegments.put(segmentKey, loadTask);
+        executorService.execute(loadTask);
+      }
+    }
+    // Let the threads exit once the queued segments are loaded
+    executorService.shutdown();
+  }
+
+  /**
+   * Waits until the queryable fraction of the segments of the given table has been attempted, if the table is
+   * preloaded, and unless the max number of state transitions are already waiting.
+   *
+   * @return false if the fraction is not reached yet and the caller did not wait because too many transitions were
+   *         already waiting, true otherwise
+   */
+  public boolean awaitQueryable(String tableName) throws InterruptedException {
+    CountDownLatch queryableLatch = _queryableLatches.get(tableName);
+    if (queryableLatch == null || queryableLatch.getCount() == 0) {
+      return true;
+    }
+    if (!_waitingTransitionPermits.tryAcquire()) {
+      LOGGER.debug("Too many state transitions waiting for preloaded tables, not waiting for table {}", tableName);
+      return false;
+    }
+    try {
+      queryableLatch.await();
+      return true;
+    } finally {
+      _waitingTransitionPermits.release();
+    }
+  }
+
+  /**
+   * Waits for the preload of the given segment, if it is still pending.
+   */
+  public void awaitSegment(String tableName, String segmentName) throws InterruptedException {
+    Future<Void> pendingSegment = _pendingSegments.get(getSegmentKey(tableName, segmentName));
+    if (pendingSegment != null) {
+      try {
+        pendingSegment.get();
+      } catch (ExecutionException e) {
+        // The load task handles its own exceptions
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  public int getNumPendingSegments() {
+    return _pendingSegments.size();
+  }
+
+  private static String getSegmentKey(String tableName, String segmentName) {
+    return tableName + "/" + segmentName;
+  }
+}
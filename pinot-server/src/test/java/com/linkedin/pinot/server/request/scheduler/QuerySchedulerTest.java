@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class QuerySchedulerTest {
+  private static final long TIMEOUT_SECONDS = 10L;
+
+  @Test
+  public void testFCFSOrder() throws Exception {
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    QueryScheduler queryScheduler =
+        QuerySchedulerFactory.create(getConfig(QuerySchedulerFactory.FCFS, 1), queryExecutor, getServerMetrics());
+    Assert.assertTrue(queryScheduler instanceof FCFSQueryScheduler);
+
+    List<ListenableFuture<DataTable>> futures = submitBurst(queryScheduler, queryExecutor);
+    queryExecutor.releaseFirstQuery();
+    waitFor(futures);
+    Assert.assertEquals(queryExecutor.getProcessedRequestIds(), Arrays.asList(0L, 1L, 2L, 3L));
+    queryScheduler.shutDown();
+  }
+
+  @Test
+  public void testFairShareOrder() throws Exception {
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    QueryScheduler queryScheduler =
+        QuerySchedulerFactory.create(getConfig(QuerySchedulerFactory.FAIR_SHARE, 1), queryExecutor,
+            getServerMetrics());
+    Assert.assertTrue(queryScheduler instanceof FairShareQueryScheduler);
+
+    List<ListenableFuture<DataTable>> futures = submitBurst(queryScheduler, queryExecutor);
+    Assert.assertEquals(((FairShareQueryScheduler) queryScheduler).getNumPendingQueries("tableA"), 2);
+    Assert.assertEquals(((FairShareQueryScheduler) queryScheduler).getNumPendingQueries("tableB"), 1);
+    queryExecutor.releaseFirstQuery();
+    waitFor(futures);
+    // The tableB query does not wait behind the whole tableA burst.
+    Assert.assertEquals(queryExecutor.getProcessedRequestIds(), Arrays.asList(0L, 1L, 3L, 2L));
+    queryScheduler.shutDown();
+  }
+
+  @Test
+  public void testRejectsWhenTooManyPendingQueries() throws Exception {
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    Configuration config = getConfig(QuerySchedulerFactory.FCFS, 1);
+    config.setProperty(QueryScheduler.MAX_PENDING_QUERIES_CONFIG, 1);
+    QueryScheduler queryScheduler = QuerySchedulerFactory.create(config, queryExecutor, getServerMetrics());
+
+    ListenableFuture<DataTable> running = queryScheduler.submit(getInstanceRequest(0, "tableA"));
+    queryExecutor.awaitFirstQueryStarted();
+    ListenableFuture<DataTable> pending = queryScheduler.submit(getInstanceRequest(1, "tableA"));
+    ListenableFuture<DataTable> rejected = queryScheduler.submit(getInstanceRequest(2, "tableA"));
+    try {
+      rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      Assert.fail("Query should have been rejected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    queryExecutor.releaseFirstQuery();
+    waitFor(Arrays.asList(running, pending));
+    Assert.assertEquals(queryExecutor.getProcessedRequestIds(), Arrays.asList(0L, 1L));
+    Assert.assertEquals(queryScheduler.getNumPendingQueries(), 0);
+    queryScheduler.shutDown();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testUnknownScheduler() {
+    QuerySchedulerFactory.create(getConfig("unknown", 1), new BlockingQueryExecutor(), getServerMetrics());
+  }
+
+  /**
+   * Submits one tableA query that blocks the single worker, then two more tableA queries and one tableB query.
+   * The first query stays blocked until the caller releases it.
+   */
+  private List<ListenableFuture<DataTable>> submitBurst(QueryScheduler queryScheduler,
+      BlockingQueryExecutor queryExecutor) throws InterruptedException {
+    List<ListenableFuture<DataTable>> futures = new ArrayList<ListenableFuture<DataTable>>();
+    futures.add(queryScheduler.submit(getInstanceRequest(0, "tableA")));
+    queryExecutor.awaitFirstQueryStarted();
+    futures.add(queryScheduler.submit(getInstanceRequest(1, "tableA")));
+    futures.add(queryScheduler.submit(getInstanceRequest(2, "tableA")));
+    futures.add(queryScheduler.submit(getInstanceRequest(3, "tableB")));
+    Assert.assertEquals(queryScheduler.getNumPendingQueries(), 3);
+    Assert.assertEquals(queryScheduler.getNumRunningQueries(), 1);
+    return futures;
+  }
+
+  private static void waitFor(List<ListenableFuture<DataTable>> futures) throws Exception {
+    for (ListenableFuture<DataTable> future : futures) {
+      future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  private static Configuration getConfig(String schedulerName, int numThreads) {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(QuerySchedulerFactory.SCHEDULER_NAME_CONFIG, schedulerName);
+    config.setProperty(QueryScheduler.NUM_WORKER_THREADS_CONFIG, numThreads);
+    return config;
+  }
+
+  private static ServerMetrics getServerMetrics() {
+    return new ServerMetrics(new MetricsRegistry());
+  }
+
+  private static InstanceRequest getInstanceRequest(long requestId, String tableName) {
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(querySource);
+    return new InstanceRequest(requestId, brokerRequest);
+  }
+
+  /**
+   * Records the order in which queries are processed. The first query blocks until released, so that
+   * the following queries pile up in the scheduler.
+   */
+  private static class BlockingQueryExecutor implements QueryExecutor {
+    private final CountDownLatch _firstQueryStarted = new CountDownLatch(1);
+    private final CountDownLatch _firstQueryReleased = new CountDownLatch(1);
+    private final List<Long> _processedRequestIds = Collections.synchronizedList(new ArrayList<Long>());
+
+    void awaitFirstQueryStarted() throws InterruptedException {
+      Assert.assertTrue(_firstQueryStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    void releaseFirstQuery() {
+      _firstQueryReleased.countDown();
+    }
+
+    List<Long> getProcessedRequestIds() {
+      return _processedRequestIds;
+    }
+
+    @Override
+    public DataTable processQuery(InstanceRequest instanceRequest) {
+      _processedRequestIds.add(instanceRequest.getRequestId());
+      if (_firstQueryStarted.getCount() > 0) {
+        _firstQueryStarted.countDown();
+        try {
+          _firstQueryReleased.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void init(Configuration queryExecutorConfig, DataManager dataManager, ServerMetrics serverMetrics) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void updateResourceTimeOutInMs(String resource, long timeOutMs) {
+    }
+
+    @Override
+    public void removeTable(String tableName) {
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.starter.helix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SegmentPreloaderTest {
+
+  @Test
+  public void testPreloadAll() throws Exception {
+    Map<String, List<String>> segmentsPerTable = new HashMap<String, List<String>>();
+    List<String> segmentNames = new ArrayList<String>();
+    for (int i = 0; i < 50; i++) {
+      segmentNames.add("segment_" + i);
+    }
+    segmentsPerTable.put("tableA_OFFLINE", segmentNames);
+    segmentsPerTable.put("tableB_OFFLINE", Arrays.asList("segment_0", "failing_segment"));
+
+    final Set<String> loadedSegments = ConcurrentHashMap.newKeySet();
+    SegmentPreloader segmentPreloader = new SegmentPreloader(4, 1, null);
+    segmentPreloader.preload(segmentsPerTable, new SegmentPreloader.SegmentLoader() {
+      @Override
+      public void loadSegment(String tableName, String segmentName) throws Exception {
+        if (segmentName.startsWith("failing")) {
+          throw new Exception("Cannot load " + segmentName);
+        }
+        loadedSegments.add(tableName + "/" + segmentName);
+      }
+    }, 1.0);
+    segmentPreloader.awaitQueryable("tableA_OFFLINE");
+    segmentPreloader.awaitQueryable("tableB_OFFLINE");
+
+    // Failed segments are attempted too, and left to the state transitions
+    Assert.assertEquals(loadedSegments.size(), 51);
+    Assert.assertEquals(segmentPreloader.getNumPendingSegments(), 0);
+    segmentPreloader.awaitSegment("tableB_OFFLINE", "failing_segment");
+  }
+
+  @Test
+  public void testQueryableFraction() throws Exception {
+    Map<String, List<String>> segmentsPerTable = new HashMap<String, List<String>>();
+    segmentsPerTable.put("myTable_OFFLINE", Arrays.asList("slow_segment", "segment_1", "segment_2", "segment_3"));
+
+    final CountDownLatch slowSegmentRelease = new CountDownLatch(1);
+    final AtomicBoolean slowSegmentLoaded = new AtomicBoolean();
+    final SegmentPreloader segmentPreloader = new SegmentPreloader(2, 1, null);
+    // 3 of the 4 segments are enough for the table to be queryable, while the slow one keeps loading
+    segmentPreloader.preload(segmentsPerTable, new SegmentPreloader.SegmentLoader() {
+      @Override
+      public void loadSegment(String tableName, String segmentName) throws Exception {
+        if (segmentName.startsWith("slow")) {
+          slowSegmentRelease.await();
+          slowSegmentLoaded.set(true);
+        }
+      }
+    }, 0.75);
+    segmentPreloader.awaitQueryable("myTable_OFFLINE");
+    // Tables that are not preloaded, like real-time ones, are not held back
+    segmentPreloader.awaitQueryable("myTable_REALTIME");
+    Assert.assertFalse(slowSegmentLoaded.get());
+    Assert.assertEquals(segmentPreloader.getNumPendingSegments(), 1);
+
+    // A state transition for the slow segment waits for its preload
+    final CountDownLatch transitionDone = new CountDownLatch(1);
+    Thread transitionThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          segmentPreloader.awaitSegment("myTable_OFFLINE", "slow_segment");
+          transitionDone.countDown();
+        } catch (InterruptedException e) {
+          // Test fails on the latch
+        }
+      }
+    });
+    transitionThread.start();
+    Assert.assertFalse(transitionDone.await(100, TimeUnit.MILLISECONDS));
+    slowSegmentRelease.countDown();
+    Assert.assertTrue(transitionDone.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(slowSegmentLoaded.get());
+  }
+
+  @Test
+  public void testTransitionsWaitForQueryableFraction() throws Exception {
+    Map<String, List<String>> segmentsPerTable = new HashMap<String, List<String>>();
+    segmentsPerTable.put("myTable_OFFLINE", Arrays.asList("segment_0", "segment_1"));
+
+    final CountDownLatch loadRelease = new CountDownLatch(1);
+    final SegmentPreloader segmentPreloader = new SegmentPreloader(2, 1, null);
+    // Starting the preload does not wait for the segments, their state transitions do
+    segmentPreloader.preload(segmentsPerTable, new SegmentPreloader.SegmentLoader() {
+      @Override
+      public void loadSegment(String tableName, String segmentName) throws Exception {
+        loadRelease.await();
+      }
+    }, 1.0);
+    Assert.assertEquals(segmentPreloader.getNumPendingSegments(), 2);
+
+    final CountDownLatch transitionDone = new CountDownLatch(1);
+    Thread transitionThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Assert.assertTrue(segmentPreloader.awaitQueryable("myTable_OFFLINE"));
+          transitionDone.countDown();
+        } catch (InterruptedException e) {
+          // Test fails on the latch
+        }
+      }
+    });
+    transitionThread.start();
+    Assert.assertFalse(transitionDone.await(100, TimeUnit.MILLISECONDS));
+    // Beyond the max number of waiting transitions, the others do not wait, so they do not hold up the Helix threads
+    Assert.assertFalse(segmentPreloader.awaitQueryable("myTable_OFFLINE"));
+    loadRelease.countDown();
+    Assert.assertTrue(transitionDone.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(segmentPreloader.getNumPendingSegments(), 0);
+    Assert.assertTrue(segmentPreloader.awaitQueryable("myTable_OFFLINE"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidQueryableFraction() throws Exception {
+    new SegmentPreloader(1, 1, null).preload(new HashMap<String, List<String>>(), null, 1.5);
+  }
+}
@@ -21,6 +21,7 @@ import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
 import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.query.StreamingReducer;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.FilterQuery;
@@ -29,9 +30,11 @@ import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.response.BrokerResponse;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.routing.SegmentPruningService;
 import com.linkedin.pinot.routing.TimeBoundaryService;
 import com.linkedin.pinot.routing.TimeBoundaryService.TimeBoundaryInfo;
 import com.linkedin.pinot.serde.SerDe;
@@ -39,7 +42,9 @@ import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
+import com.linkedin.pinot.transport.common.ResponseStream;
 import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 import com.linkedin.pinot.transport.scattergather.ScatterGather;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
@@ -50,11 +55,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.slf4j.Logger;
@@ -76,20 +77,61 @@ public class BrokerRequestHandler {
   private final ReduceService _reduceService;
   private final BrokerMetrics _brokerMetrics;
   private final TimeBoundaryService _timeBoundaryService;
+  private final SegmentPruningService _segmentPruningService;
   private final long _brokerTimeOutMs;
+  private final BrokerResultCache _resultCache;
+  private final int _numSpeculativeRequests;
 
-  //TODO: Currently only using RoundRobin selection. But, this can be allowed to be configured.
-  private RoundRobinReplicaSelection _replicaSelection;
+  private ReplicaSelection _replicaSelection;
 
+  /**
+   * @param segmentPruningService drops segments that can not match a query from the routing, may be null
+   */
+  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
+      SegmentPruningService segmentPruningService, ScatterGather scatterGatherer, ReduceService reduceService,
+      BrokerMetrics brokerMetrics, long brokerTimeOutMs) {
+    this(table, timeBoundaryService, segmentPruningService, scatterGatherer, reduceService, brokerMetrics,
+        brokerTimeOutMs, null);
+  }
+
+  /**
+   * @param segmentPruningService drops segments that can not match a query from the routing, may be null
+   * @param resultCache caches the responses of offline tables until their routing changes, null to disable caching
+   */
+  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
+      SegmentPruningService segmentPruningService, ScatterGather scatterGatherer, ReduceService reduceService,
+      BrokerMetrics brokerMetrics, long brokerTimeOutMs, BrokerResultCache resultCache) {
+    this(table, timeBoundaryService, segmentPruningService, scatterGatherer, reduceService, brokerMetrics,
+        brokerTimeOutMs, resultCache, 0);
+  }
+
+  /**
+   * @param segmentPruningService drops segments that can not match a query from the routing, may be null
+   * @param resultCache caches the responses of offline tables until their routing changes, null to disable caching
+   * @param numSpeculativeRequests speculative requests the scatter-gather may send to other replicas of slow servers,
+   *                               0 to never send any
+   */
   public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
-      ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOutMs) {
+      SegmentPruningService segmentPruningService, ScatterGather scatterGatherer, ReduceService reduceService,
+      BrokerMetrics brokerMetrics, long brokerTimeOutMs, BrokerResultCache resultCache, int numSpeculativeRequests) {
     _routingTable = table;
     _timeBoundaryService = timeBoundaryService;
+    _segmentPruningService = segmentPruningService;
     _scatterGatherer = scatterGatherer;
     _replicaSelection = new RoundRobinReplicaSelection();
     _reduceService = reduceService;
     _brokerMetrics = brokerMetrics;
     _brokerTimeOutMs = brokerTimeOutMs;
+    _resultCache = resultCache;
+    _numSpeculativeRequests = numSpeculativeRequests;
+  }
+
+  /**
+   * Sets how servers are selected for each segment-set, round-robin by default. Must be called before any request is
+   * processed.
+   */
+  public void setReplicaSelection(ReplicaSelection replicaSelection) {
+    _replicaSelection = replicaSelection;
   }
 
   /**
@@ -153,7 +195,23 @@ public class BrokerRequestHandler {
       BucketingSelection overriddenSelection, final ScatterGatherStats scatterGatherStats,
       final long requestId) throws InterruptedException {
     request.getQuerySource().setTableName(matchedTableName);
-    return getDataTableFromBrokerRequest(request, null, scatterGatherStats, requestId);
+
+    // Only offline tables are cached, the segments of realtime tables change without their routing changing
+    if (_resultCache == null || request.isEnableTrace()
+        || TableNameBuilder.getTableTypeFromTableName(matchedTableName) != TableType.OFFLINE) {
+      return getDataTableFromBrokerRequest(request, null, scatterGatherStats, requestId, null, -1);
+    }
+    final int routingTableVersion = _routingTable.getRoutingTableVersion(matchedTableName);
+    if (routingTableVersion < 0) {
+      return getDataTableFromBrokerRequest(request, null, scatterGatherStats, requestId, null, -1);
+    }
+    final String cacheKey = BrokerResultCache.getCacheKey(request);
+    final BrokerResponse cachedResponse = _resultCache.get(cacheKey, routingTableVersion);
+    if (cachedResponse != null) {
+      _brokerMetrics.addMeteredValue(request, BrokerMeter.RESULT_CACHE_HITS, 1);
+      return cachedResponse;
+    }
+    return getDataTableFromBrokerRequest(request, null, scatterGatherStats, requestId, cacheKey, routingTableVersion);
   }
 
   private Object processFederatedBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection,
@@ -230,8 +288,37 @@ public class BrokerRequestHandler {
     }
   }
 
+  /**
+   * Drops the segments that can not match the request, along with the servers left without segments.
+   */
+  private Map<ServerInstance, SegmentIdSet> pruneSegments(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices) {
+    if (_segmentPruningService == null) {
+      return segmentServices;
+    }
+    Map<ServerInstance, SegmentIdSet> prunedSegmentServices =
+        _segmentPruningService.pruneSegments(request, segmentServices);
+    if (prunedSegmentServices != segmentServices) {
+      _brokerMetrics.addMeteredValue(request, BrokerMeter.SEGMENTS_PRUNED_BY_BROKER,
+          getNumSegments(segmentServices) - getNumSegments(prunedSegmentServices));
+    }
+    return prunedSegmentServices;
+  }
+
+  private static int getNumSegments(Map<ServerInstance, SegmentIdSet> segmentServices) {
+    int numSegments = 0;
+    for (SegmentIdSet segmentIdSet : segmentServices.values()) {
+      numSegments += segmentIdSet.getSegments().size();
+    }
+    return numSegments;
+  }
+
+  /**
+   * @param cacheKey key to cache the response under if every server answered without errors, null to not cache it
+   * @param routingTableVersion version of the routing table the response is cached with
+   */
   private Object getDataTableFromBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection,
-      final ScatterGatherStats scatterGatherStats, final long requestId)
+      final ScatterGatherStats scatterGatherStats, final long requestId, String cacheKey, int routingTableVersion)
       throws InterruptedException {
     // Step1
     final long routingStartTime = System.nanoTime();
@@ -241,6 +328,7 @@ public class BrokerRequestHandler {
       LOGGER.warn("Not found ServerInstances to Segments Mapping:");
       return BrokerResponse.getEmptyBrokerResponse();
     }
+    segmentServices = pruneSegments(request, segmentServices);
 
     final long queryRoutingTime = System.nanoTime() - routingStartTime;
     _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
@@ -249,85 +337,52 @@ public class BrokerRequestHandler {
     final long scatterGatherStartTime = System.nanoTime();
     ScatterGatherRequestImpl scatterRequest =
         new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-            ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-            overriddenSelection, requestId, _brokerTimeOutMs);
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), _numSpeculativeRequests,
+            findSegmentReplicas(request), overriddenSelection, requestId, _brokerTimeOutMs);
     CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest, scatterGatherStats);
 
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    {
-      Map<ServerInstance, ByteBuf> responses = null;
-      try {
-        responses = response.get();
-        // The call above should have waited for all the responses to come in.
-        Map<String, Long> responseTimes = response.getResponseTimes();
-        scatterGatherStats.setResponseTimeMillis(responseTimes);
-      } catch (ExecutionException e) {
-        LOGGER.warn("Caught exception while fetching response", e);
-        _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-      }
-
-      final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-
-      final long deserializationStartTime = System.nanoTime();
-
-      Map<ServerInstance, Throwable> errors = response.getError();
-
-      if (null != responses) {
-        for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
-          try {
-            ByteBuf b = e.getValue();
-            byte[] b2 = new byte[b.readableBytes()];
-            if (b2 == null || b2.length == 0) {
-              continue;
-            }
-            b.readBytes(b2);
-            DataTable r2 = new DataTable(b2);
-            if (errors != null && errors.containsKey(e.getKey())) {
-              Throwable throwable = errors.get(e.getKey());
-              r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-              _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-            }
-            instanceResponseMap.put(e.getKey(), r2);
-          } catch (Exception ex) {
-            LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
-                + ex.getMessage(), ex);
-            _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
-          }
-        }
+    //Step 5 - Deserialize and reduce the responses one by one as they come in
+    ResponseReducer responseReducer = new ResponseReducer(request);
+    boolean hasAllResponses = true;
+    int numResponses = 0;
+    Entry<ServerInstance, ByteBuf> responseEntry;
+    while ((responseEntry = response.takeResponse()) != null) {
+      numResponses++;
+      if (!responseReducer.reduce(responseEntry.getKey(), responseEntry.getKey(), responseEntry.getValue(),
+          response.getError())) {
+        hasAllResponses = false;
       }
-      final long deserializationTime = System.nanoTime() - deserializationStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
     }
-
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timePhase(request, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(request, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing return", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
+    scatterGatherStats.setResponseTimeMillis(response.getResponseTimes());
+    Map<ServerInstance, Throwable> errors = response.getError();
+    // The scatter-gather may query fewer servers than the routing table returned, when it regroups the segments by
+    // their replicas, so the responses are checked against the servers it actually sent the request to
+    hasAllResponses &= (errors == null || errors.isEmpty()) && numResponses == scatterGatherStats.getNumServers();
+
+    final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime - responseReducer.getProcessingTime();
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    addHedgedRequestMeters(request, scatterGatherStats);
+
+    // Step 6 : Finish the reduce and return
+    final BrokerResponse brokerResponse = responseReducer.getBrokerResponse();
+
+    // Partial results are not cached
+    if (cacheKey != null && hasAllResponses && brokerResponse.getExceptionsSize() == 0) {
+      _resultCache.put(cacheKey, routingTableVersion, brokerResponse);
     }
+    return brokerResponse;
   }
 
   private Object getDataTableFromBrokerRequestList(final BrokerRequest federatedBrokerRequest,
       final List<BrokerRequest> requests, BucketingSelection overriddenSelection,
       final ScatterGatherStats scatterGatherStats, final long requestId) throws InterruptedException {
     // Step1
-    long scatterGatherStartTime = System.nanoTime();
+    long scatterGatherStartTime = -1;
     long queryRoutingTime = 0;
-    Map<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats>> responseFuturesList =
-        new HashMap<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats>>();
-    for (BrokerRequest request : requests) {
+    Map<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats> responseFuturesList =
+        new HashMap<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats>();
+    ResponseStream<ServerInstance, ByteBuf> responseStream = new ResponseStream<ServerInstance, ByteBuf>();
+    for (final BrokerRequest request : requests) {
       final long routingStartTime = System.nanoTime();
       RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
       Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
@@ -335,6 +390,7 @@ public class BrokerRequestHandler {
         LOGGER.info("Not found ServerInstances to Segments Mapping for Table - {}", rtRequest.getTableName());
         continue;
       }
+      segmentServices = pruneSegments(request, segmentServices);
       LOGGER.debug("Find ServerInstances to Segments Mapping for table - {}",  rtRequest.getTableName());
       for (ServerInstance serverInstance : segmentServices.keySet()) {
         LOGGER.debug("{} : {}", serverInstance, segmentServices.get(serverInstance));
@@ -343,95 +399,151 @@ public class BrokerRequestHandler {
       ScatterGatherStats respStats = new ScatterGatherStats();
 
       // Step 2-4
-      scatterGatherStartTime = System.nanoTime();
+      final long tableScatterGatherStartTime = System.nanoTime();
+      if (scatterGatherStartTime == -1) {
+        scatterGatherStartTime = tableScatterGatherStartTime;
+      }
       ScatterGatherRequestImpl scatterRequest =
           new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-              ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-              overriddenSelection, requestId, _brokerTimeOutMs);
-      responseFuturesList.put(request, Pair.of(_scatterGatherer.scatterGather(scatterRequest, scatterGatherStats), respStats));
+              ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), _numSpeculativeRequests,
+              findSegmentReplicas(request), overriddenSelection, requestId, _brokerTimeOutMs);
+      CompositeFuture<ServerInstance, ByteBuf> compositeFuture =
+          _scatterGatherer.scatterGather(scatterRequest, scatterGatherStats);
+      // Time the scatter gather of each table on its own, so that the slower half of a hybrid query shows up under
+      // its own table name.
+      compositeFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER,
+              System.nanoTime() - tableScatterGatherStartTime);
+        }
+      }, null);
+      responseFuturesList.put(compositeFuture, respStats);
+      responseStream.add(compositeFuture);
     }
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
-    long scatterGatherTime = 0;
-    long deserializationTime = 0;
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    final AtomicInteger responseSeq = new AtomicInteger(-1);
-    {
-      for (BrokerRequest request : responseFuturesList.keySet()) {
-        CompositeFuture<ServerInstance, ByteBuf> compositeFuture = responseFuturesList.get(request).getKey();
-        ScatterGatherStats respStats = responseFuturesList.get(request).getValue();
-
-        Map<ServerInstance, ByteBuf> responseMap = null;
-        try {
-          responseMap = compositeFuture.get();
-          // The 'get' call above waits for all the responses to come in before returning.
-          // compositeFuture has the individual response times of each underlying future.
-          // We get a map of server to the response time of the server here.
-          Map<String, Long> responseTimeMap = compositeFuture.getResponseTimes();
-          respStats.setResponseTimeMillis(responseTimeMap);
-          scatterGatherStats.merge(respStats);
-        } catch (ExecutionException e) {
-          LOGGER.warn("Caught exception while fetching response", e);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-        }
+    //Step 5 - Deserialize and reduce the responses of all the tables one by one as they come in
+    ResponseReducer responseReducer = new ResponseReducer(federatedBrokerRequest);
+    int responseSeq = 0;
+    ResponseStream.Response<ServerInstance, ByteBuf> response;
+    while ((response = responseStream.take()) != null) {
+      // Hybrid requests may get response from same instance, so we need to distinguish them.
+      ServerInstance decoratedServerInstance =
+          new ServerInstance(response.getKey().getHostname(), response.getKey().getPort(), responseSeq++);
+      responseReducer.reduce(response.getKey(), decoratedServerInstance, response.getValue(),
+          response.getFuture().getError());
+    }
+    for (Entry<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats> entry : responseFuturesList.entrySet()) {
+      // compositeFuture has the individual response times of each underlying future.
+      // We get a map of server to the response time of the server here.
+      ScatterGatherStats respStats = entry.getValue();
+      respStats.setResponseTimeMillis(entry.getKey().getResponseTimes());
+      scatterGatherStats.merge(respStats);
+      Map<ServerInstance, Throwable> errors = entry.getKey().getError();
+      if (errors != null && !errors.isEmpty()) {
+        LOGGER.warn("Caught exceptions while fetching responses from {}", errors.keySet());
+        _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+      }
+    }
+    if (scatterGatherStartTime != -1) {
+      long scatterGatherTime = System.nanoTime() - scatterGatherStartTime - responseReducer.getProcessingTime();
+      _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    }
+    addHedgedRequestMeters(federatedBrokerRequest, scatterGatherStats);
 
-        scatterGatherTime += System.nanoTime() - scatterGatherStartTime;
+    // Step 6 : Finish the reduce and return
+    return responseReducer.getBrokerResponse();
+  }
 
-        final long deserializationStartTime = System.nanoTime();
+  private Map<SegmentId, List<ServerInstance>> findSegmentReplicas(BrokerRequest request) {
+    if (_numSpeculativeRequests <= 0 && !_replicaSelection.selectsAmongReplicas()) {
+      return null;
+    }
+    return _routingTable.findSegmentReplicas(request.getQuerySource().getTableName());
+  }
+
+  private void addHedgedRequestMeters(BrokerRequest request, ScatterGatherStats scatterGatherStats) {
+    int numHedgedRequestsSent = scatterGatherStats.getNumHedgedRequestsSent();
+    if (numHedgedRequestsSent > 0) {
+      _brokerMetrics.addMeteredValue(request, BrokerMeter.HEDGED_REQUESTS_SENT, numHedgedRequestsSent);
+      _brokerMetrics.addMeteredValue(request, BrokerMeter.HEDGED_REQUESTS_WON,
+          scatterGatherStats.getNumHedgedRequestsWon());
+    }
+  }
 
-        Map<ServerInstance, Throwable> errors = compositeFuture.getError();
-
-        if (null != responseMap) {
-          for (Entry<ServerInstance, ByteBuf> responseEntry : responseMap.entrySet()) {
-            try {
-              ByteBuf b = responseEntry.getValue();
-              byte[] b2 = new byte[b.readableBytes()];
-              if (b2 == null || b2.length == 0) {
-                continue;
-              }
-              b.readBytes(b2);
-              DataTable r2 = new DataTable(b2);
-              // Hybrid requests may get response from same instance, so we need to distinguish them.
-              ServerInstance decoratedServerInstance =
-                  new ServerInstance(responseEntry.getKey().getHostname(), responseEntry.getKey().getPort(), responseSeq.incrementAndGet());
-              if (errors != null && errors.containsKey(responseEntry.getKey())) {
-                Throwable throwable = errors.get(responseEntry.getKey());
-                if (throwable != null) {
-                  r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-                  _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-                }
-              }
-              instanceResponseMap.put(decoratedServerInstance, r2);
-            } catch (Exception ex) {
-              LOGGER.error("Got exceptions in collect query result for instance " + responseEntry.getKey() + ", error: "
-                  + ex.getMessage(), ex);
-              _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+  /**
+   * Deserializes the server responses of one broker request as they are gathered and merges them right away into a
+   * StreamingReducer. Each response buffer is released once it is reduced, so the broker holds the running result of
+   * the query rather than every server response until the slowest server has answered.
+   */
+  private class ResponseReducer {
+    private final BrokerRequest _request;
+    private final StreamingReducer _reducer;
+    private long _deserializationTime = 0;
+    private long _reduceTime = 0;
+
+    ResponseReducer(BrokerRequest request) {
+      _request = request;
+      _reducer = _reduceService.newStreamingReducer(request);
+    }
+
+    /**
+     * Reduce the response of serverInstance under the name reducedServerInstance and release its buffer.
+     *
+     * @return true if the response was reduced, false if it was empty or could not be deserialized
+     */
+    boolean reduce(ServerInstance serverInstance, ServerInstance reducedServerInstance, ByteBuf b,
+        Map<ServerInstance, Throwable> errors) {
+      try {
+        final long deserializationStartTime = System.nanoTime();
+        DataTable r2;
+        try {
+          if (b.readableBytes() == 0) {
+            return false;
+          }
+          r2 = new DataTable(b.nioBuffer());
+          if (errors != null && errors.containsKey(serverInstance)) {
+            Throwable throwable = errors.get(serverInstance);
+            if (throwable != null) {
+              r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
+              _brokerMetrics.addMeteredValue(_request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
             }
           }
+        } catch (Exception ex) {
+          LOGGER.error("Got exceptions in collect query result for instance " + serverInstance + ", error: "
+              + ex.getMessage(), ex);
+          _brokerMetrics.addMeteredValue(_request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+          return false;
+        } finally {
+          _deserializationTime += System.nanoTime() - deserializationStartTime;
         }
-        deserializationTime += System.nanoTime() - deserializationStartTime;
+
+        final long reduceStartTime = System.nanoTime();
+        _reducer.reduce(reducedServerInstance, r2);
+        _reduceTime += System.nanoTime() - reduceStartTime;
+        return true;
+      } finally {
+        // The DataTable reads its data from the buffer, it must not be used past this point
+        b.release();
       }
     }
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
 
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timePhase(federatedBrokerRequest, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(federatedBrokerRequest, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED,
-              returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing query", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
+    /**
+     * @return time spent deserializing and reducing responses so far, in nanoseconds
+     */
+    long getProcessingTime() {
+      return _deserializationTime + _reduceTime;
+    }
+
+    BrokerResponse getBrokerResponse() {
+      final long reduceStartTime = System.nanoTime();
+      BrokerResponse brokerResponse = _reducer.getBrokerResponse();
+      _reduceTime += System.nanoTime() - reduceStartTime;
+      _brokerMetrics.addPhaseTiming(_request, BrokerQueryPhase.DESERIALIZATION, _deserializationTime);
+      _brokerMetrics.addPhaseTiming(_request, BrokerQueryPhase.REDUCE, _reduceTime);
+      _brokerMetrics.addMeteredValue(_request, BrokerMeter.DOCUMENTS_SCANNED, brokerResponse.getNumDocsScanned());
+      return brokerResponse;
     }
   }
 
@@ -442,19 +554,22 @@ public class BrokerRequestHandler {
     private final ReplicaSelectionGranularity _replicaSelectionGranularity;
     private final Object _hashKey;
     private final int _numSpeculativeRequests;
+    private final Map<SegmentId, List<ServerInstance>> _segmentReplicas;
     private final BucketingSelection _bucketingSelection;
     private final long _requestId;
     private final long _requestTimeoutMs;
 
     public ScatterGatherRequestImpl(BrokerRequest request, Map<ServerInstance, SegmentIdSet> segmentServices,
         ReplicaSelection replicaSelection, ReplicaSelectionGranularity replicaSelectionGranularity, Object hashKey,
-        int numSpeculativeRequests, BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs) {
+        int numSpeculativeRequests, Map<SegmentId, List<ServerInstance>> segmentReplicas,
+        BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs) {
       _brokerRequest = request;
       _segmentServices = segmentServices;
       _replicaSelection = replicaSelection;
       _replicaSelectionGranularity = replicaSelectionGranularity;
       _hashKey = hashKey;
       _numSpeculativeRequests = numSpeculativeRequests;
+      _segmentReplicas = segmentReplicas;
       _bucketingSelection = bucketingSelection;
       _requestId = requestId;
       _requestTimeoutMs = requestTimeoutMs;
@@ -472,6 +587,7 @@ public class BrokerRequestHandler {
       r.setEnableTrace(_brokerRequest.isEnableTrace());
       r.setQuery(_brokerRequest);
       r.setSearchSegments(querySegments.getSegmentsNameList());
+      r.setDataTableVersion(DataTable.VERSION);
 
       // _serde is not threadsafe.
       return getSerde().serialize(r);
@@ -498,6 +614,11 @@ public class BrokerRequestHandler {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public Map<SegmentId, List<ServerInstance>> getSegmentReplicas() {
+      return _segmentReplicas;
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return _bucketingSelection;
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ResponseStatistics;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+
+
+/**
+ * Size bounded LRU cache of broker responses.
+ *
+ * Entries are keyed on a normalized form of the compiled broker request and remember the version of the routing table
+ * they were computed with. A lookup with another routing version drops the entry, so the entries of a table are
+ * invalidated as soon as its external view changes or one of its segments is refreshed. Only results that do not
+ * change while the routing table stays the same should be cached, which rules out realtime tables. Entries also
+ * expire after a fixed time, in case a change of the table was missed.
+ */
+public class BrokerResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  private final int _maxEntries;
+  private final long _maxSizeInBytes;
+  private final long _ttlMs;
+
+  // Access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, CacheEntry> _entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+  private long _sizeInBytes = 0;
+  private long _hits = 0;
+  private long _misses = 0;
+
+  /**
+   * @param maxEntries The maximum number of cached responses
+   * @param maxSizeInBytes The maximum estimated size of the cached responses
+   * @param ttlMs The time after which a cached response expires
+   * @param brokerMetrics The metrics to expose the hit rate, entry count and size of the cache as gauges, may be null
+   */
+  public BrokerResultCache(int maxEntries, long maxSizeInBytes, long ttlMs, BrokerMetrics brokerMetrics) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Max entries must be positive, got: " + maxEntries);
+    }
+    if (maxSizeInBytes <= 0) {
+      throw new IllegalArgumentException("Max size in bytes must be positive, got: " + maxSizeInBytes);
+    }
+    if (ttlMs <= 0) {
+      throw new IllegalArgumentException("TTL must be positive, got: " + ttlMs);
+    }
+    _maxEntries = maxEntries;
+    _maxSizeInBytes = maxSizeInBytes;
+    _ttlMs = ttlMs;
+
+    if (brokerMetrics != null) {
+      brokerMetrics.addCallbackGauge("resultCache.hitRatePercent", new Callable<Long>() {
+        @Override
+        public Long call() {
+          return getHitRatePercent();
+        }
+      });
+      brokerMetrics.addCallbackGauge("resultCache.entries", new Callable<Long>() {
+        @Override
+        public Long call() {
+          return (long) size();
+        }
+      });
+      brokerMetrics.addCallbackGauge("resultCache.sizeInBytes", new Callable<Long>() {
+        @Override
+        public Long call() {
+          return getSizeInBytes();
+        }
+      });
+    }
+    LOGGER.info("Caching up to {} broker responses, up to {} bytes, for {}ms", maxEntries, maxSizeInBytes, ttlMs);
+  }
+
+  /**
+   * Returns the key of a request: its string form without the fields that do not change its result, and with its
+   * filter normalized, as filter ids differ between compilations of the same query.
+   */
+  public static String getCacheKey(BrokerRequest request) {
+    BrokerRequest normalizedRequest = request.deepCopy();
+    normalizedRequest.unsetBucketHashKey();
+    normalizedRequest.unsetEnableTrace();
+    normalizedRequest.unsetFilterQuery();
+    normalizedRequest.unsetFilterSubQueryMap();
+    String filter = RequestUtils.getNormalizedFilterString(request);
+    return filter == null ? normalizedRequest.toString() : normalizedRequest.toString() + " filter:" + filter;
+  }
+
+  /**
+   * Returns a copy of the cached response of the request, or null if there is none for this routing table version or
+   * it expired.
+   */
+  public BrokerResponse get(String cacheKey, int routingTableVersion) {
+    CacheEntry entry;
+    synchronized (this) {
+      entry = _entries.get(cacheKey);
+      if (entry != null && (entry._routingTableVersion != routingTableVersion
+          || System.currentTimeMillis() - entry._creationTimeMs > _ttlMs)) {
+        remove(cacheKey);
+        entry = null;
+      }
+      if (entry == null) {
+        _misses++;
+        return null;
+      }
+      _hits++;
+    }
+    return copy(entry._response);
+  }
+
+  /**
+   * Caches the response of a request, computed with the given routing table version.
+   */
+  public void put(String cacheKey, int routingTableVersion, BrokerResponse response) {
+    final long sizeInBytes = estimateSizeInBytes(cacheKey, response);
+    if (sizeInBytes > _maxSizeInBytes) {
+      return;
+    }
+    final CacheEntry entry =
+        new CacheEntry(routingTableVersion, copy(response), sizeInBytes, System.currentTimeMillis());
+    synchronized (this) {
+      remove(cacheKey);
+      _entries.put(cacheKey, entry);
+      _sizeInBytes += sizeInBytes;
+
+      Iterator<Map.Entry<String, CacheEntry>> iterator = _entries.entrySet().iterator();
+      while (_entries.size() > _maxEntries || _sizeInBytes > _maxSizeInBytes) {
+        _sizeInBytes -= iterator.next().getValue()._sizeInBytes;
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return _entries.size();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  public synchronized long getHitRatePercent() {
+    final long lookups = _hits + _misses;
+    return lookups == 0 ? 0L : _hits * 100L / lookups;
+  }
+
+  private void remove(String cacheKey) {
+    CacheEntry removed = _entries.remove(cacheKey);
+    if (removed != null) {
+      _sizeInBytes -= removed._sizeInBytes;
+    }
+  }
+
+  /**
+   * Estimates the heap size of a response as that of its JSON form and key, two bytes per char.
+   */
+  private static long estimateSizeInBytes(String cacheKey, BrokerResponse response) {
+    try {
+      return 2L * (cacheKey.length() + response.toJson().toString().length());
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while estimating the size of a broker response, not caching it", e);
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Copies the top level fields of a response, so that the responses handed out do not share their lists. The results
+   * themselves are shared, they are not modified once reduced.
+   */
+  private static BrokerResponse copy(BrokerResponse response) {
+    BrokerResponse copy = new BrokerResponse();
+    copy.setTotalDocs(response.getTotalDocs());
+    copy.setNumDocsScanned(response.getNumDocsScanned());
+    copy.setTimeUsedMs(response.getTimeUsedMs());
+    if (response.getAggregationResults() != null) {
+      copy.setAggregationResults(new ArrayList<JSONObject>(response.getAggregationResults()));
+    }
+    copy.setSelectionResults(response.getSelectionResults());
+    if (response.getSegmentStatistics() != null) {
+      copy.setSegmentStatistics(new ArrayList<ResponseStatistics>(response.getSegmentStatistics()));
+    }
+    if (response.getExceptions() != null) {
+      copy.setExceptions(new ArrayList<ProcessingException>(response.getExceptions()));
+    }
+    if (response.getTraceInfo() != null) {
+      copy.setTraceInfo(new LinkedHashMap<String, String>(response.getTraceInfo()));
+    }
+    return copy;
+  }
+
+  private static class CacheEntry {
+    private final int _routingTableVersion;
+    private final BrokerResponse _response;
+    private final long _sizeInBytes;
+    private final long _creationTimeMs;
+
+    private CacheEntry(int routingTableVersion, BrokerResponse response, long sizeInBytes, long creationTimeMs) {
+      _routingTableVersion = routingTableVersion;
+      _response = response;
+      _sizeInBytes = sizeInBytes;
+      _creationTimeMs = creationTimeMs;
+    }
+  }
+}
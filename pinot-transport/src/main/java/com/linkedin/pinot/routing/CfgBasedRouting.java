@@ -15,9 +15,11 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 import com.linkedin.pinot.transport.config.PerTableRoutingConfig;
 import com.linkedin.pinot.transport.config.RoutingTableConfig;
@@ -50,6 +52,22 @@ public class CfgBasedRouting implements RoutingTable {
     return cfg.buildRequestRoutingMap();
   }
 
+  /**
+   * The configured routing has a single server per segment, so there is no other replica to send a request to.
+   */
+  @Override
+  public Map<SegmentId, List<ServerInstance>> findSegmentReplicas(String tableName) {
+    return null;
+  }
+
+  /**
+   * The configured routing never changes, all configured tables are at version 0.
+   */
+  @Override
+  public int getRoutingTableVersion(String tableName) {
+    return _cfg.getPerTableRoutingCfg().containsKey(tableName) ? 0 : -1;
+  }
+
   @Override
   public void start() {
     // Nothing to be done here
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -22,6 +23,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.ExternalView;
@@ -38,6 +40,7 @@ import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.routing.builder.BalancedRandomRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RoutingTableBuilder;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -56,14 +59,23 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
   private final Map<String, List<ServerToSegmentSetMap>> _brokerRoutingTable =
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
+  // Servers of each segment across all the routings of a table
+  private final Map<String, Map<SegmentId, List<ServerInstance>>> _segmentReplicasMap =
+      new ConcurrentHashMap<String, Map<SegmentId, List<ServerInstance>>>();
   private final Map<String, Integer> _routingTableLastKnownZkVersionMap = new ConcurrentHashMap<>();
+  // Version of the routing table that queries see, only published once the routing table is computed
+  private final Map<String, Integer> _routingTableVersionMap = new ConcurrentHashMap<>();
+  // Source of the routing table versions, shared by all tables so that a recreated table does not reuse a version
+  private final AtomicInteger _routingTableVersionGenerator = new AtomicInteger(0);
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
+  private final HelixExternalViewBasedSegmentPruningService _segmentPruningService;
 
   public HelixExternalViewBasedRouting(RoutingTableBuilder defaultOfflineRoutingTableBuilder,
       RoutingTableBuilder defaultRealtimeRoutingTableBuilder, Map<String, RoutingTableBuilder> routingTableBuilderMap,
       ZkHelixPropertyStore<ZNRecord> propertyStore) {
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
+    _segmentPruningService = new HelixExternalViewBasedSegmentPruningService(propertyStore);
     if (defaultOfflineRoutingTableBuilder != null) {
       _defaultOfflineRoutingTableBuilder = defaultOfflineRoutingTableBuilder;
     } else {
@@ -97,6 +109,21 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
   }
 
+  @Override
+  public Map<SegmentId, List<ServerInstance>> findSegmentReplicas(String tableName) {
+    return _segmentReplicasMap.get(tableName);
+  }
+
+  /**
+   * The routing table version of a table is assigned from a counter of this broker each time the routing table is
+   * computed from a new external view, or a segment of the table is refreshed.
+   */
+  @Override
+  public int getRoutingTableVersion(String tableName) {
+    Integer version = _routingTableVersionMap.get(tableName);
+    return version == null ? -1 : version;
+  }
+
   @Override
   public void start() {
     LOGGER.info("Start HelixExternalViewBasedRouting!");
@@ -159,6 +186,8 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
           routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
 
       _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
+      _segmentReplicasMap.put(tableName, computeSegmentReplicas(serverToSegmentSetMap));
+      _routingTableVersionMap.put(tableName, _routingTableVersionGenerator.incrementAndGet());
     } catch (Exception e) {
       LOGGER.error("Failed to compute/update the routing table" + e.getCause(), e);
     }
@@ -168,17 +197,72 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     } catch (Exception e) {
       LOGGER.error("Failed to update the TimeBoundaryService : " + e.getCause(), e);
     }
+    try {
+      LOGGER.info("Trying to compute segment pruning service for table : " + tableName);
+      _segmentPruningService.updateSegmentPruningService(externalView);
+    } catch (Exception e) {
+      LOGGER.error("Failed to update the SegmentPruningService : " + e.getCause(), e);
+    }
 
   }
 
+  /**
+   * Called when a segment of the table is replaced on the servers without any external view change (message based
+   * refresh), moves the table to a new routing table version.
+   */
+  public void markSegmentRefreshed(String tableName) {
+    Integer version = _routingTableVersionMap.get(tableName);
+    if (version != null) {
+      LOGGER.info("A segment of table {} was refreshed, updating its routing table version", tableName);
+      _routingTableVersionMap.replace(tableName, version, _routingTableVersionGenerator.incrementAndGet());
+    }
+  }
+
   public void markDataResourceOffline(String tableName) {
     LOGGER.info("Trying to remove data table from broker : " + tableName);
     if (_dataTableSet.contains(tableName)) {
       _dataTableSet.remove(tableName);
       _brokerRoutingTable.remove(tableName);
+      _segmentReplicasMap.remove(tableName);
       _routingTableLastKnownZkVersionMap.remove(tableName);
+      _routingTableVersionMap.remove(tableName);
       _timeBoundaryService.remove(tableName);
+      _segmentPruningService.remove(tableName);
+    }
+  }
+
+  private static Map<SegmentId, List<ServerInstance>> computeSegmentReplicas(
+      List<ServerToSegmentSetMap> serverToSegmentSetMaps) {
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = new HashMap<SegmentId, List<ServerInstance>>();
+    for (ServerToSegmentSetMap serverToSegmentSetMap : serverToSegmentSetMaps) {
+      for (Map.Entry<ServerInstance, SegmentIdSet> entry : serverToSegmentSetMap.getRouting().entrySet()) {
+        for (SegmentId segmentId : entry.getValue().getSegments()) {
+          List<ServerInstance> servers = segmentReplicas.get(segmentId);
+          if (servers == null) {
+            servers = new ArrayList<ServerInstance>();
+            segmentReplicas.put(segmentId, servers);
+          }
+          if (!servers.contains(entry.getKey())) {
+            servers.add(entry.getKey());
+          }
+        }
+      }
     }
+
+    // Segments with the same replicas share one sorted list, so that the scatter-gather can group them by replicas
+    Map<List<ServerInstance>, List<ServerInstance>> uniqueReplicas =
+        new HashMap<List<ServerInstance>, List<ServerInstance>>();
+    for (Map.Entry<SegmentId, List<ServerInstance>> entry : segmentReplicas.entrySet()) {
+      List<ServerInstance> servers = entry.getValue();
+      Collections.sort(servers);
+      List<ServerInstance> uniqueServers = uniqueReplicas.get(servers);
+      if (uniqueServers == null) {
+        uniqueReplicas.put(servers, servers);
+      } else {
+        entry.setValue(uniqueServers);
+      }
+    }
+    return segmentReplicas;
   }
 
   public boolean contains(String tableName) {
@@ -197,6 +281,10 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     return _timeBoundaryService;
   }
 
+  public SegmentPruningService getSegmentPruningService() {
+    return _segmentPruningService;
+  }
+
   @Override
   public String dumpSnapShot() throws Exception {
     JSONObject ret = new JSONObject();
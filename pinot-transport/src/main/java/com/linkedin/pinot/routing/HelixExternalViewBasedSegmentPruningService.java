@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableCustomConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.ColumnValueRange;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.common.utils.request.ValueRangePruningUtils;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+/**
+ * Caches the column value ranges of the offline segments in the external view, read from the
+ * segment ZK metadata, to drop segments and servers that can not match a query before it is
+ * scattered.
+ *
+ * Segments uploaded before column ranges were recorded fall back to their time interval, which
+ * is used as the range of the table's time column when it is in the table's time unit.
+ */
+public class HelixExternalViewBasedSegmentPruningService implements SegmentPruningService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HelixExternalViewBasedSegmentPruningService.class);
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  // Table name -> segment name -> column name -> value range
+  private final Map<String, Map<String, Map<String, ColumnValueRange>>> _tableSegmentRangesMap =
+      new ConcurrentHashMap<String, Map<String, Map<String, ColumnValueRange>>>();
+
+  public HelixExternalViewBasedSegmentPruningService(ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  public void updateSegmentPruningService(ExternalView externalView) {
+    if (_propertyStore == null) {
+      return;
+    }
+    String tableName = externalView.getResourceName();
+    // Realtime segment ZK metadata has no column ranges.
+    if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+      return;
+    }
+
+    String timeColumn = null;
+    TimeUnit tableTimeUnit = null;
+    AbstractTableConfig offlineTableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+    if (isMessageBasedRefresh(offlineTableConfig)) {
+      // Refresh messages replace segments without an external view change, cached ranges could go stale.
+      LOGGER.info("Skipping segment pruning service for table '{}' with message based refresh", tableName);
+      _tableSegmentRangesMap.remove(tableName);
+      return;
+    }
+    if (offlineTableConfig != null) {
+      try {
+        timeColumn = offlineTableConfig.getValidationConfig().getTimeColumnName();
+        tableTimeUnit =
+            HelixExternalViewBasedTimeBoundaryService.getTimeUnitFromString(offlineTableConfig.getValidationConfig()
+                .getTimeType());
+      } catch (Exception e) {
+        LOGGER.warn("Not pruning on time interval for table '{}', invalid time type", tableName, e);
+        tableTimeUnit = null;
+      }
+    }
+
+    Set<String> segmentsServing = externalView.getPartitionSet();
+    List<OfflineSegmentZKMetadata> segmentZKMetadataList =
+        ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(_propertyStore, tableName);
+    Map<String, Map<String, ColumnValueRange>> segmentRangesMap =
+        new HashMap<String, Map<String, ColumnValueRange>>();
+    for (OfflineSegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+      if (!segmentsServing.contains(segmentZKMetadata.getSegmentName())) {
+        continue;
+      }
+      Map<String, ColumnValueRange> columnValueRanges = new HashMap<String, ColumnValueRange>();
+      if (segmentZKMetadata.getColumnValueRanges() != null) {
+        columnValueRanges.putAll(segmentZKMetadata.getColumnValueRanges());
+      }
+      if (timeColumn != null && tableTimeUnit != null && !columnValueRanges.containsKey(timeColumn)
+          && segmentZKMetadata.getTimeUnit() == tableTimeUnit && segmentZKMetadata.getStartTime() >= 0
+          && segmentZKMetadata.getEndTime() >= segmentZKMetadata.getStartTime()) {
+        ColumnValueRange timeRange = ColumnValueRange.create(DataType.LONG,
+            Long.toString(segmentZKMetadata.getStartTime()), Long.toString(segmentZKMetadata.getEndTime()));
+        columnValueRanges.put(timeColumn, timeRange);
+      }
+      if (!columnValueRanges.isEmpty()) {
+        segmentRangesMap.put(segmentZKMetadata.getSegmentName(), columnValueRanges);
+      }
+    }
+    _tableSegmentRangesMap.put(tableName, segmentRangesMap);
+    LOGGER.info("Updated segment pruning service for table '{}', {} of {} segments have value ranges", tableName,
+        segmentRangesMap.size(), segmentsServing.size());
+  }
+
+  private static boolean isMessageBasedRefresh(AbstractTableConfig tableConfig) {
+    if (tableConfig == null || tableConfig.getCustomConfigs() == null) {
+      return false;
+    }
+    Map<String, String> customConfigMap = tableConfig.getCustomConfigs().getCustomConfigs();
+    return customConfigMap != null
+        && Boolean.valueOf(customConfigMap.get(TableCustomConfig.MESSAGE_BASED_REFRESH_KEY));
+  }
+
+  @Override
+  public Map<ServerInstance, SegmentIdSet> pruneSegments(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices) {
+    Map<String, Map<String, ColumnValueRange>> segmentRangesMap =
+        _tableSegmentRangesMap.get(request.getQuerySource().getTableName());
+    if (segmentRangesMap == null || segmentRangesMap.isEmpty() || request.getFilterQuery() == null) {
+      return segmentServices;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(request);
+    if (filterQueryTree == null) {
+      return segmentServices;
+    }
+
+    Map<ServerInstance, SegmentIdSet> prunedSegmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+    SegmentId firstPrunedSegment = null;
+    ServerInstance firstPrunedServer = null;
+    for (Map.Entry<ServerInstance, SegmentIdSet> entry : segmentServices.entrySet()) {
+      SegmentIdSet remainingSegments = new SegmentIdSet();
+      for (SegmentId segmentId : entry.getValue().getSegments()) {
+        Map<String, ColumnValueRange> columnValueRanges = segmentRangesMap.get(segmentId.getSegmentId());
+        if (columnValueRanges != null
+            && ValueRangePruningUtils.isFilterOutOfRange(filterQueryTree, columnValueRanges)) {
+          if (firstPrunedSegment == null) {
+            firstPrunedSegment = segmentId;
+            firstPrunedServer = entry.getKey();
+          }
+          continue;
+        }
+        remainingSegments.addSegment(segmentId);
+      }
+      if (!remainingSegments.getSegments().isEmpty()) {
+        prunedSegmentServices.put(entry.getKey(), remainingSegments);
+      }
+    }
+
+    if (firstPrunedSegment == null) {
+      return segmentServices;
+    }
+    if (prunedSegmentServices.isEmpty()) {
+      SegmentIdSet remainingSegments = new SegmentIdSet();
+      remainingSegments.addSegment(firstPrunedSegment);
+      prunedSegmentServices.put(firstPrunedServer, remainingSegments);
+    }
+    return prunedSegmentServices;
+  }
+
+  @Override
+  public void remove(String tableName) {
+    _tableSegmentRangesMap.remove(tableName);
+  }
+}
@@ -15,9 +15,11 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -32,6 +34,23 @@ public interface RoutingTable {
    */
   public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request);
 
+  /**
+   * Return all the servers that can serve each segment of a table, used to pick another server for a speculative
+   * request.
+   *
+   * @return Segment to Servers map, or null if the replicas of the segments of the table are not known.
+   */
+  public Map<SegmentId, List<ServerInstance>> findSegmentReplicas(String tableName);
+
+  /**
+   * Return the version of the routing table of a table, which changes whenever the routing of the table changes or
+   * one of its segments is replaced in place. Versions are never reused, even across a table being dropped and
+   * recreated.
+   *
+   * @return The routing table version, or -1 if the table is unknown or its routing is not versioned.
+   */
+  public int getRoutingTableVersion(String tableName);
+
   /**
    * Initialize and start the Routing table population
    */
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+public interface SegmentPruningService {
+
+  /**
+   * Removes the segments that can not match the request from a routing table entry, servers left
+   * without segments are dropped. If every segment is pruned, a single segment is kept so that the
+   * query still returns a regular (empty) response.
+   *
+   * @param request broker request, with the physical table name as query source
+   * @param segmentServices routing for the request, not modified
+   * @return the pruned routing, or segmentServices itself if nothing was pruned
+   */
+  Map<ServerInstance, SegmentIdSet> pruneSegments(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices);
+
+  /**
+   * Remove a table from SegmentPruningService
+   * @param tableName
+   */
+  void remove(String tableName);
+}
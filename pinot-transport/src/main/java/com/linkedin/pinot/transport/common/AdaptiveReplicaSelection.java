@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+/**
+ * Selects the replica expected to answer first. Each server is scored by an exponentially weighted moving
+ * average (EWMA) of its response times, multiplied by the number of requests in flight to it. Two random
+ * candidates are compared for each selection (power of two choices), so that the load spreads over the fast
+ * servers instead of all going to the best one.
+ *
+ * The average decays while a server does not answer any request, so that a server which was slow gets tried
+ * again after a while.
+ */
+@ThreadSafe
+public class AdaptiveReplicaSelection extends ReplicaSelection {
+  public static final double DEFAULT_EWMA_ALPHA = 0.3;
+  public static final long DEFAULT_DECAY_TIME_MS = 10000L;
+  // A failed request says nothing about the latency of a server, it is counted as at least this slow
+  private static final long FAILED_REQUEST_MIN_LATENCY_MS = 1000L;
+
+  private final double _alpha;
+  private final long _decayTimeMs;
+  private final Random _random;
+  private final ConcurrentMap<ServerInstance, ServerStats> _serverStatsMap =
+      new ConcurrentHashMap<ServerInstance, ServerStats>();
+
+  public AdaptiveReplicaSelection() {
+    this(DEFAULT_EWMA_ALPHA, DEFAULT_DECAY_TIME_MS, new Random());
+  }
+
+  /**
+   * @param alpha Weight (0-1] of the latest response time in the moving average
+   * @param decayTimeMs Time for the average of a server without responses to decay by a factor of e
+   * @param random Picks the candidates of each selection
+   */
+  public AdaptiveReplicaSelection(double alpha, long decayTimeMs, Random random) {
+    if (alpha <= 0 || alpha > 1 || decayTimeMs <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid EWMA alpha " + alpha + " or decay time " + decayTimeMs + " for the adaptive replica selection");
+    }
+    _alpha = alpha;
+    _decayTimeMs = decayTimeMs;
+    _random = random;
+  }
+
+  @Override
+  public void reset(SegmentId p) {
+    // Nothing to be done here, the stats are kept per server
+  }
+
+  @Override
+  public void reset(SegmentIdSet p) {
+    // Nothing to be done here, the stats are kept per server
+  }
+
+  @Override
+  public ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object hashKey) {
+    int size = orderedServers.size();
+    if (size <= 0) {
+      return null;
+    }
+    if (size == 1) {
+      return orderedServers.get(0);
+    }
+
+    int first = _random.nextInt(size);
+    int second = _random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    ServerInstance firstServer = orderedServers.get(first);
+    ServerInstance secondServer = orderedServers.get(second);
+    long now = System.currentTimeMillis();
+    return getScore(firstServer, now) <= getScore(secondServer, now) ? firstServer : secondServer;
+  }
+
+  @Override
+  public boolean selectsAmongReplicas() {
+    return true;
+  }
+
+  @Override
+  public void onRequestSent(ServerInstance server) {
+    getServerStats(server).requestSent();
+  }
+
+  @Override
+  public void onResponse(ServerInstance server, long latencyMs, boolean failed) {
+    getServerStats(server).responseReceived(latencyMs, failed, System.currentTimeMillis());
+  }
+
+  /**
+   * Return the score of the server, lower is better.
+   */
+  double getScore(ServerInstance server, long now) {
+    ServerStats serverStats = _serverStatsMap.get(server);
+    if (serverStats == null) {
+      return 1;
+    }
+    return serverStats.getScore(now);
+  }
+
+  private ServerStats getServerStats(ServerInstance server) {
+    ServerStats serverStats = _serverStatsMap.get(server);
+    if (serverStats == null) {
+      ServerStats newServerStats = new ServerStats();
+      serverStats = _serverStatsMap.putIfAbsent(server, newServerStats);
+      if (serverStats == null) {
+        serverStats = newServerStats;
+      }
+    }
+    return serverStats;
+  }
+
+  private class ServerStats {
+    private double _ewmaLatencyMs = 0;
+    private long _lastResponseTimeMs = 0;
+    private int _numInFlightRequests = 0;
+
+    private synchronized void requestSent() {
+      _numInFlightRequests++;
+    }
+
+    private synchronized void responseReceived(long latencyMs, boolean failed, long now) {
+      if (_numInFlightRequests > 0) {
+        _numInFlightRequests--;
+      }
+      double ewmaLatencyMs = getDecayedLatencyMs(now);
+      double sampleMs = latencyMs;
+      if (failed) {
+        sampleMs = Math.max(Math.max(latencyMs, FAILED_REQUEST_MIN_LATENCY_MS), 2 * ewmaLatencyMs);
+      } else if (latencyMs < 0) {
+        return;
+      }
+      if (_lastResponseTimeMs == 0) {
+        _ewmaLatencyMs = sampleMs;
+      } else {
+        _ewmaLatencyMs = ewmaLatencyMs + _alpha * (sampleMs - ewmaLatencyMs);
+      }
+      _lastResponseTimeMs = now;
+    }
+
+    private synchronized double getScore(long now) {
+      return (getDecayedLatencyMs(now) + 1) * (_numInFlightRequests + 1);
+    }
+
+    private double getDecayedLatencyMs(long now) {
+      if (_lastResponseTimeMs == 0) {
+        return 0;
+      }
+      return _ewmaLatencyMs * Math.exp(-(double) Math.max(0, now - _lastResponseTimeMs) / _decayTimeMs);
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.transport.common;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,8 +24,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +45,7 @@ import org.slf4j.LoggerFactory;
  * on them.
  *
  * This future's value will be a map of each future's key and the corresponding underlying future's value.
+ * Alternatively, the responses can be taken one by one with takeResponse() as the underlying futures complete.
  *
  * @param <K> Key to locate the specific future's value
  * @param <V> Value type of the underlying future
@@ -63,6 +67,16 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
 
   private final ConcurrentMap<String, Long> _responseTimeMap = new ConcurrentHashMap<>(10);
 
+  // Responses not taken yet, followed by _endOfResponses once this future is done
+  private final LinkedBlockingQueue<Map.Entry<K, V>> _pendingResponses = new LinkedBlockingQueue<Map.Entry<K, V>>();
+  private final Map.Entry<K, V> _endOfResponses = new AbstractMap.SimpleImmutableEntry<K, V>(null, null);
+
+  // Notified of every entry added to _pendingResponses. Guarded by _pendingResponses.
+  private Runnable _responseListener;
+  // Set once takeResponse() reached _endOfResponses, later responses are released right away. Guarded by
+  // _pendingResponses.
+  private boolean _isDrained = false;
+
   // Exception in case of error
   private final ConcurrentMap<K, Throwable> _errorMap;
 
@@ -99,6 +113,17 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     } else {
       _latch = new CountDownLatch(0);
     }
+    if (_futures.isEmpty()) {
+      addPendingResponse(_endOfResponses);
+    } else {
+      // Runs after the last response is queued, or when the future is cancelled or fails
+      addListener(new Runnable() {
+        @Override
+        public void run() {
+          addPendingResponse(_endOfResponses);
+        }
+      }, null);
+    }
     for (KeyedFuture<K, V> entry : _futures) {
       if (null != entry) {
         addResponseFutureListener(entry);
@@ -174,6 +199,71 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     return _delayedResponseMap;
   }
 
+  /**
+   * Waits for the next response of an underlying future and hands it over to the caller, so that responses can be
+   * processed while the other ones are still outstanding. A response that is taken is removed from the map returned
+   * by get(). Errors are not returned here and can be looked up with getError().
+   *
+   * A response gathered after this future is done, like one racing with the first error in SHORTCIRCUIT_AND mode,
+   * is never returned. Once the end of the responses is reached, such responses are released if they are reference
+   * counted, as nobody else will.
+   *
+   * @return the next response keyed by its future's key, or null once this future is done and every response
+   *         gathered has been taken
+   */
+  public Map.Entry<K, V> takeResponse() throws InterruptedException {
+    Map.Entry<K, V> response = _pendingResponses.take();
+    if (response == _endOfResponses) {
+      synchronized (_pendingResponses) {
+        _isDrained = true;
+        Map.Entry<K, V> lateResponse;
+        while ((lateResponse = _pendingResponses.poll()) != null) {
+          releaseLateResponse(lateResponse);
+        }
+        _pendingResponses.add(_endOfResponses);
+      }
+      return null;
+    }
+    _delayedResponseMap.remove(response.getKey());
+    return response;
+  }
+
+  /**
+   * Sets a listener that is run, in the thread completing the underlying future, each time a response becomes ready
+   * to be taken with takeResponse(), and once more when this future is done. It is also run right away for every
+   * response gathered before it is set, so each run matches one call to takeResponse() that does not block.
+   */
+  public void setResponseListener(Runnable listener) {
+    synchronized (_pendingResponses) {
+      _responseListener = listener;
+      for (int i = 0; i < _pendingResponses.size(); i++) {
+        listener.run();
+      }
+    }
+  }
+
+  private void addPendingResponse(Map.Entry<K, V> response) {
+    synchronized (_pendingResponses) {
+      if (_isDrained) {
+        releaseLateResponse(response);
+        return;
+      }
+      _pendingResponses.add(response);
+      if (_responseListener != null) {
+        _responseListener.run();
+      }
+    }
+  }
+
+  private void releaseLateResponse(Map.Entry<K, V> response) {
+    if (response == _endOfResponses) {
+      return;
+    }
+    LOGGER.debug("Releasing response for {} gathered after the end of {}", response.getKey(), _name);
+    _delayedResponseMap.remove(response.getKey());
+    ReferenceCountUtil.release(response.getValue());
+  }
+
   /**
    * This method must be called after the 'get' is called, so that all response times are recorded.
    * For now, this method has not been added to the interface.
@@ -189,6 +279,9 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     if (null != response) {
       LOGGER.debug("Response from {} is {}", name, response);
       _delayedResponseMap.putAll(response);
+      for (Map.Entry<K, V> entry : response.entrySet()) {
+        addPendingResponse(new AbstractMap.SimpleImmutableEntry<K, V>(entry));
+      }
     } else if (null != error) {
       LOGGER.debug("Error from {} is : {}", name, error);
       _errorMap.putAll(error);
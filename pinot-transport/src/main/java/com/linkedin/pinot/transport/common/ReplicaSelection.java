@@ -85,4 +85,30 @@ public abstract class ReplicaSelection {
    */
   public abstract ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object hashKey);
 
+  /**
+   * Whether servers should be selected among all the replicas of the segments. By default the selection is
+   * done among the servers the routing table already assigned to each segment-set.
+   */
+  public boolean selectsAmongReplicas() {
+    return false;
+  }
+
+  /**
+   * This is a notification by the scatter-gather that a request has been sent to the server.
+   * @param server Server the request was sent to
+   */
+  public void onRequestSent(ServerInstance server) {
+    // Nothing to be done by default
+  }
+
+  /**
+   * This is a notification by the scatter-gather that a request sent to the server has completed, or
+   * has been cancelled.
+   * @param server Server the request was sent to
+   * @param latencyMs Time between sending the request and its completion, -1 if it was never sent
+   * @param failed Whether the request failed
+   */
+  public void onResponse(ServerInstance server, long latencyMs, boolean failed) {
+    // Nothing to be done by default
+  }
 }
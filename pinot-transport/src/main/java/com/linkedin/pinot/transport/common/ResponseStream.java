@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+/**
+ * Gathers the responses of several composite futures as one stream, in the order they come in no matter which future
+ * they belong to. This lets a request that is scattered more than once, like the offline and realtime halves of a
+ * hybrid query, handle the responses of each half while the other half is still running instead of waiting on the
+ * futures one after the other.
+ *
+ * Responses taken from the stream are taken from their future, see {@link CompositeFuture#takeResponse()}. The stream
+ * is meant to be consumed by a single thread.
+ *
+ * @param <K> Key to locate the specific future's value
+ * @param <V> Value type of the underlying futures
+ */
+public class ResponseStream<K, V> {
+  // One entry per response ready to be taken from the future, and one when the future is done
+  private final LinkedBlockingQueue<CompositeFuture<K, V>> _readyFutures =
+      new LinkedBlockingQueue<CompositeFuture<K, V>>();
+  private final Set<CompositeFuture<K, V>> _doneFutures = new HashSet<CompositeFuture<K, V>>();
+  private int _numFutures = 0;
+
+  /**
+   * Add a composite future whose responses have not been taken yet to the stream.
+   */
+  public void add(final CompositeFuture<K, V> future) {
+    _numFutures++;
+    future.setResponseListener(new Runnable() {
+      @Override
+      public void run() {
+        _readyFutures.add(future);
+      }
+    });
+  }
+
+  /**
+   * Waits for the next response of any of the futures of the stream.
+   *
+   * @return the next response, or null once every future is done and all their responses have been taken
+   */
+  public Response<K, V> take() throws InterruptedException {
+    while (_doneFutures.size() < _numFutures) {
+      CompositeFuture<K, V> future = _readyFutures.take();
+      if (_doneFutures.contains(future)) {
+        // Response gathered after its future completed, it is not handed over by the future either
+        continue;
+      }
+      Map.Entry<K, V> response = future.takeResponse();
+      if (response != null) {
+        return new Response<K, V>(future, response.getKey(), response.getValue());
+      }
+      _doneFutures.add(future);
+    }
+    return null;
+  }
+
+  /**
+   * A response of one of the futures of the stream.
+   */
+  public static class Response<K, V> {
+    private final CompositeFuture<K, V> _future;
+    private final K _key;
+    private final V _value;
+
+    public Response(CompositeFuture<K, V> future, K key, V value) {
+      _future = future;
+      _key = key;
+      _value = value;
+    }
+
+    /**
+     * @return the composite future the response was gathered by
+     */
+    public CompositeFuture<K, V> getFuture() {
+      return _future;
+    }
+
+    public K getKey() {
+      return _key;
+    }
+
+    public V getValue() {
+      return _value;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+/**
+ * Keeps a window of the most recent response latencies of each server, so that percentiles of the
+ * recent latency of a server can be looked up when deciding whether a request to it is late.
+ */
+@ThreadSafe
+public class ServerLatencyTracker {
+  public static final int DEFAULT_WINDOW_SIZE = 256;
+  public static final int DEFAULT_MIN_SAMPLES = 16;
+
+  private final int _windowSize;
+  private final int _minSamples;
+  private final ConcurrentMap<ServerInstance, LatencyWindow> _latencyWindows =
+      new ConcurrentHashMap<ServerInstance, LatencyWindow>();
+
+  public ServerLatencyTracker() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_SAMPLES);
+  }
+
+  /**
+   * @param windowSize Number of most recent latencies kept per server
+   * @param minSamples Number of latencies a server needs before percentiles are reported for it
+   */
+  public ServerLatencyTracker(int windowSize, int minSamples) {
+    if (windowSize <= 0 || minSamples <= 0 || minSamples > windowSize) {
+      throw new IllegalArgumentException(
+          "Invalid window size " + windowSize + " or min samples " + minSamples + " for the latency tracker");
+    }
+    _windowSize = windowSize;
+    _minSamples = minSamples;
+  }
+
+  public void recordLatency(ServerInstance server, long latencyMs) {
+    LatencyWindow window = _latencyWindows.get(server);
+    if (window == null) {
+      LatencyWindow newWindow = new LatencyWindow(_windowSize);
+      window = _latencyWindows.putIfAbsent(server, newWindow);
+      if (window == null) {
+        window = newWindow;
+      }
+    }
+    window.add(latencyMs);
+  }
+
+  /**
+   * Return the given percentile (0-100] of the recent latencies of the server, or -1 if not enough latencies
+   * have been recorded for the server yet.
+   */
+  public long getLatencyPercentile(ServerInstance server, double percentile) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid latency percentile " + percentile);
+    }
+    LatencyWindow window = _latencyWindows.get(server);
+    if (window == null) {
+      return -1L;
+    }
+    return window.getPercentile(percentile, _minSamples);
+  }
+
+  private static class LatencyWindow {
+    private final long[] _latencies;
+    private int _next = 0;
+    private int _count = 0;
+
+    private LatencyWindow(int size) {
+      _latencies = new long[size];
+    }
+
+    private synchronized void add(long latencyMs) {
+      _latencies[_next] = latencyMs;
+      _next = (_next + 1) % _latencies.length;
+      if (_count < _latencies.length) {
+        _count++;
+      }
+    }
+
+    private long getPercentile(double percentile, int minSamples) {
+      long[] latencies;
+      synchronized (this) {
+        if (_count < minSamples) {
+          return -1L;
+        }
+        latencies = Arrays.copyOf(_latencies, _count);
+      }
+      Arrays.sort(latencies);
+      int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+      return latencies[Math.max(0, index)];
+    }
+  }
+}
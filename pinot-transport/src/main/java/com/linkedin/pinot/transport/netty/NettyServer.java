@@ -28,6 +28,10 @@ import io.netty.channel.nio.NioEventLoopGroup;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,24 +58,26 @@ public abstract class NettyServer implements Runnable {
 
   /**
    * The request handler callback which processes the incoming request.
-   * This method is executed by the Netty worker thread.
+   * This method is executed by the Netty worker thread, so implementations should hand off
+   * any expensive processing to their own threads and return a future for the response.
    */
   public static interface RequestHandler {
     /**
      * Callback for Servers to process the request and return the response.
      * The ownership of the request bytebuf resides with the caler (NettyServer).
      * This callback is not expected to call {@link ByteBuf#release()} on request
-     * The ownership of the request byteBuf lies with the caller.
+     * The ownership of the request byteBuf lies with the caller, and the request is released
+     * as soon as this method returns, so it must be fully read before returning.
      *
      * The implementation MUST not throw any runtime exceptions. In case of errors,
      * the implementation is expected to construct and return an error response.
-     * If the implementation throws runtime exceptions, then the underlying connection
-     * will be terminated.
+     * If the implementation throws runtime exceptions or the returned future fails, then the
+     * underlying connection will be terminated.
      *
      * @param request Serialized request
-     * @return Serialized response
+     * @return Future for the serialized response. The response is written to the channel once it completes.
      */
-    public byte[] processRequest(ByteBuf request);
+    public ListenableFuture<byte[]> processRequest(ByteBuf request);
   }
 
   public static interface RequestHandlerFactory {
@@ -206,7 +212,7 @@ public abstract class NettyServer implements Runnable {
     private State _state = State.INIT;
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) {
       _requestStartTime = System.currentTimeMillis();
       LOGGER.debug("Request received by server !!");
       _state = State.REQUEST_RECEIVED;
@@ -215,16 +221,35 @@ public abstract class NettyServer implements Runnable {
 
       //Call processing handler
       _lastProcessingLatency = MetricsHelper.startTimer();
-      byte[] response = _handler.processRequest(request);
-      _lastProcessingLatency.stop();
+      ListenableFuture<byte[]> responseFuture;
+      try {
+        responseFuture = _handler.processRequest(request);
+      } finally {
+        request.release();
+      }
 
-      // Send Response
+      // Send Response once processing completes. This may happen on a thread other than the Netty worker.
+      Futures.addCallback(responseFuture, new FutureCallback<byte[]>() {
+        @Override
+        public void onSuccess(byte[] response) {
+          sendResponse(ctx, response);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          exceptionCaught(ctx, t);
+        }
+      });
+    }
+
+    private void sendResponse(ChannelHandlerContext ctx, byte[] response) {
+      _lastProcessingLatency.stop();
+      _lastResponseSizeInBytes = response.length;
       ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
       _lastSendResponseLatency = MetricsHelper.startTimer();
       ChannelFuture f = ctx.writeAndFlush(responseBuf);
       _state = State.RESPONSE_WRITTEN;
       f.addListener(this);
-      request.release();
     }
 
     @Override
@@ -23,6 +23,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.Cancellable;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
@@ -84,6 +85,7 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
   private volatile long _lastRequestTimeoutMS;
   private volatile long _lastRequestId;
   private volatile Throwable _lastError;
+  private volatile boolean _lastRequestCancelled;
   private volatile boolean _selfClose = false;
 
   // COnnection Id generator
@@ -176,10 +178,14 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     _lastSendRequestLatency = MetricsHelper.startTimer();
     _lastResponseLatency = MetricsHelper.startTimer();
 
-    _outstandingFuture.set(new ResponseFuture(_server, "Response Future for request " + requestId + " to server " + _server));
+    ResponseFuture responseFuture =
+        new ResponseFuture(_server, "Response Future for request " + requestId + " to server " + _server);
+    responseFuture.setCancellable(new RequestCancellable());
+    _outstandingFuture.set(responseFuture);
     _lastRequestTimeoutMS = timeoutMS;
     _lastRequestId = requestId;
     _lastError = null;
+    _lastRequestCancelled = false;
 
     /**
      * Start the timer before sending the request.
@@ -282,6 +288,13 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
       cancelLastRequestTimeout();
 
       ByteBuf result = (ByteBuf) msg;
+      if (_lastRequestCancelled) {
+        // The channel is being closed, which discards the connection once it is inactive. Leave the state as it
+        // is so that the close is handled like any other channel error.
+        LOGGER.debug("Dropping response to cancelled request {} from server {}", _lastRequestId, _server);
+        result.release();
+        return;
+      }
       //checkTransition(State.GOT_RESPONSE);
       _lastResponseSizeInBytes = result.readableBytes();
       _lastResponseLatency.stop();
@@ -394,6 +407,21 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     }
   }
 
+  /**
+   * Cancels the outstanding request. The server answers on the channel whether or not the request is
+   * cancelled, so the channel is closed to drop the response instead of holding on to the connection
+   * until it arrives. The connection is then discarded from the pool.
+   */
+  private class RequestCancellable implements Cancellable {
+    @Override
+    public boolean cancel() {
+      LOGGER.info("Cancelling request {} to server {}, closing the channel", _lastRequestId, _server);
+      _lastRequestCancelled = true;
+      _channel.close();
+      return true;
+    }
+  }
+
   /**
    * Timer task responsible for closing the connection on timeout
    *
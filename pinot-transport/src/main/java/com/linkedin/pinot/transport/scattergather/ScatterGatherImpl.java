@@ -21,11 +21,17 @@ import io.netty.buffer.Unpooled;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,6 +44,7 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.BucketingSelection;
+import com.linkedin.pinot.transport.common.Cancellable;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
 import com.linkedin.pinot.transport.common.KeyedFuture;
@@ -45,6 +52,7 @@ import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
 import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.common.ServerLatencyTracker;
 import com.linkedin.pinot.transport.netty.NettyClientConnection;
 import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
 import com.linkedin.pinot.transport.pool.KeyedPool;
@@ -71,9 +79,38 @@ public class ScatterGatherImpl implements ScatterGather {
    */
   private final KeyedPool<ServerInstance, NettyClientConnection> _connPool;
 
+  /**
+   * Recent response latencies of the servers, used to decide when a server is late
+   */
+  private final ServerLatencyTracker _latencyTracker = new ServerLatencyTracker();
+
+  // Schedules speculative requests, null if they are never sent
+  private final ScheduledExecutorService _hedgeScheduler;
+  private final double _hedgeLatencyPercentile;
+  private final long _minHedgeDelayMs;
+  private final Random _random = new Random();
+
   public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service) {
+    this(pool, service, null, 0, 0);
+  }
+
+  /**
+   * @param hedgeScheduler Schedules speculative requests to other servers, null to never send any
+   * @param hedgeLatencyPercentile Percentile (0-100] of the recent latencies of a server after which a speculative
+   *                               request is sent to another server hosting the same segments
+   * @param minHedgeDelayMs Minimum time to wait for a server before sending a speculative request
+   */
+  public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service,
+      ScheduledExecutorService hedgeScheduler, double hedgeLatencyPercentile, long minHedgeDelayMs) {
+    if (hedgeScheduler != null && (hedgeLatencyPercentile <= 0 || hedgeLatencyPercentile > 100)) {
+      throw new IllegalArgumentException("Invalid latency percentile " + hedgeLatencyPercentile
+          + " for speculative requests");
+    }
     _connPool = pool;
     _executorService = service;
+    _hedgeScheduler = hedgeScheduler;
+    _hedgeLatencyPercentile = hedgeLatencyPercentile;
+    _minHedgeDelayMs = minHedgeDelayMs;
   }
 
   @Override
@@ -139,7 +176,8 @@ public class ScatterGatherImpl implements ScatterGather {
       List<KeyedFuture<ServerInstance, ByteBuf>> responseFutures =
           new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
       for (SingleRequestHandler h : handlers) {
-        responseFutures.add(h.getResponseFuture());
+        trackResponse(ctxt, h.getServer(), h.getResponseFuture());
+        responseFutures.add(hedgeIfLate(ctxt, h, scatterGatherStats));
         final String server = h.getServer().toString();
         scatterGatherStats.setSendStartTimeMillis(server, h.getConnStartTimeMillis());
         scatterGatherStats.setConnStartTimeMillis(server, h.getStartDelayMillis());
@@ -163,6 +201,94 @@ public class ScatterGatherImpl implements ScatterGather {
     return response;
   }
 
+  /**
+   * Records the latency of the response of a server once it arrives, and notifies the replica selection of the
+   * request and its response. Cancelled requests are recorded with the time until they were cancelled, a lower bound
+   * of their latency, so that servers losing to speculative requests do not look faster than they are.
+   */
+  private void trackResponse(ScatterGatherRequestContext ctxt, final ServerInstance server,
+      final ResponseFuture responseFuture) {
+    final ReplicaSelection selection = ctxt.getRequest().getReplicaSelection();
+    if (selection != null) {
+      selection.onRequestSent(server);
+    }
+    responseFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        long latencyMs = responseFuture.getDurationMillis();
+        boolean failed = responseFuture.getError() != null;
+        if (!failed && latencyMs >= 0) {
+          _latencyTracker.recordLatency(server, latencyMs);
+        }
+        if (selection != null) {
+          selection.onResponse(server, latencyMs, failed);
+        }
+      }
+    }, null);
+  }
+
+  /**
+   * Returns the future of the request sent by the handler, or a future which also sends the request to another server
+   * hosting all of its segments if the server has not answered within the configured percentile of its recent
+   * latencies.
+   */
+  private ResponseFuture hedgeIfLate(ScatterGatherRequestContext ctxt, SingleRequestHandler handler,
+      ScatterGatherStats scatterGatherStats) {
+    ResponseFuture responseFuture = handler.getResponseFuture();
+    ScatterGatherRequest request = ctxt.getRequest();
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = request.getSegmentReplicas();
+    if (_hedgeScheduler == null || request.getNumSpeculativeRequests() <= 0 || segmentReplicas == null
+        || !handler.isSent() || responseFuture.isDone()) {
+      return responseFuture;
+    }
+
+    // Not enough latencies are known for the server until it has answered a few requests
+    long latencyMs = _latencyTracker.getLatencyPercentile(handler.getServer(), _hedgeLatencyPercentile);
+    if (latencyMs < 0) {
+      return responseFuture;
+    }
+    long delayMs = Math.max(latencyMs, _minHedgeDelayMs);
+    if (delayMs >= ctxt.getTimeRemaining()) {
+      return responseFuture;
+    }
+
+    ServerInstance hedgeServer = selectHedgeServer(handler.getServer(), handler.getSegmentIds(), segmentReplicas);
+    if (hedgeServer == null) {
+      return responseFuture;
+    }
+    HedgedResponseFuture hedgedResponseFuture =
+        new HedgedResponseFuture(ctxt, handler, hedgeServer, scatterGatherStats);
+    hedgedResponseFuture.start(delayMs);
+    return hedgedResponseFuture;
+  }
+
+  /**
+   * Picks a server other than the given one hosting all the segments, or null if there is none.
+   */
+  private ServerInstance selectHedgeServer(ServerInstance server, SegmentIdSet segmentIds,
+      Map<SegmentId, List<ServerInstance>> segmentReplicas) {
+    List<ServerInstance> candidates = null;
+    for (SegmentId segmentId : segmentIds.getSegments()) {
+      List<ServerInstance> replicas = segmentReplicas.get(segmentId);
+      if (replicas == null) {
+        return null;
+      }
+      if (candidates == null) {
+        candidates = new ArrayList<ServerInstance>(replicas);
+        candidates.remove(server);
+      } else {
+        candidates.retainAll(replicas);
+      }
+      if (candidates.isEmpty()) {
+        return null;
+      }
+    }
+    if (candidates == null) {
+      return null;
+    }
+    return candidates.get(_random.nextInt(candidates.size()));
+  }
+
   /**
    * Merge segment-sets which have the same set of servers. If 2 segmentIds have overlapping
    * set of servers, they are not merged. If there is predefined-selection for a segmentId,
@@ -177,10 +303,41 @@ public class ScatterGatherImpl implements ScatterGather {
 
     BucketingSelection sel = request.getPredefinedSelection();
 
+    // Segments are grouped by their replicas if the selection picks among them, instead of the routed server
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = null;
+    if (request.getReplicaSelection() != null && request.getReplicaSelection().selectsAmongReplicas()) {
+      segmentReplicas = request.getSegmentReplicas();
+    }
+
+    // Routed servers the segments of each replica group come from, so that the group can be fanned out as widely
+    Map<List<ServerInstance>, Set<ServerInstance>> routedServersMap = new HashMap<List<ServerInstance>, Set<ServerInstance>>();
+
     for (ServerInstance serverInstance : segmentIdToInstanceMap.keySet()) {
-      instanceToSegmentMap.put(Arrays.asList(serverInstance), segmentIdToInstanceMap.get(serverInstance));
+      if (segmentReplicas == null) {
+        instanceToSegmentMap.put(Arrays.asList(serverInstance), segmentIdToInstanceMap.get(serverInstance));
+        continue;
+      }
+      for (SegmentId segmentId : segmentIdToInstanceMap.get(serverInstance).getSegments()) {
+        List<ServerInstance> replicas = segmentReplicas.get(segmentId);
+        if (replicas == null || replicas.isEmpty()) {
+          replicas = Arrays.asList(serverInstance);
+        }
+        mergePartitionGroup(instanceToSegmentMap, replicas, segmentId);
+        Set<ServerInstance> routedServers = routedServersMap.get(replicas);
+        if (routedServers == null) {
+          routedServers = new HashSet<ServerInstance>();
+          routedServersMap.put(replicas, routedServers);
+        }
+        routedServers.add(serverInstance);
+      }
     }
     requestContext.setInvertedMap(instanceToSegmentMap);
+
+    Map<List<ServerInstance>, Integer> fanOutMap = new HashMap<List<ServerInstance>, Integer>();
+    for (Entry<List<ServerInstance>, Set<ServerInstance>> e : routedServersMap.entrySet()) {
+      fanOutMap.put(e.getKey(), Math.min(e.getValue().size(), e.getKey().size()));
+    }
+    requestContext.setFanOutMap(fanOutMap);
   }
 
   private <T> void mergePartitionGroup(Map<T, SegmentIdSet> instanceToSegmentMap, T instances, SegmentIdSet pg) {
@@ -226,6 +383,11 @@ public class ScatterGatherImpl implements ScatterGather {
     //int numDuplicateRequests = request.getNumSpeculativeRequests();
     ReplicaSelection selection = request.getReplicaSelection();
     for (Entry<List<ServerInstance>, SegmentIdSet> e : instanceToSegmentMap.entrySet()) {
+      int fanOut = requestContext.getFanOut(e.getKey());
+      if (fanOut > 1) {
+        selectDistinctServers(selectedServers, selection, e.getKey(), e.getValue(), fanOut, request.getHashKey());
+        continue;
+      }
       ServerInstance s = selection.selectServer(e.getValue().getOneSegment(), e.getKey(), request.getHashKey());
       mergePartitionGroup(selectedServers, s, e.getValue());
 
@@ -256,6 +418,34 @@ public class ScatterGatherImpl implements ScatterGather {
     requestContext.setSelectedServers(selectedServers);
   }
 
+  /**
+   * Splits the segment-set into fanOut parts and selects a different replica for each one, so that a group of
+   * segments sharing the same replicas is queried on as many servers as the routing table spread it over.
+   */
+  private void selectDistinctServers(Map<ServerInstance, SegmentIdSet> selectedServers, ReplicaSelection selection,
+      List<ServerInstance> replicas, SegmentIdSet segmentIdSet, int fanOut, Object hashKey) {
+    List<SegmentIdSet> parts = new ArrayList<SegmentIdSet>(fanOut);
+    for (int i = 0; i < fanOut; i++) {
+      parts.add(new SegmentIdSet());
+    }
+    int i = 0;
+    for (SegmentId segmentId : segmentIdSet.getSegments()) {
+      parts.get(i++ % fanOut).addSegment(segmentId);
+    }
+
+    List<ServerInstance> candidates = new ArrayList<ServerInstance>(replicas);
+    for (SegmentIdSet part : parts) {
+      if (part.getSegments().isEmpty()) {
+        continue;
+      }
+      ServerInstance s = selection.selectServer(part.getOneSegment(), candidates, hashKey);
+      mergePartitionGroup(selectedServers, s, part);
+      if (candidates.size() > 1) {
+        candidates.remove(s);
+      }
+    }
+  }
+
   /**
    * For each segmentId in the instanceToSegmentMap, we select one (or more speculative) servers
    *
@@ -294,6 +484,9 @@ public class ScatterGatherImpl implements ScatterGather {
 
     private Map<ServerInstance, SegmentIdSet> _selectedServers;
 
+    // Number of distinct servers to spread each replica group over, when segments are grouped by replicas
+    private Map<List<ServerInstance>, Integer> _fanOutMap;
+
     protected ScatterGatherRequestContext(ScatterGatherRequest request) {
       _request = request;
       _startTimeMs = System.currentTimeMillis();
@@ -311,6 +504,18 @@ public class ScatterGatherImpl implements ScatterGather {
       return _request;
     }
 
+    public int getFanOut(List<ServerInstance> replicas) {
+      if (_fanOutMap == null) {
+        return 1;
+      }
+      Integer fanOut = _fanOutMap.get(replicas);
+      return fanOut == null ? 1 : fanOut;
+    }
+
+    public void setFanOutMap(Map<List<ServerInstance>, Integer> fanOutMap) {
+      _fanOutMap = fanOutMap;
+    }
+
     public Map<ServerInstance, SegmentIdSet> getSelectedServers() {
       return _selectedServers;
     }
@@ -498,6 +703,10 @@ public class ScatterGatherImpl implements ScatterGather {
       return _server;
     }
 
+    public SegmentIdSet getSegmentIds() {
+      return _segmentIds;
+    }
+
     public ResponseFuture getResponseFuture() {
       return _responseFuture;
     }
@@ -507,10 +716,196 @@ public class ScatterGatherImpl implements ScatterGather {
     }
   }
 
+  /**
+   * Future for a request which is sent again to another server if the first server has not answered after a delay.
+   * It completes with whichever response arrives first, under the key of the first server so that it is gathered
+   * like any other response, and cancels the other request. It only fails once both requests have failed.
+   */
+  class HedgedResponseFuture extends ResponseFuture {
+    private final ScatterGatherRequestContext _ctxt;
+    private final SingleRequestHandler _primaryHandler;
+    private final ServerInstance _hedgeServer;
+    private final ScatterGatherStats _scatterGatherStats;
+
+    // Guarded by this
+    private ScheduledFuture<?> _scheduledHedge;
+    private boolean _hedgeStarted = false;
+    private ResponseFuture _hedgeFuture;
+    private boolean _primaryFailed = false;
+    private boolean _hedgeFailed = false;
+    private boolean _completed = false;
+
+    HedgedResponseFuture(ScatterGatherRequestContext ctxt, SingleRequestHandler primaryHandler,
+        ServerInstance hedgeServer, ScatterGatherStats scatterGatherStats) {
+      super(primaryHandler.getServer(), "Hedged response future for request " + ctxt.getRequest().getRequestId()
+          + " to servers " + primaryHandler.getServer() + " and " + hedgeServer);
+      _ctxt = ctxt;
+      _primaryHandler = primaryHandler;
+      _hedgeServer = hedgeServer;
+      _scatterGatherStats = scatterGatherStats;
+
+      // Cancelling the requests takes the locks of their futures, which is done asynchronously as the lock of this
+      // future is held here and the listeners of the requests take it when completing this future.
+      setCancellable(new Cancellable() {
+        @Override
+        public boolean cancel() {
+          _executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+              cancelRequests();
+            }
+          });
+          return true;
+        }
+      });
+    }
+
+    private void start(long delayMs) {
+      synchronized (this) {
+        _scheduledHedge = _hedgeScheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            // Checking out a connection may block, so it is not done on the scheduler
+            _executorService.execute(new Runnable() {
+              @Override
+              public void run() {
+                sendHedgedRequest();
+              }
+            });
+          }
+        }, delayMs, TimeUnit.MILLISECONDS);
+      }
+
+      final ResponseFuture primaryFuture = _primaryHandler.getResponseFuture();
+      primaryFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onResponse(primaryFuture, false);
+        }
+      }, null);
+    }
+
+    private void sendHedgedRequest() {
+      long timeRemaining = _ctxt.getTimeRemaining();
+      synchronized (this) {
+        if (_completed || timeRemaining <= 0) {
+          return;
+        }
+        _hedgeStarted = true;
+      }
+
+      LOGGER.debug("Sending speculative request {} to server {} as server {} has not answered yet",
+          _ctxt.getRequest().getRequestId(), _hedgeServer, _primaryHandler.getServer());
+      SingleRequestHandler hedgeHandler =
+          new SingleRequestHandler(_connPool, _hedgeServer, _ctxt.getRequest(), _primaryHandler.getSegmentIds(),
+              timeRemaining, new CountDownLatch(1));
+      hedgeHandler.run();
+      if (hedgeHandler.isSent()) {
+        _scatterGatherStats.incrementHedgedRequestsSent();
+      }
+
+      final ResponseFuture hedgeFuture = hedgeHandler.getResponseFuture();
+      boolean completed;
+      synchronized (this) {
+        _hedgeFuture = hedgeFuture;
+        completed = _completed;
+      }
+      if (completed) {
+        hedgeFuture.cancel(true);
+        return;
+      }
+      trackResponse(_ctxt, _hedgeServer, hedgeFuture);
+      hedgeFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onResponse(hedgeFuture, true);
+        }
+      }, null);
+    }
+
+    void onResponse(ResponseFuture future, boolean isHedge) {
+      ByteBuf response = null;
+      Throwable error = null;
+      try {
+        response = future.getOne();
+      } catch (Exception e) {
+        // Not expected as the future is done
+        error = e;
+      }
+      if (response == null && error == null) {
+        Map<ServerInstance, Throwable> errors = future.getError();
+        if (errors != null && !errors.isEmpty()) {
+          error = errors.values().iterator().next();
+        } else {
+          error = new CancellationException("Request to server " + future.getName() + " was cancelled");
+        }
+      }
+
+      synchronized (this) {
+        if (_completed) {
+          // The other request already answered, nobody else holds this response
+          if (response != null) {
+            response.release();
+          }
+          return;
+        }
+        if (response == null) {
+          // Wait for the other request while it may still answer
+          if (isHedge) {
+            _hedgeFailed = true;
+            if (!_primaryFailed) {
+              return;
+            }
+          } else {
+            _primaryFailed = true;
+            if (_hedgeStarted && !_hedgeFailed) {
+              return;
+            }
+          }
+        }
+        _completed = true;
+      }
+
+      cancelRequests();
+      if (response != null) {
+        if (isHedge) {
+          _scatterGatherStats.incrementHedgedRequestsWon();
+        }
+        onSuccess(response);
+      } else {
+        onError(error);
+      }
+    }
+
+    /**
+     * Cancels the requests that are still pending, and the speculative request if it has not been sent yet.
+     */
+    private void cancelRequests() {
+      ScheduledFuture<?> scheduledHedge;
+      ResponseFuture hedgeFuture;
+      synchronized (this) {
+        _completed = true;
+        scheduledHedge = _scheduledHedge;
+        hedgeFuture = _hedgeFuture;
+      }
+      if (scheduledHedge != null) {
+        scheduledHedge.cancel(false);
+      }
+      _primaryHandler.getResponseFuture().cancel(true);
+      if (hedgeFuture != null) {
+        hedgeFuture.cancel(true);
+      }
+    }
+  }
+
   public Histogram getLatency() {
     return _latency;
   }
 
+  public ServerLatencyTracker getLatencyTracker() {
+    return _latencyTracker;
+  }
+
   /**
    * This is used to checkin the connections once the responses/errors are obtained
    *
@@ -15,12 +15,14 @@
  */
 package com.linkedin.pinot.transport.scattergather;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -74,10 +76,19 @@ public interface ScatterGatherRequest {
    * to be sent foe each scattered request. To turn off speculative requests, this method should
    * return 0.
    *
-   * TODO: Currently Not implemented
+   * At most one speculative request is sent per scattered request, and only if the scatter-gather
+   * is configured to send them and the server takes longer than usual to respond.
    */
   public int getNumSpeculativeRequests();
 
+  /**
+   * Return all the servers that can serve each segment. A speculative request for a segment-set is
+   * sent to a server hosting all of the segments in the set.
+   *
+   * @return Segment to Servers map, or null if no speculative request can be sent.
+   */
+  public Map<SegmentId, List<ServerInstance>> getSegmentReplicas();
+
   /**
    * Used for diagnostics, A predefined selection of service can be chosen for each segments
    * and sent to the Scatter-Gather. Scatter-Gather will honor such selection and do not override them.
@@ -18,6 +18,7 @@ package com.linkedin.pinot.transport.scattergather;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -26,6 +27,9 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class ScatterGatherStats {
   private ConcurrentMap<String, PerServerStats> _perServerStatsMap;
+  // Speculative requests sent to another server, and how many of them answered before the original request
+  private final AtomicInteger _numHedgedRequestsSent = new AtomicInteger();
+  private final AtomicInteger _numHedgedRequestsWon = new AtomicInteger();
 
   public void setSendStartTimeMillis(String server, long millis) {
     PerServerStats perServerStats = _perServerStatsMap.get(server);
@@ -57,6 +61,22 @@ public class ScatterGatherStats {
     }
   }
 
+  public void incrementHedgedRequestsSent() {
+    _numHedgedRequestsSent.incrementAndGet();
+  }
+
+  public void incrementHedgedRequestsWon() {
+    _numHedgedRequestsWon.incrementAndGet();
+  }
+
+  public int getNumHedgedRequestsSent() {
+    return _numHedgedRequestsSent.get();
+  }
+
+  public int getNumHedgedRequestsWon() {
+    return _numHedgedRequestsWon.get();
+  }
+
   public ScatterGatherStats() {
     _perServerStatsMap = new ConcurrentHashMap<>(10);
   }
@@ -66,6 +86,13 @@ public class ScatterGatherStats {
     _perServerStatsMap.put(server, perServerStats);
   }
 
+  /**
+   * @return number of servers the request was scattered to, hedged requests not included
+   */
+  public int getNumServers() {
+    return _perServerStatsMap.size();
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -81,6 +108,10 @@ public class ScatterGatherStats {
     for (Map.Entry<String, PerServerStats> entry : perServerStatsMap.entrySet()) {
       _perServerStatsMap.putIfAbsent(entry.getKey(), entry.getValue());
     }
+    if (other != this) {
+      _numHedgedRequestsSent.addAndGet(other.getNumHedgedRequestsSent());
+      _numHedgedRequestsWon.addAndGet(other.getNumHedgedRequestsWon());
+    }
   }
 
   private Map<String, PerServerStats> getPerServerStatMap() {
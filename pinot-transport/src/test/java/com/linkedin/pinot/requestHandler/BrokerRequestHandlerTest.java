@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.query.StreamingReducer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.InstanceResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.transport.common.AdaptiveReplicaSelection;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.scattergather.ScatterGatherImpl;
+import com.linkedin.pinot.transport.scattergather.ScatterGatherStats;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class BrokerRequestHandlerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String TABLE_NAME = "myTable_OFFLINE";
+
+  @Test
+  public void testAdaptiveSelectionQueryingFewerServersIsCached() throws Exception {
+    ServerInstance server1 = new ServerInstance("localhost", 1011);
+    ServerInstance server2 = new ServerInstance("localhost", 1012);
+    ServerInstance server3 = new ServerInstance("localhost", 1013);
+    SegmentId segment0 = new SegmentId("0");
+    SegmentId segment1 = new SegmentId("1");
+
+    // The routing table sends segment 0 to the second server and segment 1 to the third one, but the first server
+    // has a replica of both
+    final Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+    routing.put(server2, newSegmentIdSet(segment0));
+    routing.put(server3, newSegmentIdSet(segment1));
+    final Map<SegmentId, List<ServerInstance>> segmentReplicas = new HashMap<SegmentId, List<ServerInstance>>();
+    segmentReplicas.put(segment0, Arrays.asList(server1, server2));
+    segmentReplicas.put(segment1, Arrays.asList(server1, server3));
+
+    // With the other servers loaded, both segments go to the first server in a single request
+    AdaptiveReplicaSelection replicaSelection = new AdaptiveReplicaSelection();
+    for (int i = 0; i < 10; i++) {
+      replicaSelection.onRequestSent(server2);
+      replicaSelection.onRequestSent(server3);
+    }
+
+    BrokerResultCache resultCache = new BrokerResultCache(10, 1024 * 1024, 60000L, null);
+    TestScatterGather scatterGather = new TestScatterGather();
+    BrokerRequestHandler requestHandler =
+        new BrokerRequestHandler(new TestRoutingTable(routing, segmentReplicas), null, null, scatterGather,
+            new TestReduceService(), new BrokerMetrics(new MetricsRegistry()), 10000L, resultCache);
+    requestHandler.setReplicaSelection(replicaSelection);
+
+    BrokerResponse response = (BrokerResponse) requestHandler.processBrokerRequest(
+        COMPILER.compileToBrokerRequest("select count(*) from myTable"), null, new ScatterGatherStats(), 1L);
+    Assert.assertEquals(response.getNumDocsScanned(), 1L);
+    Assert.assertEquals(scatterGather.selectedServers, Arrays.asList(server1));
+    Assert.assertEquals(resultCache.size(), 1);
+
+    // The second time the response comes from the cache
+    response = (BrokerResponse) requestHandler.processBrokerRequest(
+        COMPILER.compileToBrokerRequest("select count(*) from myTable"), null, new ScatterGatherStats(), 2L);
+    Assert.assertEquals(response.getNumDocsScanned(), 1L);
+    Assert.assertEquals(scatterGather.numRequests.get(), 1);
+  }
+
+  private static SegmentIdSet newSegmentIdSet(SegmentId... segmentIds) {
+    SegmentIdSet segmentIdSet = new SegmentIdSet();
+    for (SegmentId segmentId : segmentIds) {
+      segmentIdSet.addSegment(segmentId);
+    }
+    return segmentIdSet;
+  }
+
+  /**
+   * Answers each request sent to a server with an empty data table right away, instead of going over the network.
+   */
+  private static class TestScatterGather extends ScatterGatherImpl {
+    private final AtomicInteger numRequests = new AtomicInteger();
+    private List<ServerInstance> selectedServers;
+
+    public TestScatterGather() {
+      super(null, MoreExecutors.sameThreadExecutor());
+    }
+
+    @Override
+    protected CompositeFuture<ServerInstance, ByteBuf> sendRequest(ScatterGatherRequestContext ctxt,
+        ScatterGatherStats scatterGatherStats) throws InterruptedException {
+      numRequests.incrementAndGet();
+      selectedServers = new ArrayList<ServerInstance>(ctxt.getSelectedServers().keySet());
+      List<KeyedFuture<ServerInstance, ByteBuf>> responseFutures = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      for (ServerInstance server : selectedServers) {
+        scatterGatherStats.initServer(server.toString());
+        AsyncResponseFuture<ServerInstance, ByteBuf> responseFuture =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(server, "test");
+        try {
+          responseFuture.onSuccess(Unpooled.wrappedBuffer(new DataTable().toBytes(DataTable.VERSION)));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        responseFutures.add(responseFuture);
+      }
+      CompositeFuture<ServerInstance, ByteBuf> response =
+          new CompositeFuture<ServerInstance, ByteBuf>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+      response.start(responseFutures);
+      return response;
+    }
+  }
+
+  private static class TestRoutingTable implements RoutingTable {
+    private final Map<ServerInstance, SegmentIdSet> _routing;
+    private final Map<SegmentId, List<ServerInstance>> _segmentReplicas;
+
+    public TestRoutingTable(Map<ServerInstance, SegmentIdSet> routing,
+        Map<SegmentId, List<ServerInstance>> segmentReplicas) {
+      _routing = routing;
+      _segmentReplicas = segmentReplicas;
+    }
+
+    @Override
+    public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request) {
+      if (!TABLE_NAME.equals(request.getTableName())) {
+        return null;
+      }
+      // Callers group the segments in place, so each lookup gets its own copy
+      Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+      for (Map.Entry<ServerInstance, SegmentIdSet> entry : _routing.entrySet()) {
+        SegmentIdSet segmentIdSet = new SegmentIdSet();
+        segmentIdSet.addSegments(entry.getValue().getSegments());
+        routing.put(entry.getKey(), segmentIdSet);
+      }
+      return routing;
+    }
+
+    @Override
+    public Map<SegmentId, List<ServerInstance>> findSegmentReplicas(String tableName) {
+      return _segmentReplicas;
+    }
+
+    @Override
+    public int getRoutingTableVersion(String tableName) {
+      return 1;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public String dumpSnapShot() throws Exception {
+      return null;
+    }
+  }
+
+  /**
+   * Counts the documents scanned as the number of server responses.
+   */
+  private static class TestReduceService implements ReduceService {
+    @Override
+    public BrokerResponse reduce(BrokerRequest brokerRequest, Map<ServerInstance, InstanceResponse> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
+        Map<ServerInstance, DataTable> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamingReducer newStreamingReducer(BrokerRequest brokerRequest) {
+      return new StreamingReducer() {
+        private long _numResponses = 0;
+
+        @Override
+        public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+          _numResponses++;
+        }
+
+        @Override
+        public BrokerResponse getBrokerResponse() {
+          BrokerResponse brokerResponse = new BrokerResponse();
+          brokerResponse.setNumDocsScanned(_numResponses);
+          try {
+            JSONObject aggregationResult = new JSONObject();
+            aggregationResult.put("function", "count_star");
+            aggregationResult.put("value", Long.toString(_numResponses));
+            brokerResponse.addToAggregationResults(aggregationResult);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+          return brokerResponse;
+        }
+      };
+    }
+  }
+}
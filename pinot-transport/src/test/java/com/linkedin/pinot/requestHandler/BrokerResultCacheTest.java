@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class BrokerResultCacheTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+
+  @Test
+  public void testCacheKey() {
+    BrokerRequest request = COMPILER.compileToBrokerRequest("select count(*) from myTable where a = 'x'");
+    BrokerRequest tracedRequest = COMPILER.compileToBrokerRequest("select count(*) from myTable where a = 'x'");
+    tracedRequest.setEnableTrace(true);
+    tracedRequest.setBucketHashKey("key");
+    BrokerRequest otherRequest = COMPILER.compileToBrokerRequest("select count(*) from myTable where a = 'y'");
+
+    Assert.assertEquals(BrokerResultCache.getCacheKey(tracedRequest), BrokerResultCache.getCacheKey(request));
+    Assert.assertFalse(BrokerResultCache.getCacheKey(otherRequest).equals(BrokerResultCache.getCacheKey(request)));
+
+    // Predicates are compared regardless of their order
+    BrokerRequest andRequest =
+        COMPILER.compileToBrokerRequest("select sum(m) from myTable where a = 'x' and (b > 3 or c in (1, 2))");
+    BrokerRequest reorderedAndRequest =
+        COMPILER.compileToBrokerRequest("select sum(m) from myTable where (c in (1, 2) or b > 3) and a = 'x'");
+    BrokerRequest orRequest =
+        COMPILER.compileToBrokerRequest("select sum(m) from myTable where a = 'x' or (b > 3 and c in (1, 2))");
+    Assert.assertEquals(BrokerResultCache.getCacheKey(reorderedAndRequest), BrokerResultCache.getCacheKey(andRequest));
+    Assert.assertFalse(BrokerResultCache.getCacheKey(orRequest).equals(BrokerResultCache.getCacheKey(andRequest)));
+    // The key is computed from a copy
+    Assert.assertTrue(tracedRequest.isEnableTrace());
+  }
+
+  @Test
+  public void testRoutingTableVersionInvalidatesEntries() throws Exception {
+    BrokerMetrics brokerMetrics = new BrokerMetrics(new MetricsRegistry());
+    BrokerResultCache cache = new BrokerResultCache(10, 1024 * 1024, 60000L, brokerMetrics);
+    BrokerResponse response = newResponse(42L);
+
+    Assert.assertNull(cache.get("key", 1));
+    cache.put("key", 1, response);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertTrue(cache.getSizeInBytes() > 0);
+
+    BrokerResponse cachedResponse = cache.get("key", 1);
+    Assert.assertEquals(cachedResponse.getNumDocsScanned(), 42L);
+    Assert.assertEquals(cachedResponse.getAggregationResults().get(0).getString("value"), "42");
+    Assert.assertNotSame(cachedResponse, response);
+    Assert.assertNotSame(cachedResponse.getAggregationResults(), response.getAggregationResults());
+    Assert.assertEquals(cache.getHitRatePercent(), 50L);
+
+    // The routing table changed, the entry is dropped
+    Assert.assertNull(cache.get("key", 2));
+    Assert.assertEquals(cache.size(), 0);
+    Assert.assertEquals(cache.getSizeInBytes(), 0L);
+    Assert.assertNull(cache.get("key", 1));
+  }
+
+  @Test
+  public void testExpiration() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(10, 1024 * 1024, 50L, null);
+    cache.put("key", 1, newResponse(42L));
+    Assert.assertNotNull(cache.get("key", 1));
+    Thread.sleep(100L);
+    Assert.assertNull(cache.get("key", 1));
+    Assert.assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(2, 1024 * 1024, 60000L, null);
+    cache.put("key1", 1, newResponse(1L));
+    cache.put("key2", 1, newResponse(2L));
+    Assert.assertNotNull(cache.get("key1", 1));
+    cache.put("key3", 1, newResponse(3L));
+
+    // key2 is the least recently used entry
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertNull(cache.get("key2", 1));
+    Assert.assertNotNull(cache.get("key1", 1));
+    Assert.assertNotNull(cache.get("key3", 1));
+
+    // Bounded on the estimated size of the responses as well
+    long sizeOfOneEntry = cache.getSizeInBytes() / 2;
+    cache = new BrokerResultCache(10, sizeOfOneEntry * 2, 60000L, null);
+    cache.put("key1", 1, newResponse(1L));
+    cache.put("key2", 1, newResponse(2L));
+    cache.put("key3", 1, newResponse(3L));
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertNull(cache.get("key1", 1));
+    Assert.assertTrue(cache.getSizeInBytes() <= sizeOfOneEntry * 2);
+
+    // Responses larger than the cache are not cached
+    cache = new BrokerResultCache(10, 1, 60000L, null);
+    cache.put("key1", 1, newResponse(1L));
+    Assert.assertEquals(cache.size(), 0);
+  }
+
+  private static BrokerResponse newResponse(long value) throws Exception {
+    BrokerResponse response = new BrokerResponse();
+    response.setNumDocsScanned(value);
+    response.setTotalDocs(100L);
+    JSONObject aggregationResult = new JSONObject();
+    aggregationResult.put("function", "count_star");
+    aggregationResult.put("value", Long.toString(value));
+    response.addToAggregationResults(aggregationResult);
+    return response;
+  }
+}
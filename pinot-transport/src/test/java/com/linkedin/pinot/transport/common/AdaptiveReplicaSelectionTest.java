@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+public class AdaptiveReplicaSelectionTest {
+  private final ServerInstance _s1 = new ServerInstance("localhost", 8080);
+  private final ServerInstance _s2 = new ServerInstance("localhost", 8081);
+  private final ServerInstance _s3 = new ServerInstance("localhost", 8082);
+
+  @Test
+  public void testSelectFastServer() {
+    AdaptiveReplicaSelection selection = new AdaptiveReplicaSelection(0.5, 10000, new Random(0));
+    List<ServerInstance> servers = Arrays.asList(_s1, _s2);
+
+    // Single and no candidates
+    Assert.assertNull(selection.selectServer(new SegmentId("0"), Arrays.<ServerInstance>asList(), null));
+    Assert.assertEquals(selection.selectServer(new SegmentId("0"), Arrays.asList(_s3), null), _s3);
+
+    for (int i = 0; i < 5; i++) {
+      selection.onRequestSent(_s1);
+      selection.onResponse(_s1, 10, false);
+      selection.onRequestSent(_s2);
+      selection.onResponse(_s2, 500, false);
+    }
+    // Both servers are compared when there are two candidates
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(selection.selectServer(new SegmentId("0"), servers, null), _s1);
+    }
+
+    // Requests in flight make the fast server look slower
+    for (int i = 0; i < 100; i++) {
+      selection.onRequestSent(_s1);
+    }
+    Assert.assertEquals(selection.selectServer(new SegmentId("0"), servers, null), _s2);
+  }
+
+  @Test
+  public void testFailuresAndDecay() {
+    AdaptiveReplicaSelection selection = new AdaptiveReplicaSelection(0.5, 10000, new Random(0));
+    long now = System.currentTimeMillis();
+
+    // Unknown servers have the best score
+    Assert.assertEquals(selection.getScore(_s1, now), 1.0);
+
+    selection.onRequestSent(_s1);
+    selection.onResponse(_s1, 10, false);
+    double score = selection.getScore(_s1, System.currentTimeMillis());
+    Assert.assertTrue(score > 1.0 && score <= 11.0, "Score " + score);
+
+    // Failures count as slow responses
+    selection.onRequestSent(_s1);
+    selection.onResponse(_s1, -1, true);
+    score = selection.getScore(_s1, System.currentTimeMillis());
+    Assert.assertTrue(score > 100.0, "Score " + score);
+
+    // The latency of a server decays while it does not answer
+    Assert.assertTrue(selection.getScore(_s1, now + 100000) < 2.0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidAlpha() {
+    new AdaptiveReplicaSelection(0, 10000, new Random());
+  }
+}
@@ -15,7 +15,10 @@
  */
 package com.linkedin.pinot.transport.common;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -232,6 +235,38 @@ public class CompositeFutureTest {
     executor.shutdown();
   }
 
+  @Test
+  /**
+   * Tests that responses gathered after a SHORTCIRCUIT_AND future completed on an error are released rather than
+   * left behind its end of responses.
+   * @throws Exception
+   */
+  public void testTakeResponseReleasesLateResponses() throws Exception {
+    List<KeyedFuture<String, ByteBuf>> futures = new ArrayList<KeyedFuture<String, ByteBuf>>();
+    AsyncResponseFuture<String, ByteBuf> errorFuture = new AsyncResponseFuture<String, ByteBuf>("key_0", "");
+    futures.add(errorFuture);
+    futures.add(new AsyncResponseFuture<String, ByteBuf>("key_1", ""));
+    futures.add(new AsyncResponseFuture<String, ByteBuf>("key_2", ""));
+    CompositeFuture<String, ByteBuf> compositeFuture =
+        new CompositeFuture<String, ByteBuf>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+    compositeFuture.start(futures);
+    errorFuture.onError(new Exception("error"));
+    Assert.assertTrue(compositeFuture.isDone());
+
+    // A response racing with the error is queued behind the end of the responses
+    ByteBuf queuedResponse = Unpooled.buffer(8);
+    compositeFuture.processFutureResult("key_1", Collections.singletonMap("key_1", queuedResponse), null, 0L);
+    Assert.assertNull(compositeFuture.takeResponse());
+    Assert.assertEquals(queuedResponse.refCnt(), 0);
+
+    // Responses coming in once the end was reached are released right away
+    ByteBuf lateResponse = Unpooled.buffer(8);
+    compositeFuture.processFutureResult("key_2", Collections.singletonMap("key_2", lateResponse), null, 0L);
+    Assert.assertEquals(lateResponse.refCnt(), 0);
+    Assert.assertNull(compositeFuture.takeResponse());
+    Assert.assertTrue(compositeFuture.get().isEmpty());
+  }
+
   @Test
   /**
    * 100 futures, we get responses from 5 and then get an error. stopOnFirstError = true
@@ -328,6 +363,48 @@ public class CompositeFutureTest {
     executor.shutdown();
   }
 
+  @Test
+  /**
+   * Tests taking the responses of a composite future one by one as the underlying futures complete.
+   * @throws Exception
+   */
+  public void testTakeResponse() throws Exception {
+    Map<String, AsyncResponseFuture<String, String>> futureMap =
+        new HashMap<String, AsyncResponseFuture<String, String>>();
+    for (int i = 0; i < 3; i++) {
+      String key = "key_" + i;
+      futureMap.put(key, new AsyncResponseFuture<String, String>(key, ""));
+    }
+    CompositeFuture<String, String> compositeFuture =
+        new CompositeFuture<String, String>("test", GatherModeOnError.AND);
+    compositeFuture.start(new ArrayList<KeyedFuture<String, String>>(futureMap.values()));
+
+    // Responses are handed over in completion order while the other futures are outstanding
+    futureMap.get("key_1").onSuccess("message_1");
+    Map.Entry<String, String> response = compositeFuture.takeResponse();
+    Assert.assertEquals(response.getKey(), "key_1");
+    Assert.assertEquals(response.getValue(), "message_1");
+    Assert.assertFalse(compositeFuture.isDone());
+
+    futureMap.get("key_0").onError(new Exception("error"));
+    futureMap.get("key_2").onSuccess("message_2");
+    response = compositeFuture.takeResponse();
+    Assert.assertEquals(response.getKey(), "key_2");
+    Assert.assertEquals(response.getValue(), "message_2");
+
+    // Errors are not returned, and the end of the responses is signaled to every later call
+    Assert.assertNull(compositeFuture.takeResponse());
+    Assert.assertNull(compositeFuture.takeResponse());
+    Assert.assertTrue(compositeFuture.isDone());
+    Assert.assertTrue(compositeFuture.getError().containsKey("key_0"));
+    Assert.assertTrue(compositeFuture.get().isEmpty(), "Taken responses are removed");
+
+    CompositeFuture<String, String> emptyCompositeFuture =
+        new CompositeFuture<String, String>("empty", GatherModeOnError.AND);
+    emptyCompositeFuture.start(new ArrayList<KeyedFuture<String, String>>());
+    Assert.assertNull(emptyCompositeFuture.takeResponse());
+  }
+
   @Test
   /**
    * Tests Composite future with one underlying future.
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
+
+
+public class ResponseStreamTest {
+
+  @Test
+  public void testResponsesOfAllFuturesInArrivalOrder() throws Exception {
+    AsyncResponseFuture<String, String> offline1 = new AsyncResponseFuture<String, String>("offline_1", "");
+    AsyncResponseFuture<String, String> offline2 = new AsyncResponseFuture<String, String>("offline_2", "");
+    AsyncResponseFuture<String, String> realtime1 = new AsyncResponseFuture<String, String>("realtime_1", "");
+    CompositeFuture<String, String> offline = startCompositeFuture("offline", offline1, offline2);
+    CompositeFuture<String, String> realtime = startCompositeFuture("realtime", realtime1);
+
+    // A response gathered before the future joins the stream is still handed over
+    offline1.onSuccess("offline_message_1");
+    ResponseStream<String, String> responseStream = new ResponseStream<String, String>();
+    responseStream.add(offline);
+    responseStream.add(realtime);
+    ResponseStream.Response<String, String> response = responseStream.take();
+    Assert.assertSame(response.getFuture(), offline);
+    Assert.assertEquals(response.getKey(), "offline_1");
+    Assert.assertEquals(response.getValue(), "offline_message_1");
+
+    // The realtime response is handed over while the offline future is still outstanding
+    realtime1.onSuccess("realtime_message_1");
+    response = responseStream.take();
+    Assert.assertSame(response.getFuture(), realtime);
+    Assert.assertEquals(response.getKey(), "realtime_1");
+    Assert.assertTrue(realtime.isDone());
+    Assert.assertFalse(offline.isDone());
+
+    offline2.onError(new Exception("error"));
+    Assert.assertNull(responseStream.take());
+    Assert.assertNull(responseStream.take());
+    Assert.assertTrue(offline.getError().containsKey("offline_2"));
+  }
+
+  @Test
+  public void testEmptyStream() throws Exception {
+    ResponseStream<String, String> responseStream = new ResponseStream<String, String>();
+    Assert.assertNull(responseStream.take());
+
+    responseStream.add(startCompositeFuture("empty"));
+    Assert.assertNull(responseStream.take());
+  }
+
+  private static CompositeFuture<String, String> startCompositeFuture(String name,
+      AsyncResponseFuture<String, String>... futures) {
+    List<KeyedFuture<String, String>> futureList = new ArrayList<KeyedFuture<String, String>>();
+    for (AsyncResponseFuture<String, String> future : futures) {
+      futureList.add(future);
+    }
+    CompositeFuture<String, String> compositeFuture = new CompositeFuture<String, String>(name, GatherModeOnError.AND);
+    compositeFuture.start(futureList);
+    return compositeFuture;
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.manager.zk.ZkClient;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.ColumnValueRange;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.StringUtil;
+import com.linkedin.pinot.common.utils.ZkStarter;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+import com.linkedin.pinot.routing.HelixExternalViewBasedSegmentPruningService;
+
+
+public class SegmentPruningServiceTest {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final int NUM_SEGMENTS = 10;
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+
+  private ZkClient _zkClient;
+  private ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private HelixExternalViewBasedSegmentPruningService _segmentPruningService;
+  private Map<ServerInstance, SegmentIdSet> _segmentServices;
+
+  @BeforeTest
+  public void beforeTest() throws Exception {
+    ZkStarter.startLocalZkServer();
+
+    _zkClient =
+        new ZkClient(StringUtil.join("/", StringUtils.chomp(ZkStarter.DEFAULT_ZK_STR, "/")),
+            ZkClient.DEFAULT_SESSION_TIMEOUT, ZkClient.DEFAULT_CONNECTION_TIMEOUT, new ZNRecordSerializer());
+    String helixClusterName = "TestSegmentPruningService";
+    _zkClient.deleteRecursive("/" + helixClusterName + "/PROPERTYSTORE");
+    _zkClient.createPersistent("/" + helixClusterName + "/PROPERTYSTORE", true);
+    _propertyStore =
+        new ZkHelixPropertyStore<ZNRecord>(new ZkBaseDataAccessor<ZNRecord>(_zkClient), "/" + helixClusterName
+            + "/PROPERTYSTORE", null);
+
+    addTableToPropertyStore();
+    // Segment i covers days [10 * i, 10 * i + 9], even segments also have memberId in [100 * i, 100 * i + 99]
+    ExternalView externalView = new ExternalView(TABLE_NAME);
+    _segmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+    for (int i = 0; i < NUM_SEGMENTS; ++i) {
+      OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+      segmentZKMetadata.setSegmentName(getSegmentName(i));
+      segmentZKMetadata.setTableName(TABLE_NAME);
+      segmentZKMetadata.setTimeUnit(TimeUnit.DAYS);
+      segmentZKMetadata.setStartTime(10 * i);
+      segmentZKMetadata.setEndTime(10 * i + 9);
+      segmentZKMetadata.setIndexVersion("0");
+      if (i % 2 == 0) {
+        Map<String, ColumnValueRange> columnValueRanges = new HashMap<String, ColumnValueRange>();
+        columnValueRanges.put("memberId",
+            ColumnValueRange.create(DataType.LONG, Integer.toString(100 * i), Integer.toString(100 * i + 99)));
+        segmentZKMetadata.setColumnValueRanges(columnValueRanges);
+      }
+      ZKMetadataProvider.setOfflineSegmentZKMetadata(_propertyStore, segmentZKMetadata);
+
+      ServerInstance serverInstance = new ServerInstance("localhost", 8000 + i % 3);
+      externalView.setState(getSegmentName(i), serverInstance.toString(), "ONLINE");
+      if (!_segmentServices.containsKey(serverInstance)) {
+        _segmentServices.put(serverInstance, new SegmentIdSet());
+      }
+      _segmentServices.get(serverInstance).addSegment(new SegmentId(getSegmentName(i)));
+    }
+
+    _segmentPruningService = new HelixExternalViewBasedSegmentPruningService(_propertyStore);
+    _segmentPruningService.updateSegmentPruningService(externalView);
+  }
+
+  @AfterTest
+  public void afterTest() {
+    _zkClient.close();
+    ZkStarter.stopLocalZkServer();
+  }
+
+  @Test
+  public void testNoFilter() throws Exception {
+    BrokerRequest brokerRequest = getBrokerRequest("select count(*) from testTable");
+    Assert.assertSame(_segmentPruningService.pruneSegments(brokerRequest, _segmentServices), _segmentServices);
+  }
+
+  @Test
+  public void testColumnValueRange() throws Exception {
+    // Odd segments have no memberId range and are kept
+    Assert.assertEquals(getSegments(prune("memberId = 250")),
+        getSegmentNames(1, 2, 3, 5, 7, 9));
+    Assert.assertEquals(getSegments(prune("memberId in (50, 450) or memberId > 800")),
+        getSegmentNames(0, 1, 3, 4, 5, 7, 8, 9));
+  }
+
+  @Test
+  public void testTimeInterval() throws Exception {
+    Map<ServerInstance, SegmentIdSet> prunedSegmentServices = prune("timestamp between 30 and 39");
+    Assert.assertEquals(getSegments(prunedSegmentServices), getSegmentNames(3));
+    // Servers without remaining segments are not queried
+    Assert.assertEquals(prunedSegmentServices.size(), 1);
+    Assert.assertTrue(prunedSegmentServices.containsKey(new ServerInstance("localhost", 8000)));
+
+    Assert.assertEquals(getSegments(prune("timestamp < 30 and memberId = 150")), getSegmentNames(1));
+  }
+
+  @Test
+  public void testAllSegmentsPruned() throws Exception {
+    // One segment is kept so that the response has the regular shape
+    Map<ServerInstance, SegmentIdSet> prunedSegmentServices = prune("timestamp > 1000");
+    Assert.assertEquals(prunedSegmentServices.size(), 1);
+    Assert.assertEquals(getSegments(prunedSegmentServices).size(), 1);
+  }
+
+  @Test
+  public void testRemovedTable() throws Exception {
+    HelixExternalViewBasedSegmentPruningService segmentPruningService =
+        new HelixExternalViewBasedSegmentPruningService(_propertyStore);
+    BrokerRequest brokerRequest = getBrokerRequest("select count(*) from testTable where timestamp > 1000");
+    brokerRequest.getQuerySource().setTableName(TABLE_NAME);
+    Assert.assertSame(segmentPruningService.pruneSegments(brokerRequest, _segmentServices), _segmentServices);
+  }
+
+  private Map<ServerInstance, SegmentIdSet> prune(String filter) throws Exception {
+    BrokerRequest brokerRequest = getBrokerRequest("select count(*) from testTable where " + filter);
+    return _segmentPruningService.pruneSegments(brokerRequest, _segmentServices);
+  }
+
+  private static BrokerRequest getBrokerRequest(String query) throws Exception {
+    BrokerRequest brokerRequest = RequestConverter.fromJSON(REQUEST_COMPILER.compile(query));
+    brokerRequest.getQuerySource().setTableName(TABLE_NAME);
+    return brokerRequest;
+  }
+
+  private static Set<String> getSegments(Map<ServerInstance, SegmentIdSet> segmentServices) {
+    Set<String> segments = new HashSet<String>();
+    for (SegmentIdSet segmentIdSet : segmentServices.values()) {
+      segments.addAll(segmentIdSet.getSegmentsNameList());
+    }
+    return segments;
+  }
+
+  private static Set<String> getSegmentNames(int... segmentIds) {
+    Set<String> segmentNames = new HashSet<String>();
+    for (int segmentId : segmentIds) {
+      segmentNames.add(getSegmentName(segmentId));
+    }
+    return segmentNames;
+  }
+
+  private static String getSegmentName(int i) {
+    return "testTable_" + i;
+  }
+
+  private void addTableToPropertyStore() throws Exception {
+    JSONObject offlineTableConfigJson = new JSONObject();
+    offlineTableConfigJson.put("tableName", "testTable");
+
+    JSONObject segmentsConfig = new JSONObject();
+    segmentsConfig.put("retentionTimeUnit", "DAYS");
+    segmentsConfig.put("retentionTimeValue", -1);
+    segmentsConfig.put("segmentPushFrequency", "daily");
+    segmentsConfig.put("segmentPushType", "APPEND");
+    segmentsConfig.put("replication", 1);
+    segmentsConfig.put("schemaName", "tableSchema");
+    segmentsConfig.put("timeColumnName", "timestamp");
+    segmentsConfig.put("timeType", "daysSinceEpoch");
+    segmentsConfig.put("segmentAssignmentStrategy", "");
+    offlineTableConfigJson.put("segmentsConfig", segmentsConfig);
+    JSONObject tableIndexConfig = new JSONObject();
+    tableIndexConfig.put("loadMode", "HEAP");
+    tableIndexConfig.put("lazyLoad", "false");
+    offlineTableConfigJson.put("tableIndexConfig", tableIndexConfig);
+    JSONObject tenants = new JSONObject();
+    tenants.put("broker", "brokerTenant");
+    tenants.put("server", "serverTenant");
+    offlineTableConfigJson.put("tenants", tenants);
+    offlineTableConfigJson.put("tableType", "OFFLINE");
+    JSONObject metadata = new JSONObject();
+    metadata.put("customConfigs", new JSONObject());
+    offlineTableConfigJson.put("metadata", metadata);
+    AbstractTableConfig offlineTableConfig = AbstractTableConfig.init(offlineTableConfigJson.toString());
+    ZKMetadataProvider.setOfflineTableConfig(_propertyStore, TABLE_NAME,
+        AbstractTableConfig.toZnRecord(offlineTableConfig));
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+public class ServerLatencyTrackerTest {
+
+  @Test
+  public void testLatencyPercentile() {
+    ServerLatencyTracker tracker = new ServerLatencyTracker(100, 10);
+    ServerInstance s1 = new ServerInstance("localhost", 8080);
+    ServerInstance s2 = new ServerInstance("localhost", 8081);
+
+    // Unknown servers and servers with too few latencies have no percentile
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 50), -1L);
+    for (int i = 1; i < 10; i++) {
+      tracker.recordLatency(s1, i);
+    }
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 50), -1L);
+
+    for (int i = 10; i <= 100; i++) {
+      tracker.recordLatency(s1, i);
+    }
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 50), 50L);
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 99), 99L);
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 100), 100L);
+    Assert.assertEquals(tracker.getLatencyPercentile(s2, 50), -1L);
+
+    // Only the most recent latencies are kept
+    for (int i = 0; i < 100; i++) {
+      tracker.recordLatency(s1, 1000);
+    }
+    Assert.assertEquals(tracker.getLatencyPercentile(s1, 1), 1000L);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidPercentile() {
+    new ServerLatencyTracker().getLatencyPercentile(new ServerInstance("localhost", 8080), 0);
+  }
+}
@@ -22,6 +22,7 @@ import com.linkedin.pinot.routing.RoutingTableLookupRequest;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RandomRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RoutingTableBuilder;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -75,6 +76,42 @@ public class RoutingTableTest {
     for (int numRun = 0; numRun < 100; ++numRun) {
       assertResourceRequest(routingTable, "testResource2_OFFLINE", "[segment20, segment21, segment22]", 3);
     }
+
+    // Segments with the same replicas share one list of servers
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = routingTable.findSegmentReplicas("testResource2_OFFLINE");
+    Assert.assertEquals(segmentReplicas.size(), 3);
+    Assert.assertEquals(segmentReplicas.get(new SegmentId("segment20")).size(), 3);
+    Assert.assertSame(segmentReplicas.get(new SegmentId("segment20")), segmentReplicas.get(new SegmentId("segment21")));
+    Assert.assertSame(segmentReplicas.get(new SegmentId("segment20")), segmentReplicas.get(new SegmentId("segment22")));
+    segmentReplicas = routingTable.findSegmentReplicas("testResource1_OFFLINE");
+    Assert.assertEquals(segmentReplicas.get(new SegmentId("segment10")).size(), 1);
+    Assert.assertNull(routingTable.findSegmentReplicas("unknownResource_OFFLINE"));
+  }
+
+  @Test
+  public void testRoutingTableVersion() {
+    HelixExternalViewBasedRouting routingTable =
+        new HelixExternalViewBasedRouting(new RandomRoutingTableBuilder(10), null, null, null);
+    List<InstanceConfig> instanceConfigs = generateInstanceConfigs("dataServer_instance", 0, 1);
+    Assert.assertEquals(routingTable.getRoutingTableVersion("myTable_OFFLINE"), -1);
+
+    ExternalView externalView = new ExternalView("myTable_OFFLINE");
+    externalView.setState("segment0", "dataServer_instance_0", "ONLINE");
+    routingTable.markDataResourceOnline("myTable_OFFLINE", externalView, instanceConfigs);
+    int version = routingTable.getRoutingTableVersion("myTable_OFFLINE");
+    Assert.assertTrue(version >= 0);
+
+    // A refreshed segment moves the table to a new version
+    routingTable.markSegmentRefreshed("myTable_OFFLINE");
+    int refreshedVersion = routingTable.getRoutingTableVersion("myTable_OFFLINE");
+    Assert.assertFalse(refreshedVersion == version);
+
+    // A recreated table does not get a version back, even with the same external view version
+    routingTable.markDataResourceOffline("myTable_OFFLINE");
+    Assert.assertEquals(routingTable.getRoutingTableVersion("myTable_OFFLINE"), -1);
+    routingTable.markDataResourceOnline("myTable_OFFLINE", externalView, instanceConfigs);
+    int recreatedVersion = routingTable.getRoutingTableVersion("myTable_OFFLINE");
+    Assert.assertFalse(recreatedVersion == version || recreatedVersion == refreshedVersion);
   }
 
   private void assertResourceRequest(HelixExternalViewBasedRouting routingTable, String resource,
@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.transport.netty;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.AsyncResponseFuture;
 import com.linkedin.pinot.transport.common.Callback;
@@ -406,7 +408,7 @@ public class NettySingleConnectionIntegrationTest {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
       byte[] b = new byte[request.readableBytes()];
       request.readBytes(b);
       if (null != _responseHandlingLatch) {
@@ -419,7 +421,7 @@ public class NettySingleConnectionIntegrationTest {
       _request = new String(b);
 
       //LOG.info("Server got the request (" + _request + ")");
-      return _response.getBytes();
+      return Futures.immediateFuture(_response.getBytes());
     }
 
     public String getRequest() {
@@ -477,6 +477,11 @@ public class ScatterGatherPerfClient implements Runnable {
       return 0;
     }
 
+    @Override
+    public Map<SegmentId, List<ServerInstance>> getSegmentReplicas() {
+      return null;
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;
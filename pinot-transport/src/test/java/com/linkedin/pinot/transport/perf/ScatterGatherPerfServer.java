@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.transport.perf;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.util.concurrent.CountDownLatch;
 
 import io.netty.buffer.ByteBuf;
@@ -154,7 +156,7 @@ public class ScatterGatherPerfServer {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
       byte[] b = new byte[request.readableBytes()];
       request.readBytes(b);
       if (null != _responseHandlingLatch) {
@@ -176,7 +178,7 @@ public class ScatterGatherPerfServer {
         }
       }
       //LOG.info("Server got the request (" + _request + ")");
-      return _response.getBytes();
+      return Futures.immediateFuture(_response.getBytes());
     }
 
     public String getRequest() {
@@ -15,16 +15,22 @@
  */
 package com.linkedin.pinot.transport.scattergather;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.ResourceLeakDetector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
@@ -40,6 +46,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.AdaptiveReplicaSelection;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
@@ -47,6 +54,7 @@ import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
 import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
 import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.common.ServerLatencyTracker;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
 import com.linkedin.pinot.transport.netty.NettyClientConnection;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
@@ -212,6 +220,106 @@ public class ScatterGatherTest {
     }
   }
 
+  @Test
+  public void testSelectServersAmongReplicas() throws Exception {
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(null, MoreExecutors.sameThreadExecutor());
+
+    // Segments 0, 1 and 2 are routed to the first server, segment 3 to the second one
+    SegmentId segment0 = new SegmentId("0");
+    SegmentId segment1 = new SegmentId("1");
+    SegmentId segment2 = new SegmentId("2");
+    SegmentId segment3 = new SegmentId("3");
+    SegmentIdSet pg1 = new SegmentIdSet();
+    pg1.addSegment(segment0);
+    pg1.addSegment(segment1);
+    pg1.addSegment(segment2);
+    SegmentIdSet pg2 = new SegmentIdSet();
+    pg2.addSegment(segment3);
+    ServerInstance serverInstance1 = new ServerInstance("localhost", 1011);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", 1012);
+    ServerInstance serverInstance3 = new ServerInstance("localhost", 1013);
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg1);
+    pgMap.put(serverInstance2, pg2);
+
+    // Only segment 2 has a single replica, the others also have one on a third server which no segment is routed to
+    List<ServerInstance> bothServers = Arrays.asList(serverInstance1, serverInstance2, serverInstance3);
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = new HashMap<SegmentId, List<ServerInstance>>();
+    segmentReplicas.put(segment0, bothServers);
+    segmentReplicas.put(segment1, bothServers);
+    segmentReplicas.put(segment2, Arrays.asList(serverInstance1));
+    segmentReplicas.put(segment3, bothServers);
+
+    // Selections which do not pick among replicas keep the routing
+    ScatterGatherRequest req = new TestScatterGatherRequest(pgMap, new HashMap<SegmentIdSet, String>(),
+        new MyReplicaSelection(), segmentReplicas, 0, 10000);
+    ScatterGatherRequestContext ctxt = new ScatterGatherRequestContext(req);
+    scImpl.buildInvertedMap(ctxt);
+    Assert.assertEquals(ctxt.getInvertedMap().size(), 2);
+    Assert.assertEquals(ctxt.getInvertedMap().get(Arrays.asList(serverInstance1)), pg1);
+    Assert.assertEquals(ctxt.getInvertedMap().get(Arrays.asList(serverInstance2)), pg2);
+
+    // Segments are grouped by replicas, and the loaded third server is avoided
+    AdaptiveReplicaSelection selection = new AdaptiveReplicaSelection();
+    for (int i = 0; i < 10; i++) {
+      selection.onRequestSent(serverInstance3);
+    }
+    req = new TestScatterGatherRequest(pgMap, new HashMap<SegmentIdSet, String>(), selection, segmentReplicas, 0,
+        10000);
+    ctxt = new ScatterGatherRequestContext(req);
+    scImpl.buildInvertedMap(ctxt);
+    Assert.assertEquals(ctxt.getInvertedMap().size(), 2);
+    Assert.assertEquals(ctxt.getInvertedMap().get(bothServers).getSegments(),
+        new HashSet<SegmentId>(Arrays.asList(segment0, segment1, segment3)));
+    Assert.assertEquals(ctxt.getInvertedMap().get(Arrays.asList(serverInstance1)).getSegments(),
+        new HashSet<SegmentId>(Arrays.asList(segment2)));
+
+    // The group came from two routed servers, so it is still spread over two servers
+    Assert.assertEquals(ctxt.getFanOut(bothServers), 2);
+    Assert.assertEquals(ctxt.getFanOut(Arrays.asList(serverInstance1)), 1);
+
+    scImpl.selectServices(ctxt);
+    Map<ServerInstance, SegmentIdSet> resultMap = ctxt.getSelectedServers();
+    Assert.assertEquals(resultMap.keySet(), new HashSet<ServerInstance>(Arrays.asList(serverInstance1, serverInstance2)));
+    Assert.assertTrue(resultMap.get(serverInstance1).getSegments().contains(segment2));
+    Assert.assertEquals(resultMap.get(serverInstance1).getSegments().size()
+        + resultMap.get(serverInstance2).getSegments().size(), 4);
+  }
+
+  @Test
+  public void testFullyReplicatedSegmentsKeepTheirFanOut() throws Exception {
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(null, MoreExecutors.sameThreadExecutor());
+
+    // Every segment is on all three servers, and the routing table spreads them over all three
+    List<ServerInstance> servers = Arrays.asList(new ServerInstance("localhost", 1011),
+        new ServerInstance("localhost", 1012), new ServerInstance("localhost", 1013));
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = new HashMap<SegmentId, List<ServerInstance>>();
+    for (int i = 0; i < 9; i++) {
+      SegmentId segment = new SegmentId(Integer.toString(i));
+      ServerInstance routedServer = servers.get(i % servers.size());
+      if (!pgMap.containsKey(routedServer)) {
+        pgMap.put(routedServer, new SegmentIdSet());
+      }
+      pgMap.get(routedServer).addSegment(segment);
+      segmentReplicas.put(segment, servers);
+    }
+
+    ScatterGatherRequest req = new TestScatterGatherRequest(pgMap, new HashMap<SegmentIdSet, String>(),
+        new AdaptiveReplicaSelection(), segmentReplicas, 0, 10000);
+    ScatterGatherRequestContext ctxt = new ScatterGatherRequestContext(req);
+    scImpl.buildInvertedMap(ctxt);
+    Assert.assertEquals(ctxt.getInvertedMap().size(), 1);
+    scImpl.selectServices(ctxt);
+
+    // The single replica group is still queried on three servers, with three segments each
+    Map<ServerInstance, SegmentIdSet> resultMap = ctxt.getSelectedServers();
+    Assert.assertEquals(resultMap.size(), 3);
+    for (SegmentIdSet segmentIdSet : resultMap.values()) {
+      Assert.assertEquals(segmentIdSet.getSegments().size(), 3);
+    }
+  }
+
   @Test
   public void testSingleServer() throws Exception {
 
@@ -486,6 +594,125 @@ public class ScatterGatherTest {
     server4.shutdownGracefully();
   }
 
+  @Test
+  public void testHedgedRequest() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start, both servers host the segment but the first one is slow
+    int serverPort1 = 7061;
+    int serverPort2 = 7062;
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 2000, false), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ExecutorService service = new ThreadPoolExecutor(5, 5, 5, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, service, registry);
+    rm.setPool(pool);
+
+    SegmentId segment = new SegmentId("0");
+    SegmentIdSet pg = new SegmentIdSet();
+    pg.addSegment(segment);
+    ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg);
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg, "request_0");
+    Map<SegmentId, List<ServerInstance>> segmentReplicas = new HashMap<SegmentId, List<ServerInstance>>();
+    segmentReplicas.put(segment, Arrays.asList(serverInstance1, serverInstance2));
+
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, timedExecutor, 90, 0);
+    // The first server usually answers within 100ms
+    for (int i = 0; i < ServerLatencyTracker.DEFAULT_MIN_SAMPLES; i++) {
+      scImpl.getLatencyTracker().recordLatency(serverInstance1, 100);
+    }
+
+    ScatterGatherRequest req = new TestScatterGatherRequest(pgMap, pgMapStr, new MyReplicaSelection(), segmentReplicas, 1, 10000);
+    final ScatterGatherStats scatterGatherStats = new ScatterGatherStats();
+    long startTime = System.currentTimeMillis();
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req, scatterGatherStats);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+    long duration = System.currentTimeMillis() - startTime;
+
+    // The response of the second server is returned under the key of the first one, without waiting for it
+    Assert.assertEquals(v.size(), 1);
+    ByteBuf b = v.get(serverInstance1);
+    byte[] b2 = new byte[b.readableBytes()];
+    b.readBytes(b2);
+    Assert.assertEquals(new String(b2), "response_1_0");
+    Assert.assertTrue(duration < 2000, "Waited " + duration + "ms for the slow server");
+    Assert.assertTrue(fut.getError().isEmpty());
+    Assert.assertEquals(scatterGatherStats.getNumHedgedRequestsSent(), 1);
+    Assert.assertEquals(scatterGatherStats.getNumHedgedRequestsWon(), 1);
+
+    // The request to the slow server is cancelled by closing its connection
+    Thread.sleep(500);
+    pool.getStats().refresh();
+    Assert.assertEquals(pool.getStats().getTotalBadDestroyed(), 1, "Total Bad destroyed");
+
+    pool.shutdown();
+    service.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
+  @Test
+  public void testHedgedRequestReleasesLosingResponse() throws Exception {
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(null, MoreExecutors.sameThreadExecutor());
+    ServerInstance serverInstance1 = new ServerInstance("localhost", 8080);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", 8081);
+    SegmentIdSet pg = new SegmentIdSet();
+    pg.addSegment(new SegmentId("0"));
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg);
+    ScatterGatherRequest req = new TestScatterGatherRequest(pgMap, new HashMap<SegmentIdSet, String>());
+    ScatterGatherRequestContext ctxt = new ScatterGatherRequestContext(req);
+
+    final NettyClientConnection.ResponseFuture primaryFuture =
+        new NettyClientConnection.ResponseFuture(serverInstance1, "primary");
+    NettyClientConnection.ResponseFuture hedgeFuture =
+        new NettyClientConnection.ResponseFuture(serverInstance2, "hedge");
+    ScatterGatherImpl.SingleRequestHandler primaryHandler =
+        new ScatterGatherImpl.SingleRequestHandler(null, serverInstance1, req, pg, 10000, new CountDownLatch(1)) {
+          @Override
+          public NettyClientConnection.ResponseFuture getResponseFuture() {
+            return primaryFuture;
+          }
+        };
+    ScatterGatherStats scatterGatherStats = new ScatterGatherStats();
+    ScatterGatherImpl.HedgedResponseFuture hedgedFuture =
+        scImpl.new HedgedResponseFuture(ctxt, primaryHandler, serverInstance2, scatterGatherStats);
+
+    // Both servers answer, the primary one first
+    ByteBuf primaryResponse = Unpooled.wrappedBuffer("response_0".getBytes());
+    ByteBuf hedgeResponse = Unpooled.wrappedBuffer("response_1".getBytes());
+    primaryFuture.onSuccess(primaryResponse);
+    hedgeFuture.onSuccess(hedgeResponse);
+    hedgedFuture.onResponse(primaryFuture, false);
+    hedgedFuture.onResponse(hedgeFuture, true);
+
+    // The first response is handed out, the late one is released as nobody else sees it
+    Assert.assertSame(hedgedFuture.getOne(), primaryResponse);
+    Assert.assertEquals(primaryResponse.refCnt(), 1);
+    Assert.assertEquals(hedgeResponse.refCnt(), 0);
+    Assert.assertEquals(scatterGatherStats.getNumHedgedRequestsWon(), 0);
+    primaryResponse.release();
+  }
+
   @Test
   public void testMultipleServerError() throws Exception {
 
@@ -650,7 +877,7 @@ public class ScatterGatherTest {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
 
       if (_sleepTimeMS > 0) {
         try {
@@ -668,7 +895,7 @@ public class ScatterGatherTest {
       _request.add(new String(dst));
       int index = _index.incrementAndGet();
       String res = _responses.get(index);
-      return res.getBytes();
+      return Futures.immediateFuture(res.getBytes());
     }
 
     public List<String> getRequest() {
@@ -683,6 +910,7 @@ public class ScatterGatherTest {
     private final ReplicaSelectionGranularity _granularity;
     private final int _numSpeculativeRequests;
     private final int _timeoutMS;
+    private final Map<SegmentId, List<ServerInstance>> _segmentReplicas;
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
         Map<SegmentIdSet, String> responsesMap) {
@@ -692,6 +920,7 @@ public class ScatterGatherTest {
       _granularity = ReplicaSelectionGranularity.SEGMENT_ID_SET;
       _numSpeculativeRequests = 0;
       _timeoutMS = 10000;
+      _segmentReplicas = null;
     }
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
@@ -703,6 +932,19 @@ public class ScatterGatherTest {
       _granularity = granularity;
       _numSpeculativeRequests = numSpeculativeRequests;
       _timeoutMS = timeoutMS;
+      _segmentReplicas = null;
+    }
+
+    public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
+        Map<SegmentIdSet, String> responsesMap, ReplicaSelection replicaSelection,
+        Map<SegmentId, List<ServerInstance>> segmentReplicas, int numSpeculativeRequests, int timeoutMS) {
+      _partitionServicesMap = partitionServicesMap;
+      _responsesMap = responsesMap;
+      _replicaSelection = replicaSelection;
+      _granularity = ReplicaSelectionGranularity.SEGMENT_ID_SET;
+      _numSpeculativeRequests = numSpeculativeRequests;
+      _timeoutMS = timeoutMS;
+      _segmentReplicas = segmentReplicas;
     }
 
     @Override
@@ -736,6 +978,11 @@ public class ScatterGatherTest {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public Map<SegmentId, List<ServerInstance>> getSegmentReplicas() {
+      return _segmentReplicas;
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;